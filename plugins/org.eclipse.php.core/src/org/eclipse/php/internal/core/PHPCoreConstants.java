@@ -110,6 +110,19 @@ public interface PHPCoreConstants {
 	 */
 	public final static String CODEASSIST_AUTOACTIVATION_DELAY = "contentAssistAutoactivationDelay"; //$NON-NLS-1$
 
+	/**
+	 * A named preference that holds the time in milliseconds that code assist
+	 * waits for the indexer and for the strategies searching global elements.
+	 * Proposals of strategies that don't finish in time are shown in the
+	 * proposal popup once they finish, and the result is reported as
+	 * incomplete meanwhile. A value of <code>0</code> runs all strategies
+	 * sequentially until they finish.
+	 * <p>
+	 * Value is of type <code>Integer</code>.
+	 * </p>
+	 */
+	public final static String CODEASSIST_TIME_BUDGET = "contentAssistTimeBudget"; //$NON-NLS-1$
+
 	/**
 	 * A named preference that controls if the php code assist inserts a
 	 * proposal automatically if only one proposal is available.
@@ -27,10 +27,18 @@ import org.eclipse.dltk.core.search.SearchEngine;
 import org.eclipse.dltk.internal.core.ModelManager;
 import org.eclipse.dltk.internal.core.search.ProjectIndexerManager;
 import org.eclipse.php.core.libfolders.LibraryFolderManager;
+import org.eclipse.php.internal.core.codeassist.PHPCompletionEngine;
+import org.eclipse.php.internal.core.filenetwork.IncludeGraph;
 import org.eclipse.php.internal.core.includepath.IncludePathManager;
+import org.eclipse.php.internal.core.index.IndexingPipeline;
+import org.eclipse.php.internal.core.index.IndexingResultCache;
 import org.eclipse.php.internal.core.language.LanguageModelInitializer;
+import org.eclipse.php.internal.core.model.GlobalNameIndex;
 import org.eclipse.php.internal.core.model.PhpModelAccess;
+import org.eclipse.php.internal.core.model.ProjectModelAccessCache;
 import org.eclipse.php.internal.core.project.PHPNature;
+import org.eclipse.php.internal.core.typeinference.TypeInferenceResultCache;
+import org.eclipse.php.internal.core.typeinference.TypeInferenceStatistics;
 import org.eclipse.php.internal.core.util.ProjectBackwardCompatibilityUtil;
 import org.osgi.framework.BundleContext;
 
@@ -285,6 +293,15 @@ public class PHPCorePlugin extends Plugin {
 		}
 		shutdownListeners.clear();
 
+		TypeInferenceResultCache.shutdown();
+		ProjectModelAccessCache.shutdown();
+		GlobalNameIndex.shutdown();
+		IncludeGraph.shutdown();
+		IndexingPipeline.shutdown();
+		IndexingResultCache.shutdown();
+		PHPCompletionEngine.shutdown();
+		TypeInferenceStatistics.shutdown();
+
 		super.stop(context);
 
 		ResourcesPlugin.getWorkspace().removeResourceChangeListener(
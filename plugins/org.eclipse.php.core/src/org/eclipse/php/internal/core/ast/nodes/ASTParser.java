@@ -329,21 +329,14 @@ public class ASTParser {
 	public static final Program parse(final IDocument phpDocument,
 			boolean aspTagsAsPhp, PHPVersion phpVersion, final int offset,
 			final int length, boolean useShortTags) throws Exception {
-		final Reader reader = new InputStreamReader(new InputStream() {
-			private int index = offset;
-			private final int size = offset + length;
-
-			public int read() throws IOException {
-				try {
-					if (index < size) {
-						return phpDocument.getChar(index++);
-					}
-					return -1;
-				} catch (BadLocationException e) {
-					throw new IOException(e.getMessage());
-				}
-			}
-		});
+		// read the text at once rather than char by char through the
+		// document, which also keeps non ASCII characters intact
+		final Reader reader;
+		try {
+			reader = new StringReader(phpDocument.get(offset, length));
+		} catch (BadLocationException e) {
+			throw new IOException(e.getMessage());
+		}
 		return parse(reader, aspTagsAsPhp, phpVersion, useShortTags);
 	}
 
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.ast.nodes;
+
+import java.io.CharArrayReader;
+import java.util.List;
+
+import org.eclipse.php.internal.core.PHPVersion;
+import org.eclipse.php.internal.core.ast.visitor.ApplyAll;
+
+/**
+ * Creates the {@link Program} of a locally changed source from the program of
+ * the previous source, by parsing only the smallest block, function or class
+ * that encloses the change.
+ * <p>
+ * The enclosing node is parsed from a copy of the new source where everything
+ * outside of the node is blanked out, so the new nodes get their final
+ * positions. The previous program is copied into the AST of the parsed
+ * fragment, the enclosing node is replaced with the new one, and positions of
+ * the nodes that follow the change are shifted. If the changed node doesn't
+ * parse into a node of the same kind with the same bounds, or contains syntax
+ * errors, the caller is expected to parse the whole source.
+ * </p>
+ * <p>
+ * The previous program is only read, so it may still be used by other threads
+ * meanwhile. Its unchanged nodes can't be shared with the new program, since
+ * a node has a single parent and belongs to a single {@link AST}, so every
+ * edit still allocates a copy of the whole program. The copy doesn't lex or
+ * parse anything, so it costs a fraction of parsing the whole source, but
+ * the memory churn per edit stays proportional to the size of the file.
+ * </p>
+ */
+public final class IncrementalASTParser {
+
+	private static final char[] OPEN_TAG = "<?php".toCharArray(); //$NON-NLS-1$
+
+	private IncrementalASTParser() {
+	}
+
+	/**
+	 * Creates the program of the new source
+	 * 
+	 * @param program
+	 *            Program that was created from the old source, which isn't
+	 *            modified
+	 * @param oldSource
+	 *            Source the program was created from
+	 * @param newSource
+	 *            Changed source
+	 * @param useShortTags
+	 *            Whether the program was parsed with short tags
+	 * @return program of the new source, which shares no node with the given
+	 *         program, or <code>null</code> if the source must be parsed
+	 *         again
+	 */
+	public static Program reparse(Program program, char[] oldSource,
+			char[] newSource, boolean useShortTags) {
+		if ((program.getFlags() & ASTNode.PROTECT) != 0) {
+			return null;
+		}
+
+		// find the changed range
+		final int maxPrefix = Math.min(oldSource.length, newSource.length);
+		int prefix = 0;
+		while (prefix < maxPrefix && oldSource[prefix] == newSource[prefix]) {
+			prefix++;
+		}
+		if (prefix == oldSource.length && prefix == newSource.length) {
+			return program;
+		}
+		int suffix = 0;
+		while (suffix < maxPrefix - prefix
+				&& oldSource[oldSource.length - suffix - 1] == newSource[newSource.length
+						- suffix - 1]) {
+			suffix++;
+		}
+		final int changeEnd = oldSource.length - suffix;
+		final int delta = newSource.length - oldSource.length;
+
+		final ASTNode node = findEnclosingNode(program, prefix, changeEnd);
+		if (node == null || node.getStart() < OPEN_TAG.length + 1) {
+			return null;
+		}
+		final int oldStart = node.getStart();
+		final int oldEnd = node.getEnd();
+		final int newEnd = oldEnd + delta;
+
+		final Program fragment = parseFragment(program.getAST(), newSource,
+				oldStart, newEnd, useShortTags);
+		if (fragment == null || fragment.statements().size() != 1) {
+			return null;
+		}
+		final Statement newNode = fragment.statements().get(0);
+		if (newNode.getClass() != node.getClass()
+				|| newNode.getStart() != oldStart
+				|| newNode.getEnd() != newEnd || containsErrors(newNode)) {
+			return null;
+		}
+
+		final AST ast = fragment.getAST();
+		final Program result;
+		final int defaultNodeFlag = ast.getDefaultNodeFlag();
+		// copied and spliced nodes are original nodes, as if they were parsed
+		ast.setDefaultNodeFlag(ASTNode.ORIGINAL);
+		try {
+			result = ASTNode.copySubtree(ast, program);
+			final ASTNode oldNode = findEnclosingNode(result, prefix,
+					changeEnd);
+			fragment.statements().remove(newNode);
+			final ASTNode parent = oldNode.getParent();
+			final StructuralPropertyDescriptor location = oldNode
+					.getLocationInParent();
+			if (location.isChildListProperty()) {
+				final List<ASTNode> siblings = (List<ASTNode>) parent
+						.getStructuralProperty(location);
+				siblings.set(siblings.indexOf(oldNode), newNode);
+			} else {
+				parent.setStructuralProperty(location, newNode);
+			}
+
+			final List<Comment> comments = result.comments();
+			for (int i = comments.size() - 1; i >= 0; i--) {
+				final Comment comment = comments.get(i);
+				if (comment.getStart() >= oldStart
+						&& comment.getEnd() <= oldEnd) {
+					comments.remove(i);
+				}
+			}
+
+			result.accept(new ApplyAll() {
+				protected boolean apply(ASTNode n) {
+					if (n == newNode) {
+						return false;
+					}
+					final int start = n.getStart();
+					if (start < 0) {
+						return true;
+					}
+					if (start >= oldEnd) {
+						n.setSourceRange(start + delta, n.getLength());
+						return true;
+					}
+					if (n.getEnd() >= oldEnd) {
+						// encloses the change
+						n.setSourceRange(start, n.getLength() + delta);
+						return true;
+					}
+					return false;
+				}
+			});
+
+			int index = 0;
+			for (Comment comment : fragment.comments()) {
+				while (index < comments.size()
+						&& comments.get(index).getStart() < comment.getStart()) {
+					index++;
+				}
+				comments.add(index++, ASTNode.copySubtree(ast, comment));
+			}
+		} finally {
+			ast.setDefaultNodeFlag(defaultNodeFlag);
+		}
+		// the program is in its original state, for rewriting
+		ast.setOriginalModificationCount(ast.modificationCount());
+		return result;
+	}
+
+	/**
+	 * Returns the smallest block, function or class that strictly encloses the
+	 * given range, so that its first and last characters weren't changed
+	 */
+	private static ASTNode findEnclosingNode(Program program,
+			final int changeStart, final int changeEnd) {
+		final ASTNode[] result = new ASTNode[1];
+		program.accept(new ApplyAll() {
+			protected boolean apply(ASTNode node) {
+				if (node.getStart() >= changeStart
+						|| node.getEnd() <= changeEnd) {
+					return false;
+				}
+				if (isReparseable(node)) {
+					result[0] = node;
+				}
+				return true;
+			}
+		});
+		return result[0];
+	}
+
+	private static boolean isReparseable(ASTNode node) {
+		if (node instanceof Block) {
+			// type and namespace bodies contain other statements than blocks
+			final ASTNode parent = node.getParent();
+			return ((Block) node).isCurly()
+					&& !(parent instanceof TypeDeclaration)
+					&& !(parent instanceof NamespaceDeclaration)
+					&& !(parent instanceof SwitchStatement);
+		}
+		return node instanceof FunctionDeclaration
+				|| node instanceof ClassDeclaration;
+	}
+
+	/**
+	 * Parses the given range of the source as a PHP program on its own, while
+	 * keeping the positions of the source
+	 */
+	private static Program parseFragment(AST ast, char[] source, int start,
+			int end, boolean useShortTags) {
+		final char[] fragment = new char[source.length];
+		for (int i = 0; i < source.length; i++) {
+			final char c = source[i];
+			fragment[i] = (i >= start && i < end) || c == '\n' || c == '\r' ? c
+					: ' ';
+		}
+		System.arraycopy(OPEN_TAG, 0, fragment, 0, OPEN_TAG.length);
+		try {
+			final PHPVersion version = ast.apiLevel();
+			return ASTParser.newParser(new CharArrayReader(fragment), version,
+					ast.useASPTags(), useShortTags).createAST(null);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static boolean containsErrors(ASTNode node) {
+		final boolean[] result = new boolean[1];
+		node.accept(new ApplyAll() {
+			protected boolean apply(ASTNode n) {
+				if (n instanceof ASTError) {
+					result[0] = true;
+				}
+				return !result[0];
+			}
+		});
+		return result[0];
+	}
+}
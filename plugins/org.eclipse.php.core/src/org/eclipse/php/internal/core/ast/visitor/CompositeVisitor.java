@@ -0,0 +1,1519 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.ast.visitor;
+
+import org.eclipse.php.internal.core.ast.nodes.*;
+
+/**
+ * Visitor that forwards a single traversal of the AST to several visitors, as
+ * if each of them traversed the AST on its own.
+ * <p>
+ * When a visitor returns <code>false</code> from a <code>visit</code> method,
+ * it doesn't get the children of that node, but it still gets the
+ * corresponding <code>endVisit</code> call. The children are skipped only
+ * when none of the visitors is interested in them.
+ * </p>
+ */
+public class CompositeVisitor implements Visitor {
+
+	private final Visitor[] visitors;
+
+	/**
+	 * Node at which each visitor stopped descending, or <code>null</code>
+	 */
+	private final ASTNode[] prunedAt;
+
+	/** Number of visitors that didn't stop descending */
+	private int active;
+
+	public CompositeVisitor(Visitor[] visitors) {
+		this.visitors = visitors;
+		this.prunedAt = new ASTNode[visitors.length];
+		this.active = visitors.length;
+	}
+
+	public void preVisit(ASTNode node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (prunedAt[i] == null) {
+				visitors[i].preVisit(node);
+			}
+		}
+	}
+
+	public void postVisit(ASTNode node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (prunedAt[i] == null) {
+				visitors[i].postVisit(node);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the visitor is still descending into the children of
+	 * the current node
+	 */
+	private boolean isActive(int i) {
+		return prunedAt[i] == null;
+	}
+
+	/**
+	 * Records that the visitor doesn't descend into the given node
+	 */
+	private void prune(int i, ASTNode node) {
+		prunedAt[i] = node;
+		active--;
+	}
+
+	/**
+	 * Returns whether the visitor is interested in the end of the given node,
+	 * and resumes it if it stopped descending at the node
+	 */
+	private boolean resume(int i, ASTNode node) {
+		if (prunedAt[i] == null) {
+			return true;
+		}
+		if (prunedAt[i] == node) {
+			prunedAt[i] = null;
+			active++;
+			return true;
+		}
+		return false;
+	}
+
+	public boolean visit(ArrayAccess arrayAccess) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(arrayAccess)) {
+				prune(i, arrayAccess);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ArrayAccess arrayAccess) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, arrayAccess)) {
+				visitors[i].endVisit(arrayAccess);
+			}
+		}
+	}
+
+	public boolean visit(ArrayCreation arrayCreation) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(arrayCreation)) {
+				prune(i, arrayCreation);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ArrayCreation arrayCreation) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, arrayCreation)) {
+				visitors[i].endVisit(arrayCreation);
+			}
+		}
+	}
+
+	public boolean visit(ArrayElement arrayElement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(arrayElement)) {
+				prune(i, arrayElement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ArrayElement arrayElement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, arrayElement)) {
+				visitors[i].endVisit(arrayElement);
+			}
+		}
+	}
+
+	public boolean visit(Assignment assignment) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(assignment)) {
+				prune(i, assignment);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(Assignment assignment) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, assignment)) {
+				visitors[i].endVisit(assignment);
+			}
+		}
+	}
+
+	public boolean visit(ASTError astError) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(astError)) {
+				prune(i, astError);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ASTError astError) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, astError)) {
+				visitors[i].endVisit(astError);
+			}
+		}
+	}
+
+	public boolean visit(BackTickExpression backTickExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(backTickExpression)) {
+				prune(i, backTickExpression);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(BackTickExpression backTickExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, backTickExpression)) {
+				visitors[i].endVisit(backTickExpression);
+			}
+		}
+	}
+
+	public boolean visit(Block block) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(block)) {
+				prune(i, block);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(Block block) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, block)) {
+				visitors[i].endVisit(block);
+			}
+		}
+	}
+
+	public boolean visit(BreakStatement breakStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(breakStatement)) {
+				prune(i, breakStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(BreakStatement breakStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, breakStatement)) {
+				visitors[i].endVisit(breakStatement);
+			}
+		}
+	}
+
+	public boolean visit(CastExpression castExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(castExpression)) {
+				prune(i, castExpression);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(CastExpression castExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, castExpression)) {
+				visitors[i].endVisit(castExpression);
+			}
+		}
+	}
+
+	public boolean visit(CatchClause catchClause) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(catchClause)) {
+				prune(i, catchClause);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(CatchClause catchClause) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, catchClause)) {
+				visitors[i].endVisit(catchClause);
+			}
+		}
+	}
+
+	public boolean visit(ConstantDeclaration classConstantDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(classConstantDeclaration)) {
+				prune(i, classConstantDeclaration);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ConstantDeclaration classConstantDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, classConstantDeclaration)) {
+				visitors[i].endVisit(classConstantDeclaration);
+			}
+		}
+	}
+
+	public boolean visit(ClassDeclaration classDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(classDeclaration)) {
+				prune(i, classDeclaration);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ClassDeclaration classDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, classDeclaration)) {
+				visitors[i].endVisit(classDeclaration);
+			}
+		}
+	}
+
+	public boolean visit(ClassInstanceCreation classInstanceCreation) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(classInstanceCreation)) {
+				prune(i, classInstanceCreation);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ClassInstanceCreation classInstanceCreation) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, classInstanceCreation)) {
+				visitors[i].endVisit(classInstanceCreation);
+			}
+		}
+	}
+
+	public boolean visit(ClassName className) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(className)) {
+				prune(i, className);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ClassName className) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, className)) {
+				visitors[i].endVisit(className);
+			}
+		}
+	}
+
+	public boolean visit(CloneExpression cloneExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(cloneExpression)) {
+				prune(i, cloneExpression);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(CloneExpression cloneExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, cloneExpression)) {
+				visitors[i].endVisit(cloneExpression);
+			}
+		}
+	}
+
+	public boolean visit(Comment comment) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(comment)) {
+				prune(i, comment);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(Comment comment) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, comment)) {
+				visitors[i].endVisit(comment);
+			}
+		}
+	}
+
+	public boolean visit(ConditionalExpression conditionalExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(conditionalExpression)) {
+				prune(i, conditionalExpression);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ConditionalExpression conditionalExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, conditionalExpression)) {
+				visitors[i].endVisit(conditionalExpression);
+			}
+		}
+	}
+
+	public boolean visit(ContinueStatement continueStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(continueStatement)) {
+				prune(i, continueStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ContinueStatement continueStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, continueStatement)) {
+				visitors[i].endVisit(continueStatement);
+			}
+		}
+	}
+
+	public boolean visit(DeclareStatement declareStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(declareStatement)) {
+				prune(i, declareStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(DeclareStatement declareStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, declareStatement)) {
+				visitors[i].endVisit(declareStatement);
+			}
+		}
+	}
+
+	public boolean visit(DoStatement doStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(doStatement)) {
+				prune(i, doStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(DoStatement doStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, doStatement)) {
+				visitors[i].endVisit(doStatement);
+			}
+		}
+	}
+
+	public boolean visit(EchoStatement echoStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(echoStatement)) {
+				prune(i, echoStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(EchoStatement echoStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, echoStatement)) {
+				visitors[i].endVisit(echoStatement);
+			}
+		}
+	}
+
+	public boolean visit(EmptyStatement emptyStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(emptyStatement)) {
+				prune(i, emptyStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(EmptyStatement emptyStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, emptyStatement)) {
+				visitors[i].endVisit(emptyStatement);
+			}
+		}
+	}
+
+	public boolean visit(ExpressionStatement expressionStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(expressionStatement)) {
+				prune(i, expressionStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ExpressionStatement expressionStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, expressionStatement)) {
+				visitors[i].endVisit(expressionStatement);
+			}
+		}
+	}
+
+	public boolean visit(FieldAccess fieldAccess) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(fieldAccess)) {
+				prune(i, fieldAccess);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(FieldAccess fieldAccess) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, fieldAccess)) {
+				visitors[i].endVisit(fieldAccess);
+			}
+		}
+	}
+
+	public boolean visit(FieldsDeclaration fieldsDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(fieldsDeclaration)) {
+				prune(i, fieldsDeclaration);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(FieldsDeclaration fieldsDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, fieldsDeclaration)) {
+				visitors[i].endVisit(fieldsDeclaration);
+			}
+		}
+	}
+
+	public boolean visit(ForEachStatement forEachStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(forEachStatement)) {
+				prune(i, forEachStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ForEachStatement forEachStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, forEachStatement)) {
+				visitors[i].endVisit(forEachStatement);
+			}
+		}
+	}
+
+	public boolean visit(FormalParameter formalParameter) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(formalParameter)) {
+				prune(i, formalParameter);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(FormalParameter formalParameter) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, formalParameter)) {
+				visitors[i].endVisit(formalParameter);
+			}
+		}
+	}
+
+	public boolean visit(ForStatement forStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(forStatement)) {
+				prune(i, forStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ForStatement forStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, forStatement)) {
+				visitors[i].endVisit(forStatement);
+			}
+		}
+	}
+
+	public boolean visit(FunctionDeclaration functionDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(functionDeclaration)) {
+				prune(i, functionDeclaration);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(FunctionDeclaration functionDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, functionDeclaration)) {
+				visitors[i].endVisit(functionDeclaration);
+			}
+		}
+	}
+
+	public boolean visit(FunctionInvocation functionInvocation) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(functionInvocation)) {
+				prune(i, functionInvocation);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(FunctionInvocation functionInvocation) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, functionInvocation)) {
+				visitors[i].endVisit(functionInvocation);
+			}
+		}
+	}
+
+	public boolean visit(FunctionName functionName) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(functionName)) {
+				prune(i, functionName);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(FunctionName functionName) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, functionName)) {
+				visitors[i].endVisit(functionName);
+			}
+		}
+	}
+
+	public boolean visit(GlobalStatement globalStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(globalStatement)) {
+				prune(i, globalStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(GlobalStatement globalStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, globalStatement)) {
+				visitors[i].endVisit(globalStatement);
+			}
+		}
+	}
+
+	public boolean visit(GotoLabel gotoLabel) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(gotoLabel)) {
+				prune(i, gotoLabel);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(GotoLabel gotoLabel) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, gotoLabel)) {
+				visitors[i].endVisit(gotoLabel);
+			}
+		}
+	}
+
+	public boolean visit(GotoStatement gotoStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(gotoStatement)) {
+				prune(i, gotoStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(GotoStatement gotoStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, gotoStatement)) {
+				visitors[i].endVisit(gotoStatement);
+			}
+		}
+	}
+
+	public boolean visit(Identifier identifier) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(identifier)) {
+				prune(i, identifier);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(Identifier identifier) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, identifier)) {
+				visitors[i].endVisit(identifier);
+			}
+		}
+	}
+
+	public boolean visit(IfStatement ifStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(ifStatement)) {
+				prune(i, ifStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(IfStatement ifStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, ifStatement)) {
+				visitors[i].endVisit(ifStatement);
+			}
+		}
+	}
+
+	public boolean visit(IgnoreError ignoreError) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(ignoreError)) {
+				prune(i, ignoreError);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(IgnoreError ignoreError) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, ignoreError)) {
+				visitors[i].endVisit(ignoreError);
+			}
+		}
+	}
+
+	public boolean visit(Include include) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(include)) {
+				prune(i, include);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(Include include) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, include)) {
+				visitors[i].endVisit(include);
+			}
+		}
+	}
+
+	public boolean visit(InfixExpression infixExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(infixExpression)) {
+				prune(i, infixExpression);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(InfixExpression infixExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, infixExpression)) {
+				visitors[i].endVisit(infixExpression);
+			}
+		}
+	}
+
+	public boolean visit(InLineHtml inLineHtml) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(inLineHtml)) {
+				prune(i, inLineHtml);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(InLineHtml inLineHtml) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, inLineHtml)) {
+				visitors[i].endVisit(inLineHtml);
+			}
+		}
+	}
+
+	public boolean visit(InstanceOfExpression instanceOfExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(instanceOfExpression)) {
+				prune(i, instanceOfExpression);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(InstanceOfExpression instanceOfExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, instanceOfExpression)) {
+				visitors[i].endVisit(instanceOfExpression);
+			}
+		}
+	}
+
+	public boolean visit(InterfaceDeclaration interfaceDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(interfaceDeclaration)) {
+				prune(i, interfaceDeclaration);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(InterfaceDeclaration interfaceDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, interfaceDeclaration)) {
+				visitors[i].endVisit(interfaceDeclaration);
+			}
+		}
+	}
+
+	public boolean visit(LambdaFunctionDeclaration lambdaFunctionDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(lambdaFunctionDeclaration)) {
+				prune(i, lambdaFunctionDeclaration);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(LambdaFunctionDeclaration lambdaFunctionDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, lambdaFunctionDeclaration)) {
+				visitors[i].endVisit(lambdaFunctionDeclaration);
+			}
+		}
+	}
+
+	public boolean visit(ListVariable listVariable) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(listVariable)) {
+				prune(i, listVariable);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ListVariable listVariable) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, listVariable)) {
+				visitors[i].endVisit(listVariable);
+			}
+		}
+	}
+
+	public boolean visit(MethodDeclaration methodDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(methodDeclaration)) {
+				prune(i, methodDeclaration);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(MethodDeclaration methodDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, methodDeclaration)) {
+				visitors[i].endVisit(methodDeclaration);
+			}
+		}
+	}
+
+	public boolean visit(MethodInvocation methodInvocation) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(methodInvocation)) {
+				prune(i, methodInvocation);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(MethodInvocation methodInvocation) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, methodInvocation)) {
+				visitors[i].endVisit(methodInvocation);
+			}
+		}
+	}
+
+	public boolean visit(NamespaceName namespaceName) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(namespaceName)) {
+				prune(i, namespaceName);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(NamespaceName namespaceName) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, namespaceName)) {
+				visitors[i].endVisit(namespaceName);
+			}
+		}
+	}
+
+	public boolean visit(NamespaceDeclaration namespaceDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(namespaceDeclaration)) {
+				prune(i, namespaceDeclaration);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(NamespaceDeclaration namespaceDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, namespaceDeclaration)) {
+				visitors[i].endVisit(namespaceDeclaration);
+			}
+		}
+	}
+
+	public boolean visit(ParenthesisExpression parenthesisExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(parenthesisExpression)) {
+				prune(i, parenthesisExpression);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ParenthesisExpression parenthesisExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, parenthesisExpression)) {
+				visitors[i].endVisit(parenthesisExpression);
+			}
+		}
+	}
+
+	public boolean visit(PostfixExpression postfixExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(postfixExpression)) {
+				prune(i, postfixExpression);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(PostfixExpression postfixExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, postfixExpression)) {
+				visitors[i].endVisit(postfixExpression);
+			}
+		}
+	}
+
+	public boolean visit(PrefixExpression prefixExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(prefixExpression)) {
+				prune(i, prefixExpression);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(PrefixExpression prefixExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, prefixExpression)) {
+				visitors[i].endVisit(prefixExpression);
+			}
+		}
+	}
+
+	public boolean visit(Program program) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(program)) {
+				prune(i, program);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(Program program) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, program)) {
+				visitors[i].endVisit(program);
+			}
+		}
+	}
+
+	public boolean visit(Quote quote) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(quote)) {
+				prune(i, quote);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(Quote quote) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, quote)) {
+				visitors[i].endVisit(quote);
+			}
+		}
+	}
+
+	public boolean visit(Reference reference) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(reference)) {
+				prune(i, reference);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(Reference reference) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, reference)) {
+				visitors[i].endVisit(reference);
+			}
+		}
+	}
+
+	public boolean visit(ReflectionVariable reflectionVariable) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(reflectionVariable)) {
+				prune(i, reflectionVariable);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ReflectionVariable reflectionVariable) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, reflectionVariable)) {
+				visitors[i].endVisit(reflectionVariable);
+			}
+		}
+	}
+
+	public boolean visit(ReturnStatement returnStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(returnStatement)) {
+				prune(i, returnStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ReturnStatement returnStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, returnStatement)) {
+				visitors[i].endVisit(returnStatement);
+			}
+		}
+	}
+
+	public boolean visit(Scalar scalar) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(scalar)) {
+				prune(i, scalar);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(Scalar scalar) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, scalar)) {
+				visitors[i].endVisit(scalar);
+			}
+		}
+	}
+
+	public boolean visit(SingleFieldDeclaration singleFieldDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(singleFieldDeclaration)) {
+				prune(i, singleFieldDeclaration);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(SingleFieldDeclaration singleFieldDeclaration) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, singleFieldDeclaration)) {
+				visitors[i].endVisit(singleFieldDeclaration);
+			}
+		}
+	}
+
+	public boolean visit(StaticConstantAccess classConstantAccess) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(classConstantAccess)) {
+				prune(i, classConstantAccess);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(StaticConstantAccess staticConstantAccess) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, staticConstantAccess)) {
+				visitors[i].endVisit(staticConstantAccess);
+			}
+		}
+	}
+
+	public boolean visit(StaticFieldAccess staticFieldAccess) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(staticFieldAccess)) {
+				prune(i, staticFieldAccess);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(StaticFieldAccess staticFieldAccess) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, staticFieldAccess)) {
+				visitors[i].endVisit(staticFieldAccess);
+			}
+		}
+	}
+
+	public boolean visit(StaticMethodInvocation staticMethodInvocation) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(staticMethodInvocation)) {
+				prune(i, staticMethodInvocation);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(StaticMethodInvocation staticMethodInvocation) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, staticMethodInvocation)) {
+				visitors[i].endVisit(staticMethodInvocation);
+			}
+		}
+	}
+
+	public boolean visit(StaticStatement staticStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(staticStatement)) {
+				prune(i, staticStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(StaticStatement staticStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, staticStatement)) {
+				visitors[i].endVisit(staticStatement);
+			}
+		}
+	}
+
+	public boolean visit(SwitchCase switchCase) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(switchCase)) {
+				prune(i, switchCase);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(SwitchCase switchCase) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, switchCase)) {
+				visitors[i].endVisit(switchCase);
+			}
+		}
+	}
+
+	public boolean visit(SwitchStatement switchStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(switchStatement)) {
+				prune(i, switchStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(SwitchStatement switchStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, switchStatement)) {
+				visitors[i].endVisit(switchStatement);
+			}
+		}
+	}
+
+	public boolean visit(ThrowStatement throwStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(throwStatement)) {
+				prune(i, throwStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ThrowStatement throwStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, throwStatement)) {
+				visitors[i].endVisit(throwStatement);
+			}
+		}
+	}
+
+	public boolean visit(TryStatement tryStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(tryStatement)) {
+				prune(i, tryStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(TryStatement tryStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, tryStatement)) {
+				visitors[i].endVisit(tryStatement);
+			}
+		}
+	}
+
+	public boolean visit(UnaryOperation unaryOperation) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(unaryOperation)) {
+				prune(i, unaryOperation);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(UnaryOperation unaryOperation) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, unaryOperation)) {
+				visitors[i].endVisit(unaryOperation);
+			}
+		}
+	}
+
+	public boolean visit(Variable variable) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(variable)) {
+				prune(i, variable);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(Variable variable) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, variable)) {
+				visitors[i].endVisit(variable);
+			}
+		}
+	}
+
+	public boolean visit(UseStatement useStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(useStatement)) {
+				prune(i, useStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(UseStatement useStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, useStatement)) {
+				visitors[i].endVisit(useStatement);
+			}
+		}
+	}
+
+	public boolean visit(UseStatementPart useStatementPart) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(useStatementPart)) {
+				prune(i, useStatementPart);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(UseStatementPart useStatementPart) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, useStatementPart)) {
+				visitors[i].endVisit(useStatementPart);
+			}
+		}
+	}
+
+	public boolean visit(WhileStatement whileStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(whileStatement)) {
+				prune(i, whileStatement);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(WhileStatement whileStatement) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, whileStatement)) {
+				visitors[i].endVisit(whileStatement);
+			}
+		}
+	}
+
+	public boolean visit(ASTNode node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(node)) {
+				prune(i, node);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ASTNode node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, node)) {
+				visitors[i].endVisit(node);
+			}
+		}
+	}
+
+	public boolean visit(ChainingInstanceCall node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(node)) {
+				prune(i, node);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(ChainingInstanceCall node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, node)) {
+				visitors[i].endVisit(node);
+			}
+		}
+	}
+
+	public boolean visit(DereferenceNode node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(node)) {
+				prune(i, node);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(DereferenceNode node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, node)) {
+				visitors[i].endVisit(node);
+			}
+		}
+	}
+
+	public boolean visit(FullyQualifiedTraitMethodReference node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(node)) {
+				prune(i, node);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(FullyQualifiedTraitMethodReference node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, node)) {
+				visitors[i].endVisit(node);
+			}
+		}
+	}
+
+	public boolean visit(PHPArrayDereferenceList node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(node)) {
+				prune(i, node);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(PHPArrayDereferenceList node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, node)) {
+				visitors[i].endVisit(node);
+			}
+		}
+	}
+
+	public boolean visit(TraitAlias node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(node)) {
+				prune(i, node);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(TraitAlias node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, node)) {
+				visitors[i].endVisit(node);
+			}
+		}
+	}
+
+	public boolean visit(TraitAliasStatement node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(node)) {
+				prune(i, node);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(TraitAliasStatement node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, node)) {
+				visitors[i].endVisit(node);
+			}
+		}
+	}
+
+	public boolean visit(TraitDeclaration node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(node)) {
+				prune(i, node);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(TraitDeclaration node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, node)) {
+				visitors[i].endVisit(node);
+			}
+		}
+	}
+
+	public boolean visit(TraitPrecedence node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(node)) {
+				prune(i, node);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(TraitPrecedence node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, node)) {
+				visitors[i].endVisit(node);
+			}
+		}
+	}
+
+	public boolean visit(TraitPrecedenceStatement node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(node)) {
+				prune(i, node);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(TraitPrecedenceStatement node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, node)) {
+				visitors[i].endVisit(node);
+			}
+		}
+	}
+
+	public boolean visit(TraitUseStatement node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(node)) {
+				prune(i, node);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(TraitUseStatement node) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, node)) {
+				visitors[i].endVisit(node);
+			}
+		}
+	}
+
+	public boolean visit(YieldExpression YieldExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(YieldExpression)) {
+				prune(i, YieldExpression);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(YieldExpression YieldExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, YieldExpression)) {
+				visitors[i].endVisit(YieldExpression);
+			}
+		}
+	}
+
+	public boolean visit(FinallyClause YieldExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (isActive(i) && !visitors[i].visit(YieldExpression)) {
+				prune(i, YieldExpression);
+			}
+		}
+		return active > 0;
+	}
+
+	public void endVisit(FinallyClause YieldExpression) {
+		for (int i = 0; i < visitors.length; i++) {
+			if (resume(i, YieldExpression)) {
+				visitors[i].endVisit(YieldExpression);
+			}
+		}
+	}
+}
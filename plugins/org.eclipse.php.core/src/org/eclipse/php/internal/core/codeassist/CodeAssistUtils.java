@@ -16,6 +16,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
 import org.eclipse.dltk.ast.references.VariableReference;
 import org.eclipse.dltk.core.*;
@@ -80,6 +81,22 @@ public class CodeAssistUtils {
 	 */
 	public static IType[] getVariableType(IType[] types, String propertyName,
 			int offset) {
+		return getVariableType(types, propertyName, offset, null);
+	}
+
+	/**
+	 * Returns type of a class field defined by name, until the given monitor
+	 * is cancelled.
+	 * 
+	 * @param types
+	 * @param propertyName
+	 * @param offset
+	 * @param monitor
+	 *            Progress monitor of the caller (may be <code>null</code>)
+	 * @return
+	 */
+	public static IType[] getVariableType(IType[] types, String propertyName,
+			int offset, IProgressMonitor monitor) {
 		if (types != null) {
 			for (IType type : types) {
 				PHPClassType classType = PHPClassType.fromIType(type);
@@ -98,7 +115,7 @@ public class CodeAssistUtils {
 				PHPDocClassVariableGoal phpDocGoal = new PHPDocClassVariableGoal(
 						typeContext, propertyName, offset);
 				IEvaluatedType evaluatedType = typeInferencer
-						.evaluateTypePHPDoc(phpDocGoal, 3000);
+						.evaluateTypePHPDoc(phpDocGoal, 3000, monitor);
 
 				IType[] modelElements = PHPTypeInferenceUtils.getModelElements(
 						evaluatedType, fileContext, offset);
@@ -108,7 +125,7 @@ public class CodeAssistUtils {
 
 				ClassVariableDeclarationGoal goal = new ClassVariableDeclarationGoal(
 						typeContext, types, propertyName);
-				evaluatedType = typeInferencer.evaluateType(goal);
+				evaluatedType = typeInferencer.evaluateType(goal, monitor);
 
 				modelElements = PHPTypeInferenceUtils.getModelElements(
 						evaluatedType, fileContext, offset);
@@ -130,6 +147,22 @@ public class CodeAssistUtils {
 	 */
 	public static IType[] getArrayVariableType(ISourceModule sourceModule,
 			String variableName, int position) {
+		return getArrayVariableType(sourceModule, variableName, position, null);
+	}
+
+	/**
+	 * Returns type of a variable defined by name, until the given monitor is
+	 * cancelled.
+	 * 
+	 * @param sourceModule
+	 * @param variableName
+	 * @param position
+	 * @param monitor
+	 *            Progress monitor of the caller (may be <code>null</code>)
+	 * @return
+	 */
+	public static IType[] getArrayVariableType(ISourceModule sourceModule,
+			String variableName, int position, IProgressMonitor monitor) {
 		ModuleDeclaration moduleDeclaration = SourceParserUtil
 				.getModuleDeclaration(sourceModule, null);
 		IContext context = ASTUtils.findContext(sourceModule,
@@ -140,7 +173,8 @@ public class CodeAssistUtils {
 			ExpressionTypeGoal goal = new ExpressionTypeGoal(context,
 					varReference);
 			PHPTypeInferencer typeInferencer = new PHPTypeInferencer();
-			IEvaluatedType evaluatedType = typeInferencer.evaluateType(goal);
+			IEvaluatedType evaluatedType = typeInferencer.evaluateType(goal,
+					monitor);
 			if (evaluatedType instanceof MultiTypeType
 					|| evaluatedType instanceof AmbiguousType) {
 				return getTypes(position, context, evaluatedType);
@@ -195,6 +229,22 @@ public class CodeAssistUtils {
 	 */
 	public static IType[] getVariableType(ISourceModule sourceModule,
 			String variableName, int position) {
+		return getVariableType(sourceModule, variableName, position, null);
+	}
+
+	/**
+	 * Returns type of a variable defined by name, until the given monitor is
+	 * cancelled.
+	 * 
+	 * @param sourceModule
+	 * @param variableName
+	 * @param position
+	 * @param monitor
+	 *            Progress monitor of the caller (may be <code>null</code>)
+	 * @return
+	 */
+	public static IType[] getVariableType(ISourceModule sourceModule,
+			String variableName, int position, IProgressMonitor monitor) {
 		ModuleDeclaration moduleDeclaration = SourceParserUtil
 				.getModuleDeclaration(sourceModule, null);
 		IContext context = ASTUtils.findContext(sourceModule,
@@ -205,7 +255,8 @@ public class CodeAssistUtils {
 			ExpressionTypeGoal goal = new ExpressionTypeGoal(context,
 					varReference);
 			PHPTypeInferencer typeInferencer = new PHPTypeInferencer();
-			IEvaluatedType evaluatedType = typeInferencer.evaluateType(goal);
+			IEvaluatedType evaluatedType = typeInferencer.evaluateType(goal,
+					monitor);
 
 			IType[] modelElements = getTypes(position, context, evaluatedType);
 			// IType[] modelElements = PHPTypeInferenceUtils.getModelElements(
@@ -270,6 +321,24 @@ public class CodeAssistUtils {
 	public static IType[] getFunctionReturnType(IType[] types, String method,
 			int mask, org.eclipse.dltk.core.ISourceModule sourceModule,
 			int offset, String[] argNames) {
+		return getFunctionReturnType(types, method, mask, sourceModule, offset,
+				argNames, null);
+	}
+
+	/**
+	 * Determines the return type of the given method element, until the given
+	 * monitor is cancelled.
+	 * 
+	 * @param method
+	 * @param mask
+	 * @param offset
+	 * @param monitor
+	 *            Progress monitor of the caller (may be <code>null</code>)
+	 * @return
+	 */
+	public static IType[] getFunctionReturnType(IType[] types, String method,
+			int mask, org.eclipse.dltk.core.ISourceModule sourceModule,
+			int offset, String[] argNames, IProgressMonitor monitor) {
 		PHPTypeInferencer typeInferencer = new PHPTypeInferencer();
 		ModuleDeclaration moduleDeclaration = SourceParserUtil
 				.getModuleDeclaration(sourceModule, null);
@@ -282,7 +351,8 @@ public class CodeAssistUtils {
 		if (usePhpDoc) {
 			PHPDocMethodReturnTypeGoal phpDocGoal = new PHPDocMethodReturnTypeGoal(
 					context, types, method, offset);
-			evaluatedType = typeInferencer.evaluateTypePHPDoc(phpDocGoal);
+			evaluatedType = typeInferencer.evaluateTypePHPDoc(phpDocGoal,
+					3000, monitor);
 
 			modelElements = PHPTypeInferenceUtils.getModelElements(
 					evaluatedType, (ISourceModuleContext) context, offset);
@@ -293,7 +363,7 @@ public class CodeAssistUtils {
 
 		MethodElementReturnTypeGoal methodGoal = new MethodElementReturnTypeGoal(
 				context, types, method, argNames, offset);
-		evaluatedType = typeInferencer.evaluateType(methodGoal);
+		evaluatedType = typeInferencer.evaluateType(methodGoal, monitor);
 		if (evaluatedType instanceof PHPThisClassType
 				&& ((PHPThisClassType) evaluatedType).getType() != null) {
 			modelElements = new IType[] { ((PHPThisClassType) evaluatedType)
@@ -347,6 +417,25 @@ public class CodeAssistUtils {
 	 */
 	public static IType[] getTypesFor(ISourceModule sourceModule,
 			TextSequence statementText, int endPosition, int offset) {
+		return getTypesFor(sourceModule, statementText, endPosition, offset,
+				null);
+	}
+
+	/**
+	 * This method finds types for the receiver in the statement text, until
+	 * the given monitor is cancelled.
+	 * 
+	 * @param sourceModule
+	 * @param statementText
+	 * @param endPosition
+	 * @param offset
+	 * @param monitor
+	 *            Progress monitor of the caller (may be <code>null</code>)
+	 * @return
+	 */
+	public static IType[] getTypesFor(ISourceModule sourceModule,
+			TextSequence statementText, int endPosition, int offset,
+			IProgressMonitor monitor) {
 		endPosition = PHPTextSequenceUtilities.readBackwardSpaces(
 				statementText, endPosition); // read whitespace
 
@@ -378,7 +467,7 @@ public class CodeAssistUtils {
 			// if there is no "->" or "::" in the left sequence then we need to
 			// calc the object type
 			return innerGetClassName(sourceModule, statementText,
-					propertyEndPosition, isClassTriger, offset);
+					propertyEndPosition, isClassTriger, offset, monitor);
 		}
 
 		int propertyStartPosition = PHPTextSequenceUtilities.readForwardSpaces(
@@ -386,13 +475,13 @@ public class CodeAssistUtils {
 		String propertyName = statementText.subSequence(propertyStartPosition,
 				propertyEndPosition).toString();
 		IType[] types = getTypesFor(sourceModule, statementText,
-				propertyStartPosition, offset);
+				propertyStartPosition, offset, monitor);
 
 		int bracketIndex = propertyName.indexOf('(');
 
 		if (bracketIndex == -1) {
 			// meaning its a class variable and not a function
-			return getVariableType(types, propertyName, offset);
+			return getVariableType(types, propertyName, offset, monitor);
 		}
 
 		boolean arrayReference = false;
@@ -415,10 +504,10 @@ public class CodeAssistUtils {
 		IType[] returnTypes = null;
 		if (arrayReference) {
 			returnTypes = getFunctionArrayReturnType(types, functionName,
-					USE_PHPDOC, sourceModule, offset, argNames);
+					USE_PHPDOC, sourceModule, offset, argNames, monitor);
 		} else {
 			returnTypes = getFunctionReturnType(types, functionName,
-					USE_PHPDOC, sourceModule, offset, argNames);
+					USE_PHPDOC, sourceModule, offset, argNames, monitor);
 		}
 		if (returnTypes != null) {
 			result.addAll(Arrays.asList(returnTypes));
@@ -505,7 +594,7 @@ public class CodeAssistUtils {
 	private static IType[] getFunctionArrayReturnType(IType[] types,
 			String method, int mask, ISourceModule sourceModule, int offset) {
 		return getFunctionArrayReturnType(types, method, mask, sourceModule,
-				offset, null);
+				offset, null, null);
 	}
 
 	/**
@@ -520,7 +609,7 @@ public class CodeAssistUtils {
 	 */
 	private static IType[] getFunctionArrayReturnType(IType[] types,
 			String method, int mask, ISourceModule sourceModule, int offset,
-			String[] argNames) {
+			String[] argNames, IProgressMonitor monitor) {
 		PHPTypeInferencer typeInferencer = new PHPTypeInferencer();
 		ModuleDeclaration moduleDeclaration = SourceParserUtil
 				.getModuleDeclaration(sourceModule, null);
@@ -537,7 +626,8 @@ public class CodeAssistUtils {
 		if (usePhpDoc) {
 			PHPDocMethodReturnTypeGoal phpDocGoal = new PHPDocMethodReturnTypeGoal(
 					context, types, method);
-			evaluatedType = typeInferencer.evaluateTypePHPDoc(phpDocGoal);
+			evaluatedType = typeInferencer.evaluateTypePHPDoc(phpDocGoal,
+					3000, monitor);
 			List<IEvaluatedType> possibleTypes = null;
 			if (!PHPTypeInferenceUtils.isSimple(evaluatedType)) {
 				if (evaluatedType instanceof MultiTypeType) {
@@ -577,7 +667,7 @@ public class CodeAssistUtils {
 
 		MethodElementReturnTypeGoal methodGoal = new MethodElementReturnTypeGoal(
 				context, types, method, argNames, offset);
-		evaluatedType = typeInferencer.evaluateType(methodGoal);
+		evaluatedType = typeInferencer.evaluateType(methodGoal, monitor);
 
 		if (evaluatedType instanceof MultiTypeType) {
 			List<IType> tmpList = new LinkedList<IType>();
@@ -603,7 +693,7 @@ public class CodeAssistUtils {
 	 */
 	private static IType[] innerGetClassName(ISourceModule sourceModule,
 			TextSequence statementText, int propertyEndPosition,
-			boolean isClassTriger, int offset) {
+			boolean isClassTriger, int offset, IProgressMonitor monitor) {
 
 		PHPVersion phpVersion = ProjectOptions.getPhpVersion(sourceModule
 				.getScriptProject().getProject());
@@ -634,7 +724,7 @@ public class CodeAssistUtils {
 					int statementStart = statementText
 							.getOriginalOffset(classNameStart);
 					return getVariableType(sourceModule, className,
-							statementStart);
+							statementStart, monitor);
 				} else {
 					ModuleDeclaration moduleDeclaration = SourceParserUtil
 							.getModuleDeclaration(sourceModule, null);
@@ -684,7 +774,7 @@ public class CodeAssistUtils {
 							int statementStart = statementText
 									.getOriginalOffset(classNameStart);
 							return getArrayVariableType(sourceModule,
-									className, statementStart);
+									className, statementStart, monitor);
 						}
 					}
 					className = testedVar;
@@ -695,7 +785,8 @@ public class CodeAssistUtils {
 		if (className.length() > 0 && className.charAt(0) == '$') {
 			int statementStart = statementText
 					.getOriginalOffset(classNameStart);
-			return getVariableType(sourceModule, className, statementStart);
+			return getVariableType(sourceModule, className, statementStart,
+					monitor);
 		}
 		boolean arrayReference = false;
 		if (statementText.charAt(propertyEndPosition - 1) == ']'
@@ -768,13 +859,14 @@ public class CodeAssistUtils {
 
 					IType[] types = getFunctionArrayReturnType(null,
 							functionName, USE_PHPDOC, sourceModule, offset,
-							argNames);
+							argNames, monitor);
 					if (types != null) {
 						returnTypes.addAll(Arrays.asList(types));
 					}
 				} else {
 					IType[] types = getFunctionReturnType(null, functionName,
-							USE_PHPDOC, sourceModule, offset, argNames);
+							USE_PHPDOC, sourceModule, offset, argNames,
+							monitor);
 					if (types != null && types.length > 0) {
 						returnTypes.addAll(Arrays.asList(types));
 					} else {
@@ -792,7 +884,8 @@ public class CodeAssistUtils {
 							name = NamespaceReference.NAMESPACE_SEPARATOR
 									+ name;
 							types = getFunctionReturnType(null, name,
-									USE_PHPDOC, sourceModule, offset, argNames);
+									USE_PHPDOC, sourceModule, offset, argNames,
+									monitor);
 							if (types != null) {
 								returnTypes.addAll(Arrays.asList(types));
 							}
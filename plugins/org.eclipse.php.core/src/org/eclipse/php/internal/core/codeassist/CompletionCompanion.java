@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.php.internal.core.codeassist;
 
+import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -18,28 +19,104 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.core.IType;
 import org.eclipse.dltk.core.ITypeHierarchy;
 import org.eclipse.dltk.core.ModelException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.php.core.codeassist.ICompletionContext;
 import org.eclipse.php.internal.core.codeassist.contexts.AbstractCompletionContext;
+import org.eclipse.php.internal.core.model.GlobalNameIndex;
+import org.eclipse.php.internal.core.model.ProjectModelAccessCache;
 import org.eclipse.php.internal.core.util.text.PHPTextSequenceUtilities;
 import org.eclipse.php.internal.core.util.text.TextSequence;
 
 /**
  * This companion is shared between different completion contexts, and it can be
  * used for caching information gathered by resource-intensive operations.
+ * <p>
+ * A companion returned by {@link #getSessionCompanion(IDocument)} is also
+ * shared between consecutive code assist requests in the same document, as
+ * long as the document is only changed inside the identifier being completed
+ * (e.g. while typing <code>$this-&gt;foo-&gt;ba</code> letter by letter, the
+ * type of <code>$this-&gt;foo</code> is calculated once). Any other change of
+ * the document ends the session.
+ * </p>
  * 
  * @author michael
  */
 public class CompletionCompanion {
 
+	private static CompletionCompanion session;
+
 	/**
-	 * Cache for calculated return types by document position
+	 * Cache for calculated return types by start of the completed identifier
 	 */
 	private Map<Integer, IType[]> rhTypesCache = new HashMap<Integer, IType[]>();
 
+	private final WeakReference<IDocument> document;
+
+	private volatile IProgressMonitor monitor;
+
+	// following fields are guarded by this
+	private int tokenStart = -1;
+	private int tokenEnd = -1;
+	private int modCount;
+	private boolean valid = true;
+
+	private final IDocumentListener documentListener = new IDocumentListener() {
+		public void documentAboutToBeChanged(DocumentEvent event) {
+			if (!isInsideToken(event)) {
+				invalidate();
+			}
+		}
+
+		public void documentChanged(DocumentEvent event) {
+		}
+	};
+
+	public CompletionCompanion() {
+		document = null;
+	}
+
+	private CompletionCompanion(IDocument document) {
+		this.document = new WeakReference<IDocument>(document);
+		document.addDocumentListener(documentListener);
+	}
+
 	/**
-	 * Cache for calculated super type hierarchy
+	 * Returns the companion of the current code assist session in the given
+	 * document, or starts a new session
+	 * 
+	 * @param document
+	 *            Document where code assist was invoked (may be
+	 *            <code>null</code>)
+	 * @return companion
 	 */
-	private Map<IType, ITypeHierarchy> superHierarchyCache = new HashMap<IType, ITypeHierarchy>();
+	public static synchronized CompletionCompanion getSessionCompanion(
+			IDocument document) {
+		if (document == null) {
+			return new CompletionCompanion();
+		}
+		if (session != null) {
+			if (session.document.get() == document && session.isValid()) {
+				return session;
+			}
+			session.invalidate();
+		}
+		session = new CompletionCompanion(document);
+		return session;
+	}
+
+	/**
+	 * Sets the progress monitor of the current code assist, which stops the
+	 * type inference of {@link #getLeftHandType(ICompletionContext)} once it
+	 * is cancelled
+	 * 
+	 * @param monitor
+	 *            Progress monitor (may be <code>null</code>)
+	 */
+	public void setProgressMonitor(IProgressMonitor monitor) {
+		this.monitor = monitor;
+	}
 
 	/**
 	 * Caclulates type for the left hand part in expression enclosed by given
@@ -61,61 +138,121 @@ public class CompletionCompanion {
 	 *         offset
 	 */
 	public IType[] getLeftHandType(ICompletionContext context) {
-		AbstractCompletionContext aContext = (AbstractCompletionContext) context;
-		int offset = aContext.getOffset();
-		if (!rhTypesCache.containsKey(offset)) {
-
-			TextSequence statementText = aContext.getStatementText();
-			int triggerEnd = PHPTextSequenceUtilities.readBackwardSpaces(
-					statementText, statementText.length());
-			triggerEnd = PHPTextSequenceUtilities.readIdentifierStartIndex(
-					statementText, triggerEnd, true);
-			triggerEnd = PHPTextSequenceUtilities.readBackwardSpaces(
-					statementText, triggerEnd);
-
-			rhTypesCache.put(offset, CodeAssistUtils.getTypesFor(
-					aContext.getSourceModule(), statementText, triggerEnd,
-					offset));
-		}
-		return rhTypesCache.get(offset);
+		return getLeftHandType(context, true);
 	}
 
 	public IType[] getLeftHandType(ICompletionContext context, boolean isType) {
 		AbstractCompletionContext aContext = (AbstractCompletionContext) context;
 		int offset = aContext.getOffset();
-		if (!rhTypesCache.containsKey(offset)) {
-
-			TextSequence statementText = aContext.getStatementText();
-			int triggerEnd = PHPTextSequenceUtilities.readBackwardSpaces(
-					statementText, statementText.length());
-			triggerEnd = PHPTextSequenceUtilities.readIdentifierStartIndex(
-					statementText, triggerEnd, true);
-			triggerEnd = PHPTextSequenceUtilities.readBackwardSpaces(
-					statementText, triggerEnd);
-
-			if (isType) {
-				rhTypesCache.put(offset, CodeAssistUtils.getTypesFor(
-						aContext.getSourceModule(), statementText, triggerEnd,
-						offset));
-			} else {
-				rhTypesCache.put(offset, CodeAssistUtils.getTraitsFor(
-						aContext.getSourceModule(), statementText, triggerEnd,
-						offset));
+		// the left hand part ends where the completed identifier starts
+		Integer key = offset
+				- aContext.getPrefixWithoutProcessing().length();
+		int currentModCount;
+		synchronized (this) {
+			if (key.intValue() != tokenStart) {
+				rhTypesCache.clear();
+				tokenStart = key.intValue();
+			}
+			tokenEnd = offset;
+			if (rhTypesCache.containsKey(key)) {
+				return rhTypesCache.get(key);
 			}
+			currentModCount = modCount;
 		}
-		return rhTypesCache.get(offset);
+
+		TextSequence statementText = aContext.getStatementText();
+		int triggerEnd = PHPTextSequenceUtilities.readBackwardSpaces(
+				statementText, statementText.length());
+		triggerEnd = PHPTextSequenceUtilities.readIdentifierStartIndex(
+				statementText, triggerEnd, true);
+		triggerEnd = PHPTextSequenceUtilities.readBackwardSpaces(
+				statementText, triggerEnd);
+
+		IProgressMonitor monitor = this.monitor;
+		IType[] types;
+		if (isType) {
+			types = CodeAssistUtils.getTypesFor(aContext.getSourceModule(),
+					statementText, triggerEnd, offset, monitor);
+		} else {
+			types = CodeAssistUtils.getTraitsFor(aContext.getSourceModule(),
+					statementText, triggerEnd, offset);
+		}
+		synchronized (this) {
+			// don't store types calculated while the document was changed,
+			// or that may be incomplete
+			if (modCount == currentModCount
+					&& (monitor == null || !monitor.isCanceled())) {
+				rhTypesCache.put(key, types);
+			}
+		}
+		return types;
 	}
 
 	/**
-	 * Calculates super type hierarchy
+	 * Calculates super type hierarchy. Hierarchies are shared by all clients
+	 * of the project, see {@link ProjectModelAccessCache}.
 	 * 
 	 * @throws ModelException
 	 */
 	public ITypeHierarchy getSuperTypeHierarchy(IType type,
 			IProgressMonitor monitor) throws ModelException {
-		if (!superHierarchyCache.containsKey(type)) {
-			superHierarchyCache.put(type, type.newSupertypeHierarchy(monitor));
+		return ProjectModelAccessCache.getDefault().getSuperTypeHierarchy(
+				type, monitor);
+	}
+
+	/**
+	 * Returns all super types of the given type, from the type hierarchy
+	 * graph of the project if it's available (see {@link GlobalNameIndex}).
+	 * 
+	 * @throws ModelException
+	 */
+	public IType[] getAllSuperTypes(IType type) throws ModelException {
+		final IType[] superTypes = GlobalNameIndex.getDefault().getSuperTypes(
+				type, true);
+		if (superTypes != null) {
+			return superTypes;
+		}
+		return getSuperTypeHierarchy(type, null).getAllSupertypes(type);
+	}
+
+	private synchronized boolean isValid() {
+		return valid;
+	}
+
+	/**
+	 * Returns whether the change only touches the identifier that was
+	 * completed last, and keeps track of its end
+	 */
+	private synchronized boolean isInsideToken(DocumentEvent event) {
+		if (tokenStart < 0) {
+			return true;
+		}
+		final int start = event.getOffset();
+		final String text = event.getText() != null ? event.getText() : ""; //$NON-NLS-1$
+		if (start < tokenStart || start + event.getLength() > tokenEnd) {
+			return false;
+		}
+		for (int i = 0; i < text.length(); i++) {
+			if (!Character.isJavaIdentifierPart(text.charAt(i))) {
+				return false;
+			}
+		}
+		tokenEnd += text.length() - event.getLength();
+		return true;
+	}
+
+	private void invalidate() {
+		synchronized (this) {
+			if (!valid) {
+				return;
+			}
+			valid = false;
+			modCount++;
+			rhTypesCache.clear();
+		}
+		IDocument d = document != null ? document.get() : null;
+		if (d != null) {
+			d.removeDocumentListener(documentListener);
 		}
-		return superHierarchyCache.get(type);
 	}
 }
@@ -3,5 +3,6 @@ package org.eclipse.php.internal.core.codeassist;
 public final class CompletionFlag {
 	public static final int DEFAULT = 1;
 	public static final int STOP_REPORT_TYPE = 1 << 1;
+	public static final int INCOMPLETE = 1 << 2;
 
 }
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.codeassist;
+
+import org.eclipse.dltk.core.CompletionProposal;
+import org.eclipse.php.internal.core.PHPCoreConstants;
+
+/**
+ * Completion requestor that still accepts the proposals of the strategies
+ * that didn't finish within the time budget of code assist (see
+ * {@link PHPCoreConstants#CODEASSIST_TIME_BUDGET}).
+ */
+public interface IPHPAsyncCompletionRequestor {
+
+	/**
+	 * Called once all strategies that were still running when the time
+	 * budget was over have finished. This method is called from a worker
+	 * thread.
+	 *
+	 * @param proposals
+	 *            Proposals reported after the time budget was over, which
+	 *            weren't passed to the requestor yet
+	 */
+	public void acceptLate(CompletionProposal[] proposals);
+}
@@ -13,8 +13,14 @@
 package org.eclipse.php.internal.core.codeassist;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.dltk.codeassist.ScriptCompletionEngine;
 import org.eclipse.dltk.compiler.env.IModuleSource;
 import org.eclipse.dltk.core.*;
@@ -24,15 +30,38 @@ import org.eclipse.php.core.codeassist.ICompletionContextResolver;
 import org.eclipse.php.core.codeassist.ICompletionStrategy;
 import org.eclipse.php.core.codeassist.ICompletionStrategyFactory;
 import org.eclipse.php.core.compiler.PHPFlags;
+import org.eclipse.php.internal.core.PHPCoreConstants;
 import org.eclipse.php.internal.core.PHPCorePlugin;
 import org.eclipse.php.internal.core.codeassist.contexts.CompletionContextResolver;
 import org.eclipse.php.internal.core.codeassist.strategies.CompletionStrategyFactory;
+import org.eclipse.php.internal.core.codeassist.strategies.GlobalElementStrategy;
+import org.eclipse.php.internal.core.codeassist.strategies.GlobalElementsCompositeStrategy;
+import org.eclipse.php.internal.core.codeassist.strategies.KeywordsStrategy;
 import org.eclipse.php.internal.core.typeinference.PHPModelUtils;
 
 /**
  * Completion engine for PHP. This engine uses structured document for defining
  * the completion context; AST is not used since it lacks error recovery for all
  * cases.
+ * <p>
+ * Strategies that search global elements in the index don't depend on each
+ * other, and run in parallel on worker threads while the other strategies,
+ * including all keywords strategies, run in the calling thread. Completion
+ * contexts aren't thread safe, so each worker resolves its own contexts and
+ * creates its own instance of the strategy. The reports of each strategy are
+ * recorded and passed to the requestor in the order of the strategies, as if
+ * they ran one after the other.
+ * </p>
+ * <p>
+ * The time budget (see {@link PHPCoreConstants#CODEASSIST_TIME_BUDGET})
+ * includes waiting for the indexer. Once it's over, the proposals found so
+ * far are passed, and the result is marked as incomplete (see
+ * {@link #isIncomplete()}). If the requestor is an
+ * {@link IPHPAsyncCompletionRequestor}, the strategies that didn't finish
+ * keep running for a while, and their proposals are passed to it once they
+ * finish. Otherwise their progress monitor is canceled, so that searches stop
+ * at the next check.
+ * </p>
  * 
  * @author michael
  */
@@ -59,6 +88,247 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 
 	IModuleSource module;
 
+	/** Maximum number of strategies that run in parallel */
+	private static final int THREADS = 3;
+
+	/**
+	 * Number of time budgets after which strategies that report late
+	 * proposals are stopped
+	 */
+	private static final int LATE_BUDGETS = 10;
+
+	private static ThreadPoolExecutor executor;
+
+	private boolean incomplete;
+
+	/**
+	 * Reporters of the strategies of the current completion, in the order of
+	 * the strategies. Only used when there is a time budget.
+	 */
+	private List<StrategyReporter> reporters = new ArrayList<StrategyReporter>();
+
+	/** Canceled when the strategies of the current completion must stop */
+	private DeadlineMonitor monitor;
+
+	/** Whether the time budget of the current completion is over */
+	private boolean expired;
+
+	/**
+	 * Requestor of the strategies that are still running after the time
+	 * budget, and the proposals they reported so far
+	 */
+	private IPHPAsyncCompletionRequestor lateRequestor;
+	private List<CompletionProposal> lateProposals;
+
+	/**
+	 * Progress monitor that is also canceled once its deadline is over
+	 */
+	private static class DeadlineMonitor extends NullProgressMonitor {
+
+		private volatile long deadline = Long.MAX_VALUE;
+
+		void setDeadline(long deadline) {
+			this.deadline = deadline;
+		}
+
+		public boolean isCanceled() {
+			return super.isCanceled()
+					|| System.currentTimeMillis() > deadline;
+		}
+	}
+
+	/**
+	 * A report of a strategy, recorded to be passed to the engine later
+	 */
+	private interface Report {
+		void replay(ICompletionReporter reporter);
+	}
+
+	/**
+	 * Records the reports of one strategy. The engine gets the reports of the
+	 * strategies in the order of the strategies, not in the order they
+	 * finish, so which strategy reports an element first, and thus the
+	 * relevance and extra information of its proposal, doesn't depend on the
+	 * timing of the worker threads.
+	 */
+	private class StrategyReporter implements ICompletionReporter {
+
+		/** <code>null</code> once passed to the engine, or dropped */
+		private List<Report> reports = new ArrayList<Report>();
+
+		private boolean finished;
+
+		private void record(Report report) {
+			synchronized (PHPCompletionEngine.this) {
+				if (reports != null) {
+					reports.add(report);
+				}
+			}
+		}
+
+		public void reportResource(final IModelElement model,
+				final IPath relative, final String suffix,
+				final ISourceRange replaceRange) {
+			record(new Report() {
+				public void replay(ICompletionReporter reporter) {
+					reporter.reportResource(model, relative, suffix,
+							replaceRange);
+				}
+			});
+		}
+
+		public void reportType(IType type, String suffix,
+				ISourceRange replaceRange) {
+			reportType(type, suffix, replaceRange, null, 0);
+		}
+
+		public void reportType(IType type, String suffix,
+				ISourceRange replaceRange, Object extraInfo) {
+			reportType(type, suffix, replaceRange, extraInfo, 0);
+		}
+
+		public void reportType(final IType type, final String suffix,
+				final ISourceRange replaceRange, final Object extraInfo,
+				final int subRelevance) {
+			record(new Report() {
+				public void replay(ICompletionReporter reporter) {
+					reporter.reportType(type, suffix, replaceRange, extraInfo,
+							subRelevance);
+				}
+			});
+		}
+
+		public void reportMethod(IMethod method, String suffix,
+				ISourceRange replaceRange) {
+			reportMethod(method, suffix, replaceRange, null, 0);
+		}
+
+		public void reportMethod(IMethod method, String suffix,
+				ISourceRange replaceRange, Object extraInfo) {
+			reportMethod(method, suffix, replaceRange, extraInfo, 0);
+		}
+
+		public void reportMethod(final IMethod method, final String suffix,
+				final ISourceRange replaceRange, final Object extraInfo,
+				final int subRelevance) {
+			record(new Report() {
+				public void replay(ICompletionReporter reporter) {
+					reporter.reportMethod(method, suffix, replaceRange,
+							extraInfo, subRelevance);
+				}
+			});
+		}
+
+		public void reportField(IField field, String suffix,
+				ISourceRange replaceRange, boolean removeDollar) {
+			reportField(field, suffix, replaceRange, removeDollar, 0, null);
+		}
+
+		public void reportField(IField field, String suffix,
+				ISourceRange replaceRange, boolean removeDollar,
+				int subRelevance) {
+			reportField(field, suffix, replaceRange, removeDollar,
+					subRelevance, null);
+		}
+
+		public void reportField(final IField field, final String suffix,
+				final ISourceRange replaceRange, final boolean removeDollar,
+				final int subRelevance, final Object extraInfo) {
+			record(new Report() {
+				public void replay(ICompletionReporter reporter) {
+					reporter.reportField(field, suffix, replaceRange,
+							removeDollar, subRelevance, extraInfo);
+				}
+			});
+		}
+
+		public void reportKeyword(String keyword, String suffix,
+				ISourceRange replaceRange) {
+			reportKeyword(keyword, suffix, replaceRange, 0);
+		}
+
+		public void reportKeyword(final String keyword, final String suffix,
+				final ISourceRange replaceRange, final int subRelevance) {
+			record(new Report() {
+				public void replay(ICompletionReporter reporter) {
+					reporter.reportKeyword(keyword, suffix, replaceRange,
+							subRelevance);
+				}
+			});
+		}
+
+		public IModuleSource getModule() {
+			return PHPCompletionEngine.this.getModule();
+		}
+	}
+
+	/**
+	 * Runs a strategy on a worker thread. The worker resolves the contexts
+	 * again and creates its own instance of the strategy, so it doesn't share
+	 * any context with the calling thread or with other workers.
+	 */
+	private class WorkerStrategy implements Callable<Object> {
+
+		private final ICompletionContextResolver resolver;
+		private final ICompletionStrategyFactory factory;
+		private final int index;
+		private final Class<?> strategyClass;
+		private final org.eclipse.dltk.core.ISourceModule sourceModule;
+		private final int position;
+		private final CompletionCompanion companion;
+		private final StrategyReporter reporter;
+		private final IProgressMonitor monitor;
+
+		WorkerStrategy(ICompletionContextResolver resolver,
+				ICompletionStrategyFactory factory, int index,
+				Class<?> strategyClass,
+				org.eclipse.dltk.core.ISourceModule sourceModule, int position,
+				CompletionCompanion companion, StrategyReporter reporter,
+				IProgressMonitor monitor) {
+			this.resolver = resolver;
+			this.factory = factory;
+			this.index = index;
+			this.strategyClass = strategyClass;
+			this.sourceModule = sourceModule;
+			this.position = position;
+			this.companion = companion;
+			this.reporter = reporter;
+			this.monitor = monitor;
+		}
+
+		public Object call() throws Exception {
+			try {
+				if (!monitor.isCanceled()) {
+					apply();
+				}
+			} catch (OperationCanceledException e) {
+				// the strategy was stopped
+			} finally {
+				finish(reporter);
+			}
+			return null;
+		}
+
+		private void apply() throws Exception {
+			ICompletionContext[] contexts = resolver.resolve(sourceModule,
+					position, requestor, companion);
+			if (contexts == null || contexts.length == 0) {
+				return;
+			}
+			ICompletionStrategy[] strategies = flatten(factory
+					.create(contexts));
+			// the document may have changed in the meantime
+			if (index >= strategies.length
+					|| strategies[index].getClass() != strategyClass) {
+				return;
+			}
+			GlobalElementStrategy strategy = (GlobalElementStrategy) strategies[index];
+			strategy.init(companion);
+			strategy.setProgressMonitor(monitor);
+			strategy.apply(reporter);
+		}
+	}
+
 	public void complete(IModuleSource module, int position, int i) {
 		complete(module, position, i, true);
 	}
@@ -71,8 +341,17 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 		if (requestor instanceof IPHPCompletionRequestor) {
 			((IPHPCompletionRequestor) requestor).setOffset(offset);
 		}
+		// waiting for the indexer counts as well
+		int budget = getTimeBudget();
+		long deadline = System.currentTimeMillis() + budget;
+		boolean indexReady = true;
 		if (waitForBuilder) {
-			ModelManager.getModelManager().getIndexManager().waitUntilReady();
+			if (budget > 0) {
+				indexReady = waitForIndexer(deadline);
+			} else {
+				ModelManager.getModelManager().getIndexManager()
+						.waitUntilReady();
+			}
 		}
 
 		this.module = module;
@@ -81,7 +360,15 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 		relevanceClass = RELEVANCE_CLASS;
 		relevanceVar = RELEVANCE_VAR;
 		relevanceConst = RELEVANCE_CONST;
+		incomplete = !indexReady;
 
+		synchronized (this) {
+			// strategies of a previous completion may still be running
+			stop();
+			monitor = new DeadlineMonitor();
+			expired = false;
+		}
+		List<Future<Object>> pending = new ArrayList<Future<Object>>();
 		try {
 			ICompletionContextResolver[] contextResolvers;
 			ICompletionStrategyFactory[] strategyFactories;
@@ -95,7 +382,15 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 				strategyFactories = CompletionStrategyFactory.getActive();
 			}
 
-			CompletionCompanion companion = new CompletionCompanion();
+			CompletionCompanion companion;
+			if (requestor instanceof IPHPCompletionRequestor) {
+				companion = CompletionCompanion
+						.getSessionCompanion(((IPHPCompletionRequestor) requestor)
+								.getDocument());
+			} else {
+				companion = new CompletionCompanion();
+			}
+			companion.setProgressMonitor(monitor);
 			org.eclipse.dltk.core.ISourceModule sourceModule = (org.eclipse.dltk.core.ISourceModule) module
 					.getModelElement();
 
@@ -105,28 +400,284 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 
 				if (contexts != null && contexts.length > 0) {
 					for (ICompletionStrategyFactory factory : strategyFactories) {
-						ICompletionStrategy[] strategies = factory
-								.create(contexts);
-
-						if (strategies != null && strategies.length > 0) {
-							for (ICompletionStrategy strategy : strategies) {
-								strategy.init(companion);
-								try {
-									strategy.apply(this);
-								} catch (Exception e) {
-									PHPCorePlugin.log(e);
+						ICompletionStrategy[] strategies = flatten(factory
+								.create(contexts));
+						for (int j = 0; j < strategies.length; j++) {
+							ICompletionStrategy strategy = strategies[j];
+							ICompletionReporter reporter = this;
+							if (budget > 0) {
+								StrategyReporter strategyReporter = new StrategyReporter();
+								synchronized (this) {
+									reporters.add(strategyReporter);
+								}
+								if (isIndependent(strategy)) {
+									pending.add(getExecutor().submit(
+											new WorkerStrategy(resolver,
+													factory, j, strategy
+															.getClass(),
+													sourceModule, position,
+													companion,
+													strategyReporter,
+													monitor)));
+									continue;
 								}
+								reporter = strategyReporter;
+							}
+							strategy.init(companion);
+							try {
+								strategy.apply(reporter);
+							} catch (Exception e) {
+								PHPCorePlugin.log(e);
+							}
+							if (reporter != this) {
+								finish((StrategyReporter) reporter);
 							}
 						}
 					}
 				}
 			}
+			if (!pending.isEmpty()) {
+				waitFor(pending, deadline);
+			}
 		} finally {
+			synchronized (this) {
+				expired = true;
+				commit();
+				if (isRunning()) {
+					incomplete = true;
+					if (requestor instanceof IPHPAsyncCompletionRequestor
+							&& budget > 0) {
+						// the remaining proposals are passed once the
+						// strategies finish
+						lateRequestor = (IPHPAsyncCompletionRequestor) requestor;
+						lateProposals = new ArrayList<CompletionProposal>();
+						monitor.setDeadline(deadline + (LATE_BUDGETS - 1)
+								* (long) budget);
+					} else {
+						stop();
+						for (Future<Object> future : pending) {
+							future.cancel(false);
+						}
+					}
+				}
+				if (lateRequestor == null) {
+					processedElements.clear();
+					processedPaths.clear();
+				}
+			}
+		}
+		if (incomplete && requestor instanceof IPHPCompletionRequestor) {
+			((IPHPCompletionRequestor) requestor)
+					.addFlag(CompletionFlag.INCOMPLETE);
+		}
+	}
+
+	/**
+	 * Returns whether some strategies didn't finish within the time budget of
+	 * the last completion, so not all proposals were reported
+	 */
+	public boolean isIncomplete() {
+		return incomplete;
+	}
+
+	/**
+	 * Stops the worker threads of code assist
+	 */
+	public static synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = new ThreadPoolExecutor(THREADS, THREADS, 30,
+					TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						private final AtomicInteger count = new AtomicInteger();
+
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r,
+									"PHP Code Assist Worker " //$NON-NLS-1$
+											+ count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	/**
+	 * Marks the strategy of the reporter as finished, and passes the reports
+	 * that may be passed now to the engine
+	 */
+	private synchronized void finish(StrategyReporter reporter) {
+		reporter.finished = true;
+		commit();
+	}
+
+	/**
+	 * Passes the reports of finished strategies to the engine. Until the time
+	 * budget is over, the reports of a strategy are passed once all
+	 * strategies before it are passed, afterwards as soon as it finishes.
+	 */
+	private void commit() {
+		for (StrategyReporter reporter : reporters) {
+			if (reporter.reports == null) {
+				continue;
+			}
+			if (!reporter.finished) {
+				if (expired) {
+					continue;
+				}
+				return;
+			}
+			List<Report> reports = reporter.reports;
+			reporter.reports = null;
+			for (Report report : reports) {
+				report.replay(this);
+			}
+		}
+		if (lateRequestor != null && !isRunning()) {
+			IPHPAsyncCompletionRequestor late = lateRequestor;
+			CompletionProposal[] proposals = lateProposals
+					.toArray(new CompletionProposal[lateProposals.size()]);
+			lateRequestor = null;
+			lateProposals = null;
 			processedElements.clear();
 			processedPaths.clear();
+			late.acceptLate(proposals);
 		}
 	}
 
+	/**
+	 * Returns whether there are strategies that didn't finish yet
+	 */
+	private boolean isRunning() {
+		for (StrategyReporter reporter : reporters) {
+			if (reporter.reports != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Stops the strategies that are still running, and drops their reports
+	 */
+	private void stop() {
+		if (monitor != null) {
+			monitor.setCanceled(true);
+		}
+		for (StrategyReporter reporter : reporters) {
+			reporter.reports = null;
+		}
+		reporters = new ArrayList<StrategyReporter>();
+		if (lateRequestor != null) {
+			lateRequestor = null;
+			lateProposals = null;
+			processedElements.clear();
+			processedPaths.clear();
+		}
+	}
+
+	/**
+	 * Passes a proposal to the requestor, or keeps it to be passed with the
+	 * other late proposals
+	 */
+	private void accept(CompletionProposal proposal) {
+		if (lateProposals != null) {
+			lateProposals.add(proposal);
+		} else {
+			requestor.accept(proposal);
+		}
+	}
+
+	/**
+	 * Replaces composite strategies of global elements by the strategies they
+	 * contain, so that each of them runs where it belongs
+	 */
+	private static ICompletionStrategy[] flatten(
+			ICompletionStrategy[] strategies) {
+		if (strategies == null) {
+			return new ICompletionStrategy[0];
+		}
+		List<ICompletionStrategy> result = new ArrayList<ICompletionStrategy>(
+				strategies.length);
+		for (ICompletionStrategy strategy : strategies) {
+			if (strategy instanceof GlobalElementsCompositeStrategy) {
+				result.addAll(((GlobalElementsCompositeStrategy) strategy)
+						.getStrategies());
+			} else {
+				result.add(strategy);
+			}
+		}
+		return result.toArray(new ICompletionStrategy[result.size()]);
+	}
+
+	/**
+	 * Returns whether the strategy only searches global elements, and may run
+	 * in parallel with other strategies
+	 */
+	private static boolean isIndependent(ICompletionStrategy strategy) {
+		// keywords strategies are cheap, and may use the companion
+		return strategy instanceof GlobalElementStrategy
+				&& !(strategy instanceof KeywordsStrategy);
+	}
+
+	/**
+	 * Waits until the indexer is done, or the deadline is over
+	 *
+	 * @return whether the indexer is done
+	 */
+	private static boolean waitForIndexer(long deadline) {
+		while (ModelManager.getModelManager().getIndexManager()
+				.awaitingJobsCount() > 0) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return false;
+			}
+			try {
+				Thread.sleep(Math.min(remaining, 50));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Waits for the strategies running on worker threads until the deadline.
+	 * Strategies that didn't finish keep running, their reports are passed
+	 * once they finish.
+	 */
+	private static void waitFor(List<Future<Object>> pending, long deadline) {
+		for (Future<Object> future : pending) {
+			try {
+				long remaining = deadline - System.currentTimeMillis();
+				future.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				return;
+			} catch (ExecutionException e) {
+				PHPCorePlugin.log(e.getCause());
+			} catch (CancellationException e) {
+				// dropped
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private static int getTimeBudget() {
+		return Platform.getPreferencesService().getInt(PHPCorePlugin.ID,
+				PHPCoreConstants.CODEASSIST_TIME_BUDGET, 0, null);
+	}
+
 	private int nextKeywordRelevance() {
 		int relevance = relevanceKeyword--;
 		if (relevance < 1) {
@@ -168,20 +719,20 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 	}
 
 	@Override
-	public void reportField(IField field, String suffix,
+	public synchronized void reportField(IField field, String suffix,
 			ISourceRange replaceRange, boolean removeDollar) {
 		reportField(field, suffix, replaceRange, removeDollar, 0);
 	}
 
 	@Override
-	public void reportField(IField field, String suffix,
+	public synchronized void reportField(IField field, String suffix,
 			ISourceRange replaceRange, boolean removeDollar, int subRelevance) {
 		reportField(field, suffix, replaceRange, removeDollar, subRelevance,
 				null);
 	}
 
 	@Override
-	public void reportField(IField field, String suffix,
+	public synchronized void reportField(IField field, String suffix,
 			ISourceRange replaceRange, boolean removeDollar, int subRelevance,
 			Object extraInfo) {
 		if (processedFields.contains(field)) {
@@ -219,7 +770,7 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 			proposal.setReplaceRange(replaceRange.getOffset(),
 					replaceRange.getOffset() + replaceRange.getLength());
 
-			this.requestor.accept(proposal);
+			accept(proposal);
 
 			if (DEBUG) {
 				this.printDebug(proposal);
@@ -227,7 +778,7 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 		}
 	}
 
-	public void reportField(IField field, String completion,
+	public synchronized void reportField(IField field, String completion,
 			ISourceRange replaceRange, int subRelevance) {
 		if (processedFields.contains(field)) {
 			return;
@@ -260,7 +811,7 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 			proposal.setReplaceRange(replaceRange.getOffset(),
 					replaceRange.getOffset() + replaceRange.getLength());
 
-			this.requestor.accept(proposal);
+			accept(proposal);
 
 			if (DEBUG) {
 				this.printDebug(proposal);
@@ -269,12 +820,12 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 	}
 
 	@Override
-	public void reportKeyword(String keyword, String suffix,
+	public synchronized void reportKeyword(String keyword, String suffix,
 			ISourceRange replaceRange) {
 		reportKeyword(keyword, suffix, replaceRange, 0);
 	}
 
-	public void reportKeyword(String keyword, String suffix,
+	public synchronized void reportKeyword(String keyword, String suffix,
 			ISourceRange replaceRange, int subRelevance) {
 		if (processedElements.containsKey(keyword)) {
 			return;
@@ -293,7 +844,7 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 			proposal.setReplaceRange(replaceRange.getOffset(),
 					replaceRange.getOffset() + replaceRange.getLength());
 
-			this.requestor.accept(proposal);
+			accept(proposal);
 
 			if (DEBUG) {
 				this.printDebug(proposal);
@@ -302,12 +853,12 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 	}
 
 	@Override
-	public void reportMethod(IMethod method, String suffix,
+	public synchronized void reportMethod(IMethod method, String suffix,
 			ISourceRange replaceRange, Object extraInfo) {
 		reportMethod(method, suffix, replaceRange, extraInfo, 0);
 	}
 
-	public void reportMethod(IMethod method, String suffix,
+	public synchronized void reportMethod(IMethod method, String suffix,
 			ISourceRange replaceRange, Object extraInfo, int subRelevance) {
 		if (processedElements.containsKey(method)
 				&& ((IMethod) processedElements.get(method)).getParent()
@@ -359,7 +910,7 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 					replaceRange.getOffset() + replaceRange.getLength());
 			proposal.setRelevance(relevance);
 
-			this.requestor.accept(proposal);
+			accept(proposal);
 
 			if (DEBUG) {
 				this.printDebug(proposal);
@@ -369,24 +920,25 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 	}
 
 	@Override
-	public void reportMethod(IMethod method, String suffix,
+	public synchronized void reportMethod(IMethod method, String suffix,
 			ISourceRange replaceRange) {
 		reportMethod(method, suffix, replaceRange, null);
 	}
 
 	@Override
-	public void reportType(IType type, String suffix, ISourceRange replaceRange) {
+	public synchronized void reportType(IType type, String suffix,
+			ISourceRange replaceRange) {
 		reportType(type, suffix, replaceRange, null);
 	}
 
 	@Override
-	public void reportType(IType type, String suffix,
+	public synchronized void reportType(IType type, String suffix,
 			ISourceRange replaceRange, Object extraInfo) {
 		reportType(type, suffix, replaceRange, extraInfo, 0);
 	}
 
 	@Override
-	public void reportType(IType type, String suffix,
+	public synchronized void reportType(IType type, String suffix,
 			ISourceRange replaceRange, Object extraInfo, int subRelevance) {
 		if (processedElements.containsKey(type)
 				&& processedElements.get(type).getClass() == type.getClass()) {
@@ -437,7 +989,7 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 					replaceRange.getOffset() + replaceRange.getLength());
 			proposal.setRelevance(relevance);
 
-			this.requestor.accept(proposal);
+			accept(proposal);
 
 			if (DEBUG) {
 				this.printDebug(proposal);
@@ -446,8 +998,8 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 	}
 
 	@Override
-	public void reportResource(IModelElement model, IPath relative,
-			String suffix, ISourceRange replaceRange) {
+	public synchronized void reportResource(IModelElement model,
+			IPath relative, String suffix, ISourceRange replaceRange) {
 		if (processedElements.containsKey(model)
 				|| processedPaths.contains(relative)) {
 			return;
@@ -480,7 +1032,7 @@ public class PHPCompletionEngine extends ScriptCompletionEngine implements
 				replaceRange.getOffset() + replaceRange.getLength());
 		proposal.setModelElement(model);
 
-		this.requestor.accept(proposal);
+		accept(proposal);
 		if (DEBUG) {
 			this.printDebug(proposal);
 		}
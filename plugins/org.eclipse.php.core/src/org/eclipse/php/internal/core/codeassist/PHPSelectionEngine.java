@@ -121,7 +121,7 @@ public class PHPSelectionEngine extends ScriptSelectionEngine {
 			if (elements != null) {
 				Collection<IModelElement> filtered = PHPModelUtils
 						.filterElements(sourceModule, Arrays.asList(elements),
-								null, null);
+								null);
 				return (IModelElement[]) filtered
 						.toArray(new IModelElement[filtered.size()]);
 			}
@@ -168,7 +168,7 @@ public class PHPSelectionEngine extends ScriptSelectionEngine {
 		}
 
 		Collection<IModelElement> filtered = PHPModelUtils.filterElements(
-				sourceModule, Arrays.asList(elements), cache, null);
+				sourceModule, Arrays.asList(elements), null);
 		if (filtered.size() == 0) {
 			return EMPTY;
 		}
@@ -72,8 +72,6 @@ public class ClassFieldsStrategy extends ClassMembersStrategy {
 
 		for (IType type : concreteContext.getLhsTypes()) {
 			try {
-				ITypeHierarchy hierarchy = getCompanion()
-						.getSuperTypeHierarchy(type, null);
 				IField[] fields = null;
 
 				if (concreteContext instanceof ClassStaticMemberContext
@@ -81,7 +79,8 @@ public class ClassFieldsStrategy extends ClassMembersStrategy {
 						&& ((ClassStaticMemberContext) concreteContext)
 								.isParent()) {
 					List<IField> superTypes = new ArrayList<IField>();
-					for (IType currType : hierarchy.getAllSupertypes(type)) {
+					for (IType currType : getCompanion()
+							.getAllSuperTypes(type)) {
 						superTypes.addAll(Arrays.asList(PHPModelUtils
 								.getTypeField(currType, prefix,
 										requestor.isContextInformationMode())));
@@ -89,8 +88,8 @@ public class ClassFieldsStrategy extends ClassMembersStrategy {
 
 					fields = superTypes.toArray(new IField[superTypes.size()]);
 				} else {
-					fields = PHPModelUtils.getTypeHierarchyField(type,
-							hierarchy, prefix,
+					fields = PHPModelUtils.getTypeHierarchyField(type, null,
+							prefix,
 							requestor.isContextInformationMode(), null);
 				}
 
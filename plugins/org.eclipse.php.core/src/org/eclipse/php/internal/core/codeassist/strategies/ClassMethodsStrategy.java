@@ -83,14 +83,12 @@ public class ClassMethodsStrategy extends ClassMembersStrategy {
 		List<IMethod> result = new LinkedList<IMethod>();
 		for (IType type : concreteContext.getLhsTypes()) {
 			try {
-				ITypeHierarchy hierarchy = getCompanion()
-						.getSuperTypeHierarchy(type, null);
-
+				// super types are looked up in the type hierarchy graph
 				IMethod[] methods = isParentCall ? PHPModelUtils
-						.getSuperTypeHierarchyMethod(type, hierarchy, prefix,
+						.getSuperTypeHierarchyMethod(type, null, prefix,
 								exactName, null) : PHPModelUtils
-						.getTypeHierarchyMethod(type, hierarchy, prefix,
-								exactName, null);
+						.getTypeHierarchyMethod(type, null, prefix, exactName,
+								null);
 
 				boolean inConstructor = isInConstructor(type,
 						type.getMethods(), concreteContext);
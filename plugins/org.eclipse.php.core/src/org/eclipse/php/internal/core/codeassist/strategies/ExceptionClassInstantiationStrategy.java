@@ -9,6 +9,7 @@ import org.eclipse.dltk.core.search.IDLTKSearchScope;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.php.core.codeassist.ICompletionContext;
 import org.eclipse.php.internal.core.codeassist.contexts.AbstractCompletionContext;
+import org.eclipse.php.internal.core.model.GlobalNameIndex;
 import org.eclipse.php.internal.core.model.PhpModelAccess;
 
 public class ExceptionClassInstantiationStrategy extends
@@ -33,15 +34,20 @@ public class ExceptionClassInstantiationStrategy extends
 		ISourceModule sourceModule = context.getSourceModule();
 		IScriptProject scriptProject = sourceModule.getScriptProject();
 		try {
-			if (scriptProject != null) {
-				typeHierarchy = exceptionType.newTypeHierarchy(scriptProject,
-						new NullProgressMonitor());
-			} else {
-				typeHierarchy = exceptionType
-						.newTypeHierarchy(new NullProgressMonitor());
+			// the type hierarchy graph of the project saves building the
+			// whole hierarchy of the exception class
+			IType[] classes = GlobalNameIndex.getDefault().getSubTypes(
+					scriptProject, exceptionType, true);
+			if (classes == null) {
+				if (scriptProject != null) {
+					typeHierarchy = exceptionType.newTypeHierarchy(
+							scriptProject, new NullProgressMonitor());
+				} else {
+					typeHierarchy = exceptionType
+							.newTypeHierarchy(new NullProgressMonitor());
+				}
+				classes = typeHierarchy.getAllSubtypes(exceptionType);
 			}
-
-			IType[] classes = typeHierarchy.getAllSubtypes(exceptionType);
 			Set<IType> set = new HashSet<IType>();
 			set.add(exceptionType);
 			set.addAll(Arrays.asList(classes));
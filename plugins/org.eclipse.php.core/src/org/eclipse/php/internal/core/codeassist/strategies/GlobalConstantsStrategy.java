@@ -113,7 +113,8 @@ public class GlobalConstantsStrategy extends GlobalElementStrategy {
 		}
 
 		enclosingTypeConstants = PhpModelAccess.getDefault().findFields(prefix,
-				matchRule, Modifiers.AccConstant, 0, scope, null);
+				matchRule, Modifiers.AccConstant, 0, scope,
+				getProgressMonitor());
 
 		if (isCaseSensitive()) {
 			enclosingTypeConstants = filterByCase(enclosingTypeConstants,
@@ -168,7 +169,8 @@ public class GlobalConstantsStrategy extends GlobalElementStrategy {
 				fullName = fullName.substring(1);
 			}
 			IField[] elements = PhpModelAccess.getDefault().findFields(null,
-					fullName, MatchRule.PREFIX, 0, 0, scope, null);
+					fullName, MatchRule.PREFIX, 0, 0, scope,
+					getProgressMonitor());
 			for (int i = 0; i < elements.length; i++) {
 				String elementName = elements[i].getElementName();
 				reportAlias(reporter, scope, module, replacementRange,
@@ -177,7 +179,7 @@ public class GlobalConstantsStrategy extends GlobalElementStrategy {
 			}
 
 			elements = PhpModelAccess.getDefault().findFields(fullName,
-					MatchRule.EXACT, 0, 0, scope, null);
+					MatchRule.EXACT, 0, 0, scope, getProgressMonitor());
 			for (int i = 0; i < elements.length; i++) {
 				String elementName = elements[i].getElementName();
 				reportAlias(reporter, scope, module, replacementRange,
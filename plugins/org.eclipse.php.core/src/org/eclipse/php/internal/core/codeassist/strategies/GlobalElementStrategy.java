@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.php.internal.core.codeassist.strategies;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.php.core.codeassist.ICompletionContext;
 import org.eclipse.php.core.codeassist.IElementFilter;
 
@@ -22,6 +23,8 @@ import org.eclipse.php.core.codeassist.IElementFilter;
  */
 public abstract class GlobalElementStrategy extends AbstractCompletionStrategy {
 
+	private IProgressMonitor monitor;
+
 	public GlobalElementStrategy(ICompletionContext context, IElementFilter elementFilter) {
 		super(context, elementFilter);
 	}
@@ -29,4 +32,19 @@ public abstract class GlobalElementStrategy extends AbstractCompletionStrategy {
 	public GlobalElementStrategy(ICompletionContext context) {
 		super(context);
 	}
+
+	/**
+	 * Sets the monitor that is canceled once the proposals of this strategy
+	 * aren't needed anymore
+	 */
+	public void setProgressMonitor(IProgressMonitor monitor) {
+		this.monitor = monitor;
+	}
+
+	/**
+	 * Returns the monitor to pass to searches, or <code>null</code>
+	 */
+	protected IProgressMonitor getProgressMonitor() {
+		return monitor;
+	}
 }
@@ -13,6 +13,7 @@ package org.eclipse.php.internal.core.codeassist.strategies;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 
 import org.eclipse.php.core.codeassist.ICompletionContext;
 import org.eclipse.php.core.codeassist.ICompletionStrategy;
@@ -38,6 +39,13 @@ public class GlobalElementsCompositeStrategy extends AbstractCompletionStrategy
 		}
 	}
 
+	/**
+	 * Returns the strategies this composite consists of
+	 */
+	public Collection<ICompletionStrategy> getStrategies() {
+		return Collections.unmodifiableCollection(strategies);
+	}
+
 	public void apply(ICompletionReporter reporter) throws Exception {
 		for (ICompletionStrategy strategy : strategies) {
 			strategy.apply(reporter);
@@ -31,6 +31,7 @@ import org.eclipse.php.internal.core.codeassist.contexts.AbstractCompletionConte
 import org.eclipse.php.internal.core.codeassist.contexts.UseFunctionNameContext;
 import org.eclipse.php.internal.core.compiler.ast.nodes.NamespaceReference;
 import org.eclipse.php.internal.core.compiler.ast.nodes.UsePart;
+import org.eclipse.php.internal.core.model.GlobalNameIndex;
 import org.eclipse.php.internal.core.model.PhpModelAccess;
 import org.eclipse.php.internal.core.typeinference.PHPModelUtils;
 
@@ -70,8 +71,14 @@ public class GlobalFunctionsStrategy extends GlobalElementStrategy {
 			matchRule = MatchRule.EXACT;
 		}
 		IDLTKSearchScope scope = createSearchScope();
-		IMethod[] functions = PhpModelAccess.getDefault().findMethods(prefix,
-				matchRule, Modifiers.AccGlobal, 0, scope, null);
+		IMethod[] functions = GlobalNameIndex.getDefault().findFunctions(
+				abstractContext.getSourceModule().getScriptProject(), prefix,
+				matchRule, scope);
+		if (functions == null) {
+			functions = PhpModelAccess.getDefault().findMethods(prefix,
+					matchRule, Modifiers.AccGlobal, 0, scope,
+					getProgressMonitor());
+		}
 
 		ISourceRange replacementRange = getReplacementRange(abstractContext);
 		String suffix = getSuffix(abstractContext);
@@ -123,7 +130,8 @@ public class GlobalFunctionsStrategy extends GlobalElementStrategy {
 			IMethod[] elements;
 			if (!fullName.contains("\\")) { //$NON-NLS-1$
 				elements = PhpModelAccess.getDefault().findMethods(null,
-						fullName, MatchRule.PREFIX, 0, 0, scope, null);
+						fullName, MatchRule.PREFIX, 0, 0, scope,
+						getProgressMonitor());
 				for (int i = 0; i < elements.length; i++) {
 					String elementName = elements[i].getElementName();
 					reportAlias(reporter, scope, module, replacementRange,
@@ -132,7 +140,7 @@ public class GlobalFunctionsStrategy extends GlobalElementStrategy {
 				}
 			}
 			elements = PhpModelAccess.getDefault().findMethods(fullName,
-					MatchRule.EXACT, 0, 0, scope, null);
+					MatchRule.EXACT, 0, 0, scope, getProgressMonitor());
 
 			for (int i = 0; i < elements.length; i++) {
 				String elementName = elements[i].getElementName();
@@ -30,6 +30,7 @@ import org.eclipse.php.internal.core.codeassist.contexts.NamespaceMemberContext;
 import org.eclipse.php.internal.core.codeassist.contexts.UseNameContext;
 import org.eclipse.php.internal.core.compiler.ast.nodes.NamespaceReference;
 import org.eclipse.php.internal.core.compiler.ast.nodes.UsePart;
+import org.eclipse.php.internal.core.model.GlobalNameIndex;
 import org.eclipse.php.internal.core.model.PhpModelAccess;
 import org.eclipse.php.internal.core.typeinference.FakeMethod;
 import org.eclipse.php.internal.core.typeinference.PHPModelUtils;
@@ -189,7 +190,7 @@ public class GlobalTypesStrategy extends GlobalElementStrategy {
 					.getFullyQualifiedName();
 			IType[] elements = PhpModelAccess.getDefault().findTypes(null,
 					fullName + NamespaceReference.NAMESPACE_SEPARATOR,
-					MatchRule.PREFIX, 0, 0, scope, null);
+					MatchRule.PREFIX, 0, 0, scope, getProgressMonitor());
 			for (int i = 0; i < elements.length; i++) {
 				String elementName = elements[i].getElementName();
 				reportAlias(reporter, scope, module, replacementRange,
@@ -214,7 +215,8 @@ public class GlobalTypesStrategy extends GlobalElementStrategy {
 			}
 			try {
 				IType[] elements = PhpModelAccess.getDefault().findTypes(
-						fullName, MatchRule.EXACT, 0, 0, scope, null);
+						fullName, MatchRule.EXACT, 0, 0, scope,
+						getProgressMonitor());
 
 				for (int i = 0; i < elements.length; i++) {
 					String elementName = elements[i].getElementName();
@@ -279,18 +281,18 @@ public class GlobalTypesStrategy extends GlobalElementStrategy {
 		IDLTKSearchScope scope = createSearchScope();
 		if (context.getCompletionRequestor().isContextInformationMode()) {
 			return PhpModelAccess.getDefault().findTypes(prefix,
-					MatchRule.EXACT, trueFlag, falseFlag, scope, null);
+					MatchRule.EXACT, trueFlag, falseFlag, scope,
+					getProgressMonitor());
 		}
 
 		List<IType> result = new LinkedList<IType>();
 		if (prefix.length() > 1 && prefix.toUpperCase().equals(prefix)) {
 			// Search by camel-case
-			IType[] types = PhpModelAccess.getDefault().findTypes(prefix,
-					MatchRule.CAMEL_CASE, trueFlag, falseFlag, scope, null);
+			IType[] types = findTypes(context, prefix, MatchRule.CAMEL_CASE,
+					scope);
 			result.addAll(Arrays.asList(types));
 		}
-		IType[] types = PhpModelAccess.getDefault().findTypes(null, prefix,
-				MatchRule.PREFIX, trueFlag, falseFlag, scope, null);
+		IType[] types = findTypes(context, prefix, MatchRule.PREFIX, scope);
 		if (context instanceof NamespaceMemberContext) {
 			for (IType type : types) {
 				if (PHPModelUtils.getFullName(type).startsWith(prefix)) {
@@ -304,6 +306,23 @@ public class GlobalTypesStrategy extends GlobalElementStrategy {
 		return (IType[]) result.toArray(new IType[result.size()]);
 	}
 
+	/**
+	 * Finds global types in the name index of the project, or in the index
+	 * database if the name index isn't available
+	 */
+	private IType[] findTypes(AbstractCompletionContext context, String prefix,
+			MatchRule matchRule, IDLTKSearchScope scope) {
+		IType[] types = GlobalNameIndex.getDefault().findTypes(
+				context.getSourceModule().getScriptProject(), prefix,
+				matchRule, trueFlag, falseFlag, scope);
+		if (types == null) {
+			types = PhpModelAccess.getDefault().findTypes(null, prefix,
+					matchRule, trueFlag, falseFlag, scope,
+					getProgressMonitor());
+		}
+		return types;
+	}
+
 	/**
 	 * Adds the self function with the relevant data to the proposals array
 	 * 
@@ -12,7 +12,6 @@
 package org.eclipse.php.internal.core.codeassist.strategies;
 
 import org.eclipse.dltk.core.IType;
-import org.eclipse.dltk.core.ITypeHierarchy;
 import org.eclipse.dltk.core.ModelException;
 import org.eclipse.php.core.codeassist.ICompletionContext;
 import org.eclipse.php.core.codeassist.IElementFilter;
@@ -66,9 +65,8 @@ public class MethodKeywordStrategy extends KeywordsStrategy {
 				IType type = globalContext.getEnclosingType();
 				try {
 					if (type != null && PHPFlags.isClass(type.getFlags())) {
-						ITypeHierarchy hierarchy = getCompanion()
-								.getSuperTypeHierarchy(type, null);
-						IType[] superTypes = hierarchy.getAllSupertypes(type);
+						IType[] superTypes = getCompanion().getAllSuperTypes(
+								type);
 						for (IType superType : superTypes) {
 							if (PHPFlags.isClass(superType.getFlags())) {
 								return false;
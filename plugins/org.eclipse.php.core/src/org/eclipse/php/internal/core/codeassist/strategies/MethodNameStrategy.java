@@ -73,11 +73,9 @@ public class MethodNameStrategy extends AbstractCompletionStrategy {
 		}
 
 		try {
-			ITypeHierarchy hierarchy = getCompanion().getSuperTypeHierarchy(
-					declaringClass, null);
 			IMethod[] superClassMethods = PHPModelUtils
-					.getSuperTypeHierarchyMethod(declaringClass, hierarchy,
-							prefix, exactName, null);
+					.getSuperTypeHierarchyMethod(declaringClass, null, prefix,
+							exactName, null);
 			for (IMethod superMethod : superClassMethods) {
 				if (declaringClass.getMethod(superMethod.getElementName())
 						.exists()) {
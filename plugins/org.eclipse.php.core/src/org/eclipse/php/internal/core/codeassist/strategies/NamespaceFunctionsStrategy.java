@@ -13,13 +13,10 @@ package org.eclipse.php.internal.core.codeassist.strategies;
 
 import org.eclipse.dltk.core.IMethod;
 import org.eclipse.dltk.core.ISourceRange;
-import org.eclipse.dltk.core.IType;
-import org.eclipse.dltk.core.ModelException;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.php.core.codeassist.ICompletionContext;
 import org.eclipse.php.core.codeassist.IElementFilter;
 import org.eclipse.php.internal.core.PHPCorePlugin;
-import org.eclipse.php.internal.core.codeassist.CodeAssistUtils;
 import org.eclipse.php.internal.core.codeassist.ICompletionReporter;
 import org.eclipse.php.internal.core.codeassist.contexts.AbstractCompletionContext;
 import org.eclipse.php.internal.core.codeassist.contexts.NamespaceMemberContext;
@@ -51,17 +48,8 @@ public class NamespaceFunctionsStrategy extends NamespaceMembersStrategy {
 		String suffix = getSuffix(concreteContext);
 		ISourceRange replaceRange = getReplacementRange(concreteContext);
 
-		for (IType ns : concreteContext.getNamespaces()) {
-			try {
-				for (IMethod method : ns.getMethods()) {
-					if (CodeAssistUtils.startsWithIgnoreCase(
-							method.getElementName(), prefix)) {
-						reporter.reportMethod(method, suffix, replaceRange);
-					}
-				}
-			} catch (ModelException e) {
-				PHPCorePlugin.log(e);
-			}
+		for (IMethod method : findNamespaceFunctions(concreteContext, prefix)) {
+			reporter.reportMethod(method, suffix, replaceRange);
 		}
 	}
 
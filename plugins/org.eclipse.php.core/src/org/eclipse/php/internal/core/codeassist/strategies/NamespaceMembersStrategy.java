@@ -4,29 +4,139 @@
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
- * 
+ *
  * Contributors:
  *     IBM Corporation - initial API and implementation
  *     Zend Technologies
  *******************************************************************************/
 package org.eclipse.php.internal.core.codeassist.strategies;
 
+import java.util.*;
+
+import org.eclipse.dltk.core.IMethod;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.IType;
+import org.eclipse.dltk.core.ModelException;
 import org.eclipse.php.core.codeassist.ICompletionContext;
 import org.eclipse.php.core.codeassist.IElementFilter;
-
-
+import org.eclipse.php.internal.core.PHPCorePlugin;
+import org.eclipse.php.internal.core.codeassist.CodeAssistUtils;
+import org.eclipse.php.internal.core.codeassist.contexts.NamespaceMemberContext;
+import org.eclipse.php.internal.core.model.GlobalNameIndex;
+import org.eclipse.php.internal.core.model.PhpModelAccess;
 
 /**
- * This strategy completes namespace members: A\foo(), A\Class::, etc...  
+ * This strategy completes namespace members: A\foo(), A\Class::, etc...
+ * <p>
+ * Members are looked up in the name index of the project, or in the
+ * namespaces themselves while the name index isn't available.
+ * </p>
+ *
  * @author michael
  */
-public abstract class NamespaceMembersStrategy extends AbstractCompletionStrategy {
+public abstract class NamespaceMembersStrategy extends
+		AbstractCompletionStrategy {
 
-	public NamespaceMembersStrategy(ICompletionContext context, IElementFilter elementFilter) {
+	public NamespaceMembersStrategy(ICompletionContext context,
+			IElementFilter elementFilter) {
 		super(context, elementFilter);
 	}
 
 	public NamespaceMembersStrategy(ICompletionContext context) {
 		super(context);
 	}
+
+	/**
+	 * Returns the types declared in the namespaces of the context whose name
+	 * starts with the given prefix
+	 */
+	protected IType[] findNamespaceTypes(NamespaceMemberContext context,
+			String prefix) {
+		IType[] namespaces = context.getNamespaces();
+		if (namespaces == null) {
+			return PhpModelAccess.NULL_TYPES;
+		}
+		IScriptProject project = context.getSourceModule().getScriptProject();
+		List<IType> result = new ArrayList<IType>();
+		for (String namespace : getNamespaceNames(namespaces)) {
+			IType[] types = GlobalNameIndex.getDefault().findNamespaceTypes(
+					project, namespace, prefix, createSearchScope());
+			if (types == null) {
+				return getTypes(namespaces, prefix);
+			}
+			result.addAll(Arrays.asList(types));
+		}
+		return result.toArray(new IType[result.size()]);
+	}
+
+	/**
+	 * Returns the functions declared in the namespaces of the context whose
+	 * name starts with the given prefix
+	 */
+	protected IMethod[] findNamespaceFunctions(NamespaceMemberContext context,
+			String prefix) {
+		IType[] namespaces = context.getNamespaces();
+		if (namespaces == null) {
+			return PhpModelAccess.NULL_METHODS;
+		}
+		IScriptProject project = context.getSourceModule().getScriptProject();
+		List<IMethod> result = new ArrayList<IMethod>();
+		for (String namespace : getNamespaceNames(namespaces)) {
+			IMethod[] methods = GlobalNameIndex.getDefault()
+					.findNamespaceFunctions(project, namespace, prefix,
+							createSearchScope());
+			if (methods == null) {
+				return getMethods(namespaces, prefix);
+			}
+			result.addAll(Arrays.asList(methods));
+		}
+		return result.toArray(new IMethod[result.size()]);
+	}
+
+	/**
+	 * A namespace may be declared in several files, its members are looked up
+	 * once
+	 */
+	private static Collection<String> getNamespaceNames(IType[] namespaces) {
+		Map<String, String> names = new LinkedHashMap<String, String>();
+		for (IType ns : namespaces) {
+			String name = ns.getElementName();
+			names.put(name.toLowerCase(), name);
+		}
+		return names.values();
+	}
+
+	private static IType[] getTypes(IType[] namespaces, String prefix) {
+		List<IType> result = new LinkedList<IType>();
+		for (IType ns : namespaces) {
+			try {
+				for (IType type : ns.getTypes()) {
+					if (CodeAssistUtils.startsWithIgnoreCase(
+							type.getElementName(), prefix)) {
+						result.add(type);
+					}
+				}
+			} catch (ModelException e) {
+				PHPCorePlugin.log(e);
+			}
+		}
+		return result.toArray(new IType[result.size()]);
+	}
+
+	private static IMethod[] getMethods(IType[] namespaces, String prefix) {
+		List<IMethod> result = new LinkedList<IMethod>();
+		for (IType ns : namespaces) {
+			try {
+				for (IMethod method : ns.getMethods()) {
+					if (CodeAssistUtils.startsWithIgnoreCase(
+							method.getElementName(), prefix)) {
+						result.add(method);
+					}
+				}
+			} catch (ModelException e) {
+				PHPCorePlugin.log(e);
+			}
+		}
+		return result.toArray(new IMethod[result.size()]);
+	}
 }
@@ -11,17 +11,12 @@
  *******************************************************************************/
 package org.eclipse.php.internal.core.codeassist.strategies;
 
-import java.util.LinkedList;
-import java.util.List;
-
 import org.eclipse.dltk.core.ISourceRange;
 import org.eclipse.dltk.core.IType;
-import org.eclipse.dltk.core.ModelException;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.php.core.codeassist.ICompletionContext;
 import org.eclipse.php.core.codeassist.IElementFilter;
 import org.eclipse.php.internal.core.PHPCorePlugin;
-import org.eclipse.php.internal.core.codeassist.CodeAssistUtils;
 import org.eclipse.php.internal.core.codeassist.ICompletionReporter;
 import org.eclipse.php.internal.core.codeassist.ProposalExtraInfo;
 import org.eclipse.php.internal.core.codeassist.contexts.AbstractCompletionContext;
@@ -61,22 +56,7 @@ public class NamespaceTypesStrategy extends NamespaceMembersStrategy {
 
 	public IType[] getTypes(NamespaceMemberContext context)
 			throws BadLocationException {
-		String prefix = context.getPrefix();
-
-		List<IType> result = new LinkedList<IType>();
-		for (IType ns : context.getNamespaces()) {
-			try {
-				for (IType type : ns.getTypes()) {
-					if (CodeAssistUtils.startsWithIgnoreCase(
-							type.getElementName(), prefix)) {
-						result.add(type);
-					}
-				}
-			} catch (ModelException e) {
-				PHPCorePlugin.log(e);
-			}
-		}
-		return (IType[]) result.toArray(new IType[result.size()]);
+		return findNamespaceTypes(context, context.getPrefix());
 	}
 
 	public String getSuffix(AbstractCompletionContext abstractContext) {
@@ -13,7 +13,6 @@ package org.eclipse.php.internal.core.documentModel.parser.regions;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.util.ListIterator;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.jface.text.BadLocationException;
@@ -191,11 +190,9 @@ public class PhpScriptRegion extends ForeignRegion implements IPhpScriptRegion {
 				}
 
 				boolean shouldDeprecatedKeyword = false;
-				int previousIndex = tokensContaier.phpTokens
-						.indexOf(tokenStart) - 1;
-				if (previousIndex >= 0) {
-					ITextRegion previousRegion = tokensContaier.phpTokens
-							.get(previousIndex);
+				if (tokenStart.getStart() > 0) {
+					ITextRegion previousRegion = tokensContaier
+							.getToken(tokenStart.getStart() - 1);
 					if (PhpTokenContainer.deprecatedKeywordAfter(previousRegion
 							.getType())) {
 						shouldDeprecatedKeyword = true;
@@ -252,6 +249,7 @@ public class PhpScriptRegion extends ForeignRegion implements IPhpScriptRegion {
 				} catch (IOException e) {
 					Logger.logException(e);
 				}
+				newContainer.releaseModelFromCreation();
 
 				// if the fast reparser couldn't lex - - reparse all
 				if (newContainer.isEmpty()) {
@@ -270,26 +268,10 @@ public class PhpScriptRegion extends ForeignRegion implements IPhpScriptRegion {
 				}
 
 				// 1. replace the regions
-				final ListIterator oldIterator = tokensContaier
-						.removeTokensSubList(tokenStart, tokenEnd);
-
-				ITextRegion[] newTokens = newContainer.getPhpTokens(); // now,
-																		// add
-				// the new
-				// ones
-				for (int i = 0; i < newTokens.length; i++) {
-					oldIterator.add(newTokens[i]);
-				}
-
 				// 2. adjust next regions start location
-				while (oldIterator.hasNext()) {
-					final ITextRegion adjust = (ITextRegion) oldIterator.next();
-					adjust.adjustStart(size);
-				}
-
 				// 3. update state changes
-				tokensContaier.updateStateChanges(newContainer,
-						tokenStart.getStart(), end);
+				tokensContaier.replaceTokens(tokenStart, tokenEnd,
+						newContainer, size);
 				updatedTokensStart = tokenStart.getStart();
 				updatedTokensEnd = end;
 				isFullReparsed = false;
@@ -23,22 +23,30 @@ import org.eclipse.wst.sse.core.internal.provisional.text.ITextRegion;
 /**
  * Description: Holds the tokens extracted from the script
  * 
+ * Readers never lock the container, they work on an immutable
+ * {@link TokensVersion} which is atomically replaced by writers. Writers
+ * (creation and incremental updates) are serialized on the container, and
+ * never modify the regions of a published version.
+ * 
  * @author Roy, 2007
  */
 public class PhpTokenContainer {
 
-	// holds PHP tokens
-	protected final LinkedList<ContextRegion> phpTokens = new LinkedList<ContextRegion>(); // of
+	// holds PHP tokens while the container is under construction
+	protected final ArrayList<ContextRegion> phpTokens = new ArrayList<ContextRegion>(); // of
 	// ITextRegion
 
 	// holds the location and state, where the lexical anlyzer state was changed
-	protected final LinkedList<LexerStateChange> lexerStateChanges = new LinkedList<LexerStateChange>(); // of
+	// while the container is under construction
+	protected final ArrayList<LexerStateChange> lexerStateChanges = new ArrayList<LexerStateChange>(); // of
 	// LexerStateChanged
 
-	// holds the iterator for the php tokens linked list
-	// this iterator follows the localization principle
-	// i.e. the user usually works in the same area of the document
-	protected ListIterator<ContextRegion> tokensIterator = null;
+	// true while the list of php tokens is being constructed, a new container
+	// is under construction until releaseModelFromCreation() is called
+	protected boolean inCreation = true;
+
+	// the tokens version published to readers
+	private volatile TokensVersion version = TokensVersion.EMPTY;
 
 	/**
 	 * find token for a given location
@@ -48,70 +56,55 @@ public class PhpTokenContainer {
 	 * @throws BadLocationException
 	 *             - if the offset is out of bound
 	 */
-	public synchronized ITextRegion getToken(int offset)
+	public ITextRegion getToken(int offset) throws BadLocationException {
+		return getToken(version, offset);
+	}
+
+	private static ITextRegion getToken(TokensVersion version, int offset)
 			throws BadLocationException {
-		assert tokensIterator != null;
-		if (phpTokens.isEmpty()) {
+		if (version.isEmpty()) {
 			return null;
 		}
 
 		// we have at least one region...
-		checkBadLocation(offset);
+		version.checkBadLocation(offset);
 
-		// smart searching
-		ITextRegion result = tokensIterator.hasNext() ? tokensIterator.next()
-				: tokensIterator.previous();
+		final ITextRegion result = version.tokens[version
+				.findTokenIndex(offset)];
 		assert result != null && result.getLength() > 0;
-
-		if (isInside(result, offset)) {
-			return result;
-		}
-
-		if (offset >= result.getEnd()) { // if the offset is
-											// beyond - go fetch
-			// from next
-			while (tokensIterator.hasNext() && !isInside(result, offset)) {
-				result = tokensIterator.next();
-				assert result != null && result.getLength() > 0;
-			}
-		} else { // else go fetch from previous
-			while (tokensIterator.hasPrevious() && !isInside(result, offset)) {
-				result = tokensIterator.previous();
-				assert result != null && result.getLength() > 0;
-			}
-			// moves the iterator to the next one
-			if (tokensIterator.hasNext()) {
-				tokensIterator.next();
-			}
-		}
-
-		assert isInside(result, offset) || offset == getLastToken().getEnd();
 		return result;
 	}
 
-	public synchronized ITextRegion[] getTokens(final int offset,
-			final int length) throws BadLocationException {
+	public ITextRegion[] getTokens(final int offset, final int length)
+			throws BadLocationException {
 		assert length >= 0;
-		List<ITextRegion> result = new ArrayList<ITextRegion>(); // list of
-		// ITextRegion
-
-		ITextRegion token = getToken(offset);
-		if (token != null) {
-			result.add(token);
+		final TokensVersion version = this.version;
+		if (version.isEmpty()) {
+			return new ITextRegion[0];
 		}
-
-		while (tokensIterator.hasNext() && token != null
-				&& token.getEnd() <= offset + length) {
-			token = tokensIterator.next();
-			result.add(token);
+		version.checkBadLocation(offset);
+
+		// the first token is the one in the given offset, the last one is the
+		// first token that ends after the given range
+		final int startIndex = version.findTokenIndex(offset);
+		final int last = version.tokens.length - 1;
+		int endIndex = startIndex;
+		while (endIndex < last && version.getEnd(endIndex) <= offset + length) {
+			endIndex++;
 		}
 
-		return result.toArray(new ITextRegion[result.size()]);
+		final ITextRegion[] result = new ITextRegion[endIndex - startIndex + 1];
+		System.arraycopy(version.tokens, startIndex, result, 0, result.length);
+		return result;
 	}
 
-	private final boolean isInside(ITextRegion region, int offset) {
-		return region != null && region.getStart() <= offset
-				&& offset < region.getEnd();
+	/**
+	 * @param region
+	 * @return the index of the given token, or -1 if it is not part of this
+	 *         container
+	 */
+	public int indexOf(ITextRegion region) {
+		return version.indexOf(region);
 	}
 
 	/**
@@ -119,22 +112,12 @@ public class PhpTokenContainer {
 	 * @return the lexer state at the given offset
 	 * @throws BadLocationException
 	 */
-	public synchronized LexerState getState(int offset)
-			throws BadLocationException {
-		Iterator<LexerStateChange> iter = lexerStateChanges.iterator();
-		assert iter.hasNext();
-
-		LexerStateChange element = iter.next();
-		LexerState lastState = null;
+	public LexerState getState(int offset) throws BadLocationException {
+		final TokensVersion version = this.version;
+		assert version.changes.length > 0;
 
-		while (offset >= element.getOffset()) {
-			lastState = element.state;
-			if (!iter.hasNext()) {
-				return lastState;
-			}
-			element = iter.next();
-		}
-		return lastState;
+		final int index = version.findStateChangeIndexAfter(offset);
+		return index == 0 ? null : version.changes[index - 1].state;
 	}
 
 	/**
@@ -142,13 +125,13 @@ public class PhpTokenContainer {
 	 * @return the partition type of the given offset
 	 * @throws BadLocationException
 	 */
-	public synchronized String getPartitionType(int offset)
-			throws BadLocationException {
-		ITextRegion token = getToken(offset);
+	public String getPartitionType(int offset) throws BadLocationException {
+		final TokensVersion version = this.version;
+		ITextRegion token = getToken(version, offset);
 		while (token != null
 				&& PHPRegionTypes.PHPDOC_TODO.equals(token.getType())
 				&& token.getStart() - 1 >= 0) {
-			token = getToken(token.getStart() - 1);
+			token = getToken(version, token.getStart() - 1);
 		}
 		assert token != null;
 		final String type = token.getType();
@@ -167,79 +150,108 @@ public class PhpTokenContainer {
 	}
 
 	/**
-	 * Updates the container with the new states
+	 * Replaces the tokens between tokenStart and tokenEnd (inclusive) with the
+	 * tokens of the given container, and shifts the tokens that follow by the
+	 * given delta. The state changes of the replaced range are replaced by the
+	 * state changes of the new container.
 	 * 
+	 * The new version is published to readers once it is complete.
+	 * 
+	 * @param tokenStart
+	 * @param tokenEnd
 	 * @param newContainer
-	 * @param fromOffset
-	 * @param toOffset
-	 * @param size
+	 * @param delta
 	 */
-	public synchronized void updateStateChanges(PhpTokenContainer newContainer,
-			int fromOffset, int toOffset) {
-		if (newContainer.lexerStateChanges.size() < 2) {
-			return;
-		}
-
-		// remove
-		final ListIterator<LexerStateChange> oldIterator = removeOldChanges(
-				fromOffset, toOffset);
-
-		// add
-		final Iterator<LexerStateChange> newIterator = newContainer.lexerStateChanges
-				.iterator();
-		newIterator.next(); // ignore the first state change (it is identical to
-		// the original one)
-
-		// goto the previous before adding
-		setIterator(oldIterator, fromOffset, toOffset);
-
-		while (newIterator.hasNext()) {
-			oldIterator.add(newIterator.next());
+	public synchronized void replaceTokens(ITextRegion tokenStart,
+			ITextRegion tokenEnd, PhpTokenContainer newContainer, int delta) {
+		assert tokenStart != null && tokenEnd != null;
+
+		final TokensVersion oldVersion = version;
+		final TokensVersion newTokens = newContainer.version;
+
+		final int startIndex = oldVersion.indexOf(tokenStart);
+		final int endIndex = oldVersion.indexOf(tokenEnd);
+		assert startIndex >= 0 && endIndex >= startIndex;
+
+		// 1. replace the regions, the regions that follow are copied to their
+		// new location as older versions still hold the original ones
+		final int tailLength = oldVersion.tokens.length - endIndex - 1;
+		final int newLength = newTokens.tokens.length;
+		final ContextRegion[] tokens = new ContextRegion[startIndex + newLength
+				+ tailLength];
+		final int[] starts = new int[tokens.length];
+		System.arraycopy(oldVersion.tokens, 0, tokens, 0, startIndex);
+		System.arraycopy(oldVersion.starts, 0, starts, 0, startIndex);
+		System.arraycopy(newTokens.tokens, 0, tokens, startIndex, newLength);
+		System.arraycopy(newTokens.starts, 0, starts, startIndex, newLength);
+		final int nextIndex = startIndex + newLength;
+		for (int i = 0; i < tailLength; i++) {
+			final ContextRegion region = oldVersion.tokens[endIndex + 1 + i];
+			final int start = oldVersion.starts[endIndex + 1 + i] + delta;
+			tokens[nextIndex + i] = delta == 0 ? region : new ContextRegion(
+					region.getType(), start, region.getTextLength(),
+					region.getLength());
+			starts[nextIndex + i] = start;
 		}
-	}
 
-	private void setIterator(ListIterator<LexerStateChange> oldIterator,
-			int fromOffset, int toOffset) {
-		if (oldIterator.nextIndex() != 1) {
-			oldIterator.previous();
-		} else {
-			return;
+		// 2. replace the state changes
+		final int maxChanges = oldVersion.changes.length
+				+ newTokens.changes.length + 1;
+		LexerStateChange[] changes = new LexerStateChange[maxChanges];
+		int[] changeOffsets = new int[maxChanges];
+		final int fromOffset = oldVersion.starts[startIndex];
+		final int toOffset = oldVersion.starts[endIndex];
+		final int fromIndex = oldVersion
+				.findStateChangeIndexAfter(fromOffset - 1);
+		final int toIndex = oldVersion.findStateChangeIndexAfter(toOffset);
+		System.arraycopy(oldVersion.changes, 0, changes, 0, fromIndex);
+		System.arraycopy(oldVersion.changeOffsets, 0, changeOffsets, 0,
+				fromIndex);
+		int count = fromIndex;
+		// the first new state change is identical to the state in fromOffset,
+		// keep it only if it replaces a state change in that offset
+		final boolean keepFirst = fromIndex < oldVersion.changes.length
+				&& oldVersion.changeOffsets[fromIndex] == fromOffset;
+		for (int i = keepFirst ? 0 : 1; i < newTokens.changes.length; i++) {
+			changes[count] = newTokens.changes[i];
+			changeOffsets[count++] = newTokens.changeOffsets[i];
 		}
-
-		LexerStateChange next = oldIterator.next();
-		int offset = next.getOffset();
-		if (offset > fromOffset) {
-			oldIterator.previous();
+		// make sure the next region still starts with the original state
+		final int endStateIndex = oldVersion
+				.findStateChangeIndexAfter(oldVersion.getEnd(endIndex));
+		if (tailLength > 0 && endStateIndex > 0) {
+			final LexerState endState = oldVersion.changes[endStateIndex - 1].state;
+			final boolean hasNextChange = toIndex < oldVersion.changes.length
+					&& oldVersion.changeOffsets[toIndex] == oldVersion.starts[endIndex + 1];
+			if (!hasNextChange
+					&& (count == 0 || !changes[count - 1].state
+							.equals(endState))) {
+				changes[count] = new LexerStateChange(endState,
+						tokens[nextIndex]);
+				changeOffsets[count++] = starts[nextIndex];
+			}
 		}
-
-	}
-
-	public synchronized ListIterator<ContextRegion> removeTokensSubList(
-			ITextRegion tokenStart, ITextRegion tokenEnd) {
-		assert tokenStart != null;
-
-		// go to the start region
-		ITextRegion region = null;
-		;
-		try {
-			region = getToken(tokenStart.getStart());
-		} catch (BadLocationException e) {
-			assert false;
+		for (int i = toIndex, j = nextIndex; i < oldVersion.changes.length; i++) {
+			final int changeOffset = oldVersion.changeOffsets[i] + delta;
+			if (delta == 0) {
+				changes[count] = oldVersion.changes[i];
+			} else {
+				// point to the copy of the first region
+				while (starts[j] < changeOffset) {
+					j++;
+				}
+				changes[count] = new LexerStateChange(
+						oldVersion.changes[i].state, tokens[j]);
+			}
+			changeOffsets[count++] = changeOffset;
 		}
-		assert region == tokenStart;
-
-		tokensIterator.remove();
-
-		// if it the start and the end are equal - remove and exit
-		if (tokenStart != tokenEnd) {
-			// remove to the end
-			do {
-				region = tokensIterator.next();
-				tokensIterator.remove();
-			} while (tokensIterator.hasNext() && region != tokenEnd);
+		if (count < maxChanges) {
+			changes = Arrays.copyOf(changes, count);
+			changeOffsets = Arrays.copyOf(changeOffsets, count);
 		}
 
-		return tokensIterator;
+		// 3. publish
+		version = new TokensVersion(tokens, starts, changes, changeOffsets);
 	}
 
 	/**
@@ -247,14 +259,33 @@ public class PhpTokenContainer {
 	 * tokens
 	 */
 	public synchronized void getModelForCreation() {
-		tokensIterator = null;
+		inCreation = true;
 	}
 
 	/**
-	 * One must call releaseModelForWrite() after constructing the
+	 * One must call releaseModelForWrite() after constructing the list of php
+	 * tokens, this publishes the constructed tokens to the readers
 	 */
 	public synchronized void releaseModelFromCreation() {
-		tokensIterator = phpTokens.listIterator();
+		final ContextRegion[] tokens = phpTokens
+				.toArray(new ContextRegion[phpTokens.size()]);
+		final int[] starts = new int[tokens.length];
+		for (int i = 0; i < tokens.length; i++) {
+			starts[i] = tokens[i].getStart();
+		}
+		final LexerStateChange[] changes = lexerStateChanges
+				.toArray(new LexerStateChange[lexerStateChanges.size()]);
+		final int[] changeOffsets = new int[changes.length];
+		for (int i = 0; i < changes.length; i++) {
+			changeOffsets[i] = changes[i].getOffset();
+		}
+		version = new TokensVersion(tokens, starts, changes, changeOffsets);
+
+		phpTokens.clear();
+		phpTokens.trimToSize();
+		lexerStateChanges.clear();
+		lexerStateChanges.trimToSize();
+		inCreation = false;
 	}
 
 	/**
@@ -266,40 +297,47 @@ public class PhpTokenContainer {
 	 * @return
 	 * @throws BadLocationException
 	 */
-	public synchronized ListIterator<ContextRegion> getPhpTokensIterator(
-			final int offset) throws BadLocationException {
+	public ListIterator<ContextRegion> getPhpTokensIterator(final int offset)
+			throws BadLocationException {
+		final TokensVersion version = this.version;
+		final List<ContextRegion> tokens = Collections.unmodifiableList(Arrays
+				.asList(version.tokens));
 		// fast results for empty lists
-		if (phpTokens.isEmpty()) {
-			return tokensIterator;
+		if (version.isEmpty()) {
+			return tokens.listIterator();
 		}
-		checkBadLocation(offset);
-
-		// set the token iterator to the right place
-		getToken(offset);
+		version.checkBadLocation(offset);
 
-		return tokensIterator;
+		return tokens.listIterator(version.findTokenIndex(offset));
 	}
 
 	/**
 	 * @return the whole tokens as an array
 	 */
-	public synchronized ITextRegion[] getPhpTokens() {
-		return phpTokens.toArray(new ITextRegion[phpTokens.size()]);
+	public ITextRegion[] getPhpTokens() {
+		final ContextRegion[] tokens = version.tokens;
+		final ITextRegion[] result = new ITextRegion[tokens.length];
+		System.arraycopy(tokens, 0, result, 0, tokens.length);
+		return result;
 	}
 
 	/**
-	 * Clears the containers
+	 * Clears the containers, while the container is under construction the
+	 * readers keep seeing the previous version until it is released
 	 */
 	public synchronized void reset() {
 		this.phpTokens.clear();
 		this.lexerStateChanges.clear();
+		if (!inCreation) {
+			version = TokensVersion.EMPTY;
+		}
 	}
 
 	/**
 	 * @return true for empty container
 	 */
-	public synchronized boolean isEmpty() {
-		return this.phpTokens.isEmpty();
+	public boolean isEmpty() {
+		return version.isEmpty();
 	}
 
 	/**
@@ -310,12 +348,11 @@ public class PhpTokenContainer {
 	 */
 	public synchronized void addLast(String yylex, int start,
 			int yylengthLength, int yylength, Object lexerState) {
-		assert (phpTokens.size() == 0 || getLastToken().getEnd() == start)
-				&& tokensIterator == null;
+		assert (phpTokens.size() == 0 || getLastCreatedToken().getEnd() == start)
+				&& inCreation;
 
 		if (phpTokens.size() > 0) {
-			ContextRegion lastContextRegion = (ContextRegion) phpTokens
-					.get(phpTokens.size() - 1);
+			ContextRegion lastContextRegion = getLastCreatedToken();
 			if (deprecatedKeywordAfter(lastContextRegion.getType())) {
 				if (isKeyword(yylex)) {
 					yylex = PHPRegionTypes.PHP_LABEL;
@@ -330,8 +367,8 @@ public class PhpTokenContainer {
 
 			final ContextRegion contextRegion = new ContextRegion(yylex, start,
 					textLength, yylength);
-			phpTokens.addLast(contextRegion);
-			lexerStateChanges.addLast(new LexerStateChange(
+			phpTokens.add(contextRegion);
+			lexerStateChanges.add(new LexerStateChange(
 					(LexerState) lexerState, contextRegion));
 			return;
 		}
@@ -339,12 +376,12 @@ public class PhpTokenContainer {
 		assert phpTokens.size() > 0;
 		// if we can only adjust the previous token size
 		if (yylex == AbstractPhpLexer.WHITESPACE) {
-			final ITextRegion last = phpTokens.getLast();
+			final ITextRegion last = getLastCreatedToken();
 			last.adjustLength(yylength);
 		} else { // else - add as a new token
 			final ContextRegion contextRegion = new ContextRegion(yylex, start,
 					yylengthLength, yylength);
-			phpTokens.addLast(contextRegion);
+			phpTokens.add(contextRegion);
 		}
 	}
 
@@ -386,13 +423,13 @@ public class PhpTokenContainer {
 	 */
 	public synchronized void adjustWhitespace(String yylex, int start,
 			int yylengthLength, int yylength, Object lexerState) {
-		assert (phpTokens.size() == 0 || getLastToken().getEnd() == start)
-				&& tokensIterator == null;
+		assert (phpTokens.size() == 0 || getLastCreatedToken().getEnd() == start)
+				&& inCreation;
 
 		// if state was change - we add a new token and add state
 		if (lexerStateChanges.size() != 0
 				&& getLastChange().state.equals(lexerState)) {
-			final ITextRegion last = phpTokens.getLast();
+			final ITextRegion last = getLastCreatedToken();
 			last.adjustLength(yylength);
 		}
 	}
@@ -434,45 +471,115 @@ public class PhpTokenContainer {
 	}
 
 	/**
-	 * check for out of bound
-	 * 
-	 * @param offset
-	 * @throws BadLocationException
+	 * An immutable version of the tokens and the state changes. Its regions
+	 * may be shared with other versions, but are never shifted once the
+	 * version is published, so a reader keeps consistent offsets for as long
+	 * as it uses the version.
 	 */
-	protected synchronized final void checkBadLocation(int offset)
-			throws BadLocationException {
-		ITextRegion lastRegion = getLastToken();
-		if (offset < 0 || lastRegion.getEnd() < offset) {
-			throw new BadLocationException(
-					"offset " + offset + " is out of [0, " + lastRegion.getEnd() + "]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	protected static final class TokensVersion {
+
+		static final TokensVersion EMPTY = new TokensVersion(
+				new ContextRegion[0], new int[0], new LexerStateChange[0],
+				new int[0]);
+
+		final ContextRegion[] tokens;
+		final int[] starts;
+		final LexerStateChange[] changes;
+		final int[] changeOffsets;
+
+		TokensVersion(ContextRegion[] tokens, int[] starts,
+				LexerStateChange[] changes, int[] changeOffsets) {
+			this.tokens = tokens;
+			this.starts = starts;
+			this.changes = changes;
+			this.changeOffsets = changeOffsets;
 		}
-	}
 
-	protected synchronized final ITextRegion getLastToken() {
-		return phpTokens.getLast();
-	}
+		boolean isEmpty() {
+			return tokens.length == 0;
+		}
 
-	protected synchronized LexerStateChange getLastChange() {
-		return lexerStateChanges.getLast();
-	}
+		int getEnd(int index) {
+			return starts[index] + tokens[index].getLength();
+		}
 
-	protected synchronized final ListIterator<LexerStateChange> removeOldChanges(
-			int fromOffset, int toOffset) {
-		final ListIterator<LexerStateChange> iterator = (ListIterator<LexerStateChange>) lexerStateChanges
-				.iterator();
+		/**
+		 * Binary searches the tokens
+		 * 
+		 * @param offset
+		 *            - offset inside the tokens range
+		 * @return the index of the last token that starts at or before the
+		 *         given offset
+		 */
+		int findTokenIndex(int offset) {
+			int low = 0;
+			int high = starts.length - 1;
+			while (low < high) {
+				final int mid = (low + high + 1) >>> 1;
+				if (starts[mid] <= offset) {
+					low = mid;
+				} else {
+					high = mid - 1;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * Binary searches the state changes
+		 * 
+		 * @param offset
+		 * @return the index of the first state change that is located after
+		 *         the given offset (or the number of changes if there is no
+		 *         such change)
+		 */
+		int findStateChangeIndexAfter(int offset) {
+			int low = 0;
+			int high = changeOffsets.length;
+			while (low < high) {
+				final int mid = (low + high) >>> 1;
+				if (changeOffsets[mid] <= offset) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
 
-		LexerStateChange element = iterator.next();
-		while (element.getOffset() <= toOffset) {
-			if (element.getOffset() > fromOffset
-					&& element.getOffset() <= toOffset) {
-				iterator.remove();
+		int indexOf(ITextRegion region) {
+			if (region == null || isEmpty()) {
+				return -1;
 			}
-			if (!iterator.hasNext()) {
-				return iterator;
+			final int index = findTokenIndex(region.getStart());
+			return tokens[index] == region ? index : -1;
+		}
+
+		/**
+		 * check for out of bound
+		 * 
+		 * @param offset
+		 * @throws BadLocationException
+		 */
+		void checkBadLocation(int offset) throws BadLocationException {
+			final int end = getEnd(tokens.length - 1);
+			if (offset < 0 || end < offset) {
+				throw new BadLocationException(
+						"offset " + offset + " is out of [0, " + end + "]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			}
-			element = iterator.next();
 		}
+	}
+
+	protected final ITextRegion getLastToken() {
+		final ContextRegion[] tokens = version.tokens;
+		return tokens[tokens.length - 1];
+	}
+
+	private ContextRegion getLastCreatedToken() {
+		return phpTokens.get(phpTokens.size() - 1);
+	}
 
-		return iterator;
+	protected LexerStateChange getLastChange() {
+		return lexerStateChanges.get(lexerStateChanges.size() - 1);
 	}
 }
@@ -15,20 +15,15 @@ import java.util.*;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
-import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.core.*;
-import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
 import org.eclipse.dltk.core.search.IDLTKSearchScope;
 import org.eclipse.dltk.core.search.SearchEngine;
 import org.eclipse.dltk.internal.core.ExternalSourceModule;
 import org.eclipse.dltk.internal.core.ModelManager;
-import org.eclipse.php.internal.core.Logger;
 import org.eclipse.php.internal.core.PHPLanguageToolkit;
 import org.eclipse.php.internal.core.filenetwork.ReferenceTree.Node;
 import org.eclipse.php.internal.core.language.LanguageModelInitializer;
-import org.eclipse.php.internal.core.model.IncludeField;
-import org.eclipse.php.internal.core.model.PhpModelAccess;
 import org.eclipse.php.internal.core.util.*;
 import org.eclipse.php.internal.core.util.PHPSearchEngine.IncludedFileResult;
 import org.eclipse.php.internal.core.util.PHPSearchEngine.IncludedPharFileResult;
@@ -92,8 +87,7 @@ public class FileNetworkUtility {
 
 		Node root = new Node(file);
 
-		internalBuildReferencingFilesTree(root, processedFiles,
-				new HashMap<IModelElement, IField[]>(), monitor);
+		internalBuildReferencingFilesTree(root, processedFiles, monitor);
 
 		return new ReferenceTree(root);
 	}
@@ -144,8 +138,7 @@ public class FileNetworkUtility {
 	}
 
 	private static void internalBuildReferencingFilesTree(Node root,
-			Set<ISourceModule> processedFiles,
-			Map<IModelElement, IField[]> includesCache, IProgressMonitor monitor) {
+			Set<ISourceModule> processedFiles, IProgressMonitor monitor) {
 
 		if (monitor != null && monitor.isCanceled()) {
 			return;
@@ -160,38 +153,10 @@ public class FileNetworkUtility {
 		IModelElement parentElement = (file instanceof ExternalSourceModule) ? ((ExternalSourceModule) file)
 				.getProjectFragment() : file.getScriptProject();
 
-		IField[] includes = includesCache.get(parentElement);
-		if (includes == null) {
-			includes = PhpModelAccess.getDefault().findIncludes(null,
-					MatchRule.PREFIX, scope, monitor);
-			includesCache.put(parentElement, includes);
-		}
-
-		for (IField include : includes) {
-			String filePath = ((IncludeField) include).getFilePath();
-			String lastSegment = filePath;
-			int i = Math.max(filePath.lastIndexOf('/'),
-					filePath.lastIndexOf('\\'));
-			if (i > 0) {
-				lastSegment = lastSegment.substring(i + 1);
-			}
-			if (!lastSegment.equals(file.getElementName())) {
-				continue;
-			}
-
-			// Candidate that includes the original source module:
-			ISourceModule referencingFile = include.getSourceModule();
-
-			// Try to resolve include:
-			ISourceModule testFile = findSourceModule(referencingFile, filePath);
-
-			// If this is the correct include (that means that included file is
-			// the original file):
-			if (file.equals(testFile)
-					&& !processedFiles.contains(referencingFile)) {
-				processedFiles.add(referencingFile);
-				Node node = new Node(referencingFile);
-				root.addChild(node);
+		for (ISourceModule referencingFile : IncludeGraph.getDefault()
+				.getIncludedBy(file, scope, parentElement, monitor)) {
+			if (processedFiles.add(referencingFile)) {
+				root.addChild(new Node(referencingFile));
 			}
 		}
 
@@ -199,7 +164,7 @@ public class FileNetworkUtility {
 		if (children != null) {
 			for (Node child : children) {
 				internalBuildReferencingFilesTree(child, processedFiles,
-						includesCache, monitor);
+						monitor);
 			}
 		}
 	}
@@ -241,35 +206,27 @@ public class FileNetworkUtility {
 		Node root;
 		if (cachedTrees == null || (root = cachedTrees.get(file)) == null) {
 			root = new Node(file);
-			try {
-				internalBuildReferencedFilesTree(root, processedFiles,
-						cachedTrees, monitor);
-			} catch (CoreException e) {
-				Logger.logException(e);
-			}
+			internalBuildReferencedFilesTree(root, processedFiles,
+					cachedTrees, monitor);
 		}
 		return new ReferenceTree(root);
 	}
 
 	private static void internalBuildReferencedFilesTree(final Node root,
 			Set<ISourceModule> processedFiles,
-			Map<ISourceModule, Node> cachedTrees, IProgressMonitor monitor)
-			throws CoreException {
-
-		ISourceModule sourceModule = root.getFile();
-		IField[] includes = PhpModelAccess.getDefault().findIncludes(null,
-				MatchRule.PREFIX, SearchEngine.createSearchScope(sourceModule),
-				monitor);
+			Map<ISourceModule, Node> cachedTrees, IProgressMonitor monitor) {
 
-		if (includes == null) {
+		if (monitor != null && monitor.isCanceled()) {
 			return;
 		}
 
+		ISourceModule sourceModule = root.getFile();
+		Set<ISourceModule> includes = IncludeGraph.getDefault().getIncludes(
+				sourceModule, monitor);
+
 		List<Node> nodesToBuild = new LinkedList<Node>();
-		for (IField include : includes) {
-			String filePath = ((IncludeField) include).getFilePath();
-			ISourceModule testFile = findSourceModule(sourceModule, filePath);
-			if (testFile != null && !processedFiles.contains(testFile)) {
+		for (ISourceModule testFile : includes) {
+			if (!processedFiles.contains(testFile)) {
 				processedFiles.add(testFile);
 
 				if (cachedTrees != null) {
@@ -0,0 +1,443 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.filenetwork;
+
+import java.util.*;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.core.*;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.eclipse.dltk.core.search.IDLTKSearchScope;
+import org.eclipse.dltk.core.search.SearchEngine;
+import org.eclipse.php.internal.core.includepath.IIncludepathListener;
+import org.eclipse.php.internal.core.includepath.IncludePathManager;
+import org.eclipse.php.internal.core.model.IncludeField;
+import org.eclipse.php.internal.core.model.PhpModelAccess;
+
+/**
+ * Memoized graph of include/require dependencies between source modules. Edges
+ * of a file are resolved once, when they are requested for the first time,
+ * and they are kept until the file changes. Reverse edges are maintained
+ * together with the forward ones, and sets of files reachable from a file are
+ * cached, so that a reachability query doesn't trigger any search.
+ * <p>
+ * When a file changes only its own edges and the reachable sets that depend on
+ * it are dropped. When a file is added or removed, the edges of the files that
+ * include a file of the same name are dropped as well, since these includes
+ * may be resolved differently now. Changing the build path or the include
+ * path may change resolution of any include statement, so the whole graph is
+ * cleared in this case.
+ * </p>
+ */
+public class IncludeGraph {
+
+	private static IncludeGraph instance;
+
+	/** file -> files included by it */
+	private final Map<ISourceModule, Set<ISourceModule>> includes = new HashMap<ISourceModule, Set<ISourceModule>>();
+
+	/** file -> names of the files included by it (lower case) */
+	private final Map<ISourceModule, Set<String>> includeNames = new HashMap<ISourceModule, Set<String>>();
+
+	/** file -> files that include it */
+	private final Map<ISourceModule, Set<ISourceModule>> includedBy = new HashMap<ISourceModule, Set<ISourceModule>>();
+
+	/** file -> all files reachable from it (including itself) */
+	private final Map<ISourceModule, Set<ISourceModule>> reachable = new HashMap<ISourceModule, Set<ISourceModule>>();
+
+	/**
+	 * Containers (script projects or external fragments) for which edges of
+	 * all their files are known
+	 */
+	private final Set<IModelElement> completeContainers = new HashSet<IModelElement>();
+
+	/**
+	 * Changed files of the complete containers, whose edges must be resolved
+	 * again for reverse queries
+	 */
+	private final Set<ISourceModule> changedFiles = new HashSet<ISourceModule>();
+
+	/**
+	 * Number of changed files above which it is cheaper to load the reverse
+	 * edges again with a single search
+	 */
+	private static final int MAX_CHANGED_FILES = 100;
+
+	/** Incremented on every change to drop results computed concurrently */
+	private int modCount;
+
+	private final IElementChangedListener listener = new IElementChangedListener() {
+		public void elementChanged(ElementChangedEvent event) {
+			processDelta(event.getDelta());
+		}
+	};
+
+	private final IIncludepathListener includepathListener = new IIncludepathListener() {
+		public void refresh(IProject project) {
+			clear();
+		}
+	};
+
+	private IncludeGraph() {
+		DLTKCore.addElementChangedListener(listener,
+				ElementChangedEvent.POST_CHANGE);
+		IncludePathManager.getInstance().registerIncludepathListener(
+				includepathListener);
+	}
+
+	public static synchronized IncludeGraph getDefault() {
+		if (instance == null) {
+			instance = new IncludeGraph();
+		}
+		return instance;
+	}
+
+	/**
+	 * Unregisters the model listener and releases the graph
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			DLTKCore.removeElementChangedListener(instance.listener);
+			IncludePathManager.getInstance().unregisterIncludepathListener(
+					instance.includepathListener);
+			instance.clear();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Returns files that are directly included by the given file
+	 * 
+	 * @param file
+	 *            Source module
+	 * @param monitor
+	 *            Progress monitor
+	 * @return included files
+	 */
+	public Set<ISourceModule> getIncludes(ISourceModule file,
+			IProgressMonitor monitor) {
+		int stamp;
+		synchronized (this) {
+			Set<ISourceModule> result = includes.get(file);
+			if (result != null) {
+				return result;
+			}
+			stamp = modCount;
+		}
+		Edges edges = resolveIncludes(file, monitor);
+		Set<ISourceModule> result = Collections.unmodifiableSet(edges.files);
+		synchronized (this) {
+			if (stamp == modCount) {
+				setIncludes(file, result, edges.names);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns files that directly include the given file. Includes of all
+	 * files in the search scope of the given file are resolved when this
+	 * method is called for the first time.
+	 * 
+	 * @param file
+	 *            Source module
+	 * @param scope
+	 *            Scope of the files that may include the given one
+	 * @param container
+	 *            Script project or external project fragment that owns the
+	 *            scope
+	 * @param monitor
+	 *            Progress monitor
+	 * @return including files
+	 */
+	public Set<ISourceModule> getIncludedBy(ISourceModule file,
+			IDLTKSearchScope scope, IModelElement container,
+			IProgressMonitor monitor) {
+		boolean complete;
+		ISourceModule[] changed;
+		synchronized (this) {
+			complete = completeContainers.contains(container);
+			changed = changedFiles.toArray(new ISourceModule[changedFiles
+					.size()]);
+		}
+		if (!complete) {
+			loadContainer(scope, container, monitor);
+		}
+		for (ISourceModule changedFile : changed) {
+			if (changedFile.exists()) {
+				getIncludes(changedFile, monitor);
+			}
+		}
+		synchronized (this) {
+			Set<ISourceModule> result = includedBy.get(file);
+			if (result == null) {
+				return Collections.emptySet();
+			}
+			return new LinkedHashSet<ISourceModule>(result);
+		}
+	}
+
+	/**
+	 * Returns all files that are reachable from the given file through include
+	 * statements, including the file itself
+	 * 
+	 * @param file
+	 *            Source module
+	 * @param monitor
+	 *            Progress monitor
+	 * @return unmodifiable set of files
+	 */
+	public Set<ISourceModule> getReachableFiles(ISourceModule file,
+			IProgressMonitor monitor) {
+		int stamp;
+		synchronized (this) {
+			Set<ISourceModule> result = reachable.get(file);
+			if (result != null) {
+				return result;
+			}
+			stamp = modCount;
+		}
+		Set<ISourceModule> result = new HashSet<ISourceModule>();
+		LinkedList<ISourceModule> queue = new LinkedList<ISourceModule>();
+		result.add(file);
+		queue.add(file);
+		while (!queue.isEmpty()) {
+			if (monitor != null && monitor.isCanceled()) {
+				return Collections.unmodifiableSet(result);
+			}
+			for (ISourceModule include : getIncludes(queue.removeFirst(),
+					monitor)) {
+				if (result.add(include)) {
+					queue.add(include);
+				}
+			}
+		}
+		result = Collections.unmodifiableSet(result);
+		synchronized (this) {
+			if (stamp == modCount) {
+				reachable.put(file, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Clears the whole graph
+	 */
+	public synchronized void clear() {
+		++modCount;
+		includes.clear();
+		includeNames.clear();
+		includedBy.clear();
+		reachable.clear();
+		completeContainers.clear();
+		changedFiles.clear();
+	}
+
+	private void loadContainer(IDLTKSearchScope scope,
+			IModelElement container, IProgressMonitor monitor) {
+		int stamp;
+		synchronized (this) {
+			stamp = modCount;
+		}
+		Map<ISourceModule, Edges> edges = new HashMap<ISourceModule, Edges>();
+		IField[] fields = PhpModelAccess.getDefault().findIncludes(null,
+				MatchRule.PREFIX, scope, monitor);
+		for (IField field : fields) {
+			ISourceModule includingFile = field.getSourceModule();
+			Edges fileEdges = edges.get(includingFile);
+			if (fileEdges == null) {
+				fileEdges = new Edges();
+				edges.put(includingFile, fileEdges);
+			}
+			fileEdges.add(includingFile, ((IncludeField) field).getFilePath());
+		}
+		synchronized (this) {
+			if (stamp != modCount) {
+				return;
+			}
+			for (Map.Entry<ISourceModule, Edges> entry : edges.entrySet()) {
+				if (!includes.containsKey(entry.getKey())) {
+					setIncludes(entry.getKey(),
+							Collections.unmodifiableSet(entry.getValue().files),
+							entry.getValue().names);
+				}
+			}
+			completeContainers.add(container);
+		}
+	}
+
+	private static Edges resolveIncludes(ISourceModule file,
+			IProgressMonitor monitor) {
+		IField[] fields = PhpModelAccess.getDefault().findIncludes(null,
+				MatchRule.PREFIX, SearchEngine.createSearchScope(file),
+				monitor);
+		Edges result = new Edges();
+		for (IField field : fields) {
+			result.add(file, ((IncludeField) field).getFilePath());
+		}
+		return result;
+	}
+
+	/**
+	 * Include statements of a file
+	 */
+	private static class Edges {
+		/** resolved included files */
+		final Set<ISourceModule> files = new LinkedHashSet<ISourceModule>();
+		/** names of all included files, resolved or not */
+		final Set<String> names = new HashSet<String>();
+
+		void add(ISourceModule file, String path) {
+			ISourceModule includedFile = FileNetworkUtility.findSourceModule(
+					file, path);
+			if (includedFile != null && !includedFile.equals(file)) {
+				files.add(includedFile);
+			}
+			names.add(getFileName(path));
+		}
+	}
+
+	private static String getFileName(String path) {
+		int i = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+		return path.substring(i + 1).toLowerCase();
+	}
+
+	/**
+	 * Stores forward edges of the file, and updates reverse edges. Must be
+	 * called while holding the lock.
+	 */
+	private void setIncludes(ISourceModule file,
+			Set<ISourceModule> fileIncludes, Set<String> names) {
+		removeIncludes(file);
+		changedFiles.remove(file);
+		includes.put(file, fileIncludes);
+		includeNames.put(file, names);
+		for (ISourceModule include : fileIncludes) {
+			Set<ISourceModule> reverse = includedBy.get(include);
+			if (reverse == null) {
+				reverse = new LinkedHashSet<ISourceModule>();
+				includedBy.put(include, reverse);
+			}
+			reverse.add(file);
+		}
+	}
+
+	private void removeIncludes(ISourceModule file) {
+		includeNames.remove(file);
+		Set<ISourceModule> fileIncludes = includes.remove(file);
+		if (fileIncludes == null) {
+			return;
+		}
+		for (ISourceModule include : fileIncludes) {
+			Set<ISourceModule> reverse = includedBy.get(include);
+			if (reverse != null) {
+				reverse.remove(file);
+				if (reverse.isEmpty()) {
+					includedBy.remove(include);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drops edges of the changed file, and all reachable sets that contain it
+	 */
+	private synchronized void fileChanged(ISourceModule file) {
+		++modCount;
+		removeIncludes(file);
+		Iterator<Set<ISourceModule>> i = reachable.values().iterator();
+		while (i.hasNext()) {
+			if (i.next().contains(file)) {
+				i.remove();
+			}
+		}
+		if (!completeContainers.isEmpty()) {
+			changedFiles.add(file);
+			if (changedFiles.size() > MAX_CHANGED_FILES) {
+				completeContainers.clear();
+				changedFiles.clear();
+			}
+		}
+	}
+
+	/**
+	 * Drops edges of the added or removed file, and of all files that include
+	 * a file with the same name
+	 */
+	private synchronized void fileAddedOrRemoved(ISourceModule file,
+			boolean removed) {
+		final String name = file.getElementName().toLowerCase();
+		final List<ISourceModule> affected = new ArrayList<ISourceModule>();
+		for (Map.Entry<ISourceModule, Set<String>> entry : includeNames
+				.entrySet()) {
+			if (entry.getValue().contains(name)) {
+				affected.add(entry.getKey());
+			}
+		}
+		fileChanged(file);
+		for (ISourceModule includingFile : affected) {
+			fileChanged(includingFile);
+		}
+		if (removed) {
+			changedFiles.remove(file);
+			includedBy.remove(file);
+		}
+	}
+
+	private void processDelta(IModelElementDelta delta) {
+		IModelElement element = delta.getElement();
+		switch (element.getElementType()) {
+		case IModelElement.SCRIPT_MODEL:
+			processChildren(delta);
+			break;
+
+		case IModelElement.SCRIPT_PROJECT:
+			if (delta.getKind() != IModelElementDelta.CHANGED
+					|| (delta.getFlags() & IModelElementDelta.F_BUILDPATH_CHANGED) != 0) {
+				clear();
+			} else {
+				processChildren(delta);
+			}
+			break;
+
+		case IModelElement.PROJECT_FRAGMENT:
+		case IModelElement.SCRIPT_FOLDER:
+			if (delta.getKind() != IModelElementDelta.CHANGED) {
+				clear();
+			} else {
+				processChildren(delta);
+			}
+			break;
+
+		case IModelElement.SOURCE_MODULE:
+			if (delta.getKind() != IModelElementDelta.CHANGED) {
+				// include statements may be resolved differently now
+				fileAddedOrRemoved((ISourceModule) element,
+						delta.getKind() == IModelElementDelta.REMOVED);
+			} else if ((delta.getFlags() & (IModelElementDelta.F_CONTENT | IModelElementDelta.F_CHILDREN)) != 0) {
+				fileChanged((ISourceModule) element);
+			}
+			break;
+
+		default:
+			break;
+		}
+	}
+
+	private void processChildren(IModelElementDelta delta) {
+		for (IModelElementDelta child : delta.getAffectedChildren()) {
+			processDelta(child);
+		}
+	}
+}
@@ -11,9 +11,7 @@
  *******************************************************************************/
 package org.eclipse.php.internal.core.filenetwork;
 
-import java.util.Collection;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.*;
 
 import org.eclipse.dltk.core.IFileHierarchyInfo;
 import org.eclipse.dltk.core.ISourceModule;
@@ -26,6 +24,7 @@ public class ReferenceTree implements IFileHierarchyInfo {
 
 	final private Node root;
 	final private boolean isLanguageModel;
+	private volatile Set<ISourceModule> files;
 
 	public ReferenceTree(Node root) {
 		assert root != null;
@@ -53,7 +52,31 @@ public class ReferenceTree implements IFileHierarchyInfo {
 		if (isLanguageModel) {
 			return true;
 		}
-		return root.find(sourceModule);
+		if (sourceModule == null) {
+			return false;
+		}
+		return getFiles().contains(sourceModule);
+	}
+
+	/**
+	 * Returns all files of this tree. The set is built on the first call, so
+	 * that subsequent lookups don't traverse the tree.
+	 */
+	private Set<ISourceModule> getFiles() {
+		Set<ISourceModule> result = files;
+		if (result == null) {
+			result = new HashSet<ISourceModule>();
+			LinkedList<Node> nodesQ = new LinkedList<Node>();
+			nodesQ.add(root);
+			while (!nodesQ.isEmpty()) {
+				Node node = nodesQ.removeFirst();
+				if (result.add(node.getFile()) && node.getChildren() != null) {
+					nodesQ.addAll(node.getChildren());
+				}
+			}
+			files = result;
+		}
+		return result;
 	}
 
 	public static class Node {
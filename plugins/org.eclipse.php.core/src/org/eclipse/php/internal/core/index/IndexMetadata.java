@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.index;
+
+import java.util.*;
+import java.util.Map.Entry;
+
+/**
+ * Encoding of method parameters and PHPDoc info that are stored in the index
+ * together with declarations. Each value is written as
+ * <code>&lt;length&gt;:&lt;value&gt;</code> (or <code>-</code> for
+ * <code>null</code>), so values may contain any character and reading them
+ * requires neither splitting nor regular expressions. Encoded strings start
+ * with {@link #VERSION_PREFIX}; strings that don't were written by previous
+ * versions using delimiters, and they are decoded in that format.
+ */
+public class IndexMetadata {
+
+	public static final String VERSION_PREFIX = "!1"; //$NON-NLS-1$
+
+	private static final char NULL_MARK = '-';
+	private static final char LENGTH_END = ':';
+
+	/** Delimiters of the legacy format */
+	private static final char LEGACY_LIST_SEPARATOR = ',';
+	private static final char LEGACY_PARAMETER_SEPARATOR = '|';
+	private static final char LEGACY_DOC_SEPARATOR = ';';
+	private static final char LEGACY_DOC_VALUE_SEPARATOR = ':';
+
+	/**
+	 * Writes values in the versioned format
+	 */
+	public static class Writer {
+
+		private final StringBuilder buf = new StringBuilder(VERSION_PREFIX);
+
+		public Writer write(String value) {
+			if (value == null) {
+				buf.append(NULL_MARK);
+			} else {
+				buf.append(value.length()).append(LENGTH_END).append(value);
+			}
+			return this;
+		}
+
+		public boolean isEmpty() {
+			return buf.length() == VERSION_PREFIX.length();
+		}
+
+		public String toString() {
+			return buf.toString();
+		}
+	}
+
+	/**
+	 * Reads values written by {@link Writer}
+	 */
+	private static class Reader {
+
+		private final String data;
+		private int pos;
+
+		Reader(String data) {
+			this.data = data;
+			this.pos = VERSION_PREFIX.length();
+		}
+
+		boolean hasNext() {
+			return pos < data.length();
+		}
+
+		/**
+		 * Reads the length of the next value, and moves to its first
+		 * character
+		 * 
+		 * @return length, or <code>-1</code> if the value is
+		 *         <code>null</code>
+		 */
+		private int readLength() {
+			if (data.charAt(pos) == NULL_MARK) {
+				++pos;
+				return -1;
+			}
+			int length = 0;
+			char c;
+			while ((c = data.charAt(pos++)) != LENGTH_END) {
+				length = length * 10 + (c - '0');
+			}
+			return length;
+		}
+
+		String read() {
+			int length = readLength();
+			if (length == -1) {
+				return null;
+			}
+			pos += length;
+			return data.substring(pos - length, pos);
+		}
+
+		void skip() {
+			int length = readLength();
+			if (length > 0) {
+				pos += length;
+			}
+		}
+
+		boolean nextEquals(String value) {
+			int start = pos;
+			int length = readLength();
+			boolean result = length == -1 ? value == null : value != null
+					&& value.length() == length
+					&& data.startsWith(value, pos);
+			pos = start;
+			return result;
+		}
+	}
+
+	private static boolean isVersioned(String data) {
+		return data.startsWith(VERSION_PREFIX);
+	}
+
+	/**
+	 * Encodes method parameters
+	 * 
+	 * @param parameters
+	 *            List of parameters, each one is an array of type, name and
+	 *            default value (type and default value may be
+	 *            <code>null</code>)
+	 * @return encoded parameters, or <code>null</code> if the list is empty
+	 */
+	public static String encodeParameters(List<String[]> parameters) {
+		Writer writer = new Writer();
+		for (String[] parameter : parameters) {
+			writer.write(parameter[0]).write(parameter[1]).write(parameter[2]);
+		}
+		return writer.isEmpty() ? null : writer.toString();
+	}
+
+	/**
+	 * Decodes method parameters
+	 * 
+	 * @param metadata
+	 *            Encoded parameters
+	 * @return list of parameters, each one is an array of type, name and
+	 *         default value
+	 */
+	public static List<String[]> decodeParameters(String metadata) {
+		if (metadata == null) {
+			return Collections.emptyList();
+		}
+		List<String[]> result = new ArrayList<String[]>();
+		if (isVersioned(metadata)) {
+			Reader reader = new Reader(metadata);
+			while (reader.hasNext()) {
+				result.add(new String[] { reader.read(), reader.read(),
+						reader.read() });
+			}
+			return result;
+		}
+
+		// legacy format: type|name|default,type|name|default
+		for (String parameter : split(metadata, LEGACY_LIST_SEPARATOR)) {
+			String[] values = split(parameter, LEGACY_PARAMETER_SEPARATOR);
+			if (values.length == 1) {
+				result.add(new String[] { null, values[0], null });
+			} else {
+				String type = values[0];
+				if (PhpIndexingVisitor.NULL_VALUE.equals(type)) {
+					type = null;
+				}
+				String defaultValue = values.length > 2 ? values[2] : null;
+				if (PhpIndexingVisitor.NULL_VALUE.equals(defaultValue)) {
+					defaultValue = null;
+				}
+				result.add(new String[] { type, values[1], defaultValue });
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Encodes PHPDoc info
+	 * 
+	 * @param info
+	 *            Map of PHPDoc info keys to values (values may be
+	 *            <code>null</code>)
+	 * @return encoded info, or <code>null</code> if the map is empty
+	 */
+	public static String encodeDocInfo(Map<String, String> info) {
+		if (info == null) {
+			return null;
+		}
+		Writer writer = new Writer();
+		for (Entry<String, String> e : info.entrySet()) {
+			writer.write(e.getKey()).write(e.getValue());
+		}
+		return writer.isEmpty() ? null : writer.toString();
+	}
+
+	/**
+	 * Decodes all PHPDoc info into a map. Prefer {@link #hasDocInfo(String,
+	 * String)} and {@link #getDocInfo(String, String)} when only one key is
+	 * needed.
+	 * 
+	 * @param doc
+	 *            Encoded PHPDoc info
+	 * @return map of PHPDoc info, or <code>null</code> if there's no info
+	 */
+	public static Map<String, String> decodeDocInfo(String doc) {
+		if (doc == null) {
+			return null;
+		}
+		Map<String, String> info = new HashMap<String, String>();
+		if (isVersioned(doc)) {
+			Reader reader = new Reader(doc);
+			while (reader.hasNext()) {
+				info.put(reader.read(), reader.read());
+			}
+			return info;
+		}
+		for (String key : split(doc, LEGACY_DOC_SEPARATOR)) {
+			if (key.length() == 0) {
+				continue;
+			}
+			String value = null;
+			int i = key.indexOf(LEGACY_DOC_VALUE_SEPARATOR);
+			if (i != -1) {
+				value = key.substring(i + 1);
+				key = key.substring(0, i);
+			}
+			info.put(key, value);
+		}
+		return info;
+	}
+
+	/**
+	 * Returns a single value of PHPDoc info without decoding the other ones
+	 * 
+	 * @param doc
+	 *            Encoded PHPDoc info
+	 * @param key
+	 *            Info key
+	 * @return value, or <code>null</code> if there's no such key or its value
+	 *         is <code>null</code>
+	 */
+	public static String getDocInfo(String doc, String key) {
+		if (doc == null) {
+			return null;
+		}
+		if (isVersioned(doc)) {
+			Reader reader = new Reader(doc);
+			while (reader.hasNext()) {
+				if (reader.nextEquals(key)) {
+					reader.skip();
+					return reader.read();
+				}
+				reader.skip();
+				reader.skip();
+			}
+			return null;
+		}
+		return decodeDocInfo(doc).get(key);
+	}
+
+	/**
+	 * Returns whether the PHPDoc info contains the given key
+	 * 
+	 * @param doc
+	 *            Encoded PHPDoc info
+	 * @param key
+	 *            Info key
+	 */
+	public static boolean hasDocInfo(String doc, String key) {
+		if (doc == null) {
+			return false;
+		}
+		if (isVersioned(doc)) {
+			Reader reader = new Reader(doc);
+			while (reader.hasNext()) {
+				if (reader.nextEquals(key)) {
+					return true;
+				}
+				reader.skip();
+				reader.skip();
+			}
+			return false;
+		}
+		return decodeDocInfo(doc).containsKey(key);
+	}
+
+	/**
+	 * Splits the string by the given character, without regular expressions
+	 */
+	public static String[] split(String str, char separator) {
+		List<String> result = new ArrayList<String>();
+		int start = 0;
+		int end;
+		while ((end = str.indexOf(separator, start)) != -1) {
+			result.add(str.substring(start, end));
+			start = end + 1;
+		}
+		result.add(str.substring(start));
+		return result.toArray(new String[result.size()]);
+	}
+}
@@ -0,0 +1,353 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.index;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.compiler.env.IModuleSource;
+import org.eclipse.dltk.core.*;
+import org.eclipse.dltk.core.index2.IIndexingRequestor;
+import org.eclipse.php.internal.core.compiler.ast.parser.PHPSourceParserFactory;
+
+/**
+ * Parses and visits source modules on a bounded pool of worker threads ahead
+ * of the indexer.
+ * <p>
+ * The indexer asks for modules one by one from a single thread. Once it asks
+ * for several modules of a script folder in the order of the folder, as it
+ * does when it indexes the whole folder (e.g. on a full build), the modules
+ * that follow are scheduled on the workers, which parse each module and
+ * record everything the {@link PhpIndexingVisitor} reports. Incremental
+ * reindexing of single modules doesn't start any speculative work. When the
+ * indexer then asks for a module that was already processed, the recorded
+ * declarations and references are replayed to its requestor, so all writes
+ * still go through the single indexer thread. Modules that weren't
+ * prefetched, that changed since, or whose processing hasn't started yet are
+ * indexed directly. Results that the indexer passed over, because it skipped
+ * them or moved to another folder, are dropped.
+ * </p>
+ * <p>
+ * Modules whose contents didn't change since they were indexed last time are
+ * not parsed at all, see {@link IndexingResultCache}. Those whose file didn't
+ * change either are not given to the workers.
+ * </p>
+ */
+public class IndexingPipeline {
+
+	private static final int THREADS = Math.max(1, Runtime.getRuntime()
+			.availableProcessors() - 1);
+
+	/** Maximum number of modules that are processed or waiting for replay */
+	private static final int MAX_PENDING = THREADS * 8;
+
+	/**
+	 * Number of modules of a folder requested in the order of the folder that
+	 * starts prefetch
+	 */
+	private static final int SEQUENCE_SIZE = 3;
+
+	private static IndexingPipeline instance;
+
+	private final ThreadPoolExecutor executor;
+
+	// following fields are guarded by this
+	private final Map<ISourceModule, PendingModule> pending = new HashMap<ISourceModule, PendingModule>();
+	private final LinkedHashSet<ISourceModule> waiting = new LinkedHashSet<ISourceModule>();
+	private IModelElement lastFolder;
+	private ISourceModule lastModule;
+	/** positions of the modules of the last folder, once it is traversed */
+	private Map<ISourceModule, Integer> folderPositions;
+	private ISourceModule[] folderModules;
+	private int lastPosition;
+	private int sequentialRequests;
+
+	private static class PendingModule {
+		final long stamp;
+		final Future<RecordingIndexingRequestor> result;
+
+		PendingModule(long stamp, Future<RecordingIndexingRequestor> result) {
+			this.stamp = stamp;
+			this.result = result;
+		}
+	}
+
+	private IndexingPipeline() {
+		executor = new ThreadPoolExecutor(THREADS, THREADS, 30,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "PHP Indexing Worker " //$NON-NLS-1$
+								+ count.incrementAndGet());
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	public static synchronized IndexingPipeline getDefault() {
+		if (instance == null) {
+			instance = new IndexingPipeline();
+		}
+		return instance;
+	}
+
+	/**
+	 * Stops the worker threads
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			instance.executor.shutdownNow();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Reports declarations and references of the given module to the
+	 * requestor, using results of the workers if they are available
+	 * 
+	 * @param module
+	 *            Source module
+	 * @param requestor
+	 *            Indexing requestor
+	 */
+	public void index(ISourceModule module, IIndexingRequestor requestor) {
+		PendingModule pendingModule;
+		synchronized (this) {
+			pendingModule = pending.remove(module);
+			waiting.remove(module);
+			scheduleSiblings(module);
+			submitWaiting();
+		}
+
+		if (pendingModule != null) {
+			// if the worker didn't start yet, it's faster to do it here
+			if (pendingModule.stamp == getStamp(module)
+					&& !pendingModule.result.cancel(false)) {
+				try {
+					RecordingIndexingRequestor recorded = pendingModule.result.get();
+					if (recorded != null) {
+						recorded.replay(requestor);
+						return;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					if (DLTKCore.DEBUG) {
+						e.printStackTrace();
+					}
+				} catch (CancellationException e) {
+					// index directly
+				}
+			} else {
+				pendingModule.result.cancel(false);
+			}
+		}
+
+		IndexingResultCache resultCache = IndexingResultCache.getDefault();
+		IndexingResultCache.Key key = resultCache.getKey(module);
+		if (key != null) {
+			List<Object> infos = resultCache.get(module, key);
+			if (infos != null) {
+				new RecordingIndexingRequestor(infos, null).replay(requestor);
+				return;
+			}
+			RecordingIndexingRequestor recorder = new RecordingIndexingRequestor(
+					requestor);
+			if (indexDirectly(module, recorder)) {
+				resultCache.put(module, key, recorder.getInfos());
+			}
+		} else {
+			indexDirectly(module, requestor);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the module was indexed completely
+	 */
+	private static boolean indexDirectly(ISourceModule module,
+			IIndexingRequestor requestor) {
+		ModuleDeclaration moduleDeclaration = SourceParserUtil
+				.getModuleDeclaration(module);
+		if (moduleDeclaration != null) {
+			try {
+				moduleDeclaration.traverse(new PhpIndexingVisitor(requestor,
+						module));
+				return true;
+			} catch (Exception e) {
+				if (DLTKCore.DEBUG) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the declarations and references of the module from the result
+	 * cache, or parses the module and records them
+	 */
+	static RecordingIndexingRequestor process(ISourceModule module)
+			throws Exception {
+		IndexingResultCache resultCache = IndexingResultCache.getDefault();
+		IndexingResultCache.Key key = resultCache.getKey(module);
+		if (key != null) {
+			List<Object> infos = resultCache.get(module, key);
+			if (infos != null) {
+				return new RecordingIndexingRequestor(infos, null);
+			}
+		}
+		ModuleDeclaration moduleDeclaration = (ModuleDeclaration) new PHPSourceParserFactory()
+				.parse((IModuleSource) module, null);
+		if (moduleDeclaration == null) {
+			return null;
+		}
+		RecordingIndexingRequestor requestor = new RecordingIndexingRequestor();
+		moduleDeclaration.traverse(new PhpIndexingVisitor(requestor, module));
+		if (key != null) {
+			resultCache.put(module, key, requestor.getInfos());
+		}
+		return requestor;
+	}
+
+	private static long getStamp(ISourceModule module) {
+		IResource resource = module.getResource();
+		return resource != null ? resource.getModificationStamp()
+				: IResource.NULL_STAMP;
+	}
+
+	private void scheduleSiblings(ISourceModule module) {
+		IModelElement folder = module.getParent();
+		ISourceModule previousModule = lastModule;
+		lastModule = module;
+		if (folder == null || !folder.equals(lastFolder)) {
+			// the indexer left the previous folder
+			evict(Integer.MAX_VALUE);
+			lastFolder = folder;
+			folderPositions = null;
+			folderModules = null;
+			sequentialRequests = 1;
+			return;
+		}
+		if (folderPositions == null) {
+			if (!(folder instanceof IScriptFolder)
+					|| !initFolder((IScriptFolder) folder, previousModule)) {
+				return;
+			}
+		}
+		Integer position = folderPositions.get(module);
+		if (position == null) {
+			sequentialRequests = 1;
+			return;
+		}
+		// results of the modules before this one won't be requested anymore
+		evict(position.intValue());
+		if (position.intValue() == lastPosition + 1) {
+			sequentialRequests++;
+		} else {
+			sequentialRequests = 1;
+		}
+		lastPosition = position.intValue();
+		if (sequentialRequests == SEQUENCE_SIZE) {
+			for (int i = lastPosition + 1; i < folderModules.length; i++) {
+				if (!pending.containsKey(folderModules[i])) {
+					waiting.add(folderModules[i]);
+				}
+			}
+		}
+	}
+
+	private boolean initFolder(IScriptFolder folder,
+			ISourceModule previousModule) {
+		try {
+			folderModules = folder.getSourceModules();
+		} catch (ModelException e) {
+			if (DLTKCore.DEBUG) {
+				e.printStackTrace();
+			}
+			lastFolder = null;
+			return false;
+		}
+		folderPositions = new HashMap<ISourceModule, Integer>();
+		for (int i = 0; i < folderModules.length; i++) {
+			folderPositions.put(folderModules[i], Integer.valueOf(i));
+		}
+		Integer previousPosition = folderPositions.get(previousModule);
+		lastPosition = previousPosition != null ? previousPosition.intValue()
+				: -2;
+		return true;
+	}
+
+	/**
+	 * Drops the results of the modules of the last folder up to the given
+	 * position (inclusive)
+	 */
+	private void evict(int position) {
+		Iterator<Map.Entry<ISourceModule, PendingModule>> i = pending
+				.entrySet().iterator();
+		while (i.hasNext()) {
+			Map.Entry<ISourceModule, PendingModule> entry = i.next();
+			if (isBefore(entry.getKey(), position)) {
+				entry.getValue().result.cancel(false);
+				i.remove();
+			}
+		}
+		Iterator<ISourceModule> j = waiting.iterator();
+		while (j.hasNext()) {
+			if (isBefore(j.next(), position)) {
+				j.remove();
+			}
+		}
+	}
+
+	private boolean isBefore(ISourceModule module, int position) {
+		if (position == Integer.MAX_VALUE || folderPositions == null) {
+			return true;
+		}
+		Integer modulePosition = folderPositions.get(module);
+		return modulePosition == null || modulePosition.intValue() <= position;
+	}
+
+	private void submitWaiting() {
+		IndexingResultCache resultCache = IndexingResultCache.getDefault();
+		Iterator<ISourceModule> i = waiting.iterator();
+		while (pending.size() < MAX_PENDING && i.hasNext()) {
+			final ISourceModule module = i.next();
+			i.remove();
+			IndexingResultCache.Key key = resultCache.getKey(module);
+			if (key != null && resultCache.isCached(module, key)) {
+				// replayed from the cache when it's requested
+				continue;
+			}
+			Future<RecordingIndexingRequestor> result;
+			try {
+				result = executor.submit(new Callable<RecordingIndexingRequestor>() {
+					public RecordingIndexingRequestor call() throws Exception {
+						return process(module);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// shut down
+				waiting.clear();
+				return;
+			}
+			pending.put(module, new PendingModule(getStamp(module), result));
+		}
+	}
+}
@@ -0,0 +1,561 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.index;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.dltk.core.*;
+import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
+import org.eclipse.dltk.core.environment.IFileHandle;
+import org.eclipse.dltk.core.index2.IIndexingRequestor.DeclarationInfo;
+import org.eclipse.dltk.core.index2.IIndexingRequestor.ReferenceInfo;
+import org.eclipse.php.internal.core.Logger;
+import org.eclipse.php.internal.core.PHPCorePlugin;
+import org.eclipse.php.internal.core.PHPVersion;
+import org.eclipse.php.internal.core.language.LanguageModelInitializer;
+import org.eclipse.php.internal.core.project.ProjectOptions;
+
+/**
+ * Persistent cache of declarations and references reported by
+ * {@link PhpIndexingVisitor}, so that modules that didn't change since they
+ * were indexed are not parsed again.
+ * <p>
+ * The indexer re-indexes a module whenever its time stamp changes (e.g. after
+ * a branch switch, or when a project is re-opened or cleaned), although the
+ * contents are often the same. Results are recorded the first time a module
+ * is indexed, in one {@link IndexingResultStore} per project in the plug-in
+ * state location. They are valid for the parser options the module was
+ * parsed with, and as long as the file of the module has the same time stamp
+ * and length. Only when these don't match, the contents are read and compared
+ * with the digest recorded with the results. This applies to workspace files
+ * as well as to library folders and include path entries.
+ * </p>
+ * <p>
+ * The folder of the language model library of a PHP version is shared by all
+ * projects that use this version, so its modules are recorded in one store
+ * per folder instead, which is read through a read-only mapping. The store is
+ * filled in the background as soon as a project resolves the library (see
+ * {@link #prebuildLanguageLibrary(IScriptProject)}), so the indexer of the
+ * first project already replays the library, and no other project parses it
+ * again. The entries are validated like any other, by the time stamp and
+ * length of the stub files, which change when a newer bundle replaces them.
+ * </p>
+ */
+public class IndexingResultCache {
+
+	private static final String CACHE_DIR = "indexCache"; //$NON-NLS-1$
+	private static final String STORE_EXTENSION = ".idx"; //$NON-NLS-1$
+	private static final String LANGUAGE_DIR = "language"; //$NON-NLS-1$
+
+	/**
+	 * Must be incremented whenever the indexing visitor starts to report
+	 * different information for the same source
+	 */
+	private static final int FORMAT_VERSION = 4;
+
+	private static final byte DECLARATION = 0;
+	private static final byte REFERENCE = 1;
+
+	private static IndexingResultCache instance;
+
+	private final File directory;
+
+	private final String extensionsId = PhpIndexingVisitor.getExtensionsId();
+
+	// store name -> store, guarded by this
+	private final Map<String, IndexingResultStore> stores = new HashMap<String, IndexingResultStore>();
+	private final Set<String> failedStores = new HashSet<String>();
+	private final Set<IPath> prebuiltLibraries = new HashSet<IPath>();
+	private boolean closed;
+
+	private final Job cleanupJob = new Job("") { //$NON-NLS-1$
+		protected IStatus run(IProgressMonitor monitor) {
+			cleanup(monitor);
+			return Status.OK_STATUS;
+		}
+	};
+
+	/**
+	 * Validation keys of a module that can be computed without reading its
+	 * contents
+	 */
+	public static class Key {
+		final String path;
+		final String options;
+		final long stamp;
+		final long length;
+		String digest;
+
+		Key(String path, String options, long stamp, long length) {
+			this.path = path;
+			this.options = options;
+			this.stamp = stamp;
+			this.length = length;
+		}
+	}
+
+	private IndexingResultCache() {
+		final IPath location = PHPCorePlugin.getDefault().getStateLocation();
+		directory = location.append(CACHE_DIR).toFile();
+		cleanupJob.setSystem(true);
+		cleanupJob.setPriority(Job.DECORATE);
+		cleanupJob.schedule();
+	}
+
+	public static synchronized IndexingResultCache getDefault() {
+		if (instance == null) {
+			instance = new IndexingResultCache();
+		}
+		return instance;
+	}
+
+	/**
+	 * Closes the stores
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			instance.cleanupJob.cancel();
+			instance.closeStores();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Returns the keys of the module that can be checked without reading its
+	 * contents: the PHP version and the short tags option that apply to it,
+	 * the contributed indexing visitor extensions, and the time stamp and
+	 * length of its file.
+	 *
+	 * @param module
+	 *            Source module
+	 * @return keys, or <code>null</code> if the module can't be cached
+	 */
+	public Key getKey(ISourceModule module) {
+		final IScriptProject project = module.getScriptProject();
+		if (project == null) {
+			return null;
+		}
+		final StringBuilder options = new StringBuilder();
+		final PHPVersion phpVersion = ProjectOptions.getPhpVersion(module);
+		if (phpVersion != null) {
+			options.append(phpVersion.getAlias());
+		}
+		options.append('/').append(ProjectOptions.useShortTags(module))
+				.append('/').append(extensionsId);
+		long stamp = IResource.NULL_STAMP;
+		long length = -1;
+		final IResource resource = module.getResource();
+		if (resource != null) {
+			final IPath location = resource.getLocation();
+			if (location != null) {
+				final File file = location.toFile();
+				stamp = file.lastModified();
+				length = file.length();
+			}
+		} else if (module instanceof IExternalSourceModule) {
+			final IFileHandle file = EnvironmentPathUtils.getFile(module);
+			if (file != null && file.exists()) {
+				stamp = file.lastModified();
+				length = file.length();
+			}
+		}
+		// modules in archives are checked by their digest only
+		return new Key(module.getPath().toString(), options.toString(),
+				stamp, length);
+	}
+
+	/**
+	 * Returns whether results are recorded for the module and its file didn't
+	 * change since, without reading its contents
+	 *
+	 * @param module
+	 *            Source module
+	 * @param key
+	 *            Current keys of the module, see {@link #getKey(ISourceModule)}
+	 */
+	public boolean isCached(ISourceModule module, Key key) {
+		final IndexingResultStore store = getStore(module);
+		if (store == null) {
+			return false;
+		}
+		final IndexingResultStore.Entry entry = store.get(key.path);
+		return entry != null && matchesStamp(entry, key);
+	}
+
+	/**
+	 * Returns recorded declarations and references of a module. The contents
+	 * of the module are read only if its file changed since the results were
+	 * recorded.
+	 *
+	 * @param module
+	 *            Source module
+	 * @param key
+	 *            Current keys of the module, see {@link #getKey(ISourceModule)}
+	 * @return list of {@link DeclarationInfo} and {@link ReferenceInfo}
+	 *         objects, or <code>null</code> if there are no valid results
+	 */
+	public List<Object> get(ISourceModule module, Key key) {
+		final IndexingResultStore store = getStore(module);
+		if (store == null) {
+			return null;
+		}
+		final IndexingResultStore.Entry entry = store.get(key.path);
+		if (entry == null || !entry.options.equals(key.options)) {
+			return null;
+		}
+		final boolean stampMatches = matchesStamp(entry, key);
+		if (!stampMatches) {
+			// e.g. a checkout that touched the file
+			if (!entry.digest.equals(getDigest(module, key))) {
+				return null;
+			}
+		}
+		try {
+			final byte[] results = store.read(entry);
+			if (!stampMatches) {
+				store.put(key.path, key.options, key.stamp, key.length,
+						key.digest, results);
+			}
+			return readInfos(new DataInputStream(new ByteArrayInputStream(
+					results)));
+		} catch (IOException e) {
+			if (DLTKCore.DEBUG) {
+				e.printStackTrace();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Records declarations and references of a module
+	 *
+	 * @param module
+	 *            Source module
+	 * @param key
+	 *            Keys of the module taken before it was parsed, see
+	 *            {@link #getKey(ISourceModule)}
+	 * @param infos
+	 *            List of {@link DeclarationInfo} and {@link ReferenceInfo}
+	 *            objects
+	 */
+	public void put(ISourceModule module, Key key, List<Object> infos) {
+		final IndexingResultStore store = getStore(module);
+		if (store == null || getDigest(module, key) == null) {
+			return;
+		}
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(bytes);
+			writeInfos(out, infos);
+			out.close();
+			store.put(key.path, key.options, key.stamp, key.length,
+					key.digest, bytes.toByteArray());
+		} catch (IOException e) {
+			Logger.logException(e);
+		}
+	}
+
+	private static boolean matchesStamp(IndexingResultStore.Entry entry,
+			Key key) {
+		return key.stamp != IResource.NULL_STAMP && entry.stamp == key.stamp
+				&& entry.length == key.length
+				&& entry.options.equals(key.options);
+	}
+
+	/**
+	 * Computes a digest of the module contents once for the given keys
+	 *
+	 * @return digest, or <code>null</code> if the contents can't be read
+	 */
+	private static String getDigest(ISourceModule module, Key key) {
+		if (key.digest != null) {
+			return key.digest;
+		}
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+			final char[] source = module.getSourceAsCharArray();
+			final byte[] bytes = new byte[source.length * 2];
+			for (int i = 0; i < source.length; i++) {
+				bytes[2 * i] = (byte) (source[i] >> 8);
+				bytes[2 * i + 1] = (byte) source[i];
+			}
+			key.digest = toHexString(digest.digest(bytes));
+		} catch (NoSuchAlgorithmException e) {
+			Logger.logException(e);
+		} catch (ModelException e) {
+			if (DLTKCore.DEBUG) {
+				e.printStackTrace();
+			}
+		}
+		return key.digest;
+	}
+
+	/**
+	 * Records the language model library of the project in the background,
+	 * unless it was already done for its folder since startup
+	 *
+	 * @param project
+	 *            Project that resolved the language model library
+	 */
+	public void prebuildLanguageLibrary(final IScriptProject project) {
+		final Job job = new Job("") { //$NON-NLS-1$
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					for (IProjectFragment fragment : project
+							.getProjectFragments()) {
+						if (monitor.isCanceled()) {
+							return Status.CANCEL_STATUS;
+						}
+						if (LanguageModelInitializer
+								.isLanguageModelElement(fragment)
+								&& markPrebuilt(fragment.getPath())) {
+							prebuild(fragment, monitor);
+						}
+					}
+				} catch (ModelException e) {
+					if (DLTKCore.DEBUG) {
+						e.printStackTrace();
+					}
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.setPriority(Job.LONG);
+		job.schedule();
+	}
+
+	/**
+	 * Closes and deletes the store of a language model library folder that
+	 * isn't used anymore
+	 *
+	 * @param path
+	 *            Full path of the library folder
+	 */
+	public void removeLanguageLibrary(IPath path) {
+		final String name = getLanguageStoreName(path);
+		final IndexingResultStore store;
+		synchronized (this) {
+			store = stores.remove(name);
+			failedStores.remove(name);
+			prebuiltLibraries.remove(path);
+		}
+		if (store != null) {
+			store.close();
+		}
+		new File(directory, name + STORE_EXTENSION).delete();
+	}
+
+	private synchronized boolean markPrebuilt(IPath path) {
+		return !closed && prebuiltLibraries.add(path);
+	}
+
+	/**
+	 * Records the modules of the library folder that aren't recorded yet
+	 */
+	private void prebuild(IProjectFragment fragment, IProgressMonitor monitor)
+			throws ModelException {
+		for (IModelElement child : fragment.getChildren()) {
+			if (!(child instanceof IScriptFolder)) {
+				continue;
+			}
+			for (ISourceModule module : ((IScriptFolder) child)
+					.getSourceModules()) {
+				if (monitor.isCanceled()) {
+					return;
+				}
+				final Key key = getKey(module);
+				if (key == null || isCached(module, key)) {
+					continue;
+				}
+				try {
+					IndexingPipeline.process(module);
+				} catch (Exception e) {
+					if (DLTKCore.DEBUG) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+	}
+
+	private static String getLanguageStoreName(IPath path) {
+		return LANGUAGE_DIR + '/'
+				+ Integer.toHexString(path.toString().hashCode());
+	}
+
+	private synchronized IndexingResultStore getStore(ISourceModule module) {
+		final IScriptProject project = module.getScriptProject();
+		if (project == null || closed) {
+			return null;
+		}
+		final boolean language = LanguageModelInitializer
+				.isLanguageModelElement(module);
+		final String name;
+		if (language) {
+			// shared by all projects that use the library
+			name = getLanguageStoreName(module.getAncestor(
+					IModelElement.PROJECT_FRAGMENT).getPath());
+		} else {
+			name = project.getElementName();
+		}
+		IndexingResultStore store = stores.get(name);
+		if (store == null && !failedStores.contains(name)) {
+			try {
+				store = new IndexingResultStore(new File(directory, name
+						+ STORE_EXTENSION), FORMAT_VERSION, language);
+				stores.put(name, store);
+			} catch (IOException e) {
+				Logger.logException(e);
+				failedStores.add(name);
+			}
+		}
+		return store;
+	}
+
+	private synchronized void closeStores() {
+		closed = true;
+		for (IndexingResultStore store : stores.values()) {
+			store.close();
+		}
+		stores.clear();
+	}
+
+	/**
+	 * Deletes the stores of projects that don't exist anymore, and entries of
+	 * older formats
+	 */
+	private void cleanup(IProgressMonitor monitor) {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (monitor.isCanceled()) {
+				return;
+			}
+			final String name = file.getName();
+			if (file.isDirectory() && !name.equals(LANGUAGE_DIR)) {
+				// digest buckets of the previous format
+				final File[] entries = file.listFiles();
+				if (entries != null) {
+					for (File entry : entries) {
+						entry.delete();
+					}
+				}
+				file.delete();
+			} else if (name.endsWith(STORE_EXTENSION)) {
+				final IProject project = ResourcesPlugin.getWorkspace()
+						.getRoot().getProject(
+								name.substring(0, name.length()
+										- STORE_EXTENSION.length()));
+				if (!project.exists()) {
+					synchronized (this) {
+						if (!stores.containsKey(project.getName())) {
+							file.delete();
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static void writeInfos(DataOutput out, List<Object> infos)
+			throws IOException {
+		out.writeInt(infos.size());
+		for (Object info : infos) {
+			if (info instanceof DeclarationInfo) {
+				final DeclarationInfo declaration = (DeclarationInfo) info;
+				out.writeByte(DECLARATION);
+				out.writeInt(declaration.elementType);
+				out.writeInt(declaration.flags);
+				out.writeInt(declaration.offset);
+				out.writeInt(declaration.length);
+				out.writeInt(declaration.nameOffset);
+				out.writeInt(declaration.nameLength);
+				writeString(out, declaration.elementName);
+				writeString(out, declaration.metadata);
+				writeString(out, declaration.doc);
+				writeString(out, declaration.qualifier);
+				writeString(out, declaration.parent);
+			} else {
+				final ReferenceInfo reference = (ReferenceInfo) info;
+				out.writeByte(REFERENCE);
+				out.writeInt(reference.elementType);
+				out.writeInt(reference.offset);
+				out.writeInt(reference.length);
+				writeString(out, reference.elementName);
+				writeString(out, reference.metadata);
+				writeString(out, reference.qualifier);
+			}
+		}
+	}
+
+	private static List<Object> readInfos(DataInput in) throws IOException {
+		final int count = in.readInt();
+		final List<Object> infos = new ArrayList<Object>(count);
+		for (int i = 0; i < count; i++) {
+			if (in.readByte() == DECLARATION) {
+				infos.add(new DeclarationInfo(in.readInt(), in.readInt(), in
+						.readInt(), in.readInt(), in.readInt(), in.readInt(),
+						readString(in), readString(in), readString(in),
+						readString(in), readString(in)));
+			} else {
+				infos.add(new ReferenceInfo(in.readInt(), in.readInt(), in
+						.readInt(), readString(in), readString(in),
+						readString(in)));
+			}
+		}
+		return infos;
+	}
+
+	private static void writeString(DataOutput out, String value)
+			throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+		} else {
+			final byte[] bytes = value.getBytes("UTF-8"); //$NON-NLS-1$
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		final int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8"); //$NON-NLS-1$
+	}
+
+	private static String toHexString(byte[] bytes) {
+		final StringBuilder buf = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			buf.append(Character.forDigit((b >> 4) & 0xF, 16)).append(
+					Character.forDigit(b & 0xF, 16));
+		}
+		return buf.toString();
+	}
+}
@@ -0,0 +1,320 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.index;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.php.internal.core.Logger;
+
+/**
+ * Single file store of the indexing results of the modules of one project.
+ * <p>
+ * The file is a sequence of records, one for each time a module was
+ * recorded, and the last record of a module wins. Only the location of the
+ * results is kept in memory, the results themselves are read from the file
+ * when they are replayed. Records that were replaced are dropped when the
+ * store is opened and they take more space than the others. A store that is
+ * mostly read, and shared by several projects, can be read through a
+ * read-only mapping of the file instead.
+ * </p>
+ */
+class IndexingResultStore {
+
+	/**
+	 * Location and validation keys of the results of a module
+	 */
+	static class Entry {
+		final String options;
+		final long stamp;
+		final long length;
+		final String digest;
+		final long position;
+		final int size;
+
+		Entry(String options, long stamp, long length, String digest,
+				long position, int size) {
+			this.options = options;
+			this.stamp = stamp;
+			this.length = length;
+			this.digest = digest;
+			this.position = position;
+			this.size = size;
+		}
+	}
+
+	private final File file;
+	private final int formatVersion;
+	private final boolean mapped;
+
+	// following fields are guarded by this
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+	private RandomAccessFile randomAccessFile;
+	private FileChannel channel;
+	private long end;
+	private long garbage;
+	/** mapping of the file up to the end it had when it was mapped */
+	private MappedByteBuffer mapping;
+
+	/**
+	 * Opens the store, creating the file if it doesn't exist
+	 *
+	 * @param file
+	 *            Store file
+	 * @param formatVersion
+	 *            Version of the encoding of the results, a file of another
+	 *            version is discarded
+	 * @param mapped
+	 *            Whether results are read through a mapping of the file
+	 */
+	IndexingResultStore(File file, int formatVersion, boolean mapped)
+			throws IOException {
+		this.file = file;
+		this.formatVersion = formatVersion;
+		this.mapped = mapped;
+		open();
+	}
+
+	/**
+	 * Returns the entry recorded for the given module path, or
+	 * <code>null</code>
+	 */
+	synchronized Entry get(String path) {
+		return entries.get(path);
+	}
+
+	/**
+	 * Reads the encoded results of the given entry
+	 */
+	byte[] read(Entry entry) throws IOException {
+		final FileChannel channel;
+		ByteBuffer mapping = null;
+		synchronized (this) {
+			channel = this.channel;
+			if (channel != null && mapped && end <= Integer.MAX_VALUE) {
+				if (this.mapping == null
+						|| this.mapping.capacity() < entry.position + entry.size) {
+					// records were added since
+					this.mapping = channel.map(FileChannel.MapMode.READ_ONLY,
+							0, end);
+				}
+				mapping = this.mapping.duplicate();
+			}
+		}
+		if (channel == null) {
+			throw new IOException("Store is closed"); //$NON-NLS-1$
+		}
+		if (mapping != null) {
+			final byte[] results = new byte[entry.size];
+			mapping.position((int) entry.position);
+			mapping.get(results);
+			return results;
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(entry.size);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, entry.position + buffer.position()) == -1) {
+				throw new EOFException();
+			}
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Records the encoded results of the given module path
+	 */
+	synchronized void put(String path, String options, long stamp,
+			long length, String digest, byte[] results) throws IOException {
+		if (channel == null) {
+			return;
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				results.length + 128);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0);
+		out.writeUTF(path);
+		out.writeUTF(options);
+		out.writeLong(stamp);
+		out.writeLong(length);
+		out.writeUTF(digest);
+		out.writeInt(results.length);
+		final int header = out.size();
+		out.write(results);
+		out.close();
+		final ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+		record.putInt(0, record.capacity() - 4);
+		final long position = end;
+		while (record.hasRemaining()) {
+			channel.write(record, position + record.position());
+		}
+		end += record.capacity();
+		final Entry previous = entries.put(path, new Entry(options, stamp,
+				length, digest, position + header, results.length));
+		if (previous != null) {
+			garbage += recordSize(previous);
+		}
+	}
+
+	/**
+	 * Closes the file of the store
+	 */
+	synchronized void close() {
+		if (randomAccessFile != null) {
+			try {
+				randomAccessFile.close();
+			} catch (IOException e) {
+				Logger.logException(e);
+			}
+			randomAccessFile = null;
+			channel = null;
+			mapping = null;
+		}
+		entries.clear();
+	}
+
+	private void open() throws IOException {
+		file.getParentFile().mkdirs();
+		if (file.exists() && !load()) {
+			file.delete();
+		}
+		if (!file.exists() || garbage > end / 2) {
+			rewrite();
+		}
+		randomAccessFile = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+		channel = randomAccessFile.getChannel();
+		// drop a record that was written partially
+		channel.truncate(end);
+	}
+
+	/**
+	 * Reads the entries of the file
+	 *
+	 * @return <code>false</code> if the file is corrupted or of another
+	 *         format
+	 */
+	private boolean load() throws IOException {
+		final DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != formatVersion) {
+				return false;
+			}
+			final long fileLength = file.length();
+			long position = 4;
+			end = position;
+			while (true) {
+				final int size;
+				final byte[] record;
+				try {
+					size = in.readInt();
+					if (size < 0 || position + 4 + size > fileLength) {
+						// the last record was written partially
+						return true;
+					}
+					record = new byte[size];
+					in.readFully(record);
+				} catch (EOFException e) {
+					return true;
+				}
+				final DataInputStream recordIn = new DataInputStream(
+						new ByteArrayInputStream(record));
+				final String path = recordIn.readUTF();
+				final String options = recordIn.readUTF();
+				final long stamp = recordIn.readLong();
+				final long length = recordIn.readLong();
+				final String digest = recordIn.readUTF();
+				final int resultsSize = recordIn.readInt();
+				final long resultsPosition = position + 4 + size
+						- recordIn.available();
+				final Entry previous = entries.put(path, new Entry(options,
+						stamp, length, digest, resultsPosition, resultsSize));
+				if (previous != null) {
+					garbage += recordSize(previous);
+				}
+				position += 4 + size;
+				end = position;
+			}
+		} catch (IOException e) {
+			// corrupted or of an older format
+			entries.clear();
+			garbage = 0;
+			return false;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the current entries to a new file, dropping the records that
+	 * were replaced
+	 */
+	private void rewrite() throws IOException {
+		final File tempFile = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+		final Map<String, Entry> current = new HashMap<String, Entry>(entries);
+		final RandomAccessFile source = file.exists() ? new RandomAccessFile(
+				file, "r") : null; //$NON-NLS-1$
+		try {
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tempFile)));
+			try {
+				out.writeInt(formatVersion);
+				entries.clear();
+				long position = 4;
+				for (Map.Entry<String, Entry> e : current.entrySet()) {
+					final Entry entry = e.getValue();
+					final byte[] results = new byte[entry.size];
+					source.seek(entry.position);
+					source.readFully(results);
+
+					final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					final DataOutputStream recordOut = new DataOutputStream(
+							bytes);
+					recordOut.writeUTF(e.getKey());
+					recordOut.writeUTF(entry.options);
+					recordOut.writeLong(entry.stamp);
+					recordOut.writeLong(entry.length);
+					recordOut.writeUTF(entry.digest);
+					recordOut.writeInt(results.length);
+					recordOut.close();
+
+					out.writeInt(bytes.size() + results.length);
+					bytes.writeTo(out);
+					out.write(results);
+					entries.put(e.getKey(), new Entry(entry.options,
+							entry.stamp, entry.length, entry.digest, position
+									+ 4 + bytes.size(), results.length));
+					position += 4 + bytes.size() + results.length;
+				}
+				end = position;
+				garbage = 0;
+			} finally {
+				out.close();
+			}
+		} finally {
+			if (source != null) {
+				source.close();
+			}
+		}
+		file.delete();
+		if (!tempFile.renameTo(file)) {
+			throw new IOException("Can't replace " + file); //$NON-NLS-1$
+		}
+	}
+
+	private static long recordSize(Entry entry) {
+		// size of the results plus an estimate of the header
+		return entry.size + 64;
+	}
+}
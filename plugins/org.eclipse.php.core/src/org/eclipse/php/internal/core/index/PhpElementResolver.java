@@ -12,30 +12,106 @@
 package org.eclipse.php.internal.core.index;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
-import java.util.regex.Pattern;
 
 import org.eclipse.dltk.ast.Modifiers;
 import org.eclipse.dltk.core.*;
 import org.eclipse.dltk.core.SourceRange;
 import org.eclipse.dltk.core.index2.IElementResolver;
+import org.eclipse.dltk.core.index2.search.ISearchEngine;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.SearchFor;
+import org.eclipse.dltk.core.index2.search.ISearchRequestor;
+import org.eclipse.dltk.core.index2.search.ModelAccess;
+import org.eclipse.dltk.core.search.SearchEngine;
 import org.eclipse.dltk.internal.core.*;
 import org.eclipse.php.core.compiler.IPHPModifiers;
 import org.eclipse.php.core.compiler.PHPFlags;
 import org.eclipse.php.internal.core.Constants;
 import org.eclipse.php.internal.core.Logger;
+import org.eclipse.php.internal.core.PHPLanguageToolkit;
 import org.eclipse.php.internal.core.model.IncludeField;
 
 public class PhpElementResolver implements IElementResolver {
 
-	private static final Pattern SEPARATOR_PATTERN = Pattern.compile(","); //$NON-NLS-1$
-	private static final String[] EMPTY = new String[0];
+	private static final char SEPARATOR = ',';
+	private static final IParameter[] NO_PARAMETERS = new IParameter[0];
+
+	/**
+	 * PHPDoc info of the methods of each module, by declaration offset, once
+	 * a method of the module that was resolved without doc is asked for it
+	 */
+	private final Map<ISourceModule, Map<Integer, String>> methodDocs = new HashMap<ISourceModule, Map<Integer, String>>();
 
 	public IModelElement resolve(int elementType, int flags, int offset,
 			int length, int nameOffset, int nameLength, String elementName,
 			String metadata, String doc, String qualifier, String parent,
 			ISourceModule sourceModule) {
+		return resolve(elementType, flags, offset, length, nameOffset,
+				nameLength, elementName, metadata, doc, true, qualifier,
+				parent, sourceModule);
+	}
+
+	/**
+	 * Resolves an element whose PHPDoc info wasn't kept with the search
+	 * result. Methods look it up in the index when it's requested, with a
+	 * single search for all methods of a module that this resolver resolved.
+	 */
+	public IModelElement resolveWithoutDoc(int elementType, int flags,
+			int offset, int length, int nameOffset, int nameLength,
+			String elementName, String metadata, String qualifier,
+			String parent, ISourceModule sourceModule) {
+		return resolve(elementType, flags, offset, length, nameOffset,
+				nameLength, elementName, metadata, null, false, qualifier,
+				parent, sourceModule);
+	}
+
+	/**
+	 * Returns the PHPDoc info of the method declared at the given offset of
+	 * the module. All methods of the module are looked up in the index the
+	 * first time.
+	 */
+	private String findMethodDoc(ISourceModule sourceModule, int offset) {
+		synchronized (methodDocs) {
+			Map<Integer, String> docs = methodDocs.get(sourceModule);
+			if (docs == null) {
+				docs = findMethodDocs(sourceModule);
+				methodDocs.put(sourceModule, docs);
+			}
+			return docs.get(offset);
+		}
+	}
+
+	private static Map<Integer, String> findMethodDocs(
+			ISourceModule sourceModule) {
+		final Map<Integer, String> result = new HashMap<Integer, String>();
+		final ISearchEngine searchEngine = ModelAccess
+				.getSearchEngine(PHPLanguageToolkit.getDefault());
+		if (searchEngine == null) {
+			return result;
+		}
+		searchEngine.search(IModelElement.METHOD, null, "", 0, 0, 0, //$NON-NLS-1$
+				SearchFor.DECLARATIONS, MatchRule.PREFIX,
+				SearchEngine.createSearchScope(sourceModule),
+				new ISearchRequestor() {
+					public void match(int elementType, int flags, int offset,
+							int length, int nameOffset, int nameLength,
+							String elementName, String metadata, String doc,
+							String qualifier, String parent,
+							ISourceModule sourceModule, boolean isReference) {
+						if (doc != null) {
+							result.put(offset, doc);
+						}
+					}
+				}, null);
+		return result;
+	}
+
+	private IModelElement resolve(int elementType, int flags, int offset,
+			int length, int nameOffset, int nameLength, String elementName,
+			String metadata, String doc, boolean docKnown, String qualifier,
+			String parent, ISourceModule sourceModule) {
 
 		ModelElement parentElement = (ModelElement) sourceModule;
 		if (qualifier != null) {
@@ -49,22 +125,13 @@ public class PhpElementResolver implements IElementResolver {
 
 		switch (elementType) {
 		case IModelElement.TYPE:
-			String[] superClassNames = null;
-			if (metadata != null) {
-				superClassNames = SEPARATOR_PATTERN.split(metadata);
-			}
 			return new IndexType(parentElement, elementName, flags, offset,
-					length, nameOffset, nameLength, superClassNames, doc);
+					length, nameOffset, nameLength, metadata, doc);
 
 		case IModelElement.METHOD:
-			String[] parameters;
-			if (metadata != null) {
-				parameters = SEPARATOR_PATTERN.split(metadata);
-			} else {
-				parameters = EMPTY;
-			}
 			return new IndexMethod(parentElement, elementName, flags, offset,
-					length, nameOffset, nameLength, parameters, doc);
+					length, nameOffset, nameLength, metadata, doc,
+					docKnown ? null : this);
 
 		case IModelElement.FIELD:
 			return new IndexField(parentElement, elementName, flags, offset,
@@ -92,22 +159,7 @@ public class PhpElementResolver implements IElementResolver {
 	 *         info is <code>null</code>
 	 */
 	protected static Map<String, String> decodeDocInfo(String doc) {
-		if (doc == null) {
-			return null;
-		}
-		Map<String, String> info = new HashMap<String, String>();
-		StringTokenizer tok = new StringTokenizer(doc, ";"); //$NON-NLS-1$
-		while (tok.hasMoreTokens()) {
-			String key = tok.nextToken();
-			String value = null;
-			int i = key.indexOf(':');
-			if (i != -1) {
-				value = key.substring(i + 1);
-				key = key.substring(0, i);
-			}
-			info.put(key, value);
-		}
-		return info;
+		return IndexMetadata.decodeDocInfo(doc);
 	}
 
 	/**
@@ -118,8 +170,7 @@ public class PhpElementResolver implements IElementResolver {
 	 */
 	@Deprecated
 	protected static boolean isDeprecated(String doc) {
-		Map<String, String> info = decodeDocInfo(doc);
-		return (info != null && info.containsKey("d")); //$NON-NLS-1$
+		return IndexMetadata.hasDocInfo(doc, "d"); //$NON-NLS-1$
 	}
 
 	private static class IndexField extends SourceField implements
@@ -167,63 +218,35 @@ public class PhpElementResolver implements IElementResolver {
 
 		@Override
 		public String getType() throws ModelException {
-			Map<String, String> info = decodeDocInfo(doc);
-			if (info != null) {
-				return info.get("v"); //$NON-NLS-1$
-			}
-			return null;
+			return IndexMetadata.getDocInfo(doc, "v"); //$NON-NLS-1$
 		}
 	}
 
 	private static class IndexMethod extends SourceMethod implements
 			IPHPDocAwareElement {
 
-		private final static Pattern ARRAY_TYPE_PATTERN = Pattern
-				.compile("array\\[.*\\]"); //$NON-NLS-1$
 		private int flags;
 		private ISourceRange sourceRange;
 		private ISourceRange nameRange;
-		private IParameter[] parameters;
-		private String doc;
+		private String metadata;
+		private volatile IParameter[] parameters;
+		private volatile String doc;
+		/** Looks up the doc, <code>null</code> once the doc is known */
+		private volatile PhpElementResolver docResolver;
 
 		public IndexMethod(ModelElement parent, String name, int flags,
 				int offset, int length, int nameOffset, int nameLength,
-				String[] parameterNames, String doc) {
+				String metadata, String doc, PhpElementResolver docResolver) {
 
 			super(parent, name);
 			this.flags = flags;
 			this.sourceRange = new SourceRange(offset, length);
 			this.nameRange = new SourceRange(nameOffset, nameLength);
-			// MethodParameterInfo
-			this.parameters = new IParameter[0];
-			if (parameterNames != null) {
-				this.parameters = new IParameter[parameterNames.length];
-				for (int i = 0; i < parameterNames.length; i++) {
-					String[] values = parameterNames[i].split("\\" //$NON-NLS-1$
-							+ PhpIndexingVisitor.PARAMETER_SEPERATOR);
-					if (values.length == 1) {
-						this.parameters[i] = new MethodParameterInfo(values[0]);
-					} else {
-						String type = values[0];
-						if (PhpIndexingVisitor.NULL_VALUE.equals(type)) {
-							type = null;
-						}
-						if (type != null) {
-							type = type.replace(Constants.DOT,
-									Constants.TYPE_SEPERATOR_CHAR);
-						}
-						String param = values[1];
-
-						String defaultValue = values[2];
-						if (PhpIndexingVisitor.NULL_VALUE.equals(defaultValue)) {
-							defaultValue = null;
-						}
-						this.parameters[i] = new MethodParameterInfo(param,
-								type, defaultValue);
-					}
-				}
-			}
+			// parameters are decoded when they are requested for the first
+			// time, most of the resolved methods are never asked for them
+			this.metadata = metadata;
 			this.doc = doc;
+			this.docResolver = docResolver;
 		}
 
 		public int getFlags() throws ModelException {
@@ -238,13 +261,46 @@ public class PhpElementResolver implements IElementResolver {
 			return sourceRange;
 		}
 
+		private String getDoc() {
+			final PhpElementResolver resolver = docResolver;
+			if (resolver != null) {
+				doc = resolver.findMethodDoc(getSourceModule(),
+						sourceRange.getOffset());
+				docResolver = null;
+			}
+			return doc;
+		}
+
 		public IParameter[] getParameters() throws ModelException {
-			return parameters;
+			IParameter[] result = parameters;
+			if (result == null) {
+				result = decodeParameters(metadata);
+				parameters = result;
+			}
+			return result;
+		}
+
+		private static IParameter[] decodeParameters(String metadata) {
+			if (metadata == null) {
+				return NO_PARAMETERS;
+			}
+			List<String[]> values = IndexMetadata.decodeParameters(metadata);
+			IParameter[] result = new IParameter[values.size()];
+			for (int i = 0; i < result.length; i++) {
+				String[] value = values.get(i);
+				String type = value[0];
+				if (type != null) {
+					type = type.replace(Constants.DOT,
+							Constants.TYPE_SEPERATOR_CHAR);
+				}
+				result[i] = new MethodParameterInfo(value[1], type, value[2]);
+			}
+			return result;
 		}
 
 		@Override
 		public String[] getParameterNames() throws ModelException {
-			return SourceMethodUtils.getParameterNames(parameters);
+			return SourceMethodUtils.getParameterNames(getParameters());
 		}
 
 		public boolean isConstructor() throws ModelException {
@@ -256,16 +312,13 @@ public class PhpElementResolver implements IElementResolver {
 		}
 
 		public String[] getReturnTypes() {
-			Map<String, String> info = decodeDocInfo(doc);
-			if (info != null) {
-				String types = info.get("r"); //$NON-NLS-1$
-				if (types != null) {
-					String[] returnTypes = types.split(","); //$NON-NLS-1$
-					for (int i = 0; i < returnTypes.length; i++) {
-						returnTypes[i] = returnTypes[i].replaceAll("~", ","); //$NON-NLS-1$ //$NON-NLS-2$
-					}
-					return returnTypes;
+			String types = IndexMetadata.getDocInfo(getDoc(), "r"); //$NON-NLS-1$
+			if (types != null) {
+				String[] returnTypes = IndexMetadata.split(types, SEPARATOR);
+				for (int i = 0; i < returnTypes.length; i++) {
+					returnTypes[i] = returnTypes[i].replace('~', SEPARATOR);
 				}
+				return returnTypes;
 			}
 			return null;
 		}
@@ -283,17 +336,20 @@ public class PhpElementResolver implements IElementResolver {
 		private int flags;
 		private ISourceRange sourceRange;
 		private ISourceRange nameRange;
-		private String[] superClassNames;
+		private String metadata;
+		private volatile String[] superClassNames;
 		private String doc;
 
 		public IndexType(ModelElement parent, String name, int flags,
 				int offset, int length, int nameOffset, int nameLength,
-				String[] superClassNames, String doc) {
+				String metadata, String doc) {
 			super(parent, name);
 			this.flags = flags;
 			this.sourceRange = new SourceRange(offset, length);
 			this.nameRange = new SourceRange(nameOffset, nameLength);
-			this.superClassNames = superClassNames;
+			// super class names are split when they are requested for the
+			// first time, like the parameters of methods
+			this.metadata = metadata;
 			this.doc = doc;
 		}
 
@@ -310,7 +366,12 @@ public class PhpElementResolver implements IElementResolver {
 		}
 
 		public String[] getSuperClasses() throws ModelException {
-			return superClassNames;
+			String[] result = superClassNames;
+			if (result == null && metadata != null) {
+				result = IndexMetadata.split(metadata, SEPARATOR);
+				superClassNames = result;
+			}
+			return result;
 		}
 
 		public boolean isDeprecated() {
@@ -11,10 +11,7 @@
  *******************************************************************************/
 package org.eclipse.php.internal.core.index;
 
-import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
-import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.ISourceModule;
-import org.eclipse.dltk.core.SourceParserUtil;
 import org.eclipse.dltk.core.index2.IIndexingParser;
 import org.eclipse.dltk.core.index2.IIndexingRequestor;
 
@@ -23,17 +20,7 @@ public class PhpIndexingParser implements IIndexingParser {
 	public void parseSourceModule(ISourceModule module,
 			IIndexingRequestor requestor) {
 
-		ModuleDeclaration moduleDeclaration = SourceParserUtil
-				.getModuleDeclaration(module);
-		if (moduleDeclaration != null) {
-			try {
-				moduleDeclaration.traverse(new PhpIndexingVisitor(requestor, module));
-			} catch (Exception e) {
-				if (DLTKCore.DEBUG) {
-					e.printStackTrace();
-				}
-			}
-		}
+		IndexingPipeline.getDefault().index(module, requestor);
 	}
 
 }
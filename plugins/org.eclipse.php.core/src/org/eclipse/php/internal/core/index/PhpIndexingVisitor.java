@@ -12,7 +12,6 @@
 package org.eclipse.php.internal.core.index;
 
 import java.util.*;
-import java.util.Map.Entry;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.CoreException;
@@ -47,6 +46,7 @@ import org.eclipse.php.internal.core.compiler.ast.nodes.*;
 import org.eclipse.php.internal.core.compiler.ast.parser.ASTUtils;
 import org.eclipse.php.internal.core.typeinference.PHPModelUtils;
 import org.eclipse.php.internal.core.typeinference.evaluators.phpdoc.PHPDocClassVariableEvaluator;
+import org.osgi.framework.Bundle;
 
 /**
  * PHP indexing visitor for H2 database
@@ -61,6 +61,7 @@ public class PhpIndexingVisitor extends PhpIndexingVisitorExtension {
 	private static final Pattern WHITESPACE_SEPERATOR = Pattern.compile("\\s+"); //$NON-NLS-1$
 	private static final String EXTENSION_POINT = "phpIndexingVisitors"; //$NON-NLS-1$
 	private static final String CLASS_ATTR = "class"; //$NON-NLS-1$
+	/** Separators of the legacy metadata format, see {@link IndexMetadata} */
 	public static final String PARAMETER_SEPERATOR = "|"; //$NON-NLS-1$
 	public static final String NULL_VALUE = "#"; //$NON-NLS-1$
 	private static final String DEFAULT_VALUE = " "; //$NON-NLS-1$
@@ -102,6 +103,27 @@ public class PhpIndexingVisitor extends PhpIndexingVisitorExtension {
 	protected String fCurrentParent;
 	protected Stack<ASTNode> fNodes = new Stack<ASTNode>();
 
+	/**
+	 * Identifies the contributed indexing visitor extensions, so results
+	 * recorded with other extensions aren't reused
+	 * 
+	 * @return class names and versions of the contributing bundles
+	 */
+	static String getExtensionsId() {
+		StringBuilder id = new StringBuilder();
+		for (IConfigurationElement element : extensionElements) {
+			String contributor = element.getContributor().getName();
+			id.append(contributor).append(':');
+			Bundle bundle = Platform.getBundle(contributor);
+			if (bundle != null) {
+				id.append(bundle.getVersion());
+			}
+			id.append(':').append(element.getAttribute(CLASS_ATTR))
+					.append(';');
+		}
+		return id.toString();
+	}
+
 	public PhpIndexingVisitor(IIndexingRequestor requestor, ISourceModule module) {
 		this.requestor = requestor;
 
@@ -183,21 +205,7 @@ public class PhpIndexingVisitor extends PhpIndexingVisitorExtension {
 	}
 
 	protected static String encodeDocInfo(Map<String, String> info) {
-		if (info == null) {
-			return null;
-		}
-
-		StringBuilder buf = new StringBuilder();
-		for (Entry<String, String> e : info.entrySet()) {
-			if (buf.length() > 0) {
-				buf.append(';');
-			}
-			buf.append(e.getKey());
-			if (e.getValue() != null) {
-				buf.append(':').append(e.getValue());
-			}
-		}
-		return buf.length() > 0 ? buf.toString() : null;
+		return IndexMetadata.encodeDocInfo(info);
 	}
 
 	public boolean endvisit(MethodDeclaration method) throws Exception {
@@ -302,14 +310,14 @@ public class PhpIndexingVisitor extends PhpIndexingVisitorExtension {
 
 		modifiers = markAsDeprecated(modifiers, method);
 
-		StringBuilder metadata = new StringBuilder();
+		List<String[]> parameters = new ArrayList<String[]>();
 		List<Argument> arguments = method.getArguments();
 		if (arguments != null) {
 			Iterator<Argument> i = arguments.iterator();
 			while (i.hasNext()) {
 				Argument arg = (Argument) i.next();
 
-				String type = NULL_VALUE;
+				String type = null;
 				if (arg instanceof FormalParameter) {
 					FormalParameter fp = (FormalParameter) arg;
 					if (fp.getParameterType() != null) {
@@ -318,15 +326,11 @@ public class PhpIndexingVisitor extends PhpIndexingVisitorExtension {
 						}
 					}
 				}
-				if (type == NULL_VALUE && doc != null) {
+				if (type == null && doc != null) {
 					type = getParamType(doc, arg.getName(), type);
 				}
 
-				metadata.append(type);
-				metadata.append(PARAMETER_SEPERATOR);
-				metadata.append(arg.getName());
-				metadata.append(PARAMETER_SEPERATOR);
-				String defaultValue = NULL_VALUE;
+				String defaultValue = null;
 				if (arg.getInitialization() != null) {
 					if (arg.getInitialization() instanceof Literal) {
 						Literal scalar = (Literal) arg.getInitialization();
@@ -335,10 +339,8 @@ public class PhpIndexingVisitor extends PhpIndexingVisitorExtension {
 						defaultValue = DEFAULT_VALUE;
 					}
 				}
-				metadata.append(defaultValue);
-				if (i.hasNext()) {
-					metadata.append(","); //$NON-NLS-1$
-				}
+				parameters.add(new String[] { type, arg.getName(),
+						defaultValue });
 			}
 		}
 
@@ -349,7 +351,7 @@ public class PhpIndexingVisitor extends PhpIndexingVisitorExtension {
 						.sourceStart(), method.sourceEnd()
 						- method.sourceStart(), method.getNameStart(), method
 						.getNameEnd() - method.getNameStart(), methodName,
-						metadata.length() == 0 ? null : metadata.toString(),
+						IndexMetadata.encodeParameters(parameters),
 						encodeDocInfo(method), fCurrentQualifier,
 						fCurrentParent));
 
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.dltk.core.index2.IIndexingRequestor;
+
+/**
+ * Records declarations and references in the order they were reported, and
+ * optionally forwards them to another requestor.
+ */
+class RecordingIndexingRequestor implements IIndexingRequestor {
+
+	private final List<Object> infos;
+	private final IIndexingRequestor delegate;
+
+	public RecordingIndexingRequestor() {
+		this(null);
+	}
+
+	public RecordingIndexingRequestor(IIndexingRequestor delegate) {
+		this(new ArrayList<Object>(), delegate);
+	}
+
+	RecordingIndexingRequestor(List<Object> infos, IIndexingRequestor delegate) {
+		this.infos = infos;
+		this.delegate = delegate;
+	}
+
+	public void addDeclaration(DeclarationInfo info) {
+		infos.add(info);
+		if (delegate != null) {
+			delegate.addDeclaration(info);
+		}
+	}
+
+	public void addReference(ReferenceInfo info) {
+		infos.add(info);
+		if (delegate != null) {
+			delegate.addReference(info);
+		}
+	}
+
+	/**
+	 * Returns recorded {@link DeclarationInfo} and {@link ReferenceInfo}
+	 * objects
+	 */
+	public List<Object> getInfos() {
+		return infos;
+	}
+
+	/**
+	 * Reports all recorded declarations and references to the given requestor
+	 */
+	public void replay(IIndexingRequestor requestor) {
+		for (Object info : infos) {
+			if (info instanceof DeclarationInfo) {
+				requestor.addDeclaration((DeclarationInfo) info);
+			} else {
+				requestor.addReference((ReferenceInfo) info);
+			}
+		}
+	}
+}
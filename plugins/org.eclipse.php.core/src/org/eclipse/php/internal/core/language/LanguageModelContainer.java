@@ -31,6 +31,7 @@ import org.eclipse.dltk.core.environment.IEnvironment;
 import org.eclipse.dltk.internal.core.BuildpathEntry;
 import org.eclipse.php.core.language.ILanguageModelProvider;
 import org.eclipse.php.internal.core.Logger;
+import org.eclipse.php.internal.core.index.IndexingResultCache;
 
 public class LanguageModelContainer implements IBuildpathContainer {
 
@@ -81,6 +82,10 @@ public class LanguageModelContainer implements IBuildpathContainer {
 				}
 				buildPathEntries = (IBuildpathEntry[]) entries
 						.toArray(new IBuildpathEntry[entries.size()]);
+				// record the library for all projects that use it, before
+				// it's indexed
+				IndexingResultCache.getDefault().prebuildLanguageLibrary(
+						project);
 			} catch (Exception e) {
 				Logger.logException(e);
 			}
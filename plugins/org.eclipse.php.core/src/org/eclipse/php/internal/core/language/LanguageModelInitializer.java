@@ -28,6 +28,7 @@ import org.eclipse.php.core.language.ILanguageModelProvider;
 import org.eclipse.php.internal.core.Logger;
 import org.eclipse.php.internal.core.PHPCorePlugin;
 import org.eclipse.php.internal.core.PHPToolkitUtil;
+import org.eclipse.php.internal.core.index.IndexingResultCache;
 import org.eclipse.php.internal.core.preferences.IPreferencesPropagatorListener;
 import org.eclipse.php.internal.core.preferences.PreferencesPropagatorEvent;
 import org.eclipse.php.internal.core.project.PHPNature;
@@ -289,6 +290,7 @@ public class LanguageModelInitializer extends BuildpathContainerInitializer {
 
 		for (IPath path : toDrop) {
 			ProjectIndexerManager.removeProject(path);
+			IndexingResultCache.getDefault().removeLanguageLibrary(path);
 			efs.getStore(EnvironmentPathUtils.getLocalPath(path)).delete(
 					EFS.NONE, monitor);
 		}
@@ -0,0 +1,783 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.model;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.dltk.ast.Modifiers;
+import org.eclipse.dltk.core.*;
+import org.eclipse.dltk.core.index2.search.ISearchEngine;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.SearchFor;
+import org.eclipse.dltk.core.index2.search.ISearchRequestor;
+import org.eclipse.dltk.core.index2.search.ModelAccess;
+import org.eclipse.dltk.core.search.IDLTKSearchScope;
+import org.eclipse.dltk.core.search.SearchEngine;
+import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.php.core.compiler.IPHPModifiers;
+import org.eclipse.php.internal.core.PHPLanguageToolkit;
+import org.eclipse.php.internal.core.compiler.ast.nodes.NamespaceReference;
+import org.eclipse.php.internal.core.index.IndexMetadata;
+import org.eclipse.php.internal.core.index.PhpElementResolver;
+import org.eclipse.php.internal.core.typeinference.PHPModelUtils;
+
+/**
+ * In-memory index of the names of global types (classes, interfaces,
+ * namespaces) and global functions of each script project, used by code
+ * assist instead of querying the indexer database on every keystroke.
+ * <p>
+ * Names are kept in sorted maps, so prefix queries and camel-case queries
+ * (on the upper case humps of a name) are answered by a range lookup. Only
+ * the search results are kept, without their PHPDoc info. The model elements
+ * created for the names that match a query are plain handles: parameters and
+ * super class names are decoded when they are requested, and the PHPDoc info
+ * is looked up when a function is asked for it (e.g. for its return type),
+ * with a single search for all functions of the query declared in the same
+ * module.
+ * Search results of modules that belong to several projects (e.g. the
+ * language library) are shared by the indexes of these projects.
+ * </p>
+ * <p>
+ * The super type relations between all types of the project (including
+ * namespaced types and traits) are kept in a {@link TypeHierarchyGraph}, so
+ * super types and sub types are found without a search for each level of the
+ * hierarchy.
+ * </p>
+ * <p>
+ * The index of a project is loaded from the indexer database by a background
+ * job, which is scheduled by the first query. Until it's loaded, and while
+ * the indexer is busy, queries return <code>null</code>, and clients are
+ * expected to query the database. Source modules that were added, removed or
+ * changed are searched again before the next query, and their search results
+ * are replaced at once; build path changes drop the index of the project.
+ * Only the indexes of the most recently queried projects are kept.
+ * </p>
+ */
+public class GlobalNameIndex {
+
+	/** Maximum number of projects whose index is kept */
+	private static final int MAX_PROJECTS = 4;
+
+	/** Family of the jobs that load the index of a project */
+	public static final Object LOAD_FAMILY = new Object();
+
+	private static GlobalNameIndex instance;
+
+	// following field is guarded by itself
+	private final LinkedHashMap<IScriptProject, ProjectIndex> projectIndexes = new LinkedHashMap<IScriptProject, ProjectIndex>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(
+				Map.Entry<IScriptProject, ProjectIndex> eldest) {
+			return size() > MAX_PROJECTS;
+		}
+	};
+
+	/** Indexes that are being loaded, guarded by projectIndexes */
+	private final Map<IScriptProject, ProjectIndex> loadingIndexes = new HashMap<IScriptProject, ProjectIndex>();
+
+	/**
+	 * Search results of the loaded indexes, so that projects that search the
+	 * same modules share them
+	 */
+	private final Map<Declaration, WeakReference<Declaration>> sharedDeclarations = new WeakHashMap<Declaration, WeakReference<Declaration>>();
+
+	private final IElementChangedListener listener = new IElementChangedListener() {
+		public void elementChanged(ElementChangedEvent event) {
+			processDelta(event.getDelta());
+		}
+	};
+
+	/**
+	 * Search result of a single type or function, without its PHPDoc info
+	 */
+	private static class Declaration {
+		private static final String[] NO_NAMES = new String[0];
+
+		final int elementType;
+		final int flags;
+		final int offset;
+		final int length;
+		final int nameOffset;
+		final int nameLength;
+		final String elementName;
+		final String metadata;
+		final String qualifier;
+		final String parent;
+		final ISourceModule sourceModule;
+
+		Declaration(int elementType, int flags, int offset, int length,
+				int nameOffset, int nameLength, String elementName,
+				String metadata, String qualifier, String parent,
+				ISourceModule sourceModule) {
+			this.elementType = elementType;
+			this.flags = flags;
+			this.offset = offset;
+			this.length = length;
+			this.nameOffset = nameOffset;
+			this.nameLength = nameLength;
+			this.elementName = elementName;
+			this.metadata = metadata;
+			this.qualifier = qualifier;
+			this.parent = parent;
+			this.sourceModule = sourceModule;
+		}
+
+		boolean matches(int elementType, int trueFlags, int falseFlags) {
+			return this.elementType == elementType
+					&& (trueFlags == 0 || (flags & trueFlags) != 0)
+					&& (falseFlags == 0 || (flags & falseFlags) == 0);
+		}
+
+		boolean isType() {
+			return elementType == IModelElement.TYPE
+					&& (flags & Modifiers.AccNameSpace) == 0;
+		}
+
+		String getFullName() {
+			return qualifier == null ? elementName : qualifier
+					+ NamespaceReference.NAMESPACE_SEPARATOR + elementName;
+		}
+
+		String[] getSuperNames() {
+			return metadata == null ? NO_NAMES : IndexMetadata.split(metadata,
+					',');
+		}
+
+		IModelElement resolve(PhpElementResolver resolver) {
+			return resolver.resolveWithoutDoc(elementType, flags, offset,
+					length, nameOffset, nameLength, elementName, metadata,
+					qualifier, parent, sourceModule);
+		}
+
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Declaration)) {
+				return false;
+			}
+			final Declaration other = (Declaration) obj;
+			return elementType == other.elementType && flags == other.flags
+					&& offset == other.offset && length == other.length
+					&& nameOffset == other.nameOffset
+					&& nameLength == other.nameLength
+					&& elementName.equals(other.elementName)
+					&& equals(metadata, other.metadata)
+					&& equals(qualifier, other.qualifier)
+					&& equals(parent, other.parent)
+					&& sourceModule.equals(other.sourceModule);
+		}
+
+		public int hashCode() {
+			return (elementName.hashCode() * 31 + offset) * 31
+					+ sourceModule.hashCode();
+		}
+
+		private static boolean equals(String s1, String s2) {
+			return s1 == null ? s2 == null : s1.equals(s2);
+		}
+	}
+
+	/**
+	 * Names of a single project
+	 */
+	private static class ProjectIndex {
+		final IDLTKSearchScope scope;
+
+		// following fields are guarded by this
+		final TreeMap<String, List<Declaration>> names = new TreeMap<String, List<Declaration>>();
+		final TreeMap<String, List<Declaration>> humps = new TreeMap<String, List<Declaration>>();
+		final Map<ISourceModule, List<Declaration>> modules = new HashMap<ISourceModule, List<Declaration>>();
+		final Set<ISourceModule> dirty = new HashSet<ISourceModule>();
+		final TypeHierarchyGraph<Declaration> hierarchy = new TypeHierarchyGraph<Declaration>();
+
+		ProjectIndex(IScriptProject scriptProject) {
+			this.scope = SearchEngine.createSearchScope(scriptProject);
+		}
+
+		/**
+		 * Replaces the declarations of the given modules
+		 */
+		synchronized void update(ISourceModule[] sourceModules,
+				List<Declaration> declarations) {
+			for (ISourceModule sourceModule : sourceModules) {
+				remove(sourceModule);
+			}
+			for (Declaration declaration : declarations) {
+				add(declaration);
+			}
+		}
+
+		private void add(Declaration declaration) {
+			List<Declaration> declarations = modules.get(declaration.sourceModule);
+			if (declarations == null) {
+				declarations = new ArrayList<Declaration>(2);
+				modules.put(declaration.sourceModule, declarations);
+			}
+			declarations.add(declaration);
+			if (declaration.isType()) {
+				hierarchy.add(declaration.getFullName(),
+						declaration.getSuperNames(), declaration);
+			}
+			addTo(names, declaration.elementName.toLowerCase(), declaration);
+			final String key = getHumps(declaration.elementName);
+			if (key.length() > 0) {
+				addTo(humps, key, declaration);
+			}
+		}
+
+		private void remove(ISourceModule sourceModule) {
+			final List<Declaration> declarations = modules.remove(sourceModule);
+			if (declarations == null) {
+				return;
+			}
+			for (Declaration declaration : declarations) {
+				if (declaration.isType()) {
+					hierarchy.remove(declaration.getFullName(), declaration);
+				}
+				removeFrom(names, declaration.elementName.toLowerCase(),
+						declaration);
+				removeFrom(humps, getHumps(declaration.elementName),
+						declaration);
+			}
+		}
+
+		synchronized void markDirty(ISourceModule sourceModule) {
+			dirty.add(sourceModule);
+		}
+
+		/**
+		 * Returns the modules that have to be searched again, and forgets them
+		 * unless the indexer is still busy with them
+		 */
+		synchronized ISourceModule[] takeDirty(boolean indexerBusy) {
+			final ISourceModule[] result = dirty
+					.toArray(new ISourceModule[dirty.size()]);
+			if (!indexerBusy) {
+				dirty.clear();
+			}
+			return result;
+		}
+
+		synchronized List<Declaration> find(String prefix, MatchRule matchRule) {
+			final List<Declaration> result = new ArrayList<Declaration>();
+			SortedMap<String, List<Declaration>> range;
+			if (matchRule == MatchRule.EXACT) {
+				final List<Declaration> declarations = names.get(prefix
+						.toLowerCase());
+				if (declarations != null) {
+					result.addAll(declarations);
+				}
+				return result;
+			} else if (matchRule == MatchRule.CAMEL_CASE) {
+				range = getRange(humps, getHumps(prefix));
+			} else {
+				range = getRange(names, prefix.toLowerCase());
+			}
+			for (List<Declaration> declarations : range.values()) {
+				result.addAll(declarations);
+			}
+			return result;
+		}
+
+		private static SortedMap<String, List<Declaration>> getRange(
+				TreeMap<String, List<Declaration>> map, String prefix) {
+			if (prefix.length() == 0) {
+				return map;
+			}
+			// all keys starting with the prefix
+			return map.subMap(prefix, prefix + Character.MAX_VALUE);
+		}
+
+		private static void addTo(Map<String, List<Declaration>> map,
+				String key, Declaration declaration) {
+			List<Declaration> declarations = map.get(key);
+			if (declarations == null) {
+				declarations = new ArrayList<Declaration>(1);
+				map.put(key, declarations);
+			}
+			declarations.add(declaration);
+		}
+
+		private static void removeFrom(Map<String, List<Declaration>> map,
+				String key, Declaration declaration) {
+			final List<Declaration> declarations = map.get(key);
+			if (declarations != null) {
+				declarations.remove(declaration);
+				if (declarations.isEmpty()) {
+					map.remove(key);
+				}
+			}
+		}
+	}
+
+	private GlobalNameIndex() {
+		DLTKCore.addElementChangedListener(listener);
+	}
+
+	public static synchronized GlobalNameIndex getDefault() {
+		if (instance == null) {
+			instance = new GlobalNameIndex();
+		}
+		return instance;
+	}
+
+	/**
+	 * Unregisters the model listener and releases all indexes
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			DLTKCore.removeElementChangedListener(instance.listener);
+			instance.clear();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Finds global types of the project like
+	 * {@link PhpModelAccess#findTypes(String, MatchRule, int, int, IDLTKSearchScope, org.eclipse.core.runtime.IProgressMonitor)}
+	 * does with a project scope (traits are excluded)
+	 * 
+	 * @param scriptProject
+	 *            Script project
+	 * @param name
+	 *            Type name or prefix
+	 * @param matchRule
+	 *            {@link MatchRule#EXACT}, {@link MatchRule#PREFIX} or
+	 *            {@link MatchRule#CAMEL_CASE}
+	 * @param trueFlags
+	 *            Flags that types must have one of, or <code>0</code>
+	 * @param falseFlags
+	 *            Flags that types must not have
+	 * @param scope
+	 *            Search scope, within the scope of the project
+	 * @return matching types, or <code>null</code> if the index isn't
+	 *         available yet
+	 */
+	public IType[] findTypes(IScriptProject scriptProject, String name,
+			MatchRule matchRule, int trueFlags, int falseFlags,
+			IDLTKSearchScope scope) {
+		final List<IModelElement> result = find(scriptProject, null, name,
+				matchRule, IModelElement.TYPE, trueFlags, falseFlags
+						| IPHPModifiers.AccTrait, scope);
+		return result == null ? null : result.toArray(new IType[result
+				.size()]);
+	}
+
+	/**
+	 * Finds the types (including traits) declared in the given namespace,
+	 * like {@link IType#getTypes()} of the namespace does
+	 * 
+	 * @param scriptProject
+	 *            Script project
+	 * @param namespace
+	 *            Full name of the namespace, without leading separator
+	 * @param prefix
+	 *            Type name prefix
+	 * @param scope
+	 *            Search scope, within the scope of the project
+	 * @return matching types, or <code>null</code> if the index isn't
+	 *         available yet
+	 */
+	public IType[] findNamespaceTypes(IScriptProject scriptProject,
+			String namespace, String prefix, IDLTKSearchScope scope) {
+		final List<IModelElement> result = find(scriptProject, namespace,
+				prefix, MatchRule.PREFIX, IModelElement.TYPE, 0,
+				Modifiers.AccNameSpace, scope);
+		return result == null ? null : result.toArray(new IType[result
+				.size()]);
+	}
+
+	/**
+	 * Finds global functions of the project like
+	 * {@link PhpModelAccess#findMethods(String, MatchRule, int, int, IDLTKSearchScope, org.eclipse.core.runtime.IProgressMonitor)}
+	 * does with a project scope and the {@link Modifiers#AccGlobal} flag
+	 * 
+	 * @param scriptProject
+	 *            Script project
+	 * @param name
+	 *            Function name or prefix
+	 * @param matchRule
+	 *            {@link MatchRule#EXACT}, {@link MatchRule#PREFIX} or
+	 *            {@link MatchRule#CAMEL_CASE}
+	 * @param scope
+	 *            Search scope, within the scope of the project
+	 * @return matching functions, or <code>null</code> if the index isn't
+	 *         available yet
+	 */
+	public IMethod[] findFunctions(IScriptProject scriptProject, String name,
+			MatchRule matchRule, IDLTKSearchScope scope) {
+		final List<IModelElement> result = find(scriptProject, null, name,
+				matchRule, IModelElement.METHOD, Modifiers.AccGlobal, 0, scope);
+		return result == null ? null : result.toArray(new IMethod[result
+				.size()]);
+	}
+
+	/**
+	 * Finds the functions declared in the given namespace, like
+	 * {@link IType#getMethods()} of the namespace does
+	 * 
+	 * @param scriptProject
+	 *            Script project
+	 * @param namespace
+	 *            Full name of the namespace, without leading separator
+	 * @param prefix
+	 *            Function name prefix
+	 * @param scope
+	 *            Search scope, within the scope of the project
+	 * @return matching functions, or <code>null</code> if the index isn't
+	 *         available yet
+	 */
+	public IMethod[] findNamespaceFunctions(IScriptProject scriptProject,
+			String namespace, String prefix, IDLTKSearchScope scope) {
+		final List<IModelElement> result = find(scriptProject, namespace,
+				prefix, MatchRule.PREFIX, IModelElement.METHOD,
+				Modifiers.AccGlobal, 0, scope);
+		return result == null ? null : result.toArray(new IMethod[result
+				.size()]);
+	}
+
+	/**
+	 * Returns the super types of the given type, the nearest first, like
+	 * {@link ITypeHierarchy#getAllSupertypes(IType)} does for a super type
+	 * hierarchy of the type. The direct super types are taken from the type
+	 * itself, so changes in a working copy are respected.
+	 * 
+	 * @param type
+	 *            Type
+	 * @param all
+	 *            Whether to return the super types of the super types too
+	 * @return super types (unfiltered by file network), or <code>null</code>
+	 *         if the index isn't available yet, or the type has a super type
+	 *         that isn't declared in the project, or no super types at all
+	 *         (then the caller has to ask the type hierarchy)
+	 * @throws ModelException
+	 */
+	public IType[] getSuperTypes(IType type, boolean all)
+			throws ModelException {
+		final IScriptProject scriptProject = type.getScriptProject();
+		if (scriptProject == null || !scriptProject.exists()) {
+			return null;
+		}
+		final ProjectIndex index = getProjectIndex(scriptProject);
+		if (index == null) {
+			return null;
+		}
+		final String[] superNames = type.getSuperClasses();
+		if (superNames == null || superNames.length == 0) {
+			return null;
+		}
+		final List<Declaration> declarations;
+		synchronized (index) {
+			declarations = index.hierarchy.getSuperTypes(superNames, all);
+		}
+		return declarations != null ? resolveTypes(declarations) : null;
+	}
+
+	/**
+	 * Returns the types of the project that extend or implement the given
+	 * type, the nearest first
+	 * 
+	 * @param scriptProject
+	 *            Project to look in (the type may be declared in a library of
+	 *            the project)
+	 * @param type
+	 *            Type
+	 * @param all
+	 *            Whether to return the sub types of the sub types too
+	 * @return sub types (unfiltered by file network), or <code>null</code> if
+	 *         the index isn't available yet, or the type isn't declared in the
+	 *         project
+	 */
+	public IType[] getSubTypes(IScriptProject scriptProject, IType type,
+			boolean all) {
+		if (scriptProject == null || !scriptProject.exists()) {
+			return null;
+		}
+		final ProjectIndex index = getProjectIndex(scriptProject);
+		if (index == null) {
+			return null;
+		}
+		final List<Declaration> declarations;
+		synchronized (index) {
+			declarations = index.hierarchy.getSubTypes(
+					PHPModelUtils.getFullName(type), all);
+		}
+		return declarations != null ? resolveTypes(declarations) : null;
+	}
+
+	private static IType[] resolveTypes(List<Declaration> declarations) {
+		final PhpElementResolver resolver = new PhpElementResolver();
+		final List<IType> result = new ArrayList<IType>(declarations.size());
+		for (Declaration declaration : declarations) {
+			final IModelElement element = declaration.resolve(resolver);
+			if (element instanceof IType) {
+				result.add((IType) element);
+			}
+		}
+		return result.toArray(new IType[result.size()]);
+	}
+
+	/**
+	 * @param namespace
+	 *            Namespace the elements must be declared in, or
+	 *            <code>null</code> for any
+	 */
+	private List<IModelElement> find(IScriptProject scriptProject,
+			String namespace, String name, MatchRule matchRule,
+			int elementType, int trueFlags, int falseFlags,
+			IDLTKSearchScope scope) {
+		if (scriptProject == null || !scriptProject.exists() || name == null) {
+			return null;
+		}
+		final ProjectIndex index = getProjectIndex(scriptProject);
+		if (index == null) {
+			return null;
+		}
+		final PhpElementResolver resolver = new PhpElementResolver();
+		final List<IModelElement> result = new ArrayList<IModelElement>();
+		for (Declaration declaration : index.find(name, matchRule)) {
+			if (declaration.matches(elementType, trueFlags, falseFlags)
+					&& (namespace == null || namespace
+							.equalsIgnoreCase(declaration.qualifier))
+					&& scope.encloses(declaration.sourceModule)) {
+				final IModelElement element = declaration.resolve(resolver);
+				if (element != null) {
+					result.add(element);
+				}
+			}
+		}
+		return result;
+	}
+
+	private ProjectIndex getProjectIndex(IScriptProject scriptProject) {
+		final boolean indexerBusy = isIndexerBusy();
+		final ProjectIndex index;
+		synchronized (projectIndexes) {
+			index = projectIndexes.get(scriptProject);
+			if (index == null) {
+				if (!indexerBusy && !loadingIndexes.containsKey(scriptProject)) {
+					final ProjectIndex loading = new ProjectIndex(scriptProject);
+					loadingIndexes.put(scriptProject, loading);
+					scheduleLoad(scriptProject, loading);
+				}
+				return null;
+			}
+		}
+		final ISourceModule[] dirty = index.takeDirty(indexerBusy);
+		if (dirty.length > 0) {
+			final List<Declaration> loaded = new ArrayList<Declaration>();
+			for (ISourceModule sourceModule : dirty) {
+				final List<Declaration> moduleDeclarations = load(SearchEngine
+						.createSearchScope(sourceModule));
+				if (moduleDeclarations != null) {
+					loaded.addAll(moduleDeclarations);
+				}
+			}
+			index.update(dirty, loaded);
+		}
+		return index;
+	}
+
+	/**
+	 * Loads the index of the project in the background, and makes it
+	 * available unless it was dropped meanwhile
+	 */
+	private void scheduleLoad(final IScriptProject scriptProject,
+			final ProjectIndex index) {
+		final Job job = new Job("") { //$NON-NLS-1$
+			protected IStatus run(IProgressMonitor monitor) {
+				final List<Declaration> loaded = load(index.scope);
+				if (loaded != null) {
+					index.update(new ISourceModule[0], loaded);
+				}
+				synchronized (projectIndexes) {
+					if (loadingIndexes.get(scriptProject) == index) {
+						loadingIndexes.remove(scriptProject);
+						if (loaded != null) {
+							projectIndexes.put(scriptProject, index);
+						}
+					}
+				}
+				return Status.OK_STATUS;
+			}
+
+			public boolean belongsTo(Object family) {
+				return family == LOAD_FAMILY;
+			}
+		};
+		job.setSystem(true);
+		job.setPriority(Job.SHORT);
+		job.schedule();
+	}
+
+	/**
+	 * Searches all global types and functions in the given scope
+	 * 
+	 * @return search results, or <code>null</code> if there's no search
+	 *         engine
+	 */
+	private List<Declaration> load(IDLTKSearchScope scope) {
+		final ISearchEngine searchEngine = ModelAccess
+				.getSearchEngine(PHPLanguageToolkit.getDefault());
+		if (searchEngine == null) {
+			return null;
+		}
+		final List<Declaration> result = new ArrayList<Declaration>();
+		final ISearchRequestor requestor = new ISearchRequestor() {
+			public void match(int elementType, int flags, int offset,
+					int length, int nameOffset, int nameLength,
+					String elementName, String metadata, String doc,
+					String qualifier, String parent,
+					ISourceModule sourceModule, boolean isReference) {
+				result.add(share(new Declaration(elementType, flags, offset,
+						length, nameOffset, nameLength, elementName, metadata,
+						qualifier, parent, sourceModule)));
+			}
+		};
+		searchEngine.search(IModelElement.TYPE, null, "", 0, 0, 0, //$NON-NLS-1$
+				SearchFor.DECLARATIONS, MatchRule.PREFIX, scope, requestor,
+				null);
+		searchEngine.search(IModelElement.METHOD, null, "", //$NON-NLS-1$
+				Modifiers.AccGlobal, 0, 0, SearchFor.DECLARATIONS,
+				MatchRule.PREFIX, scope, requestor, null);
+		return result;
+	}
+
+	/**
+	 * Returns the same search result loaded by the index of another project,
+	 * if any
+	 */
+	private Declaration share(Declaration declaration) {
+		synchronized (sharedDeclarations) {
+			final WeakReference<Declaration> reference = sharedDeclarations
+					.get(declaration);
+			final Declaration shared = reference != null ? reference.get()
+					: null;
+			if (shared != null) {
+				return shared;
+			}
+			sharedDeclarations.put(declaration,
+					new WeakReference<Declaration>(declaration));
+			return declaration;
+		}
+	}
+
+	private void clear() {
+		synchronized (projectIndexes) {
+			projectIndexes.clear();
+			loadingIndexes.clear();
+		}
+		synchronized (sharedDeclarations) {
+			sharedDeclarations.clear();
+		}
+	}
+
+	private void removeProjectIndex(IScriptProject scriptProject) {
+		synchronized (projectIndexes) {
+			projectIndexes.remove(scriptProject);
+			loadingIndexes.remove(scriptProject);
+		}
+	}
+
+	private static boolean isIndexerBusy() {
+		return ModelManager.getModelManager().getIndexManager()
+				.awaitingJobsCount() > 0;
+	}
+
+	/**
+	 * Returns the upper case humps of a name ("NPE" for
+	 * "NullPointerException"), used for camel-case queries
+	 */
+	static String getHumps(String name) {
+		final StringBuilder humps = new StringBuilder();
+		for (int i = 0; i < name.length(); i++) {
+			final char c = name.charAt(i);
+			if (Character.isUpperCase(c) || (i == 0 && Character.isLetter(c))) {
+				humps.append(Character.toUpperCase(c));
+			}
+		}
+		return humps.toString();
+	}
+
+	private void processDelta(IModelElementDelta delta) {
+		final IModelElement element = delta.getElement();
+		switch (element.getElementType()) {
+		case IModelElement.SCRIPT_MODEL:
+			processChildren(delta);
+			break;
+
+		case IModelElement.SCRIPT_PROJECT:
+			if (delta.getKind() != IModelElementDelta.CHANGED
+					|| (delta.getFlags() & IModelElementDelta.F_BUILDPATH_CHANGED) != 0) {
+				// other projects may reference this one
+				clear();
+			} else {
+				processChildren(delta);
+			}
+			break;
+
+		case IModelElement.PROJECT_FRAGMENT:
+		case IModelElement.SCRIPT_FOLDER:
+			if (delta.getKind() != IModelElementDelta.CHANGED) {
+				removeProjectIndex(element.getScriptProject());
+			} else {
+				processChildren(delta);
+			}
+			break;
+
+		case IModelElement.SOURCE_MODULE:
+			processSourceModuleDelta(delta, (ISourceModule) element);
+			break;
+
+		default:
+			break;
+		}
+	}
+
+	private void processChildren(IModelElementDelta delta) {
+		for (IModelElementDelta child : delta.getAffectedChildren()) {
+			processDelta(child);
+		}
+	}
+
+	private void processSourceModuleDelta(IModelElementDelta delta,
+			ISourceModule sourceModule) {
+		if (delta.getKind() == IModelElementDelta.CHANGED
+				&& ((delta.getFlags() & IModelElementDelta.F_FINE_GRAINED) != 0 || (delta
+						.getFlags() & (IModelElementDelta.F_CONTENT | IModelElementDelta.F_CHILDREN)) == 0)) {
+			// working copy changes aren't indexed
+			return;
+		}
+		// the module may belong to a library or a project that is referenced
+		// by other projects
+		// indexes that are being loaded may have searched the module before
+		// it changed
+		final List<ProjectIndex> indexes;
+		synchronized (projectIndexes) {
+			indexes = new ArrayList<ProjectIndex>(projectIndexes.values());
+			indexes.addAll(loadingIndexes.values());
+		}
+		for (ProjectIndex index : indexes) {
+			if (index.scope.encloses(sourceModule)) {
+				index.markDirty(sourceModule);
+			}
+		}
+	}
+}
@@ -3,35 +3,23 @@ package org.eclipse.php.internal.core.model;
 import java.util.*;
 
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.dltk.ast.Modifiers;
 import org.eclipse.dltk.core.*;
-import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
-import org.eclipse.dltk.core.search.IDLTKSearchScope;
-import org.eclipse.dltk.core.search.SearchEngine;
 import org.eclipse.php.core.compiler.PHPFlags;
-import org.eclipse.php.internal.core.filenetwork.FileNetworkUtility;
-import org.eclipse.php.internal.core.filenetwork.ReferenceTree;
 import org.eclipse.php.internal.core.typeinference.IModelAccessCache;
 import org.eclipse.php.internal.core.typeinference.PHPModelUtils;
 
 /**
  * This class can be used for caching model access results during a sequence of
- * processes that run on the same file at a time when model updates are
- * impossible. Each method first searches for all elements using a '*' pattern,
- * then it caches results for a subsequent queries. This class is not thread
- * safe.
+ * processes that run on the same file. Search results and type hierarchies are
+ * taken from the project wide {@link ProjectModelAccessCache}, which is thread
+ * safe and is kept up to date by model deltas; this class only filters them
+ * according to the file network of the current file.
  * 
  * @author Michael
  */
 public class PerFileModelAccessCache implements IModelAccessCache {
 
 	private ISourceModule sourceModule;
-	private Map<IType, ITypeHierarchy> hierarchyCache = Collections
-			.synchronizedMap(new HashMap<IType, ITypeHierarchy>());
-	private Map<String, Collection<IMethod>> globalFunctionsCache;
-	private Map<String, Collection<IType>> allTypesCache;
-	private Map<String, Collection<IType>> allTraitsCache;
-	private ReferenceTree fileHierarchy;
 
 	/**
 	 * Constructs new cache
@@ -41,10 +29,6 @@ public class PerFileModelAccessCache implements IModelAccessCache {
 	 */
 	public PerFileModelAccessCache(ISourceModule sourceModule) {
 		this.sourceModule = sourceModule;
-		allTraitsCache = Collections
-				.synchronizedMap(new HashMap<String, Collection<IType>>());
-		allTypesCache = Collections
-				.synchronizedMap(new HashMap<String, Collection<IType>>());
 	}
 
 	public ISourceModule getSourceModule() {
@@ -53,38 +37,8 @@ public class PerFileModelAccessCache implements IModelAccessCache {
 
 	public ITypeHierarchy getSuperTypeHierarchy(IType type,
 			IProgressMonitor monitor) throws ModelException {
-
-		ITypeHierarchy hierarchy = hierarchyCache.get(type);
-		if (hierarchy == null) {
-			hierarchy = type.newSupertypeHierarchy(monitor);
-			hierarchyCache.put(type, hierarchy);
-		}
-		return hierarchy;
-	}
-
-	/**
-	 * Analyzes file dependences, and builds tree of all source modules, which
-	 * are referenced by the given source module.
-	 * 
-	 * @param sourceModule
-	 *            Current source module
-	 * @param monitor
-	 *            Progress monitor
-	 */
-	public ReferenceTree getFileHierarchy(ISourceModule sourceModule,
-			IProgressMonitor monitor) {
-
-		if (!this.sourceModule.equals(sourceModule)) {
-			// Invoke a new search, since we only cache for the original file in
-			// this class:
-			return FileNetworkUtility.buildReferencedFilesTree(sourceModule,
-					monitor);
-		}
-		if (fileHierarchy == null) {
-			fileHierarchy = FileNetworkUtility.buildReferencedFilesTree(
-					sourceModule, monitor);
-		}
-		return fileHierarchy;
+		return ProjectModelAccessCache.getDefault().getSuperTypeHierarchy(type,
+				monitor);
 	}
 
 	/**
@@ -122,8 +76,7 @@ public class PerFileModelAccessCache implements IModelAccessCache {
 			return filteredElements;
 		}
 
-		return PHPModelUtils.fileNetworkFilter(sourceModule, elements, this,
-				monitor);
+		return PHPModelUtils.fileNetworkFilter(sourceModule, elements, monitor);
 	}
 
 	/**
@@ -145,45 +98,9 @@ public class PerFileModelAccessCache implements IModelAccessCache {
 		if (functionName == null) {
 			return new ArrayList<IMethod>();
 		}
-		Collection<IMethod> functions;
-
-		if (!this.sourceModule.equals(sourceModule)) {
-			// Invoke a new search, since we only cache for the original file in
-			// this class:
-			IScriptProject scriptProject = sourceModule.getScriptProject();
-			IDLTKSearchScope scope = SearchEngine
-					.createSearchScope(scriptProject);
-			functions = Arrays.asList(PhpModelAccess.getDefault().findMethods(
-					functionName, MatchRule.EXACT, Modifiers.AccGlobal, 0,
-					scope, monitor));
-
-		} else {
-			functionName = functionName.toLowerCase();
-
-			if (globalFunctionsCache == null) {
-				globalFunctionsCache = Collections
-						.synchronizedMap(new HashMap<String, Collection<IMethod>>());
-
-				functionName = functionName.toLowerCase();
-				if (!globalFunctionsCache.containsKey(functionName)) {
-					IScriptProject scriptProject = sourceModule
-							.getScriptProject();
-					IDLTKSearchScope scope = SearchEngine
-							.createSearchScope(scriptProject);
-
-					IMethod[] allFunctions = PhpModelAccess.getDefault()
-							.findMethods(functionName, MatchRule.EXACT,
-									Modifiers.AccGlobal, 0, scope, monitor);
-					Collection<IMethod> funcList = new ArrayList<IMethod>(
-							allFunctions.length);
-					for (IMethod function : allFunctions) {
-						funcList.add(function);
-					}
-					globalFunctionsCache.put(functionName, funcList);
-				}
-			}
-			functions = globalFunctionsCache.get(functionName);
-		}
+		Collection<IMethod> functions = ProjectModelAccessCache.getDefault()
+				.getGlobalFunctions(sourceModule.getScriptProject(),
+						functionName, monitor);
 		return filterElements(sourceModule, functions, monitor);
 	}
 
@@ -202,49 +119,9 @@ public class PerFileModelAccessCache implements IModelAccessCache {
 	public Collection<IType> getTypes(ISourceModule sourceModule,
 			String typeName, String namespaceName, IProgressMonitor monitor) {
 
-		Collection<IType> types;
-
-		if (!this.sourceModule.equals(sourceModule)) {
-			// Invoke a new search, since we only cache for the original file in
-			// this class:
-			IScriptProject scriptProject = sourceModule.getScriptProject();
-			IDLTKSearchScope scope = SearchEngine
-					.createSearchScope(scriptProject);
-			types = Arrays.asList(PhpModelAccess.getDefault()
-					.findTypes(namespaceName, typeName, MatchRule.EXACT, 0, 0,
-							scope, null));
-
-		} else {
-			typeName = typeName.toLowerCase();
-
-			// if the namespace is not blank, append it to the key.
-			final StringBuffer key = new StringBuffer();
-			if (namespaceName != null && !"".equals(namespaceName.trim())) { //$NON-NLS-1$
-				String nameSpace = namespaceName;
-				if (namespaceName.startsWith("\\") //$NON-NLS-1$
-						|| namespaceName.startsWith("/")) { //$NON-NLS-1$
-					nameSpace = namespaceName.substring(1);
-				}
-				if (nameSpace.length() > 0) {
-					key.append(nameSpace.toLowerCase()).append("$"); //$NON-NLS-1$
-				}
-			}
-			key.append(typeName);
-			final String searchFor = key.toString();
-			if (!allTypesCache.containsKey(searchFor)) {
-				IScriptProject scriptProject = sourceModule.getScriptProject();
-				IDLTKSearchScope scope = SearchEngine
-						.createSearchScope(scriptProject);
-
-				allTypesCache.put(
-						searchFor,
-						Arrays.asList(PhpModelAccess.getDefault().findTypes(
-								namespaceName, typeName, MatchRule.EXACT, 0, 0,
-								scope, null)));
-			}
-
-			types = allTypesCache.get(searchFor);
-		}
+		Collection<IType> types = ProjectModelAccessCache.getDefault()
+				.getTypes(sourceModule.getScriptProject(), typeName,
+						namespaceName, monitor);
 		return filterElements(sourceModule, types, monitor);
 	}
 
@@ -263,49 +140,9 @@ public class PerFileModelAccessCache implements IModelAccessCache {
 	public Collection<IType> getTraits(ISourceModule sourceModule,
 			String typeName, String namespaceName, IProgressMonitor monitor) {
 
-		Collection<IType> types;
-
-		if (!this.sourceModule.equals(sourceModule)) {
-			// Invoke a new search, since we only cache for the original file in
-			// this class:
-			IScriptProject scriptProject = sourceModule.getScriptProject();
-			IDLTKSearchScope scope = SearchEngine
-					.createSearchScope(scriptProject);
-			types = Arrays.asList(PhpModelAccess.getDefault().findTraits(
-					typeName, MatchRule.EXACT, 0, 0, scope, null));
-
-		} else {
-			typeName = typeName.toLowerCase();
-
-			// if the namespace is not blank, append it to the key.
-			final StringBuffer key = new StringBuffer();
-			if (namespaceName != null && !"".equals(namespaceName.trim())) { //$NON-NLS-1$
-				String nameSpace = namespaceName;
-				if (namespaceName.startsWith("\\") //$NON-NLS-1$
-						|| namespaceName.startsWith("/")) { //$NON-NLS-1$
-					nameSpace = namespaceName.substring(1);
-				}
-				if (nameSpace.length() > 0) {
-					key.append(nameSpace.toLowerCase()).append("$"); //$NON-NLS-1$
-				}
-			}
-			key.append(typeName);
-
-			final String searchFor = key.toString();
-			if (!allTraitsCache.containsKey(searchFor)) {
-				IScriptProject scriptProject = sourceModule.getScriptProject();
-				IDLTKSearchScope scope = SearchEngine
-						.createSearchScope(scriptProject);
-
-				allTraitsCache.put(
-						searchFor,
-						Arrays.asList(PhpModelAccess.getDefault().findTraits(
-								namespaceName, typeName, MatchRule.PREFIX, 0,
-								0, scope, null)));
-			}
-
-			types = allTraitsCache.get(searchFor);
-		}
+		Collection<IType> types = ProjectModelAccessCache.getDefault()
+				.getTraits(sourceModule.getScriptProject(), typeName,
+						namespaceName, monitor);
 		return filterElements(sourceModule, types, monitor);
 	}
 
@@ -0,0 +1,551 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.model;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.ast.Modifiers;
+import org.eclipse.dltk.core.*;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.eclipse.dltk.core.search.IDLTKSearchScope;
+import org.eclipse.dltk.core.search.SearchEngine;
+
+/**
+ * Thread safe cache of model access results, shared by all clients that work
+ * on the same script project (code assist, selection, hover, semantic
+ * highlighting). It holds exact name searches of types, traits and global
+ * functions, and super type hierarchies. Results are not filtered by a file
+ * network, this is done by {@link PerFileModelAccessCache} for each request.
+ * <p>
+ * Entries are evicted incrementally according to model deltas, only in the
+ * caches of the projects that can see the changed element: removed elements
+ * evict the entries that contain them, added elements evict the entries with
+ * the same name, and changed types evict the hierarchies they participate in.
+ * Added or changed types evict all hierarchies, since any of them may now
+ * resolve one of its super types to the new type.
+ * Build path changes clear the whole cache. The number of entries of each
+ * project is bounded, results of cancelled searches are not stored.
+ * </p>
+ */
+public class ProjectModelAccessCache {
+
+	private static ProjectModelAccessCache instance;
+
+	/** Maximum number of search results of each kind per project */
+	private static final int MAX_SEARCHES = 1000;
+
+	/** Maximum number of type hierarchies per project */
+	private static final int MAX_HIERARCHIES = 200;
+
+	private final ConcurrentMap<IScriptProject, ProjectCache> projectCaches = new ConcurrentHashMap<IScriptProject, ProjectCache>();
+
+	private final IElementChangedListener listener = new IElementChangedListener() {
+		public void elementChanged(ElementChangedEvent event) {
+			processDelta(event.getDelta());
+		}
+	};
+
+	private static class ProjectCache {
+		final ConcurrentMap<String, Collection<IType>> types = new ConcurrentHashMap<String, Collection<IType>>();
+		final ConcurrentMap<String, Collection<IType>> traits = new ConcurrentHashMap<String, Collection<IType>>();
+		final ConcurrentMap<String, Collection<IMethod>> functions = new ConcurrentHashMap<String, Collection<IMethod>>();
+		final ConcurrentMap<IType, ITypeHierarchy> hierarchies = new ConcurrentHashMap<IType, ITypeHierarchy>();
+
+		/**
+		 * Incremented on every eviction, so that results of a search that ran
+		 * concurrently with a model change are not stored. Evictions and
+		 * stores are synchronized on the cache.
+		 */
+		final AtomicInteger modCount = new AtomicInteger();
+
+		synchronized void clear() {
+			modCount.incrementAndGet();
+			types.clear();
+			traits.clear();
+			functions.clear();
+			hierarchies.clear();
+		}
+	}
+
+	private ProjectModelAccessCache() {
+		DLTKCore.addElementChangedListener(listener);
+	}
+
+	public static synchronized ProjectModelAccessCache getDefault() {
+		if (instance == null) {
+			instance = new ProjectModelAccessCache();
+		}
+		return instance;
+	}
+
+	/**
+	 * Unregisters the model listener and releases all cached results
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			DLTKCore.removeElementChangedListener(instance.listener);
+			instance.projectCaches.clear();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Returns cached result of an exact type search in the given project, or
+	 * invokes a new search query
+	 * 
+	 * @param scriptProject
+	 *            Script project
+	 * @param typeName
+	 *            The name of the type (class, interface or namespace)
+	 * @param namespaceName
+	 *            Namespace name (may be <code>null</code>)
+	 * @param monitor
+	 *            Progress monitor
+	 * @return unmodifiable collection of types
+	 */
+	public Collection<IType> getTypes(IScriptProject scriptProject,
+			String typeName, String namespaceName, IProgressMonitor monitor) {
+		final ProjectCache cache = getProjectCache(scriptProject);
+		final String key = getTypeKey(typeName, namespaceName);
+		Collection<IType> types = cache.types.get(key);
+		if (types == null) {
+			int modCount = cache.modCount.get();
+			types = asCollection(PhpModelAccess.getDefault().findTypes(
+					namespaceName, typeName, MatchRule.EXACT, 0, 0,
+					createSearchScope(scriptProject), null));
+			store(cache, cache.types, key, types, modCount, MAX_SEARCHES,
+					null);
+		}
+		return types;
+	}
+
+	/**
+	 * Returns cached result of an exact trait search in the given project, or
+	 * invokes a new search query
+	 * 
+	 * @param scriptProject
+	 *            Script project
+	 * @param typeName
+	 *            The name of the trait
+	 * @param namespaceName
+	 *            Namespace name (may be <code>null</code>)
+	 * @param monitor
+	 *            Progress monitor
+	 * @return unmodifiable collection of traits
+	 */
+	public Collection<IType> getTraits(IScriptProject scriptProject,
+			String typeName, String namespaceName, IProgressMonitor monitor) {
+		final ProjectCache cache = getProjectCache(scriptProject);
+		final String key = getTypeKey(typeName, namespaceName);
+		Collection<IType> traits = cache.traits.get(key);
+		if (traits == null) {
+			int modCount = cache.modCount.get();
+			traits = asCollection(PhpModelAccess.getDefault().findTraits(
+					namespaceName, typeName, MatchRule.EXACT, 0, 0,
+					createSearchScope(scriptProject), null));
+			store(cache, cache.traits, key, traits, modCount, MAX_SEARCHES,
+					null);
+		}
+		return traits;
+	}
+
+	/**
+	 * Returns cached result of a global function search in the given project,
+	 * or invokes a new search query
+	 * 
+	 * @param scriptProject
+	 *            Script project
+	 * @param functionName
+	 *            The name of the global function
+	 * @param monitor
+	 *            Progress monitor
+	 * @return unmodifiable collection of functions
+	 */
+	public Collection<IMethod> getGlobalFunctions(IScriptProject scriptProject,
+			String functionName, IProgressMonitor monitor) {
+		final ProjectCache cache = getProjectCache(scriptProject);
+		final String key = functionName.toLowerCase();
+		Collection<IMethod> functions = cache.functions.get(key);
+		if (functions == null) {
+			int modCount = cache.modCount.get();
+			functions = asCollection(PhpModelAccess.getDefault().findMethods(
+					functionName, MatchRule.EXACT, Modifiers.AccGlobal, 0,
+					createSearchScope(scriptProject), monitor));
+			store(cache, cache.functions, key, functions, modCount,
+					MAX_SEARCHES, monitor);
+		}
+		return functions;
+	}
+
+	/**
+	 * Returns cached super type hierarchy of the given type, or builds a new
+	 * one
+	 * 
+	 * @param type
+	 *            Type
+	 * @param monitor
+	 *            Progress monitor
+	 * @return super type hierarchy
+	 * @throws ModelException
+	 */
+	public ITypeHierarchy getSuperTypeHierarchy(IType type,
+			IProgressMonitor monitor) throws ModelException {
+		final ProjectCache cache = getProjectCache(type.getScriptProject());
+		ITypeHierarchy hierarchy = cache.hierarchies.get(type);
+		if (hierarchy == null) {
+			int modCount = cache.modCount.get();
+			hierarchy = type.newSupertypeHierarchy(monitor);
+			store(cache, cache.hierarchies, type, hierarchy, modCount,
+					MAX_HIERARCHIES, monitor);
+		}
+		return hierarchy;
+	}
+
+	/**
+	 * Clears all cached results
+	 */
+	public void clear() {
+		for (ProjectCache cache : projectCaches.values()) {
+			cache.clear();
+		}
+	}
+
+	private ProjectCache getProjectCache(IScriptProject scriptProject) {
+		ProjectCache cache = projectCaches.get(scriptProject);
+		if (cache == null) {
+			cache = new ProjectCache();
+			ProjectCache existing = projectCaches.putIfAbsent(scriptProject,
+					cache);
+			if (existing != null) {
+				cache = existing;
+			}
+		}
+		return cache;
+	}
+
+	private static <K, V> void store(ProjectCache cache,
+			ConcurrentMap<K, V> map, K key, V value, int modCount, int limit,
+			IProgressMonitor monitor) {
+		if (monitor != null && monitor.isCanceled()) {
+			// the result may be incomplete
+			return;
+		}
+		synchronized (cache) {
+			// don't store results that may have been computed before a model
+			// change, since the change could have been already processed
+			if (cache.modCount.get() != modCount) {
+				return;
+			}
+			if (map.size() >= limit) {
+				Iterator<K> i = map.keySet().iterator();
+				i.next();
+				i.remove();
+			}
+			map.putIfAbsent(key, value);
+		}
+	}
+
+	private static <T> Collection<T> asCollection(T[] elements) {
+		return Collections.unmodifiableList(Arrays.asList(elements));
+	}
+
+	private static IDLTKSearchScope createSearchScope(
+			IScriptProject scriptProject) {
+		return SearchEngine.createSearchScope(scriptProject);
+	}
+
+	/**
+	 * Builds a cache key from a type name and a namespace name
+	 * 
+	 * @param typeName
+	 *            Type name
+	 * @param namespaceName
+	 *            Namespace name (may be <code>null</code>)
+	 * @return lower case key in the form "namespace$type", or "type" if there's
+	 *         no namespace
+	 */
+	static String getTypeKey(String typeName, String namespaceName) {
+		final StringBuilder key = new StringBuilder();
+		if (namespaceName != null && !"".equals(namespaceName.trim())) { //$NON-NLS-1$
+			String nameSpace = namespaceName;
+			if (namespaceName.startsWith("\\") //$NON-NLS-1$
+					|| namespaceName.startsWith("/")) { //$NON-NLS-1$
+				nameSpace = namespaceName.substring(1);
+			}
+			if (nameSpace.length() > 0) {
+				key.append(nameSpace.toLowerCase()).append('$');
+			}
+		}
+		key.append(typeName.toLowerCase());
+		return key.toString();
+	}
+
+	private void processDelta(IModelElementDelta delta) {
+		final IModelElement element = delta.getElement();
+		switch (element.getElementType()) {
+		case IModelElement.SCRIPT_MODEL:
+			processChildren(delta);
+			break;
+
+		case IModelElement.SCRIPT_PROJECT:
+			if (delta.getKind() == IModelElementDelta.REMOVED) {
+				projectCaches.remove(element);
+				// other projects may reference the removed one
+				clear();
+			} else if (delta.getKind() == IModelElementDelta.ADDED
+					|| (delta.getFlags() & IModelElementDelta.F_BUILDPATH_CHANGED) != 0) {
+				clear();
+			} else {
+				processChildren(delta);
+			}
+			break;
+
+		case IModelElement.PROJECT_FRAGMENT:
+		case IModelElement.SCRIPT_FOLDER:
+			if (delta.getKind() != IModelElementDelta.CHANGED) {
+				clear(element);
+			} else {
+				processChildren(delta);
+			}
+			break;
+
+		case IModelElement.SOURCE_MODULE:
+			processSourceModuleDelta(delta, (ISourceModule) element);
+			break;
+
+		default:
+			break;
+		}
+	}
+
+	private void processChildren(IModelElementDelta delta) {
+		for (IModelElementDelta child : delta.getAffectedChildren()) {
+			processDelta(child);
+		}
+	}
+
+	private void processSourceModuleDelta(IModelElementDelta delta,
+			ISourceModule sourceModule) {
+		if (projectCaches.isEmpty()) {
+			return;
+		}
+		if (delta.getKind() == IModelElementDelta.CHANGED
+				&& (delta.getFlags() & IModelElementDelta.F_FINE_GRAINED) != 0) {
+			// reconcile delta: evict only what was touched
+			processMemberDeltas(delta.getAffectedChildren());
+			return;
+		}
+		if (delta.getKind() == IModelElementDelta.CHANGED
+				&& (delta.getFlags() & (IModelElementDelta.F_CONTENT | IModelElementDelta.F_CHILDREN)) == 0) {
+			return;
+		}
+
+		// the whole file was added, removed or changed: evict everything that
+		// was found in it, and everything that may be found in it now
+		evictElement(sourceModule);
+		if (delta.getKind() != IModelElementDelta.REMOVED
+				&& sourceModule.exists()) {
+			try {
+				evictDeclaredNames(sourceModule.getChildren());
+			} catch (ModelException e) {
+				clear(sourceModule);
+			}
+		}
+	}
+
+	private void processMemberDeltas(IModelElementDelta[] deltas) {
+		for (IModelElementDelta delta : deltas) {
+			final IModelElement element = delta.getElement();
+			switch (delta.getKind()) {
+			case IModelElementDelta.ADDED:
+				evictName(element);
+				if (element.getElementType() == IModelElement.TYPE) {
+					evictAllHierarchies(element);
+				}
+				break;
+			case IModelElementDelta.REMOVED:
+				evictElement(element);
+				break;
+			default:
+				if (element.getElementType() == IModelElement.TYPE) {
+					evictHierarchies((IType) element);
+				}
+				break;
+			}
+			processMemberDeltas(delta.getAffectedChildren());
+		}
+	}
+
+	private void evictDeclaredNames(IModelElement[] elements)
+			throws ModelException {
+		for (IModelElement element : elements) {
+			if (element.getElementType() == IModelElement.TYPE) {
+				evictName(element);
+				// cached hierarchies may have missed this type as a super type
+				evictAllHierarchies(element);
+				// namespaces contain types and functions
+				evictDeclaredNames(((IType) element).getChildren());
+			} else if (element.getElementType() == IModelElement.METHOD) {
+				evictName(element);
+			}
+		}
+	}
+
+	/**
+	 * Evicts all search results that can be found by the name of the given
+	 * element, in any namespace
+	 */
+	private void evictName(IModelElement element) {
+		final String name = element.getElementName().toLowerCase();
+		for (ProjectCache cache : getAffectedCaches(element)) {
+			synchronized (cache) {
+				cache.modCount.incrementAndGet();
+				if (element.getElementType() == IModelElement.METHOD) {
+					cache.functions.remove(name);
+				} else if (element.getElementType() == IModelElement.TYPE) {
+					evictTypeName(cache.types, name);
+					evictTypeName(cache.traits, name);
+				}
+			}
+		}
+	}
+
+	private static void evictTypeName(Map<String, Collection<IType>> map,
+			String name) {
+		Iterator<String> i = map.keySet().iterator();
+		while (i.hasNext()) {
+			String key = i.next();
+			if (key.equals(name)
+					|| (key.endsWith(name) && key.charAt(key.length()
+							- name.length() - 1) == '$')) {
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Evicts all entries that contain the given element, or one of its
+	 * children
+	 */
+	private void evictElement(IModelElement element) {
+		for (ProjectCache cache : getAffectedCaches(element)) {
+			synchronized (cache) {
+				cache.modCount.incrementAndGet();
+				evictContaining(cache.types, element);
+				evictContaining(cache.traits, element);
+				evictContaining(cache.functions, element);
+				Iterator<Map.Entry<IType, ITypeHierarchy>> i = cache.hierarchies
+						.entrySet().iterator();
+				while (i.hasNext()) {
+					Map.Entry<IType, ITypeHierarchy> entry = i.next();
+					if (isAncestor(element, entry.getKey())
+							|| containsAny(entry.getValue(), element)) {
+						i.remove();
+					}
+				}
+			}
+		}
+	}
+
+	private static <T extends IModelElement> void evictContaining(
+			Map<String, Collection<T>> map, IModelElement element) {
+		Iterator<Collection<T>> i = map.values().iterator();
+		while (i.hasNext()) {
+			for (T e : i.next()) {
+				if (isAncestor(element, e)) {
+					i.remove();
+					break;
+				}
+			}
+		}
+	}
+
+	private void evictHierarchies(IType type) {
+		for (ProjectCache cache : getAffectedCaches(type)) {
+			synchronized (cache) {
+				cache.modCount.incrementAndGet();
+				Iterator<ITypeHierarchy> i = cache.hierarchies.values()
+						.iterator();
+				while (i.hasNext()) {
+					if (i.next().contains(type)) {
+						i.remove();
+					}
+				}
+			}
+		}
+	}
+
+	private void evictAllHierarchies(IModelElement element) {
+		for (ProjectCache cache : getAffectedCaches(element)) {
+			synchronized (cache) {
+				cache.modCount.incrementAndGet();
+				cache.hierarchies.clear();
+			}
+		}
+	}
+
+	/**
+	 * Clears the caches of the projects that can see the given element
+	 */
+	private void clear(IModelElement element) {
+		for (ProjectCache cache : getAffectedCaches(element)) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Returns the caches of the projects that can see the given element: the
+	 * project of the element, and the projects that have it on their build
+	 * path
+	 */
+	private List<ProjectCache> getAffectedCaches(IModelElement element) {
+		final IScriptProject project = element.getScriptProject();
+		final List<ProjectCache> caches = new ArrayList<ProjectCache>(1);
+		for (Map.Entry<IScriptProject, ProjectCache> entry : projectCaches
+				.entrySet()) {
+			if (entry.getKey().equals(project)
+					|| entry.getKey().isOnBuildpath(element)) {
+				caches.add(entry.getValue());
+			}
+		}
+		return caches;
+	}
+
+	private static boolean containsAny(ITypeHierarchy hierarchy,
+			IModelElement element) {
+		for (IType type : hierarchy.getAllTypes()) {
+			if (isAncestor(element, type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether the given element is the same as the ancestor or one of
+	 * its descendants
+	 */
+	private static boolean isAncestor(IModelElement ancestor,
+			IModelElement element) {
+		while (element != null) {
+			if (element.equals(ancestor)) {
+				return true;
+			}
+			element = element.getParent();
+		}
+		return false;
+	}
+}
@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.model;
+
+import java.util.*;
+
+/**
+ * Graph of the super type relations between the types of a project.
+ * <p>
+ * Each type name (case insensitive, including the namespace) gets an integer
+ * ID, and the super types and sub types of a name are kept as arrays of IDs.
+ * A name may be declared more than once (e.g. in different files), then its
+ * super types are the union of the super types of all declarations, and the
+ * declarations are filtered by the caller. IDs of names that are no longer
+ * declared are kept, so they are reused when the name is declared again.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ * 
+ * @param <T>
+ *            Type of the declarations
+ */
+public class TypeHierarchyGraph<T> {
+
+	private static final int[] NO_IDS = new int[0];
+
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private final List<List<Member<T>>> members = new ArrayList<List<Member<T>>>();
+	private int[][] superIds = new int[64][];
+	private int[][] subIds = new int[64][];
+
+	/**
+	 * Single declaration of a name
+	 */
+	private static class Member<T> {
+		final T declaration;
+		final int[] superIds;
+
+		Member(T declaration, int[] superIds) {
+			this.declaration = declaration;
+			this.superIds = superIds;
+		}
+	}
+
+	/**
+	 * Adds a declaration
+	 * 
+	 * @param name
+	 *            Fully qualified type name
+	 * @param superNames
+	 *            Fully qualified names of the direct super types
+	 * @param declaration
+	 *            Declaration of the type
+	 */
+	public void add(String name, String[] superNames, T declaration) {
+		final int id = getId(name);
+		final int[] declarationSuperIds = new int[superNames.length];
+		for (int i = 0; i < superNames.length; i++) {
+			declarationSuperIds[i] = getId(superNames[i]);
+		}
+		members.get(id).add(new Member<T>(declaration, declarationSuperIds));
+		updateSuperIds(id);
+	}
+
+	/**
+	 * Removes a declaration that was added before
+	 * 
+	 * @param name
+	 *            Fully qualified type name
+	 * @param declaration
+	 *            Declaration of the type
+	 */
+	public void remove(String name, T declaration) {
+		final Integer id = ids.get(name.toLowerCase());
+		if (id == null) {
+			return;
+		}
+		final Iterator<Member<T>> i = members.get(id.intValue()).iterator();
+		while (i.hasNext()) {
+			if (i.next().declaration == declaration) {
+				i.remove();
+				updateSuperIds(id.intValue());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the type name is declared
+	 */
+	public boolean contains(String name) {
+		final Integer id = ids.get(name.toLowerCase());
+		return id != null && !members.get(id.intValue()).isEmpty();
+	}
+
+	/**
+	 * Returns the declarations of the super types of a type, the nearest
+	 * first
+	 * 
+	 * @param superNames
+	 *            Fully qualified names of the direct super types of the type
+	 * @param all
+	 *            Whether to return the super types of the super types too
+	 * @return declarations of the super types, or <code>null</code> if one of
+	 *         the super types isn't declared
+	 */
+	public List<T> getSuperTypes(String[] superNames, boolean all) {
+		final List<Integer> start = new ArrayList<Integer>(superNames.length);
+		for (String superName : superNames) {
+			final Integer id = ids.get(superName.toLowerCase());
+			if (id == null) {
+				return null;
+			}
+			start.add(id);
+		}
+		return collect(start, superIds, all);
+	}
+
+	/**
+	 * Returns the declarations of the sub types of a type, the nearest first
+	 * 
+	 * @param name
+	 *            Fully qualified type name
+	 * @param all
+	 *            Whether to return the sub types of the sub types too
+	 * @return declarations of the sub types, or <code>null</code> if the type
+	 *         isn't declared
+	 */
+	public List<T> getSubTypes(String name, boolean all) {
+		final Integer id = ids.get(name.toLowerCase());
+		if (id == null || members.get(id.intValue()).isEmpty()) {
+			return null;
+		}
+		final List<Integer> start = new ArrayList<Integer>();
+		for (int subId : subIds[id.intValue()]) {
+			start.add(Integer.valueOf(subId));
+		}
+		return collect(start, subIds, all);
+	}
+
+	/**
+	 * Walks the graph breadth first from the given IDs. Returns
+	 * <code>null</code> if a name that isn't declared is reached.
+	 */
+	private List<T> collect(List<Integer> start, int[][] edges, boolean all) {
+		final List<T> result = new ArrayList<T>();
+		final BitSet visited = new BitSet(ids.size());
+		final LinkedList<Integer> queue = new LinkedList<Integer>(start);
+		while (!queue.isEmpty()) {
+			final int id = queue.removeFirst().intValue();
+			if (visited.get(id)) {
+				continue;
+			}
+			visited.set(id);
+			if (members.get(id).isEmpty()) {
+				return null;
+			}
+			for (Member<T> member : members.get(id)) {
+				result.add(member.declaration);
+			}
+			if (all) {
+				for (int next : edges[id]) {
+					if (!visited.get(next)) {
+						queue.add(Integer.valueOf(next));
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	private int getId(String name) {
+		final String key = name.toLowerCase();
+		final Integer id = ids.get(key);
+		if (id != null) {
+			return id.intValue();
+		}
+		final int newId = members.size();
+		ids.put(key, Integer.valueOf(newId));
+		members.add(new ArrayList<Member<T>>(1));
+		if (newId == superIds.length) {
+			superIds = Arrays.copyOf(superIds, newId * 2);
+			subIds = Arrays.copyOf(subIds, newId * 2);
+		}
+		superIds[newId] = NO_IDS;
+		subIds[newId] = NO_IDS;
+		return newId;
+	}
+
+	/**
+	 * Recomputes the super types of a name from its declarations, and updates
+	 * the sub types of the old and new super types
+	 */
+	private void updateSuperIds(int id) {
+		// keep the order of declaration (super class first)
+		final BitSet union = new BitSet();
+		int[] newIds = NO_IDS;
+		for (Member<T> member : members.get(id)) {
+			for (int superId : member.superIds) {
+				if (superId != id && !union.get(superId)) {
+					union.set(superId);
+					newIds = addId(newIds, superId);
+				}
+			}
+		}
+		final int[] oldIds = superIds[id];
+		final BitSet old = new BitSet();
+		for (int superId : oldIds) {
+			old.set(superId);
+			if (!union.get(superId)) {
+				subIds[superId] = removeId(subIds[superId], id);
+			}
+		}
+		for (int superId : newIds) {
+			if (!old.get(superId)) {
+				subIds[superId] = addId(subIds[superId], id);
+			}
+		}
+		superIds[id] = newIds;
+	}
+
+	private static int[] addId(int[] array, int id) {
+		final int[] result = Arrays.copyOf(array, array.length + 1);
+		result[array.length] = id;
+		return result;
+	}
+
+	private static int[] removeId(int[] array, int id) {
+		for (int i = 0; i < array.length; i++) {
+			if (array[i] == id) {
+				final int[] result = new int[array.length - 1];
+				System.arraycopy(array, 0, result, 0, i);
+				System.arraycopy(array, i + 1, result, i, result.length - i);
+				return result;
+			}
+		}
+		return array;
+	}
+}
@@ -0,0 +1,573 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.phar;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.php.internal.core.Logger;
+import org.eclipse.php.internal.core.phar.digest.Digest;
+import org.eclipse.php.internal.core.tar.CBZip2InputStreamForPhar;
+
+/**
+ * Read only phar archive, that is memory-mapped instead of being read through
+ * streams.
+ * <p>
+ * The manifest is parsed directly from the mapped file. Entries are copied
+ * from the mapping and checked against their CRC. Compressed entries are
+ * decompressed on first access, and the most recently used ones are kept, so
+ * an entry that is read several times in a row (e.g. parsed and then indexed)
+ * is decompressed once.
+ * </p>
+ * <p>
+ * {@link #close()} unmaps the file, so it isn't locked anymore. The parsed
+ * manifest is kept, and the file is mapped again when another entry is read.
+ * When the JVM doesn't allow to unmap a file, the file isn't mapped at all:
+ * the manifest and the signature are read in chunks, and each entry is read
+ * from its position with a {@link RandomAccessFile}, so the whole file is
+ * never copied to the heap.
+ * </p>
+ * <p>
+ * The entries and their positions are the same as the ones of
+ * {@link PharFile}.
+ * </p>
+ */
+public class MappedPharFile {
+
+	/** Maximum number of decompressed entries that are kept */
+	private static final int INFLATED_CACHE_SIZE = 16;
+
+	/** Entries larger than this are decompressed on every access */
+	private static final int MAX_CACHED_ENTRY_SIZE = 1024 * 1024;
+
+	/** Size of the chunks in which the file is parsed when it isn't mapped */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private static final Method CLEANER_METHOD;
+	private static final Method CLEAN_METHOD;
+
+	static {
+		Method cleanerMethod = null;
+		Method cleanMethod = null;
+		try {
+			cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer") //$NON-NLS-1$
+					.getMethod("cleaner"); //$NON-NLS-1$
+			cleanMethod = Class.forName("sun.misc.Cleaner").getMethod( //$NON-NLS-1$
+					"clean"); //$NON-NLS-1$
+		} catch (Exception e) {
+			// mapped files can't be unmapped
+			cleanerMethod = null;
+		}
+		CLEANER_METHOD = cleanerMethod;
+		CLEAN_METHOD = cleanMethod;
+	}
+
+	private final File file;
+	/** whether the file is mapped, otherwise it is read in chunks */
+	private final boolean mapped;
+	/** mapping of the file, while it is open (guarded by this) */
+	private ByteBuffer buffer;
+	private int fileNumber;
+	private final List<PharEntry> pharEntryList = new ArrayList<PharEntry>();
+	private final Map<String, PharEntry> pharEntryMap = new HashMap<String, PharEntry>();
+
+	private final Map<PharEntry, byte[]> inflated = new LinkedHashMap<PharEntry, byte[]>(
+			INFLATED_CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<PharEntry, byte[]> eldest) {
+			return size() > INFLATED_CACHE_SIZE;
+		}
+	};
+
+	public MappedPharFile(File file) throws IOException, PharException {
+		this(file, true);
+	}
+
+	/**
+	 * @param file
+	 *            Phar archive
+	 * @param map
+	 *            Whether to map the file. It is never mapped when the JVM
+	 *            doesn't allow to unmap it.
+	 */
+	public MappedPharFile(File file, boolean map) throws IOException,
+			PharException {
+		this.file = file;
+		this.mapped = map && CLEANER_METHOD != null;
+		synchronized (this) {
+			final RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+			boolean parsed = false;
+			try {
+				if (mapped) {
+					buffer = map(raf);
+				}
+				final FileChannel channel = raf.getChannel();
+				final long size = channel.size();
+				readManifest(channel, size, findManifestStart(channel, size));
+				parsed = true;
+			} catch (BufferUnderflowException e) {
+				throw new PharException(Messages.Phar_Corrupted);
+			} catch (IllegalArgumentException e) {
+				// invalid position or limit
+				throw new PharException(Messages.Phar_Corrupted);
+			} finally {
+				// the mapping stays valid
+				raf.close();
+				if (!parsed) {
+					close();
+				}
+			}
+		}
+	}
+
+	private ByteBuffer map() throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			return map(raf);
+		} finally {
+			// the mapping stays valid
+			raf.close();
+		}
+	}
+
+	private static ByteBuffer map(RandomAccessFile raf) throws IOException {
+		final MappedByteBuffer result = raf.getChannel().map(
+				FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		result.order(ByteOrder.LITTLE_ENDIAN);
+		return result;
+	}
+
+	/**
+	 * Releases the mapping. A mapped buffer must not be used anymore after it
+	 * was unmapped.
+	 */
+	private static void unmap(ByteBuffer buffer) {
+		try {
+			final Object cleaner = CLEANER_METHOD.invoke(buffer);
+			if (cleaner != null) {
+				CLEAN_METHOD.invoke(cleaner);
+			}
+		} catch (Exception e) {
+			// the mapping is released when the buffer is collected
+			Logger.logException(e);
+		}
+	}
+
+	/**
+	 * Returns a range of the file while it is parsed, which is a view of the
+	 * mapping if the file is mapped, otherwise it is read from the channel.
+	 * 
+	 * @throws BufferUnderflowException
+	 *             if the file ends before the range
+	 */
+	private ByteBuffer read(FileChannel channel, long position, int length)
+			throws IOException {
+		final ByteBuffer result;
+		if (buffer != null) {
+			result = buffer.duplicate();
+			result.position((int) position);
+			result.limit((int) position + length);
+			return result.slice().order(ByteOrder.LITTLE_ENDIAN);
+		}
+		result = ByteBuffer.allocate(length);
+		while (result.hasRemaining()) {
+			if (channel.read(result, position + result.position()) < 0) {
+				throw new BufferUnderflowException();
+			}
+		}
+		result.flip();
+		return result.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Returns the position of the manifest, that follows the
+	 * <code>__HALT_COMPILER();</code> call of the stub, an optional closing
+	 * tag and a line separator
+	 */
+	private int findManifestStart(FileChannel channel, long size)
+			throws PharException, IOException {
+		final byte[] stubEnd = PharConstants.STUB_ENDS;
+		int position = -1;
+		// chunks overlap, so that the call isn't split between two chunks
+		for (long start = 0; position < 0 && start + stubEnd.length <= size;
+				start += CHUNK_SIZE) {
+			final ByteBuffer chunk = read(channel, start, (int) Math.min(
+					CHUNK_SIZE + stubEnd.length - 1, size - start));
+			final int index = indexOf(chunk, stubEnd);
+			if (index >= 0) {
+				position = (int) start + index + stubEnd.length;
+			}
+		}
+		if (position < 0) {
+			throw new PharException(Messages.Phar_No_Stub_End);
+		}
+		final ByteBuffer tail = read(channel, position, (int) Math.min(
+				PharConstants.STUB_TAIL.length + 2, size - position));
+		int offset = 0;
+		if (matches(tail, 0, PharConstants.STUB_TAIL)) {
+			offset += PharConstants.STUB_TAIL.length;
+		}
+		if (offset < tail.limit()) {
+			final byte first = tail.get(offset);
+			if (first == PharConstants.R || first == PharConstants.N) {
+				offset++;
+				if (offset < tail.limit()) {
+					final byte second = tail.get(offset);
+					if (second != first
+							&& (second == PharConstants.R || second == PharConstants.N)) {
+						offset++;
+					}
+				}
+			}
+		}
+		return position + offset;
+	}
+
+	private static int indexOf(ByteBuffer buffer, byte[] bytes) {
+		final int limit = buffer.limit() - bytes.length;
+		for (int i = 0; i <= limit; i++) {
+			if (matches(buffer, i, bytes)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean matches(ByteBuffer buffer, int position,
+			byte[] bytes) {
+		if (position + bytes.length > buffer.limit()) {
+			return false;
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			if (buffer.get(position + i) != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void readManifest(FileChannel channel, long size,
+			int manifestStart) throws PharException, IOException {
+		final int manifestLength = read(channel, manifestStart, 4).getInt();
+		if (manifestLength < 0 || manifestStart + 4L + manifestLength > size) {
+			throw new PharException(Messages.Phar_Corrupted);
+		}
+		final ByteBuffer manifest = read(channel, manifestStart + 4,
+				manifestLength);
+		fileNumber = manifest.getInt();
+		// API version
+		manifest.getShort();
+		final byte[] globalFlags = new byte[4];
+		manifest.get(globalFlags);
+		final boolean hasSignature = (globalFlags[2] & 1) != 0;
+		// alias and metadata
+		skipString(manifest);
+		skipString(manifest);
+
+		final int stubLength = manifestStart;
+		int position = manifestStart + 4 + manifestLength;
+		final byte[] bytes = new byte[4];
+		for (int i = 0; i < fileNumber; i++) {
+			final PharEntry pharEntry = new PharEntry();
+			pharEntry.setName(readString(manifest));
+			manifest.get(bytes);
+			pharEntry.setSizeByte(bytes);
+			pharEntry.setSize(PharFile.getInt(bytes));
+			pharEntry.setTime(manifest.getInt());
+			pharEntry.setCsize(manifest.getInt());
+			manifest.get(bytes);
+			pharEntry.setCrcByte(bytes);
+			manifest.get(bytes);
+			pharEntry.setBitMappedFlag(bytes);
+			final String metadata = readString(manifest);
+			if (metadata != null) {
+				pharEntry.setMetadata(metadata);
+			}
+			pharEntry.setPosition(position);
+			position = pharEntry.getEnd();
+			if (position > size || position < 0) {
+				throw new PharException(Messages.PharEntry_Too_Long);
+			}
+			add(pharEntry);
+		}
+
+		final PharEntry stubEntry = new PharEntry();
+		stubEntry.setName(PharConstants.STUB_PATH);
+		stubEntry.setSize(stubLength);
+		stubEntry.setCsize(stubLength);
+		stubEntry.setBitMappedFlag(PharConstants.Default_Entry_Bitmap);
+		stubEntry.setPosition(0);
+		add(stubEntry);
+
+		if (hasSignature) {
+			readSignature(channel, size, position);
+		}
+	}
+
+	/**
+	 * Verifies the signature that follows the last entry
+	 */
+	private void readSignature(FileChannel channel, long size, int position)
+			throws PharException, IOException {
+		final int signatureLength = (int) (size - position);
+		if (signatureLength <= 4) {
+			return;
+		}
+		if (signatureLength < 24) {
+			throw new PharException(Messages.Phar_Signature_Corrupted);
+		}
+		final ByteBuffer data = read(channel, position, signatureLength);
+		if (!matches(data, signatureLength - 4, PharConstants.GBMB)) {
+			throw new PharException(Messages.Phar_Signature_End);
+		}
+		final byte[] flags = new byte[4];
+		data.position(signatureLength - 8);
+		data.get(flags);
+		Digest digest = null;
+		for (Digest d : Digest.DIGEST_MAP.values()) {
+			if (PharUtil.byteArrayEquals(d.getBitMap(), flags)) {
+				digest = d;
+				break;
+			}
+		}
+		if (digest == null) {
+			throw new PharException(Messages.Phar_Signature_Unsupported);
+		}
+		final byte[] expected = new byte[signatureLength - 8];
+		data.position(0);
+		data.get(expected);
+		final byte[] actual;
+		synchronized (digest) {
+			final MessageDigest messageDigest = digest.getDigest();
+			messageDigest.reset();
+			for (long start = 0; start < position; start += CHUNK_SIZE) {
+				messageDigest.update(read(channel, start,
+						(int) Math.min(CHUNK_SIZE, position - start)));
+			}
+			actual = messageDigest.digest();
+		}
+		if (!PharUtil.byteArrayEquals(actual, expected)) {
+			throw new PharException(Messages.Phar_Signature_Corrupted);
+		}
+
+		final PharEntry signatureEntry = new PharEntry();
+		signatureEntry.setName(PharConstants.SIGNATURE_PATH);
+		signatureEntry.setBitMappedFlag(PharConstants.Default_Entry_Bitmap);
+		signatureEntry.setPosition(position);
+		signatureEntry.setSize(signatureLength);
+		signatureEntry.setCsize(signatureLength);
+		add(signatureEntry);
+	}
+
+	private void add(PharEntry pharEntry) {
+		pharEntryList.add(pharEntry);
+		pharEntryMap.put(pharEntry.getName(), pharEntry);
+	}
+
+	private static String readString(ByteBuffer manifest) {
+		final int length = manifest.getInt();
+		if (length <= 0) {
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		manifest.get(bytes);
+		return PharFile.getString(bytes);
+	}
+
+	private static void skipString(ByteBuffer manifest) {
+		final int length = manifest.getInt();
+		if (length > 0) {
+			manifest.position(manifest.position() + length);
+		}
+	}
+
+	public PharEntry getEntry(String name) {
+		return pharEntryMap.get(name);
+	}
+
+	public List<PharEntry> getPharEntryList() {
+		return pharEntryList;
+	}
+
+	public int getFileNumber() {
+		return fileNumber;
+	}
+
+	public String getName() {
+		return file.getPath();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Unmaps the file. The entries can still be read, which maps the file
+	 * again.
+	 */
+	public synchronized void close() throws IOException {
+		if (buffer != null) {
+			if (mapped) {
+				unmap(buffer);
+			}
+			buffer = null;
+		}
+	}
+
+	/**
+	 * Returns the contents of the entry
+	 * 
+	 * @param pharEntry
+	 *            Entry of this file
+	 * @return input stream, that doesn't need to be closed
+	 * @throws IOException
+	 *             if the entry can't be read or is corrupted
+	 */
+	public InputStream getInputStream(PharEntry pharEntry) throws IOException {
+		if (!pharEntry.isCompressed()) {
+			final byte[] contents = getData(pharEntry);
+			checkCrc(pharEntry, contents);
+			return new ByteArrayInputStream(contents);
+		}
+		byte[] contents;
+		synchronized (inflated) {
+			contents = inflated.get(pharEntry);
+		}
+		if (contents == null) {
+			contents = decompress(pharEntry);
+			checkCrc(pharEntry, contents);
+			if (contents.length <= MAX_CACHED_ENTRY_SIZE) {
+				synchronized (inflated) {
+					inflated.put(pharEntry, contents);
+				}
+			}
+		}
+		return new ByteArrayInputStream(contents);
+	}
+
+	/**
+	 * Returns a copy of the (compressed) data of the entry
+	 */
+	private byte[] getData(PharEntry pharEntry) throws IOException {
+		final int position = pharEntry.getPosition();
+		final byte[] data = new byte[pharEntry.getCsize()];
+		if (!mapped) {
+			final RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+			try {
+				if (pharEntry.getEnd() > raf.length()) {
+					throw new IOException(Messages.PharEntry_Too_Long);
+				}
+				raf.seek(position);
+				raf.readFully(data);
+			} finally {
+				raf.close();
+			}
+			return data;
+		}
+		synchronized (this) {
+			if (buffer == null) {
+				buffer = map();
+			}
+			if (pharEntry.getEnd() > buffer.limit()) {
+				throw new IOException(Messages.PharEntry_Too_Long);
+			}
+			final ByteBuffer source = buffer.duplicate();
+			source.position(position);
+			source.get(data);
+		}
+		return data;
+	}
+
+	private static void checkCrc(PharEntry pharEntry, byte[] contents)
+			throws IOException {
+		final byte[] crc = pharEntry.getCrcByte();
+		if (crc == null) {
+			// stub and signature
+			return;
+		}
+		final CRC32 actual = new CRC32();
+		actual.update(contents);
+		if ((int) actual.getValue() != PharFile.getInt(crc)) {
+			throw new IOException(NLS.bind(Messages.PharEntry_Corrupted,
+					pharEntry.getName()));
+		}
+	}
+
+	private byte[] decompress(PharEntry pharEntry) throws IOException {
+		final byte[] data = getData(pharEntry);
+		final int size = (int) pharEntry.getSize();
+		if (pharEntry.getCompressedType() == PharConstants.GZ_COMPRESSED) {
+			// raw deflate data, without the gzip header and trailer
+			final Inflater inflater = new Inflater(true);
+			try {
+				inflater.setInput(data);
+				final byte[] result = new byte[size];
+				int length = 0;
+				while (length < size && !inflater.finished()) {
+					final int n = inflater.inflate(result, length, size
+							- length);
+					if (n == 0
+							&& (inflater.needsInput() || inflater
+									.needsDictionary())) {
+						break;
+					}
+					length += n;
+				}
+				if (length != size) {
+					throw new IOException(NLS.bind(
+							Messages.PharEntry_Corrupted, pharEntry.getName()));
+				}
+				return result;
+			} catch (DataFormatException e) {
+				throw new IOException(e.getMessage());
+			} finally {
+				inflater.end();
+			}
+		}
+		InputStream in = null;
+		try {
+			in = new CBZip2InputStreamForPhar(new ByteArrayInputStream(data));
+			final ByteArrayOutputStream result = new ByteArrayOutputStream(
+					Math.max(size, 32));
+			final byte[] bytes = new byte[4096];
+			int n;
+			while ((n = in.read(bytes)) > 0) {
+				result.write(bytes, 0, n);
+			}
+			if (result.size() != size) {
+				throw new IOException(NLS.bind(Messages.PharEntry_Corrupted,
+						pharEntry.getName()));
+			}
+			return result.toByteArray();
+		} catch (RuntimeException e) {
+			// the decoder doesn't check its input
+			throw new IOException(NLS.bind(Messages.PharEntry_Corrupted,
+					pharEntry.getName()), e);
+		} finally {
+			if (in != null) {
+				in.close();
+			}
+		}
+	}
+}
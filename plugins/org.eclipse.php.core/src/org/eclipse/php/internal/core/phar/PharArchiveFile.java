@@ -24,13 +24,13 @@ import org.eclipse.dltk.core.IArchiveEntry;
  */
 public class PharArchiveFile implements IArchive {
 
-	private PharFile pharFile;
+	private MappedPharFile pharFile;
 	private File file;
 	/**
 	 * Cache of phar files, so we don't create phar files representation every
 	 * call
 	 */
-	private static final Map<String, WeakReference<PharFile>> pharFiles = new HashMap<String, WeakReference<PharFile>>();
+	private static final Map<String, WeakReference<MappedPharFile>> pharFiles = new HashMap<String, WeakReference<MappedPharFile>>();
 
 	public PharArchiveFile(String fileName) throws IOException, PharException {
 		this(new File(fileName));
@@ -40,9 +40,10 @@ public class PharArchiveFile implements IArchive {
 		this.file = file;
 		String key = getFileKey(file);
 		if (!pharFiles.containsKey(key)) {
-			pharFiles.put(key, new WeakReference<PharFile>(new PharFile(file)));
+			pharFiles.put(key, new WeakReference<MappedPharFile>(
+					new MappedPharFile(file)));
 		}
-		final WeakReference<PharFile> weakReference = pharFiles.get(key);
+		final WeakReference<MappedPharFile> weakReference = pharFiles.get(key);
 		pharFile = weakReference.get();
 		// maybe the phar is collected by gc
 		makeSureInit(file);
@@ -51,8 +52,9 @@ public class PharArchiveFile implements IArchive {
 	private void makeSureInit(File file) throws IOException, PharException {
 		if (pharFile == null) {
 			String key = getFileKey(file);
-			pharFiles.put(key, new WeakReference<PharFile>(new PharFile(file)));
-			final WeakReference<PharFile> weakReference = pharFiles.get(key);
+			pharFiles.put(key, new WeakReference<MappedPharFile>(
+					new MappedPharFile(file)));
+			final WeakReference<MappedPharFile> weakReference = pharFiles.get(key);
 			pharFile = weakReference.get();
 		}
 	}
@@ -76,6 +76,7 @@ public class CorePreferenceConstants {
 		node.putBoolean(PHPCoreConstants.CODEASSIST_SHOW_STRICT_OPTIONS, false);
 		node.putBoolean(PHPCoreConstants.CODEASSIST_AUTOACTIVATION, true);
 		node.putInt(PHPCoreConstants.CODEASSIST_AUTOACTIVATION_DELAY, 200);
+		node.putInt(PHPCoreConstants.CODEASSIST_TIME_BUDGET, 1000);
 	}
 
 	// Don't instantiate
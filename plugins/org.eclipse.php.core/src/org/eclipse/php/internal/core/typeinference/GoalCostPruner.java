@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.typeinference;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.ti.EvaluatorStatistics;
+import org.eclipse.dltk.ti.IPruner;
+import org.eclipse.dltk.ti.goals.IGoal;
+
+/**
+ * Pruner that stops a type inference as soon as its caller is cancelled, and
+ * bounds the number of goals of each kind that a single evaluation may
+ * create, so that recursive goals (e.g. return types of long chains of fluent
+ * method calls) can't keep evaluating until the time limit.
+ * <p>
+ * The caller is cancelled when its progress monitor is cancelled, or when the
+ * evaluating thread is interrupted. Once cancelled, all remaining goals are
+ * pruned, and the evaluation returns with what was found so far.
+ * {@link #isCutShort()} tells whether the result of the last evaluation may
+ * be incomplete for either reason, so it must not be reused.
+ * </p>
+ */
+public class GoalCostPruner implements IPruner {
+
+	/** Default maximum number of goals of the same kind per evaluation */
+	public static final int DEFAULT_GOAL_LIMIT = 1000;
+
+	private final IPruner delegate;
+	private final IProgressMonitor monitor;
+	private final int goalLimit;
+	private final Map<Class<?>, int[]> goalCounts = new HashMap<Class<?>, int[]>();
+	private boolean cutShort;
+
+	/**
+	 * @param delegate
+	 *            Pruner that is asked for the goals within the limits (may be
+	 *            <code>null</code>)
+	 * @param monitor
+	 *            Progress monitor of the caller (may be <code>null</code>)
+	 * @param goalLimit
+	 *            Maximum number of goals of the same kind
+	 */
+	public GoalCostPruner(IPruner delegate, IProgressMonitor monitor,
+			int goalLimit) {
+		this.delegate = delegate;
+		this.monitor = monitor;
+		this.goalLimit = goalLimit;
+	}
+
+	public GoalCostPruner(IPruner delegate, IProgressMonitor monitor) {
+		this(delegate, monitor, DEFAULT_GOAL_LIMIT);
+	}
+
+	/**
+	 * Returns the given pruner if it is a {@link GoalCostPruner} already, or
+	 * a {@link GoalCostPruner} with the default limit that delegates to it
+	 * 
+	 * @param pruner
+	 *            Pruner (may be <code>null</code>)
+	 */
+	public static GoalCostPruner limit(IPruner pruner) {
+		if (pruner instanceof GoalCostPruner) {
+			return (GoalCostPruner) pruner;
+		}
+		return new GoalCostPruner(pruner, null);
+	}
+
+	/**
+	 * Returns whether goals were pruned since the last {@link #init()}
+	 * because the caller was cancelled or the goal limit was exceeded
+	 */
+	public boolean isCutShort() {
+		return cutShort;
+	}
+
+	public void init() {
+		goalCounts.clear();
+		cutShort = false;
+		if (delegate != null) {
+			delegate.init();
+		}
+	}
+
+	public boolean prune(IGoal goal, EvaluatorStatistics stat) {
+		if (isCanceled()) {
+			return cutShort(goal);
+		}
+		int[] count = goalCounts.get(goal.getClass());
+		if (count == null) {
+			count = new int[1];
+			goalCounts.put(goal.getClass(), count);
+		}
+		if (++count[0] > goalLimit) {
+			return cutShort(goal);
+		}
+		if (delegate != null && delegate.prune(goal, stat)) {
+			TypeInferenceStatistics.getDefault().goalPruned(goal);
+			return true;
+		}
+		return false;
+	}
+
+	private boolean cutShort(IGoal goal) {
+		cutShort = true;
+		TypeInferenceStatistics.getDefault().goalPruned(goal);
+		return true;
+	}
+
+	private boolean isCanceled() {
+		return (monitor != null && monitor.isCanceled())
+				|| Thread.currentThread().isInterrupted();
+	}
+}
@@ -4,22 +4,12 @@ import java.util.Collection;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.core.*;
-import org.eclipse.php.internal.core.filenetwork.ReferenceTree;
 
 public interface IModelAccessCache {
 
 	public abstract ITypeHierarchy getSuperTypeHierarchy(IType type,
 			IProgressMonitor monitor) throws ModelException;
 
-	/**
-	 * Analyzes file dependences, and builds tree of all source modules, which
-	 * are referenced by the given source module.
-	 * 
-	 * Uses local cache for repeating queries.
-	 */
-	public abstract ReferenceTree getFileHierarchy(ISourceModule sourceModule,
-			IProgressMonitor monitor);
-
 	/**
 	 * Returns cached methods for the given name
 	 */
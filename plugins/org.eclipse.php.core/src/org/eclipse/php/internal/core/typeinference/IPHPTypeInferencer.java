@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.php.internal.core.typeinference;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.ti.IPruner;
 import org.eclipse.dltk.ti.goals.AbstractTypeGoal;
 import org.eclipse.dltk.ti.types.IEvaluatedType;
@@ -17,12 +18,26 @@ import org.eclipse.dltk.ti.types.IEvaluatedType;
 public interface IPHPTypeInferencer {
 	public IEvaluatedType evaluateTypePHPDoc(AbstractTypeGoal goal, int timeout);
 
+	/**
+	 * Evaluates PHP Doc goal, which is stopped once the given monitor is
+	 * cancelled (see {@link GoalCostPruner})
+	 */
+	public IEvaluatedType evaluateTypePHPDoc(AbstractTypeGoal goal,
+			int timeout, IProgressMonitor monitor);
+
 	public IEvaluatedType evaluateTypePHPDoc(AbstractTypeGoal goal);
 
 	public IEvaluatedType evaluateTypeHeavy(AbstractTypeGoal goal, int timeout);
 
 	public IEvaluatedType evaluateType(AbstractTypeGoal goal);
 
+	/**
+	 * Evaluates the goal, which is stopped once the given monitor is
+	 * cancelled (see {@link GoalCostPruner})
+	 */
+	public IEvaluatedType evaluateType(AbstractTypeGoal goal,
+			IProgressMonitor monitor);
+
 	public IEvaluatedType evaluateType(AbstractTypeGoal goal, int timeLimit);
 
 	public IEvaluatedType evaluateType(AbstractTypeGoal goal, IPruner pruner);
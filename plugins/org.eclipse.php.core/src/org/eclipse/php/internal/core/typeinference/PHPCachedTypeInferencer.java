@@ -12,9 +12,11 @@
  *******************************************************************************/
 package org.eclipse.php.internal.core.typeinference;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.ti.*;
 import org.eclipse.dltk.ti.goals.*;
 import org.eclipse.dltk.ti.statistics.IEvaluationStatisticsRequestor;
@@ -33,7 +35,6 @@ import org.eclipse.php.internal.core.typeinference.goals.phpdoc.PHPDocMethodRetu
 public class PHPCachedTypeInferencer implements IPHPTypeInferencer {
 	final private GoalEngine engine;
 	final private Map<IGoal, Result> cache = new ConcurrentHashMap<IGoal, Result>();
-	final private IEvaluationStatisticsRequestor stat;
 
 	private class Result {
 		final Object result;
@@ -89,8 +90,16 @@ public class PHPCachedTypeInferencer implements IPHPTypeInferencer {
 		}
 	}
 
+	/**
+	 * Collects the results of the goals of a single evaluation, which are
+	 * cached once the evaluation completes
+	 */
 	private class StatRequestor implements IEvaluationStatisticsRequestor {
 
+		private final TypeInferenceStatistics statistics = TypeInferenceStatistics
+				.getDefault();
+		private final Map<IGoal, Result> results = new HashMap<IGoal, Result>();
+
 		@Override
 		public void evaluationStarted(IGoal rootGoal) {
 
@@ -99,28 +108,35 @@ public class PHPCachedTypeInferencer implements IPHPTypeInferencer {
 		@Override
 		public void goalStateChanged(IGoal goal, GoalState state,
 				GoalState oldState) {
-
+			statistics.goalStateChanged(goal, state, oldState);
 		}
 
 		@Override
 		public void goalEvaluatorAssigned(IGoal goal, GoalEvaluator evaluator) {
+			if (!(evaluator instanceof FakeGoalEvaluator)) {
+				statistics.goalEvaluatorAssigned(goal, evaluator);
+			}
 		}
 
 		@Override
 		public void evaluatorInitialized(GoalEvaluator evaluator,
 				IGoal[] subgoals, long time) {
+			statistics.evaluatorInitialized(evaluator, subgoals, time);
 		}
 
 		@Override
 		public void evaluatorReceivedResult(GoalEvaluator evaluator,
 				IGoal finishedGoal, IGoal[] newSubgoals, long time) {
+			statistics.evaluatorReceivedResult(evaluator, finishedGoal,
+					newSubgoals, time);
 		}
 
 		@Override
 		public void evaluatorProducedResult(GoalEvaluator evaluator,
 				Object result, long time) {
 			if (!(evaluator instanceof FakeGoalEvaluator)) {
-				cache.put(evaluator.getGoal(), new Result(result));
+				results.put(evaluator.getGoal(), new Result(result));
+				statistics.evaluatorProducedResult(evaluator, result, time);
 			}
 		}
 
@@ -128,12 +144,18 @@ public class PHPCachedTypeInferencer implements IPHPTypeInferencer {
 
 	public PHPCachedTypeInferencer() {
 		engine = new GoalEngine(new CachedEvaluatorFactory());
-		stat = new StatRequestor();
 	}
 
 	@Override
 	public IEvaluatedType evaluateTypePHPDoc(AbstractTypeGoal goal, int timeout) {
-		return evaluateType(goal, new PHPDocGoalsPruner(timeout));
+		return evaluateTypePHPDoc(goal, timeout, null);
+	}
+
+	@Override
+	public IEvaluatedType evaluateTypePHPDoc(AbstractTypeGoal goal,
+			int timeout, IProgressMonitor monitor) {
+		return evaluateType(goal, new GoalCostPruner(new PHPDocGoalsPruner(
+				timeout), monitor));
 	}
 
 	@Override
@@ -148,7 +170,13 @@ public class PHPCachedTypeInferencer implements IPHPTypeInferencer {
 
 	@Override
 	public IEvaluatedType evaluateType(AbstractTypeGoal goal) {
-		return evaluateType(goal, null);
+		return evaluateType(goal, (IPruner) null);
+	}
+
+	@Override
+	public IEvaluatedType evaluateType(AbstractTypeGoal goal,
+			IProgressMonitor monitor) {
+		return evaluateType(goal, new GoalCostPruner(null, monitor));
 	}
 
 	@Override
@@ -156,16 +184,27 @@ public class PHPCachedTypeInferencer implements IPHPTypeInferencer {
 		return evaluateType(goal, new TimelimitPruner(timeLimit));
 	}
 
+	/**
+	 * Evaluates the goal, while limiting the number of goals of each kind (see
+	 * {@link GoalCostPruner}). Results of evaluations that were cancelled or
+	 * exceeded the limit are not cached.
+	 */
 	@Override
 	public IEvaluatedType evaluateType(AbstractTypeGoal goal, IPruner pruner) {
-		if (!cache.containsKey(goal)) {
-			synchronized (engine) {
-				cache.put(goal,
-						new Result(engine.evaluateGoal(goal, pruner, stat)));
+		Result cached = cache.get(goal);
+		if (cached != null) {
+			return (IEvaluatedType) cached.result;
+		}
+		GoalCostPruner costPruner = GoalCostPruner.limit(pruner);
+		synchronized (engine) {
+			StatRequestor requestor = new StatRequestor();
+			Object result = engine.evaluateGoal(goal, costPruner, requestor);
+			if (!costPruner.isCutShort()) {
+				cache.putAll(requestor.results);
+				cache.put(goal, new Result(result));
 			}
+			return (IEvaluatedType) result;
 		}
-
-		return (IEvaluatedType) cache.get(goal).result;
 	}
 
 	/**
@@ -48,10 +48,11 @@ import org.eclipse.php.internal.core.codeassist.CodeAssistUtils;
 import org.eclipse.php.internal.core.compiler.ast.nodes.*;
 import org.eclipse.php.internal.core.compiler.ast.parser.ASTUtils;
 import org.eclipse.php.internal.core.compiler.ast.visitor.PHPASTVisitor;
-import org.eclipse.php.internal.core.filenetwork.FileNetworkUtility;
-import org.eclipse.php.internal.core.filenetwork.ReferenceTree;
+import org.eclipse.php.internal.core.filenetwork.IncludeGraph;
 import org.eclipse.php.internal.core.language.LanguageModelInitializer;
+import org.eclipse.php.internal.core.model.GlobalNameIndex;
 import org.eclipse.php.internal.core.model.PhpModelAccess;
+import org.eclipse.php.internal.core.model.ProjectModelAccessCache;
 import org.eclipse.php.internal.core.typeinference.DeclarationSearcher.DeclarationType;
 import org.eclipse.php.internal.core.util.text.PHPTextSequenceUtilities;
 import org.eclipse.php.internal.core.util.text.TextSequence;
@@ -235,15 +236,13 @@ public class PHPModelUtils {
 	 *            Source module
 	 * @param elements
 	 *            Model elements to filter
-	 * @param cache
-	 *            Temporary model cache instance
 	 * @param monitor
 	 *            Progress monitor
 	 * @return
 	 */
 	public static <T extends IModelElement> Collection<T> fileNetworkFilter(
 			ISourceModule sourceModule, Collection<T> elements,
-			IModelAccessCache cache, IProgressMonitor monitor) {
+			IProgressMonitor monitor) {
 
 		if (elements != null && elements.size() > 0) {
 			List<T> filteredElements = new LinkedList<T>();
@@ -255,20 +254,14 @@ public class PHPModelUtils {
 				}
 			}
 			if (filteredElements.size() == 0) {
-				ReferenceTree referenceTree;
-				if (cache != null) {
-					referenceTree = cache.getFileHierarchy(sourceModule,
-							monitor);
-				} else {
-					// Filter by includes network
-					referenceTree = FileNetworkUtility
-							.buildReferencedFilesTree(sourceModule, monitor);
-				}
+				// Filter by includes network
+				Set<ISourceModule> reachableFiles = getReachableFiles(
+						sourceModule, monitor);
 				for (T element : elements) {
 					if (LanguageModelInitializer
 							.isLanguageModelElement(element)
-							|| referenceTree.find(((ModelElement) element)
-									.getSourceModule())) {
+							|| isReachable(reachableFiles,
+									((ModelElement) element).getSourceModule())) {
 						filteredElements.add(element);
 					}
 				}
@@ -280,9 +273,29 @@ public class PHPModelUtils {
 		return elements;
 	}
 
+	/**
+	 * Returns the files that are reachable from the given file through
+	 * include statements, or <code>null</code> if all files are
+	 */
+	private static Set<ISourceModule> getReachableFiles(
+			ISourceModule sourceModule, IProgressMonitor monitor) {
+		if (LanguageModelInitializer.isLanguageModelElement(sourceModule)) {
+			return null;
+		}
+		return IncludeGraph.getDefault().getReachableFiles(sourceModule,
+				monitor);
+	}
+
+	private static boolean isReachable(Set<ISourceModule> reachableFiles,
+			ISourceModule sourceModule) {
+		return reachableFiles == null
+				|| (sourceModule != null && reachableFiles
+						.contains(sourceModule));
+	}
+
 	public static <T extends IModelElement> Collection<T> fileNetworkFilterTypes(
-			ISourceModule sourceModule, Collection<T> elements,
-			IModelAccessCache cache, boolean isNs, IProgressMonitor monitor) {
+			ISourceModule sourceModule, Collection<T> elements, boolean isNs,
+			IProgressMonitor monitor) {
 
 		if (elements != null && elements.size() > 0) {
 			List<T> filteredElements = new LinkedList<T>();
@@ -302,20 +315,14 @@ public class PHPModelUtils {
 				}
 			}
 			if (filteredElements.size() == 0) {
-				ReferenceTree referenceTree;
-				if (cache != null) {
-					referenceTree = cache.getFileHierarchy(sourceModule,
-							monitor);
-				} else {
-					// Filter by includes network
-					referenceTree = FileNetworkUtility
-							.buildReferencedFilesTree(sourceModule, monitor);
-				}
+				// Filter by includes network
+				Set<ISourceModule> reachableFiles = getReachableFiles(
+						sourceModule, monitor);
 				for (T element : elements) {
 					if (LanguageModelInitializer
 							.isLanguageModelElement(element)
-							|| referenceTree.find(((ModelElement) element)
-									.getSourceModule())) {
+							|| isReachable(reachableFiles,
+									((ModelElement) element).getSourceModule())) {
 						try {
 							if ((isNs
 									&& PHPFlags.isNamespace(((IType) element)
@@ -372,20 +379,18 @@ public class PHPModelUtils {
 	 * 
 	 * @param sourceModule
 	 * @param elements
-	 * @param cache
-	 *            Model access cache if available
 	 * @param monitor
 	 *            Progress monitor
 	 * @return
 	 */
 	public static <T extends IModelElement> Collection<T> filterElements(
 			ISourceModule sourceModule, Collection<T> elements,
-			IModelAccessCache cache, IProgressMonitor monitor) {
+			IProgressMonitor monitor) {
 		if (elements == null) {
 			return null;
 		}
 		if (canUseFileNetworkFilter(elements)) {
-			return fileNetworkFilter(sourceModule, elements, cache, monitor);
+			return fileNetworkFilter(sourceModule, elements, monitor);
 		}
 		return elements;
 	}
@@ -758,7 +763,7 @@ public class PHPModelUtils {
 							scope, null);
 
 					Collection<IField> filteredElements = filterElements(
-							sourceModule, Arrays.asList(fields), cache, monitor);
+							sourceModule, Arrays.asList(fields), monitor);
 					return (IField[]) filteredElements
 							.toArray(new IField[filteredElements.size()]);
 				}
@@ -772,7 +777,7 @@ public class PHPModelUtils {
 		Collection<IField> filteredElements = null;
 		if (fields != null) {
 			filteredElements = filterElements(sourceModule,
-					Arrays.asList(fields), cache, monitor);
+					Arrays.asList(fields), monitor);
 			return (IField[]) filteredElements
 					.toArray(new IField[filteredElements.size()]);
 		}
@@ -881,7 +886,7 @@ public class PHPModelUtils {
 				null);
 
 		Collection<IMethod> filteredElements = filterElements(sourceModule,
-				filterTrueGlobal(Arrays.asList(functions)), null, monitor);
+				filterTrueGlobal(Arrays.asList(functions)), monitor);
 		return (IMethod[]) filteredElements
 				.toArray(new IMethod[filteredElements.size()]);
 	}
@@ -1358,22 +1363,32 @@ public class PHPModelUtils {
 	}
 
 	/**
-	 * Returns all super classes filtered using file hierarchy
+	 * Returns all super classes filtered using file hierarchy. Without a
+	 * cached type hierarchy, super classes are looked up in the type hierarchy
+	 * graph of the project (see {@link GlobalNameIndex}).
 	 * 
 	 * @throws ModelException
 	 */
 	public static IType[] getSuperClasses(IType type, ITypeHierarchy hierarchy)
 			throws ModelException {
+		IType[] superClasses;
 		if (hierarchy == null) {
 			if (type.getScriptProject() == null
 					|| !type.getScriptProject().exists()) {
 				return EMPTY_TYPES;
-			} else {
-				hierarchy = type.newSupertypeHierarchy(null);
 			}
+			superClasses = GlobalNameIndex.getDefault().getSuperTypes(type,
+					true);
+			if (superClasses == null) {
+				hierarchy = ProjectModelAccessCache.getDefault()
+						.getSuperTypeHierarchy(type, null);
+				superClasses = hierarchy.getAllSuperclasses(type);
+			}
+		} else {
+			superClasses = hierarchy.getAllSuperclasses(type);
 		}
 		Collection<IType> filtered = filterElements(type.getSourceModule(),
-				Arrays.asList(hierarchy.getAllSuperclasses(type)), null, null);
+				Arrays.asList(superClasses), null);
 		return (IType[]) filtered.toArray(new IType[filtered.size()]);
 	}
 
@@ -1401,7 +1416,7 @@ public class PHPModelUtils {
 	 * @param type
 	 *            Class element
 	 * @param hierarchy
-	 *            Cached type hierarchy (<code>null</code> to build a new one)
+	 *            Cached type hierarchy (may be <code>null</code>)
 	 * @param prefix
 	 *            Field name or prefix
 	 * @param exactName
@@ -1440,7 +1455,7 @@ public class PHPModelUtils {
 	 * @param type
 	 *            Class element
 	 * @param hierarchy
-	 *            Cached type hierarchy (<code>null</code> to build a new one)
+	 *            Cached type hierarchy (may be <code>null</code>)
 	 * @param prefix
 	 *            Method name or prefix
 	 * @param exactName
@@ -1844,15 +1859,15 @@ public class PHPModelUtils {
 		List<IType> result = new ArrayList<IType>();
 		Collection<IType> types;
 		if (cache == null) {
-			IDLTKSearchScope scope = SearchEngine
-					.createSearchScope(sourceModule.getScriptProject());
-			IType[] r;
+			Collection<IType> r;
 			if (isType) {
-				r = PhpModelAccess.getDefault().findTypes(typeName,
-						MatchRule.EXACT, 0, 0, scope, null);
+				r = ProjectModelAccessCache.getDefault().getTypes(
+						sourceModule.getScriptProject(), typeName, null,
+						monitor);
 			} else {
-				r = PhpModelAccess.getDefault().findTraits(typeName,
-						MatchRule.EXACT, 0, 0, scope, null);
+				r = ProjectModelAccessCache.getDefault().getTraits(
+						sourceModule.getScriptProject(), typeName, null,
+						monitor);
 			}
 			for (IType type : r) {
 				if (getCurrentNamespace(type) == null) {
@@ -1861,7 +1876,7 @@ public class PHPModelUtils {
 			}
 			List<IType> tempList = new ArrayList<IType>(result.size());
 			tempList.addAll(result);
-			types = filterElements(sourceModule, tempList, null, monitor);
+			types = filterElements(sourceModule, tempList, monitor);
 		} else {
 			if (isType) {
 				types = cache.getTypes(sourceModule, typeName, null, monitor);
@@ -2068,7 +2083,7 @@ public class PHPModelUtils {
 							superClass, MatchRule.EXACT, 0,
 							Modifiers.AccNameSpace, scope, null);
 					types = fileNetworkFilter(type.getSourceModule(),
-							Arrays.asList(superTypes), null, monitor);
+							Arrays.asList(superTypes), monitor);
 				} else {
 					String namespaceName = null;
 					int i = superClass
@@ -2114,13 +2129,12 @@ public class PHPModelUtils {
 			if (PHPFlags.isNamespace(type.getFlags())) {
 				return false;
 			}
-			ITypeHierarchy hierarchy = type.newSupertypeHierarchy(null);
 			IModelElement[] members = PHPModelUtils.getTypeHierarchyField(type,
-					hierarchy, "", false, null); //$NON-NLS-1$
+					null, "", false, null); //$NON-NLS-1$
 			if (hasStaticOrConstMember(members)) {
 				return true;
 			}
-			members = PHPModelUtils.getTypeHierarchyMethod(type, hierarchy, "", //$NON-NLS-1$
+			members = PHPModelUtils.getTypeHierarchyMethod(type, null, "", //$NON-NLS-1$
 					false, null);
 			if (hasStaticOrConstMember(members)) {
 				return true;
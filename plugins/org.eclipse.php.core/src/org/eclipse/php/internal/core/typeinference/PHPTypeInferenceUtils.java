@@ -13,6 +13,7 @@ package org.eclipse.php.internal.core.typeinference;
 
 import java.util.*;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.ast.ASTNode;
 import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
 import org.eclipse.dltk.core.*;
@@ -95,9 +96,24 @@ public class PHPTypeInferenceUtils {
 			IPHPTypeInferencer inferencer, ISourceModule sourceModule,
 			ModuleDeclaration moduleDeclaration, IContext context,
 			ASTNode expression) {
+		return resolveExpression(inferencer, sourceModule, moduleDeclaration,
+				context, expression, null);
+	}
+
+	/**
+	 * Resolves the type of the expression, until the given monitor is
+	 * cancelled
+	 * 
+	 * @param monitor
+	 *            Progress monitor of the caller (may be <code>null</code>)
+	 */
+	public static IEvaluatedType resolveExpression(
+			IPHPTypeInferencer inferencer, ISourceModule sourceModule,
+			ModuleDeclaration moduleDeclaration, IContext context,
+			ASTNode expression, IProgressMonitor monitor) {
 		if (context != null) {
 			return inferencer.evaluateType(new ExpressionTypeGoal(context,
-					expression));
+					expression), monitor);
 		}
 		return UnknownType.INSTANCE;
 	}
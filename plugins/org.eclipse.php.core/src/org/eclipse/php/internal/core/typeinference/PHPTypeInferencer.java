@@ -11,8 +11,12 @@
  *******************************************************************************/
 package org.eclipse.php.internal.core.typeinference;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.ti.DefaultTypeInferencer;
 import org.eclipse.dltk.ti.EvaluatorStatistics;
+import org.eclipse.dltk.ti.GoalEngine;
+import org.eclipse.dltk.ti.IGoalEvaluatorFactory;
+import org.eclipse.dltk.ti.IPruner;
 import org.eclipse.dltk.ti.TimelimitPruner;
 import org.eclipse.dltk.ti.goals.AbstractTypeGoal;
 import org.eclipse.dltk.ti.goals.IGoal;
@@ -27,8 +31,40 @@ import org.eclipse.php.internal.core.typeinference.goals.phpdoc.PHPDocMethodRetu
 public class PHPTypeInferencer extends DefaultTypeInferencer implements
 		IPHPTypeInferencer {
 
+	private final GoalEngine engine;
+
 	public PHPTypeInferencer() {
-		super(new PHPGoalEvaluatorFactory());
+		this(new PHPGoalEvaluatorFactory());
+	}
+
+	private PHPTypeInferencer(IGoalEvaluatorFactory factory) {
+		super(factory);
+		engine = new GoalEngine(factory);
+	}
+
+	public IEvaluatedType evaluateType(AbstractTypeGoal goal) {
+		return evaluateType(goal, (IPruner) null);
+	}
+
+	public IEvaluatedType evaluateType(AbstractTypeGoal goal,
+			IProgressMonitor monitor) {
+		return evaluateType(goal, new GoalCostPruner(null, monitor));
+	}
+
+	public IEvaluatedType evaluateType(AbstractTypeGoal goal, int timeLimit) {
+		return evaluateType(goal, new TimelimitPruner(timeLimit));
+	}
+
+	/**
+	 * Evaluates the goal, while limiting the number of goals of each kind (see
+	 * {@link GoalCostPruner}). The evaluation is recorded by
+	 * {@link TypeInferenceStatistics}.
+	 */
+	public synchronized IEvaluatedType evaluateType(AbstractTypeGoal goal,
+			IPruner pruner) {
+		return (IEvaluatedType) engine.evaluateGoal(goal,
+				GoalCostPruner.limit(pruner),
+				TypeInferenceStatistics.getDefault());
 	}
 
 	/**
@@ -38,7 +74,13 @@ public class PHPTypeInferencer extends DefaultTypeInferencer implements
 	 * @return evaluated type
 	 */
 	public IEvaluatedType evaluateTypePHPDoc(AbstractTypeGoal goal, int timeout) {
-		return super.evaluateType(goal, new HeavyGoalsPruner(timeout));
+		return evaluateTypePHPDoc(goal, timeout, null);
+	}
+
+	public IEvaluatedType evaluateTypePHPDoc(AbstractTypeGoal goal,
+			int timeout, IProgressMonitor monitor) {
+		return evaluateType(goal, new GoalCostPruner(new HeavyGoalsPruner(
+				timeout), monitor));
 	}
 
 	/**
@@ -52,7 +94,7 @@ public class PHPTypeInferencer extends DefaultTypeInferencer implements
 	}
 
 	public IEvaluatedType evaluateTypeHeavy(AbstractTypeGoal goal, int timeout) {
-		return super.evaluateType(goal, new PHPDocGoalsPruner(timeout));
+		return evaluateType(goal, new PHPDocGoalsPruner(timeout));
 	}
 
 	/**
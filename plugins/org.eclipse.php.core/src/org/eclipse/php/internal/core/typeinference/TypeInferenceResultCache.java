@@ -0,0 +1,499 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.typeinference;
+
+import java.io.*;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.dltk.core.*;
+import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
+import org.eclipse.dltk.core.environment.IFileHandle;
+import org.eclipse.dltk.evaluation.types.AmbiguousType;
+import org.eclipse.dltk.evaluation.types.MultiTypeType;
+import org.eclipse.dltk.evaluation.types.SimpleType;
+import org.eclipse.dltk.evaluation.types.UnknownType;
+import org.eclipse.dltk.ti.types.IEvaluatedType;
+import org.eclipse.php.internal.core.Logger;
+import org.eclipse.php.internal.core.PHPCorePlugin;
+
+/**
+ * Workspace wide cache of types that were evaluated for a member.
+ * <p>
+ * Types evaluated from a declaration (for example PHPDoc return type of a
+ * method or PHPDoc type of a field) depend on the file that declares the
+ * member only. They are valid as long as the modification stamp of that file
+ * is unchanged, they are invalidated when the file changes and they are
+ * persisted between sessions in the plug-in state location.
+ * </p>
+ * <p>
+ * Types inferred from the body of a method ({@link #METHOD_INFERRED_TYPE})
+ * may depend on any file, so they are valid as long as no file of the model
+ * has changed, and they are kept for the current session only.
+ * </p>
+ */
+public class TypeInferenceResultCache {
+
+	/** PHPDoc return types of a method (@return) */
+	public static final String METHOD_RETURN_TYPE = "r"; //$NON-NLS-1$
+	/** PHPDoc type of a field (@var) */
+	public static final String FIELD_TYPE = "f"; //$NON-NLS-1$
+	/** Return type of a magic method declared on the type (@method) */
+	public static final String MAGIC_METHOD_TYPE = "m"; //$NON-NLS-1$
+	/** Return types inferred from the return statements of a method */
+	public static final String METHOD_INFERRED_TYPE = "i"; //$NON-NLS-1$
+
+	private static final String CACHE_FILE = "typeInferenceCache.dat"; //$NON-NLS-1$
+	private static final int FORMAT_VERSION = 2;
+	private static final int MAX_ENTRIES = 20000;
+
+	private static final byte TYPE_UNKNOWN = 0;
+	private static final byte TYPE_SIMPLE = 1;
+	private static final byte TYPE_CLASS = 2;
+	private static final byte TYPE_MULTI = 3;
+	private static final byte TYPE_AMBIGUOUS = 4;
+
+	private static TypeInferenceResultCache instance;
+
+	private final Map<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Entry<String, CacheEntry> eldest) {
+			if (size() > MAX_ENTRIES) {
+				removeFromPathIndex(eldest.getKey(), eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	};
+
+	// declaring file path -> keys of the entries that depend on it
+	private final Map<String, Set<String>> pathIndex = new HashMap<String, Set<String>>();
+
+	// incremented whenever a file of the model changes
+	private final AtomicLong modelStamp = new AtomicLong();
+
+	private final IElementChangedListener listener = new IElementChangedListener() {
+		public void elementChanged(ElementChangedEvent event) {
+			processDelta(event.getDelta());
+		}
+	};
+
+	private boolean dirty;
+
+	private static class CacheEntry {
+		// declaring file, or null if the entry depends on the whole model
+		final String path;
+		final String stamp;
+		final IEvaluatedType[] types;
+
+		CacheEntry(String path, String stamp, IEvaluatedType[] types) {
+			this.path = path;
+			this.stamp = stamp;
+			this.types = types;
+		}
+	}
+
+	private TypeInferenceResultCache() {
+		load();
+		DLTKCore.addElementChangedListener(listener);
+	}
+
+	public static synchronized TypeInferenceResultCache getInstance() {
+		if (instance == null) {
+			instance = new TypeInferenceResultCache();
+		}
+		return instance;
+	}
+
+	/**
+	 * Stops listening to the model changes and saves the cache if it was used
+	 * during this session
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			DLTKCore.removeElementChangedListener(instance.listener);
+			instance.save();
+		}
+	}
+
+	/**
+	 * Returns cached types evaluated for the given member
+	 * 
+	 * @param member
+	 *            Declaring element
+	 * @param kind
+	 *            Kind of the evaluation (one of the constants of this class)
+	 * @param detail
+	 *            Additional key (may be <code>null</code>)
+	 * @return cached types, or <code>null</code> if there are no valid cached
+	 *         types
+	 */
+	public IEvaluatedType[] get(IMember member, String kind, String detail) {
+		final String key = getKey(member, kind, detail);
+		final CacheEntry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+		}
+		if (entry == null) {
+			return null;
+		}
+		final String stamp = getStamp(member.getSourceModule(), kind);
+		if (stamp == null) {
+			// the file has unsaved changes
+			return null;
+		}
+		if (!stamp.equals(entry.stamp)) {
+			synchronized (this) {
+				if (entries.get(key) == entry) {
+					remove(key);
+				}
+			}
+			return null;
+		}
+		return entry.types;
+	}
+
+	/**
+	 * Caches the types that were evaluated for the given member. Except for
+	 * {@link #METHOD_INFERRED_TYPE}, the types must depend only on the file
+	 * that declares the member.
+	 * 
+	 * @param member
+	 *            Declaring element
+	 * @param kind
+	 *            Kind of the evaluation (one of the constants of this class)
+	 * @param detail
+	 *            Additional key (may be <code>null</code>)
+	 * @param types
+	 *            Evaluated types
+	 */
+	public void put(IMember member, String kind, String detail,
+			Collection<IEvaluatedType> types) {
+		for (IEvaluatedType type : types) {
+			if (!isPersistable(type)) {
+				return;
+			}
+		}
+		final ISourceModule sourceModule = member.getSourceModule();
+		final String stamp = getStamp(sourceModule, kind);
+		if (stamp == null) {
+			return;
+		}
+		final String key = getKey(member, kind, detail);
+		final CacheEntry entry = new CacheEntry(
+				isModelDependent(kind) ? null : getPath(sourceModule), stamp,
+				types.toArray(new IEvaluatedType[types.size()]));
+		synchronized (this) {
+			remove(key);
+			entries.put(key, entry);
+			if (entry.path != null) {
+				Set<String> keys = pathIndex.get(entry.path);
+				if (keys == null) {
+					keys = new HashSet<String>();
+					pathIndex.put(entry.path, keys);
+				}
+				keys.add(key);
+				dirty = true;
+			}
+		}
+	}
+
+	/**
+	 * Invalidates all the entries that depend on the given file
+	 * 
+	 * @param sourceModule
+	 */
+	public void invalidate(ISourceModule sourceModule) {
+		final String path = getPath(sourceModule);
+		synchronized (this) {
+			final Set<String> keys = pathIndex.remove(path);
+			if (keys != null) {
+				for (String key : keys) {
+					entries.remove(key);
+				}
+				dirty = true;
+			}
+		}
+	}
+
+	private void remove(String key) {
+		final CacheEntry entry = entries.remove(key);
+		if (entry != null && entry.path != null) {
+			removeFromPathIndex(key, entry);
+			dirty = true;
+		}
+	}
+
+	private void removeFromPathIndex(String key, CacheEntry entry) {
+		if (entry.path == null) {
+			return;
+		}
+		final Set<String> keys = pathIndex.get(entry.path);
+		if (keys != null) {
+			keys.remove(key);
+			if (keys.isEmpty()) {
+				pathIndex.remove(entry.path);
+			}
+		}
+	}
+
+	private void processDelta(IModelElementDelta delta) {
+		final IModelElement element = delta.getElement();
+		if (element.getElementType() == IModelElement.SOURCE_MODULE) {
+			if (delta.getKind() != IModelElementDelta.CHANGED
+					|| (delta.getFlags() & (IModelElementDelta.F_CONTENT | IModelElementDelta.F_FINE_GRAINED)) != 0) {
+				modelStamp.incrementAndGet();
+				invalidate((ISourceModule) element);
+			}
+			return;
+		}
+		if (delta.getKind() != IModelElementDelta.CHANGED) {
+			// a whole container was added or removed, the entries of its
+			// files will be invalidated lazily by their stamps
+			modelStamp.incrementAndGet();
+			return;
+		}
+		for (IModelElementDelta child : delta.getAffectedChildren()) {
+			processDelta(child);
+		}
+	}
+
+	private static String getKey(IMember member, String kind, String detail) {
+		final StringBuilder key = new StringBuilder(kind).append(':').append(
+				member.getHandleIdentifier());
+		if (detail != null) {
+			key.append(':').append(detail);
+		}
+		return key.toString();
+	}
+
+	private static String getPath(ISourceModule sourceModule) {
+		return sourceModule.getPath().toString();
+	}
+
+	private static boolean isModelDependent(String kind) {
+		return METHOD_INFERRED_TYPE.equals(kind);
+	}
+
+	/**
+	 * Returns the stamp the entries of the given kind are validated with, or
+	 * <code>null</code> if they can't be cached for the source module
+	 */
+	private String getStamp(ISourceModule sourceModule, String kind) {
+		if (sourceModule == null) {
+			return null;
+		}
+		try {
+			if (sourceModule.isWorkingCopy()
+					&& sourceModule.hasUnsavedChanges()) {
+				// the stamps describe the saved file
+				return null;
+			}
+		} catch (ModelException e) {
+			return null;
+		}
+		if (isModelDependent(kind)) {
+			return String.valueOf(modelStamp.get());
+		}
+		final IResource resource = sourceModule.getResource();
+		if (resource != null) {
+			final long stamp = resource.getModificationStamp();
+			if (stamp == IResource.NULL_STAMP) {
+				return null;
+			}
+			return stamp + ":" + resource.getLocalTimeStamp(); //$NON-NLS-1$
+		}
+		final IFileHandle file = EnvironmentPathUtils.getFile(sourceModule);
+		if (file == null || !file.exists()) {
+			return null;
+		}
+		return file.lastModified() + ":" + file.length(); //$NON-NLS-1$
+	}
+
+	private static boolean isPersistable(IEvaluatedType type) {
+		if (type == null) {
+			return false;
+		}
+		if (type instanceof UnknownType
+				|| type instanceof SimpleType
+				|| type.getClass() == PHPClassType.class) {
+			return true;
+		}
+		if (type instanceof MultiTypeType) {
+			for (IEvaluatedType t : ((MultiTypeType) type).getTypes()) {
+				if (!isPersistable(t)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (type instanceof AmbiguousType) {
+			for (IEvaluatedType t : ((AmbiguousType) type).getPossibleTypes()) {
+				if (!isPersistable(t)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private static File getCacheFile() {
+		final IPath location = PHPCorePlugin.getDefault().getStateLocation();
+		return location.append(CACHE_FILE).toFile();
+	}
+
+	private synchronized void load() {
+		final File file = getCacheFile();
+		if (!file.exists()) {
+			return;
+		}
+		try {
+			final DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt() != FORMAT_VERSION) {
+					return;
+				}
+				final int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					final String key = in.readUTF();
+					final String path = in.readUTF();
+					final String stamp = in.readUTF();
+					final IEvaluatedType[] types = new IEvaluatedType[in
+							.readInt()];
+					for (int j = 0; j < types.length; j++) {
+						types[j] = readType(in);
+					}
+					entries.put(key, new CacheEntry(path, stamp, types));
+					Set<String> keys = pathIndex.get(path);
+					if (keys == null) {
+						keys = new HashSet<String>();
+						pathIndex.put(path, keys);
+					}
+					keys.add(key);
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			// corrupted cache, start from scratch
+			entries.clear();
+			pathIndex.clear();
+			file.delete();
+		}
+	}
+
+	private synchronized void save() {
+		if (!dirty) {
+			return;
+		}
+		final File file = getCacheFile();
+		try {
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				// the entries that depend on the whole model are not saved
+				int count = 0;
+				for (CacheEntry entry : entries.values()) {
+					if (entry.path != null) {
+						count++;
+					}
+				}
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(count);
+				for (Entry<String, CacheEntry> e : entries.entrySet()) {
+					final CacheEntry entry = e.getValue();
+					if (entry.path == null) {
+						continue;
+					}
+					out.writeUTF(e.getKey());
+					out.writeUTF(entry.path);
+					out.writeUTF(entry.stamp);
+					out.writeInt(entry.types.length);
+					for (IEvaluatedType type : entry.types) {
+						writeType(out, type);
+					}
+				}
+			} finally {
+				out.close();
+			}
+			dirty = false;
+		} catch (IOException e) {
+			Logger.logException(e);
+			file.delete();
+		}
+	}
+
+	private static void writeType(DataOutputStream out, IEvaluatedType type)
+			throws IOException {
+		if (type instanceof SimpleType) {
+			out.writeByte(TYPE_SIMPLE);
+			out.writeInt(((SimpleType) type).getType());
+		} else if (type instanceof PHPClassType) {
+			final PHPClassType classType = (PHPClassType) type;
+			out.writeByte(TYPE_CLASS);
+			out.writeUTF(classType.getNamespace() == null
+					&& classType.isGlobal() ? '\\' + classType.getTypeName()
+					: classType.getTypeName());
+		} else if (type instanceof MultiTypeType) {
+			final List<IEvaluatedType> types = ((MultiTypeType) type)
+					.getTypes();
+			out.writeByte(TYPE_MULTI);
+			out.writeInt(types.size());
+			for (IEvaluatedType t : types) {
+				writeType(out, t);
+			}
+		} else if (type instanceof AmbiguousType) {
+			final IEvaluatedType[] types = ((AmbiguousType) type)
+					.getPossibleTypes();
+			out.writeByte(TYPE_AMBIGUOUS);
+			out.writeInt(types.length);
+			for (IEvaluatedType t : types) {
+				writeType(out, t);
+			}
+		} else {
+			out.writeByte(TYPE_UNKNOWN);
+		}
+	}
+
+	private static IEvaluatedType readType(DataInputStream in)
+			throws IOException {
+		switch (in.readByte()) {
+		case TYPE_SIMPLE:
+			return new SimpleType(in.readInt());
+		case TYPE_CLASS:
+			return new PHPClassType(in.readUTF());
+		case TYPE_MULTI:
+			final MultiTypeType multiType = new MultiTypeType();
+			for (int i = in.readInt(); i > 0; i--) {
+				multiType.addType(readType(in));
+			}
+			return multiType;
+		case TYPE_AMBIGUOUS:
+			final IEvaluatedType[] types = new IEvaluatedType[in.readInt()];
+			for (int i = 0; i < types.length; i++) {
+				types[i] = readType(in);
+			}
+			return new AmbiguousType(types);
+		case TYPE_UNKNOWN:
+			return UnknownType.INSTANCE;
+		default:
+			throw new IOException("Unknown type tag"); //$NON-NLS-1$
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.typeinference;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.dltk.ti.GoalState;
+import org.eclipse.dltk.ti.goals.GoalEvaluator;
+import org.eclipse.dltk.ti.goals.IGoal;
+import org.eclipse.dltk.ti.statistics.IEvaluationStatisticsRequestor;
+import org.eclipse.php.internal.core.Logger;
+import org.eclipse.php.internal.core.PHPCorePlugin;
+
+/**
+ * Collects the number of evaluations and the time spent by each kind of goal
+ * evaluator (e.g. <code>MethodReturnTypeEvaluator</code>), and the number of
+ * pruned goals of each kind, over all inferences of the
+ * {@link PHPTypeInferencer} and the {@link PHPCachedTypeInferencer}.
+ * <p>
+ * Statistics are collected in debug mode, or after {@link #setEnabled(boolean)}
+ * was called, and are logged on shutdown when tracing the
+ * {@link #TRACE_CATEGORY} category.
+ * </p>
+ */
+public class TypeInferenceStatistics implements IEvaluationStatisticsRequestor {
+
+	public static final String TRACE_CATEGORY = "typeinference"; //$NON-NLS-1$
+
+	private static final TypeInferenceStatistics instance = new TypeInferenceStatistics();
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	private volatile boolean enabled = PHPCorePlugin.isDebugMode
+			|| Logger.isTracing(TRACE_CATEGORY);
+
+	/**
+	 * Statistics of a single kind of goal evaluator or goal
+	 */
+	public static class Entry {
+		private final String name;
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong time = new AtomicLong();
+		private final AtomicLong maxTime = new AtomicLong();
+		private final AtomicLong pruned = new AtomicLong();
+
+		Entry(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Returns the class name of the evaluator or goal
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the number of goals that were evaluated
+		 */
+		public long getCount() {
+			return count.get();
+		}
+
+		/**
+		 * Returns the total time spent in the evaluators (ms)
+		 */
+		public long getTime() {
+			return time.get();
+		}
+
+		/**
+		 * Returns the longest time spent in a single step of an evaluator (ms)
+		 */
+		public long getMaxTime() {
+			return maxTime.get();
+		}
+
+		/**
+		 * Returns the number of goals that were pruned
+		 */
+		public long getPruned() {
+			return pruned.get();
+		}
+
+		void addTime(long t) {
+			time.addAndGet(t);
+			long max;
+			while (t > (max = maxTime.get())) {
+				if (maxTime.compareAndSet(max, t)) {
+					break;
+				}
+			}
+		}
+
+		public String toString() {
+			return name + ": " + count + " evaluated, " + pruned //$NON-NLS-1$ //$NON-NLS-2$
+					+ " pruned, " + time + " ms total, " + maxTime //$NON-NLS-1$ //$NON-NLS-2$
+					+ " ms max"; //$NON-NLS-1$
+		}
+	}
+
+	private TypeInferenceStatistics() {
+	}
+
+	public static TypeInferenceStatistics getDefault() {
+		return instance;
+	}
+
+	/**
+	 * Logs the statistics when tracing type inference
+	 */
+	public static void shutdown() {
+		if (Logger.isTracing(TRACE_CATEGORY)) {
+			Logger.trace(TRACE_CATEGORY, instance.toString());
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns the statistics of all evaluators and goals, the most expensive
+	 * first
+	 */
+	public List<Entry> getEntries() {
+		List<Entry> result = new ArrayList<Entry>(entries.values());
+		Collections.sort(result, new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				long t1 = e1.getTime();
+				long t2 = e2.getTime();
+				return t1 < t2 ? 1 : (t1 == t2 ? 0 : -1);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Clears all collected statistics
+	 */
+	public void reset() {
+		entries.clear();
+	}
+
+	public void evaluationStarted(IGoal rootGoal) {
+	}
+
+	public void goalStateChanged(IGoal goal, GoalState state,
+			GoalState oldState) {
+		// pruned goals are reported by GoalCostPruner
+	}
+
+	/**
+	 * Counts a goal that was pruned
+	 */
+	public void goalPruned(IGoal goal) {
+		if (enabled) {
+			getEntry(goal.getClass()).pruned.incrementAndGet();
+		}
+	}
+
+	public void goalEvaluatorAssigned(IGoal goal, GoalEvaluator evaluator) {
+		if (enabled) {
+			getEntry(evaluator.getClass()).count.incrementAndGet();
+		}
+	}
+
+	public void evaluatorInitialized(GoalEvaluator evaluator,
+			IGoal[] subgoals, long time) {
+		if (enabled) {
+			getEntry(evaluator.getClass()).addTime(time);
+		}
+	}
+
+	public void evaluatorReceivedResult(GoalEvaluator evaluator,
+			IGoal finishedGoal, IGoal[] newSubgoals, long time) {
+		if (enabled) {
+			getEntry(evaluator.getClass()).addTime(time);
+		}
+	}
+
+	public void evaluatorProducedResult(GoalEvaluator evaluator,
+			Object result, long time) {
+		if (enabled) {
+			getEntry(evaluator.getClass()).addTime(time);
+		}
+	}
+
+	private Entry getEntry(Class<?> clazz) {
+		final String name = clazz.getName();
+		Entry entry = entries.get(name);
+		if (entry == null) {
+			entry = new Entry(name);
+			Entry existing = entries.putIfAbsent(name, entry);
+			if (existing != null) {
+				entry = existing;
+			}
+		}
+		return entry;
+	}
+
+	public String toString() {
+		StringBuilder buf = new StringBuilder("Type inference statistics:"); //$NON-NLS-1$
+		for (Entry entry : getEntries()) {
+			buf.append("\n\t").append(entry); //$NON-NLS-1$
+		}
+		return buf.toString();
+	}
+}
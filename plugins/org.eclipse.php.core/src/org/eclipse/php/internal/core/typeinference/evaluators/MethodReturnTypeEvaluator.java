@@ -11,9 +11,7 @@
  *******************************************************************************/
 package org.eclipse.php.internal.core.typeinference.evaluators;
 
-import java.util.Collection;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 import org.eclipse.dltk.ast.ASTNode;
 import org.eclipse.dltk.ast.ASTVisitor;
@@ -42,6 +40,25 @@ public class MethodReturnTypeEvaluator extends
 	private final List<IEvaluatedType> evaluated = new LinkedList<IEvaluatedType>();
 	private final List<IEvaluatedType> yieldEvaluated = new LinkedList<IEvaluatedType>();
 	private final List<IGoal> yieldGoals = new LinkedList<IGoal>();
+	private final List<MethodResult> methodResults = new LinkedList<MethodResult>();
+	private final Map<IGoal, MethodResult> goalResults = new HashMap<IGoal, MethodResult>();
+
+	/**
+	 * Return types inferred for one of the methods, cached once all its return
+	 * statements are evaluated
+	 */
+	private static class MethodResult {
+		final IMethod method;
+		final String receiver;
+		final List<IEvaluatedType> types = new LinkedList<IEvaluatedType>();
+		boolean cacheable = true;
+
+		MethodResult(IMethod method, IType receiver) {
+			this.method = method;
+			this.receiver = receiver != null ? receiver.getHandleIdentifier()
+					: null;
+		}
+	}
 
 	public MethodReturnTypeEvaluator(IGoal goal) {
 		super(goal);
@@ -52,12 +69,25 @@ public class MethodReturnTypeEvaluator extends
 		String methodName = goal.getMethodName();
 
 		final List<IGoal> subGoals = new LinkedList<IGoal>();
+		final TypeInferenceResultCache resultCache = TypeInferenceResultCache
+				.getInstance();
 		MethodsAndTypes mat = getMethodsAndTypes();
 		for (int i = 0; i < mat.methods.length; i++) {
 			IMethod method = mat.methods[i];
 			if (method == null) {
 				continue;
 			}
+			// the receiver type is the type of $this in the method
+			final MethodResult methodResult = new MethodResult(method,
+					mat.types[i]);
+			IEvaluatedType[] cached = resultCache.get(method,
+					TypeInferenceResultCache.METHOD_INFERRED_TYPE,
+					methodResult.receiver);
+			if (cached != null) {
+				evaluated.addAll(Arrays.asList(cached));
+				continue;
+			}
+			methodResults.add(methodResult);
 
 			ISourceModule sourceModule = method.getSourceModule();
 			ModuleDeclaration module = SourceParserUtil
@@ -92,14 +122,18 @@ public class MethodReturnTypeEvaluator extends
 							ReturnStatement statement = (ReturnStatement) node;
 							Expression expr = statement.getExpr();
 							if (expr == null) {
-								evaluated.add(PHPSimpleTypes.VOID);
+								methodResult.types.add(PHPSimpleTypes.VOID);
 							} else {
-								subGoals.add(new ExpressionTypeGoal(
-										innerContext, expr));
+								final ExpressionTypeGoal rg = new ExpressionTypeGoal(
+										innerContext, expr);
+								subGoals.add(rg);
+								goalResults.put(rg, methodResult);
 							}
 						} else if (node instanceof YieldExpression) {
 							YieldExpression statement = (YieldExpression) node;
 							Expression expr = statement.getExpr();
+							// generators are evaluated over all the methods
+							methodResult.cacheable = false;
 							if (expr == null) {
 								yieldEvaluated.add(PHPSimpleTypes.NULL);
 							} else {
@@ -116,12 +150,15 @@ public class MethodReturnTypeEvaluator extends
 				try {
 					decl.traverse(visitor);
 				} catch (Exception e) {
+					methodResult.cacheable = false;
 					if (DLTKCore.DEBUG) {
 						e.printStackTrace();
 					}
 				}
 			}
-			resolveMagicMethodDeclaration(method, methodName);
+			resolveMagicMethodDeclaration(method, methodName,
+					methodResult.types);
+			evaluated.addAll(methodResult.types);
 		}
 
 		return subGoals.toArray(new IGoal[subGoals.size()]);
@@ -130,15 +167,27 @@ public class MethodReturnTypeEvaluator extends
 	/**
 	 * Resolve magic methods defined by the @method tag
 	 */
-	private void resolveMagicMethodDeclaration(IMethod method, String methodName) {
+	private void resolveMagicMethodDeclaration(IMethod method,
+			String methodName, List<IEvaluatedType> evaluated) {
 		final IModelElement parent = method.getParent();
 		if (parent.getElementType() != IModelElement.TYPE) {
 			return;
 		}
 
 		IType type = (IType) parent;
+		final TypeInferenceResultCache resultCache = TypeInferenceResultCache
+				.getInstance();
+		final IEvaluatedType[] cached = resultCache.get(type,
+				TypeInferenceResultCache.MAGIC_METHOD_TYPE, methodName);
+		if (cached != null) {
+			evaluated.addAll(Arrays.asList(cached));
+			return;
+		}
+		final List<IEvaluatedType> magicEvaluated = new LinkedList<IEvaluatedType>();
 		final PHPDocBlock docBlock = PHPModelUtils.getDocBlock(type);
 		if (docBlock == null) {
+			resultCache.put(type, TypeInferenceResultCache.MAGIC_METHOD_TYPE,
+					methodName, magicEvaluated);
 			return;
 		}
 		IType currentNamespace = PHPModelUtils.getCurrentNamespace(type);
@@ -155,32 +204,51 @@ public class MethodReturnTypeEvaluator extends
 							.extractArrayType(typeName, currentNamespace,
 									tag.sourceStart());
 					if (evaluatedType != null) {
-						evaluated.add(evaluatedType);
+						magicEvaluated.add(evaluatedType);
 					} else {
 						IEvaluatedType resolved = PHPSimpleTypes
 								.fromString(typeName);
 						if (resolved == null) {
 							resolved = new PHPClassType(typeName);
 						}
-						evaluated.add(resolved);
+						magicEvaluated.add(resolved);
 					}
 				}
 			}
 		}
+		evaluated.addAll(magicEvaluated);
+		resultCache.put(type, TypeInferenceResultCache.MAGIC_METHOD_TYPE,
+				methodName, magicEvaluated);
 	}
 
 	public IGoal[] subGoalDone(IGoal subgoal, Object result, GoalState state) {
+		final MethodResult methodResult = goalResults.get(subgoal);
 		if (state != GoalState.RECURSIVE && result != null) {
 			if (!yieldGoals.contains(subgoal)) {
 				evaluated.add((IEvaluatedType) result);
+				if (methodResult != null) {
+					methodResult.types.add((IEvaluatedType) result);
+				}
 			} else {
 				yieldEvaluated.add((IEvaluatedType) result);
 			}
+		} else if (methodResult != null) {
+			// the types of the method are incomplete
+			methodResult.cacheable = false;
 		}
 		return IGoal.NO_GOALS;
 	}
 
 	public Object produceResult() {
+		final TypeInferenceResultCache resultCache = TypeInferenceResultCache
+				.getInstance();
+		for (MethodResult methodResult : methodResults) {
+			if (methodResult.cacheable) {
+				resultCache.put(methodResult.method,
+						TypeInferenceResultCache.METHOD_INFERRED_TYPE,
+						methodResult.receiver, methodResult.types);
+			}
+		}
 		if (yieldEvaluated.size() > 0 || yieldGoals.size() > 0) {
 			GeneratorClassType generatorClassType = new GeneratorClassType();
 			generatorClassType.getTypes().addAll(yieldEvaluated);
@@ -29,6 +29,7 @@ import org.eclipse.php.internal.core.compiler.ast.nodes.UsePart;
 import org.eclipse.php.internal.core.typeinference.IModelAccessCache;
 import org.eclipse.php.internal.core.typeinference.PHPModelUtils;
 import org.eclipse.php.internal.core.typeinference.PHPTypeInferenceUtils;
+import org.eclipse.php.internal.core.typeinference.TypeInferenceResultCache;
 import org.eclipse.php.internal.core.typeinference.context.TypeContext;
 import org.eclipse.php.internal.core.typeinference.evaluators.AbstractPHPGoalEvaluator;
 import org.eclipse.php.internal.core.typeinference.evaluators.PHPEvaluationUtils;
@@ -59,6 +60,8 @@ public class PHPDocClassVariableEvaluator extends AbstractPHPGoalEvaluator {
 		int offset = typedGoal.getOffset();
 
 		IModelAccessCache cache = context.getCache();
+		TypeInferenceResultCache resultCache = TypeInferenceResultCache
+				.getInstance();
 		IType[] types = PHPTypeInferenceUtils.getModelElements(
 				context.getInstanceType(), context, offset, cache);
 		Map<PHPDocBlock, IField> docs = new HashMap<PHPDocBlock, IField>();
@@ -85,10 +88,22 @@ public class PHPDocClassVariableEvaluator extends AbstractPHPGoalEvaluator {
 						IField[] typeField = PHPModelUtils.getTypeField(
 								superType, variableName, true);
 						if (typeField.length > 0) {
+							IEvaluatedType[] cached = resultCache.get(
+									typeField[0],
+									TypeInferenceResultCache.FIELD_TYPE, null);
+							if (cached != null) {
+								evaluated.addAll(Arrays.asList(cached));
+								continue;
+							}
 							PHPDocBlock docBlock = PHPModelUtils
 									.getDocBlock(typeField[0]);
 							if (docBlock != null) {
 								docs.put(docBlock, typeField[0]);
+							} else {
+								resultCache.put(typeField[0],
+										TypeInferenceResultCache.FIELD_TYPE,
+										null,
+										Collections.<IEvaluatedType> emptyList());
 							}
 						}
 					}
@@ -105,6 +120,7 @@ public class PHPDocClassVariableEvaluator extends AbstractPHPGoalEvaluator {
 			IField typeField = entry.getValue();
 			IType currentNamespace = PHPModelUtils
 					.getCurrentNamespace(typeField);
+			List<IEvaluatedType> fieldEvaluated = new LinkedList<IEvaluatedType>();
 
 			for (PHPDocTag tag : doc.getTags()) {
 				if (tag.getTagKind() == PHPDocTag.VAR) {
@@ -116,7 +132,7 @@ public class PHPDocClassVariableEvaluator extends AbstractPHPGoalEvaluator {
 								.extractArrayType(typeName, currentNamespace,
 										tag.sourceStart());
 						if (evaluatedType != null) {
-							evaluated.add(evaluatedType);
+							fieldEvaluated.add(evaluatedType);
 						} else {
 							if (currentNamespace != null) {
 								ModuleDeclaration moduleDeclaration = SourceParserUtil
@@ -166,12 +182,15 @@ public class PHPDocClassVariableEvaluator extends AbstractPHPGoalEvaluator {
 									.getEvaluatedType(typeName,
 											currentNamespace);
 							if (type != null) {
-								evaluated.add(type);
+								fieldEvaluated.add(type);
 							}
 						}
 					}
 				}
 			}
+			evaluated.addAll(fieldEvaluated);
+			resultCache.put(typeField, TypeInferenceResultCache.FIELD_TYPE,
+					null, fieldEvaluated);
 		}
 
 		return IGoal.NO_GOALS;
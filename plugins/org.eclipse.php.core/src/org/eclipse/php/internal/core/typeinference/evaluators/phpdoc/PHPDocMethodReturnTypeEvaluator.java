@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.php.internal.core.typeinference.evaluators.phpdoc;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +36,7 @@ import org.eclipse.php.internal.core.index.IPHPDocAwareElement;
 import org.eclipse.php.internal.core.typeinference.IModelAccessCache;
 import org.eclipse.php.internal.core.typeinference.PHPModelUtils;
 import org.eclipse.php.internal.core.typeinference.PHPTypeInferenceUtils;
+import org.eclipse.php.internal.core.typeinference.TypeInferenceResultCache;
 import org.eclipse.php.internal.core.typeinference.context.IModelCacheContext;
 import org.eclipse.php.internal.core.typeinference.evaluators.AbstractMethodReturnTypeEvaluator;
 import org.eclipse.php.internal.core.typeinference.evaluators.PHPEvaluationUtils;
@@ -66,7 +68,19 @@ public class PHPDocMethodReturnTypeEvaluator extends
 	}
 
 	public IGoal[] init() {
+		final TypeInferenceResultCache resultCache = TypeInferenceResultCache
+				.getInstance();
 		for (IMethod method : getMethods()) {
+			IEvaluatedType[] cached = resultCache.get(method,
+					TypeInferenceResultCache.METHOD_RETURN_TYPE, null);
+			if (cached != null) {
+				evaluated.addAll(Arrays.asList(cached));
+				continue;
+			}
+			// types that depend on the declaring file only can be cached
+			boolean cacheable = true;
+			List<IEvaluatedType> methodEvaluated = new LinkedList<IEvaluatedType>();
+
 			IType currentNamespace = PHPModelUtils.getCurrentNamespace(method);
 			String[] typeNames = null;
 			if (method instanceof IPHPDocAwareElement) {
@@ -77,6 +91,11 @@ public class PHPDocMethodReturnTypeEvaluator extends
 				if (docBlock == null) {
 					return IGoal.NO_GOALS;
 				}
+				PHPDocTag[] inherit = docBlock
+						.getTags(PHPDocTagKinds.INHERITDOC);
+				if (inherit != null && inherit.length > 0) {
+					cacheable = false;
+				}
 
 				evaluateReturnType(returnTypeList, docBlock, method);
 				typeNames = returnTypeList.toArray(new String[returnTypeList
@@ -98,7 +117,7 @@ public class PHPDocMethodReturnTypeEvaluator extends
 							.extractArrayType(typeName, currentNamespace,
 									offset);
 					if (evaluatedType != null) {
-						evaluated.add(evaluatedType);
+						methodEvaluated.add(evaluatedType);
 					} else {
 						boolean isMulti = false;
 						Matcher multi = MULTITYPE_PATTERN.matcher(typeName);
@@ -111,6 +130,11 @@ public class PHPDocMethodReturnTypeEvaluator extends
 						}
 						AbstractMethodReturnTypeGoal goal = (AbstractMethodReturnTypeGoal) getGoal();
 						IType[] types = goal.getTypes();
+						if (typeName.equals(SELF_RETURN_TYPE)) {
+							// 'self' depends on the receiver types, and stays
+							// unresolved when the goal has none
+							cacheable = false;
+						}
 						if (typeName.equals(SELF_RETURN_TYPE) && types != null) {
 							for (IType t : types) {
 								IEvaluatedType type = PHPEvaluationUtils
@@ -121,7 +145,7 @@ public class PHPDocMethodReturnTypeEvaluator extends
 									if (isMulti) {
 										evalMultiType.addType(type);
 									} else {
-										evaluated.add(type);
+										methodEvaluated.add(type);
 									}
 								}
 							}
@@ -186,16 +210,22 @@ public class PHPDocMethodReturnTypeEvaluator extends
 								if (isMulti) {
 									evalMultiType.addType(type);
 								} else {
-									evaluated.add(type);
+									methodEvaluated.add(type);
 								}
 							}
 						}
 					}
 				}
 				if (evalMultiType != null) {
-					evaluated.add(evalMultiType);
+					methodEvaluated.add(evalMultiType);
 				}
 			}
+			evaluated.addAll(methodEvaluated);
+			if (cacheable) {
+				resultCache.put(method,
+						TypeInferenceResultCache.METHOD_RETURN_TYPE, null,
+						methodEvaluated);
+			}
 		}
 
 		return IGoal.NO_GOALS;
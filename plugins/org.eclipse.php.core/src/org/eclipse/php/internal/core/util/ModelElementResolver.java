@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.php.internal.core.util;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.ast.ASTNode;
 import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
 import org.eclipse.dltk.core.IModelElement;
@@ -43,6 +44,21 @@ public class ModelElementResolver {
 	 *         found
 	 */
 	public static IModelElement[] resolve(ISourceModule sourceModule, int offset) {
+		return resolve(sourceModule, offset, null);
+	}
+
+	/**
+	 * Resolves model elements, until the given monitor is cancelled
+	 * 
+	 * @param sourceModule
+	 * @param offset
+	 * @param monitor
+	 *            Progress monitor of the caller (may be <code>null</code>)
+	 * @return model elements or <code>null</code> in case no element could be
+	 *         found
+	 */
+	public static IModelElement[] resolve(ISourceModule sourceModule,
+			int offset, IProgressMonitor monitor) {
 		IModelElement[] modelElements = null;
 
 		ContextFinder visitor = new ContextFinder(sourceModule, offset);
@@ -58,7 +74,7 @@ public class ModelElementResolver {
 			PHPTypeInferencer typeInferencer = new PHPTypeInferencer();
 			IEvaluatedType evaluatedType = typeInferencer
 					.evaluateType(new ExpressionTypeGoal(visitor.getContext(),
-							visitor.getNode()));
+							visitor.getNode()), monitor);
 			modelElements = PHPTypeInferenceUtils.getModelElements(
 					evaluatedType, (FileContext) visitor.getContext(), offset);
 		}
@@ -11,31 +11,28 @@
  *******************************************************************************/
 package org.eclipse.php.internal.core.validation;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.List;
+import java.util.regex.Pattern;
+
 import org.eclipse.core.resources.*;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Path;
-import org.eclipse.jface.text.BadLocationException;
-import org.eclipse.jface.text.IRegion;
-import org.eclipse.php.internal.core.CoreMessages;
 import org.eclipse.php.internal.core.Logger;
 import org.eclipse.php.internal.core.PHPCoreConstants;
 import org.eclipse.php.internal.core.PHPToolkitUtil;
-import org.eclipse.php.internal.core.documentModel.parser.regions.PHPRegionTypes;
-import org.eclipse.php.internal.core.documentModel.parser.regions.PhpScriptRegion;
+import org.eclipse.php.internal.core.preferences.TaskPatternsProvider;
 import org.eclipse.php.internal.core.preferences.TaskTagsProvider;
-import org.eclipse.wst.sse.core.StructuredModelManager;
-import org.eclipse.wst.sse.core.internal.provisional.IStructuredModel;
+import org.eclipse.php.internal.core.project.ProjectOptions;
+import org.eclipse.php.internal.core.validation.TaskScanner.Task;
 import org.eclipse.wst.sse.core.internal.provisional.tasks.TaskTag;
-import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocument;
-import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentRegion;
-import org.eclipse.wst.sse.core.internal.provisional.text.ITextRegion;
-import org.eclipse.wst.sse.core.internal.provisional.text.ITextRegionList;
 import org.eclipse.wst.validation.AbstractValidator;
 import org.eclipse.wst.validation.ValidationResult;
 import org.eclipse.wst.validation.ValidationState;
 import org.eclipse.wst.validation.internal.provisional.core.IReporter;
-import org.eclipse.wst.xml.core.internal.parser.ContextRegionContainer;
 
 /**
  * This Validator creates (and removes) the task markers that will eventually
@@ -82,104 +79,37 @@ public class PHPTodoTaskValidator extends AbstractValidator {
 					IResource.DEPTH_INFINITE);
 		} catch (CoreException e) {
 		}
-		IStructuredModel model = null;
+		Reader reader = null;
 		try {
-			// desperately try to get the model :) In case it doesn't exist yet,
-			// create it
-			try {
-				model = StructuredModelManager.getModelManager()
-						.getExistingModelForRead(file);
-			} catch (Exception e) {
+			// scan the file content without building a structured model
+			reader = new InputStreamReader(file.getContents(true),
+					file.getCharset());
+			IProject project = file.getProject();
+			Pattern[] patterns = TaskPatternsProvider.getInstance()
+					.getPatternsForProject(project);
+			List<Task> tasks = new TaskScanner(patterns,
+					ProjectOptions.getPhpVersion(file),
+					ProjectOptions.useShortTags(project),
+					ProjectOptions.isSupportingAspTags(project)).scan(reader);
+			for (Task task : tasks) {
 				try {
-					model = StructuredModelManager.getModelManager()
-							.createUnManagedStructuredModelFor(file);
-				} catch (Exception e2) {
-				}
-			}
-			if (model == null) {
-				return;
-			}
-			// collect the tasks info and report
-			IStructuredDocumentRegion[] sdRegions = model
-					.getStructuredDocument().getStructuredDocumentRegions();
-			for (IStructuredDocumentRegion structuredDocumentRegion : sdRegions) {
-
-				IStructuredDocument document = structuredDocumentRegion
-						.getParentDocument();
-
-				ITextRegionList textRegions = structuredDocumentRegion
-						.getRegions();
-				for (int i = 0; i < textRegions.size(); i++) {
-					ITextRegion textRegion = textRegions.get(i);
-					int regionStart = structuredDocumentRegion
-							.getStartOffset(textRegion);
-
-					// special handling for php tags inside html
-					if (textRegion instanceof ContextRegionContainer) {
-						textRegion = extractPhpScriptRegion(textRegion);
-						regionStart += textRegion.getStart();
-					}
-					// parse the actual script
-					if (textRegion instanceof PhpScriptRegion) {
-						PhpScriptRegion scriptRegion = (PhpScriptRegion) textRegion;
-						try {
-
-							// go over the text regions and look for the tasks
-							ITextRegion[] phpTokens = scriptRegion
-									.getPhpTokens(0, textRegion.getLength());
-							for (int j = 0; j < phpTokens.length; j++) {
-								ITextRegion phpToken = phpTokens[j];
-								if (PHPRegionTypes.PHPDOC_TODO.equals(phpToken
-										.getType())) {
-									// get the task information from the
-									// document
-									int offset = regionStart
-											+ phpToken.getStart();
-									int length = phpToken.getLength();
-
-									String taskKeyword = document.get(offset,
-											phpToken.getLength());
-									int priority = getTaskPriority(taskKeyword);
-
-									// get the actual message for this task - if
-									// any
-									if (j + 1 < phpTokens.length) {
-										for (int k = j + 1; k < phpTokens.length; k++) {
-											ITextRegion phpNextToken = phpTokens[k];
-											if (PHPRegionTypes.PHPDOC_TODO
-													.equals(phpNextToken
-															.getType())) {
-												break;
-											}
-											length = length
-													+ phpNextToken.getLength();
-										}
-									}
-
-									try {
-										reportTask(document, file, reporter,
-												offset, length, priority);
-									} catch (CoreException e) {
-										Logger.logException(
-												"Failed creating task", e); //$NON-NLS-1$
-									}
-								}
-							}
-						} catch (BadLocationException e) {
-							Logger.logException(CoreMessages
-									.getString("PHPTodoTaskAstParser_0"), e); //$NON-NLS-1$
-						}
-					}
+					String taskStr = task.getMessage();
+					createMarker(file, taskStr, task.getLine(),
+							getTaskPriority(task.getTag()), task.getOffset(),
+							task.getOffset() + taskStr.length());
+				} catch (CoreException e) {
+					Logger.logException("Failed creating task", e); //$NON-NLS-1$
 				}
 			}
 		} catch (Exception e) {
 			Logger.logException("Failed validating file for tasks " + file, e); //$NON-NLS-1$
 		} finally {
-			if (model != null) {
-				model.releaseFromRead();
-				model = null;
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+				}
 			}
-
 		}
 
 	}
@@ -239,31 +169,6 @@ public class PHPTodoTaskValidator extends AbstractValidator {
 		return TaskTag.PRIORITY_NORMAL;
 	}
 
-	/**
-	 * Reports the task
-	 * 
-	 * @param document
-	 * @param taskReporter
-	 * @param offset
-	 * @param length
-	 * @param priority
-	 * @throws BadLocationException
-	 * @throws CoreException
-	 */
-	private void reportTask(IStructuredDocument document, IFile file,
-			IReporter taskReporter, int offset, int length, int priority)
-			throws BadLocationException, CoreException {
-		int lineNumber = document.getLineOfOffset(offset);
-
-		String taskStr = getTaskStr(document, lineNumber, offset, length);
-		// the end of the string to be highlighted
-		int charEnd = offset + taskStr.length();
-
-		// report the task
-		createMarker(file, taskStr, lineNumber, priority, offset, charEnd);
-
-	}
-
 	/**
 	 * Creates a PHP task marker based on the given information
 	 * 
@@ -289,54 +194,4 @@ public class PHPTodoTaskValidator extends AbstractValidator {
 		marker.setAttribute(IMarker.PRIORITY, priority);
 	}
 
-	/**
-	 * Gets the Task message from the document
-	 * 
-	 * @param document
-	 * @param lineNumber
-	 * @param offset
-	 * @param length
-	 * @return
-	 * @throws BadLocationException
-	 */
-	private String getTaskStr(IStructuredDocument document, int lineNumber,
-			int offset, int length) throws BadLocationException {
-		// get line info to identify the end of the task
-		IRegion lineInformation = document.getLineInformation(lineNumber);
-		int lineStart = lineInformation.getOffset();
-		int lineEnd = lineStart + lineInformation.getLength();
-
-		// identify the actual end of the task: either end of line or end of the
-		// token
-		// we could have 2 tasks in the same line
-		int tokenEnd = offset + length;
-		int taskEnd = Math.min(tokenEnd, lineEnd);
-
-		String taskStr = document.get(offset, taskEnd - offset);
-		taskStr = taskStr.trim();
-
-		return taskStr;
-
-	}
-
-	/**
-	 * Given a ContextRegionContainer, looks for the PHPScriptRegion in it and
-	 * return it. If the container does not contain a PHPScript region, just
-	 * return the given TextRegion
-	 * 
-	 * @param textRegion
-	 * @return the PhpScript textRegion
-	 */
-	private ITextRegion extractPhpScriptRegion(ITextRegion textRegion) {
-		ContextRegionContainer container = (ContextRegionContainer) textRegion;
-		ITextRegionList containerRegions = container.getRegions();
-		for (int z = 0; z < containerRegions.size(); z++) {
-			ITextRegion containerTextRegion = containerRegions.get(z);
-			if (containerTextRegion instanceof PhpScriptRegion) {
-				return containerTextRegion;
-			}
-		}
-		return textRegion;
-	}
-
 }
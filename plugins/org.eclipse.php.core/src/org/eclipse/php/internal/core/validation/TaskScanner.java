@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.core.validation;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import java_cup.sym;
+import java_cup.runtime.Symbol;
+
+import org.eclipse.php.internal.core.PHPVersion;
+import org.eclipse.php.internal.core.ast.nodes.AST;
+import org.eclipse.php.internal.core.ast.nodes.Comment;
+import org.eclipse.php.internal.core.ast.scanner.AstLexer;
+
+/**
+ * Finds the task tags (e.g. TODO) in the comments of a PHP file, without
+ * building a document model.
+ * <p>
+ * The file is tokenized once by the AST lexer of its PHP version, and only
+ * the comments the lexer reports are searched. The message of a task starts
+ * at its tag and ends at the end of the line, at the next tag or at the end
+ * of the PHP code, the same as the tasks found by the PHP lexer.
+ * </p>
+ * <p>
+ * The scanner keeps no state between calls to {@link #scan(Reader)}, so a
+ * single scanner can be used by several threads.
+ * </p>
+ */
+public class TaskScanner {
+
+	/** lexical state of the AST lexers outside of the PHP code */
+	private static final int YYINITIAL = 0;
+
+	private final Pattern[] patterns;
+	private final PHPVersion phpVersion;
+	private final boolean useShortTags;
+	private final boolean useAspTags;
+
+	/**
+	 * Task found by the scanner
+	 */
+	public static class Task {
+		private final String tag;
+		private final String message;
+		private final int line;
+		private final int offset;
+
+		Task(String tag, String message, int line, int offset) {
+			this.tag = tag;
+			this.message = message;
+			this.line = line;
+			this.offset = offset;
+		}
+
+		/**
+		 * Returns the text that matched the task tag
+		 */
+		public String getTag() {
+			return tag;
+		}
+
+		/**
+		 * Returns the message of the task, starting with its tag
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		/**
+		 * Returns the line of the task (0 based)
+		 */
+		public int getLine() {
+			return line;
+		}
+
+		/**
+		 * Returns the offset of the task tag in the file
+		 */
+		public int getOffset() {
+			return offset;
+		}
+	}
+
+	/**
+	 * @param patterns
+	 *            Patterns of the task tags, see
+	 *            {@link org.eclipse.php.internal.core.preferences.TaskPatternsProvider}
+	 * @param phpVersion
+	 *            PHP version of the file
+	 * @param useShortTags
+	 *            Whether <code>&lt;?</code> opens PHP code
+	 * @param useAspTags
+	 *            Whether <code>&lt;%</code> opens PHP code
+	 */
+	public TaskScanner(Pattern[] patterns, PHPVersion phpVersion,
+			boolean useShortTags, boolean useAspTags) {
+		this.patterns = patterns;
+		this.phpVersion = phpVersion;
+		this.useShortTags = useShortTags;
+		this.useAspTags = useAspTags;
+	}
+
+	/**
+	 * Returns the tasks found in the comments of the given content, in the
+	 * order of their offsets
+	 *
+	 * @param reader
+	 *            Content of a PHP file
+	 * @throws IOException
+	 */
+	public List<Task> scan(Reader reader) throws IOException {
+		final List<Task> tasks = new ArrayList<Task>();
+		if (patterns == null || patterns.length == 0) {
+			return tasks;
+		}
+		String content = read(reader);
+		if (content.length() > 0 && content.charAt(0) == '\uFEFF') {
+			// the byte order mark is not a part of the document
+			content = content.substring(1);
+		}
+
+		final AstLexer lexer = new AST(new StringReader(content), phpVersion,
+				useAspTags, useShortTags).lexer();
+		// the offsets of the close tags that end the PHP code
+		final List<Integer> closeTags = new ArrayList<Integer>();
+		try {
+			Symbol symbol;
+			int state = lexer.yystate();
+			while ((symbol = lexer.next_token()).sym != sym.EOF) {
+				if (state != YYINITIAL && lexer.yystate() == YYINITIAL) {
+					closeTags.add(symbol.left);
+				}
+				state = lexer.yystate();
+			}
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e.getMessage(), e);
+		}
+
+		final List<int[]> matches = new ArrayList<int[]>();
+		for (Object node : lexer.getCommentList()) {
+			if (node instanceof Comment) {
+				final Comment comment = (Comment) node;
+				findTags(content, comment.getStart(), comment.getEnd(),
+						matches);
+			}
+		}
+
+		int line = 0;
+		int position = 0;
+		int closeTag = 0;
+		for (int i = 0; i < matches.size(); i++) {
+			final int start = matches.get(i)[0];
+			for (; position < start; position++) {
+				final char c = content.charAt(position);
+				if (c == '\n'
+						|| (c == '\r' && content.charAt(position + 1) != '\n')) {
+					line++;
+				}
+			}
+			int end = lineEnd(content, start);
+			if (i + 1 < matches.size()) {
+				end = Math.min(end, matches.get(i + 1)[0]);
+			}
+			while (closeTag < closeTags.size()
+					&& closeTags.get(closeTag) < start) {
+				closeTag++;
+			}
+			if (closeTag < closeTags.size()) {
+				end = Math.min(end, closeTags.get(closeTag));
+			}
+			tasks.add(new Task(content.substring(start, matches.get(i)[1]),
+					content.substring(start, end).trim(), line, start));
+		}
+		return tasks;
+	}
+
+	/**
+	 * Finds the tags in a comment, the leftmost tag first, and adds their
+	 * start and end offsets to the given list
+	 */
+	private void findTags(String content, int start, int end,
+			List<int[]> matches) {
+		final CharSequence comment = content.subSequence(start, end);
+		final List<Matcher> matchers = new ArrayList<Matcher>(patterns.length);
+		for (Pattern pattern : patterns) {
+			matchers.add(pattern.matcher(comment));
+		}
+		int position = 0;
+		while (true) {
+			Matcher minimal = null;
+			for (int i = 0; i < matchers.size();) {
+				Matcher matcher = matchers.get(i);
+				if (matcher.find(position)) {
+					if (minimal == null || matcher.start() < minimal.start()) {
+						minimal = matcher;
+					}
+					i++;
+				} else {
+					matchers.remove(i);
+				}
+			}
+			if (minimal == null) {
+				return;
+			}
+			matches.add(new int[] { start + minimal.start(),
+					start + minimal.end() });
+			position = minimal.end();
+		}
+	}
+
+	private static int lineEnd(String content, int offset) {
+		for (int i = offset; i < content.length(); i++) {
+			final char c = content.charAt(i);
+			if (c == '\n' || c == '\r') {
+				return i;
+			}
+		}
+		return content.length();
+	}
+
+	private static String read(Reader reader) throws IOException {
+		final StringBuilder content = new StringBuilder();
+		final char[] buffer = new char[8192];
+		int count;
+		while ((count = reader.read(buffer)) != -1) {
+			content.append(buffer, 0, count);
+		}
+		return content.toString();
+	}
+}
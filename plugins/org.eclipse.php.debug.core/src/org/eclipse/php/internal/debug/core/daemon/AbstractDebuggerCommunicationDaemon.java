@@ -118,7 +118,7 @@ public abstract class AbstractDebuggerCommunicationDaemon implements
 		int port = getReceiverPort();
 		try {
 			synchronized (lock) {
-				serverSocket = new ServerSocket(port);
+				serverSocket = createServerSocket(port);
 				startListen();
 				return true;
 			}
@@ -147,6 +147,19 @@ public abstract class AbstractDebuggerCommunicationDaemon implements
 						+ " is in use. Please select a different port for the debugger."); //$NON-NLS-1$
 	}
 
+	/**
+	 * Creates the server socket that accepts debug connections. Extending
+	 * classes may override it, e.g. to create a socket with a channel.
+	 * 
+	 * @param port
+	 *            Port to bind to
+	 * @return server socket bound to the port
+	 * @throws IOException
+	 */
+	protected ServerSocket createServerSocket(int port) throws IOException {
+		return new ServerSocket(port);
+	}
+
 	/**
 	 * Returns the server socket port used for the debug requests listening
 	 * thread.
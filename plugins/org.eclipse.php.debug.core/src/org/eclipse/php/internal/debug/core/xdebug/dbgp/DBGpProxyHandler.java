@@ -105,7 +105,7 @@ public class DBGpProxyHandler {
 		if (registered) {
 			DBGpResponse resp = sendcmd("proxystop" + " -k " + currentIdeKey); //$NON-NLS-1$ //$NON-NLS-2$
 			registered = false;
-			String isOk = DBGpResponse.getAttribute(resp.getParentNode(),
+			String isOk = DBGpResponse.getAttribute(resp.getResponseNode(),
 					"success"); //$NON-NLS-1$
 			if (isOk == null || !isOk.equals("1")) { //$NON-NLS-1$
 				DBGpLogger
@@ -12,13 +12,14 @@
 package org.eclipse.php.internal.debug.core.xdebug.dbgp.model;
 
 import org.eclipse.debug.core.DebugException;
-import org.w3c.dom.Node;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponseNode;
 
 public class DBGpBoolValue extends DBGpValue {
 
 	String[] allowedValues = { "false", "true" }; //$NON-NLS-1$ //$NON-NLS-2$
 
-	public DBGpBoolValue(DBGpVariable owningVariable, Node property) {
+	public DBGpBoolValue(DBGpVariable owningVariable,
+			DBGpResponseNode property) {
 		super(owningVariable, property);
 		setModifiable(true);
 	}
@@ -20,12 +20,13 @@ import org.eclipse.php.internal.debug.core.model.VariablesUtil;
 import org.eclipse.php.internal.debug.core.model.VirtualPartition;
 import org.eclipse.php.internal.debug.core.model.VirtualPartition.IVariableProvider;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponse;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponseNode;
 
 public class DBGpContainerValue extends DBGpValue {
 
 	private IVariable[] childVariables;
+	// the property the child variables are created from once they are needed
+	private DBGpResponseNode childData;
 	private int numChild;
 	private String className;
 	private int page = -1;
@@ -36,7 +37,7 @@ public class DBGpContainerValue extends DBGpValue {
 	private boolean containerType = IS_ARRAY;
 
 	public DBGpContainerValue(AbstractDBGpBaseVariable owningVariable,
-			Node property) {
+			DBGpResponseNode property) {
 		super(owningVariable);
 		setModifiable(false);
 		if (property != null) {
@@ -50,7 +51,7 @@ public class DBGpContainerValue extends DBGpValue {
 	 * 
 	 * @param property
 	 */
-	private void parseData(Node property) {
+	private void parseData(DBGpResponseNode property) {
 		/*
 		 * children, numchildren, page, pagesize, recursive attribute page and
 		 * pagesize only appear if you exceed the max_children option limit.
@@ -100,6 +101,16 @@ public class DBGpContainerValue extends DBGpValue {
 			// control
 			page = 0;
 		}
+		childData = property;
+	}
+
+	/**
+	 * create the child variables of an object or array from the xml
+	 * information, only once they are shown
+	 * 
+	 * @param property
+	 */
+	private void createChildVariables(DBGpResponseNode property) {
 		/*
 		 * TODO: Improvement: nApplyCount > 1 in the zend hash table for an
 		 * array or object String recursiveStr =
@@ -118,12 +129,12 @@ public class DBGpContainerValue extends DBGpValue {
 			 * a ContainerVariable create a standard child entries that show the
 			 * variables and their values
 			 */
-			NodeList childProperties = property.getChildNodes();
-			int childrenReceived = childProperties.getLength();
+			DBGpResponseNode[] childProperties = property.getChildren();
+			int childrenReceived = childProperties.length;
 			if (childrenReceived > 0) {
 				childVariables = new DBGpVariable[childrenReceived];
 				for (int i = 0; i < childrenReceived; i++) {
-					Node childProperty = childProperties.item(i);
+					DBGpResponseNode childProperty = childProperties[i];
 					childVariables[i] = new DBGpVariable(
 							(DBGpTarget) getDebugTarget(), childProperty,
 							getOwner().getStackLevel(),
@@ -223,8 +234,16 @@ public class DBGpContainerValue extends DBGpValue {
 	 * @see org.eclipse.php.xdebug.core.dbgp.model.DBGpValue#getVariables()
 	 */
 	public IVariable[] getVariables() throws DebugException {
+		if (childVariables == null && childData != null) {
+			createChildVariables(childData);
+			childData = null;
+		}
 		if (childVariables == null) {
 			requestValue();
+			if (childData != null) {
+				createChildVariables(childData);
+				childData = null;
+			}
 			if (childVariables == null)
 				childVariables = new IVariable[0];
 		}
@@ -275,7 +294,7 @@ public class DBGpContainerValue extends DBGpValue {
 		if (var instanceof DBGpContainerVariable) {
 			page = ((DBGpContainerVariable) var).getPage();
 		}
-		Node property = null;
+		DBGpResponseNode property = null;
 		property = target.getProperty(var.getFullName(), var.getStackLevel(),
 				page);
 
@@ -17,7 +17,7 @@ import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.model.IDebugTarget;
 import org.eclipse.debug.core.model.IValue;
 import org.eclipse.debug.core.model.IVariable;
-import org.w3c.dom.Node;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponseNode;
 
 public class DBGpContainerVariable extends AbstractDBGpBaseVariable implements
 		IVariable {
@@ -28,7 +28,8 @@ public class DBGpContainerVariable extends AbstractDBGpBaseVariable implements
 	private DBGpContainerValue value;
 
 	public DBGpContainerVariable(IDebugTarget target, int page, int pageSize,
-			int numChildren, Node property, String stackLevel, String fullName) {
+			int numChildren, DBGpResponseNode property, String stackLevel,
+			String fullName) {
 		super(target, stackLevel, fullName, VIRTUAL_PARTITION);
 		this.page = page;
 		this.pageSize = pageSize;
@@ -12,11 +12,12 @@
 package org.eclipse.php.internal.debug.core.xdebug.dbgp.model;
 
 import org.eclipse.debug.core.DebugException;
-import org.w3c.dom.Node;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponseNode;
 
 public class DBGpNullValue extends DBGpValue {
 
-	public DBGpNullValue(DBGpVariable owningVariable, Node property) {
+	public DBGpNullValue(DBGpVariable owningVariable,
+			DBGpResponseNode property) {
 		super(owningVariable, property);
 		setModifiable(false); // will never be modifiable, unknown type
 	}
@@ -12,13 +12,13 @@
 package org.eclipse.php.internal.debug.core.xdebug.dbgp.model;
 
 import org.eclipse.debug.core.DebugException;
-import org.w3c.dom.Node;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponseNode;
 
 public class DBGpNumValue extends DBGpValue {
 
 	private String numberType;
 
-	public DBGpNumValue(DBGpVariable owningVariable, Node property,
+	public DBGpNumValue(DBGpVariable owningVariable, DBGpResponseNode property,
 			String numType) {
 		super(owningVariable, property);
 		setModifiable(true);
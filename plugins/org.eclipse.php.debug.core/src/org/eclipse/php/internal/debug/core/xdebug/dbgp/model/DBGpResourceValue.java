@@ -12,11 +12,12 @@
 package org.eclipse.php.internal.debug.core.xdebug.dbgp.model;
 
 import org.eclipse.debug.core.DebugException;
-import org.w3c.dom.Node;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponseNode;
 
 public class DBGpResourceValue extends DBGpValue {
 
-	public DBGpResourceValue(DBGpVariable owningVariable, Node property) {
+	public DBGpResourceValue(DBGpVariable owningVariable,
+			DBGpResponseNode property) {
 		super(owningVariable);
 		setModifiable(false);
 		simpleParseNode(property);
@@ -21,8 +21,8 @@ import org.eclipse.debug.core.model.IThread;
 import org.eclipse.debug.core.model.IVariable;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.DBGpLogger;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponse;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponseNode;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpUtils;
-import org.w3c.dom.Node;
 
 public class DBGpStackFrame extends DBGpElement implements IStackFrame {
 
@@ -37,7 +37,7 @@ public class DBGpStackFrame extends DBGpElement implements IStackFrame {
 
 	// private IVariable[] variables; // variables exposed to this stack frame
 
-	public DBGpStackFrame(DBGpThread threadOwner, Node stackData) {
+	public DBGpStackFrame(DBGpThread threadOwner, DBGpResponseNode stackData) {
 		super(threadOwner.getDebugTarget());
 		owningThread = threadOwner;
 
@@ -18,13 +18,18 @@ import org.eclipse.debug.core.model.IValue;
 import org.eclipse.debug.core.model.IVariable;
 import org.eclipse.php.internal.debug.core.PHPDebugCoreMessages;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.DBGpLogger;
-import org.w3c.dom.Node;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.Base64;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponse;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponseNode;
 
 public class DBGpStringValue extends DBGpValue {
 
 	private boolean complete = false;
 	private int requiredBytes;
 	private IVariable[] stringInfo = null;
+	/** base64 data that is decoded on first access, guarded by this */
+	private String encodedValue;
+	private boolean decoded = true;
 
 	/**
 	 * 
@@ -33,14 +38,25 @@ public class DBGpStringValue extends DBGpValue {
 	 * @param strByteLen
 	 *            if set to -1, always states we don't have the complete string
 	 */
-	public DBGpStringValue(DBGpVariable owningVariable, Node property,
-			int strByteLen) {
+	public DBGpStringValue(DBGpVariable owningVariable,
+			DBGpResponseNode property, int strByteLen) {
 		super(owningVariable);
 		setModifiable(true);
+		requiredBytes = strByteLen;
+		String encoding = DBGpResponse.getAttribute(property, "encoding"); //$NON-NLS-1$
+		String text = property.getText();
+		if (encoding.equalsIgnoreCase(ENCODING_BASE64) && text != null) {
+			// large strings are often never looked at, so they are only
+			// decoded when the value is needed
+			encodedValue = text;
+			decoded = false;
+			complete = Base64.getDecodedLength(encodedValue) >= strByteLen;
+			return;
+		}
 		simpleParseNode(property);
 		if (getValueBytes() == null) {
 			// we didn't get a binary representation, so we must create one
-			String XMLEncoding = property.getOwnerDocument().getInputEncoding();
+			String XMLEncoding = property.getEncoding();
 			if (XMLEncoding == null) {
 				XMLEncoding = ((DBGpTarget) getDebugTarget())
 						.getBinaryEncoding();
@@ -65,7 +81,46 @@ public class DBGpStringValue extends DBGpValue {
 
 		int actualLength = getValueBytes().length;
 		complete = actualLength >= strByteLen;
-		requiredBytes = strByteLen;
+	}
+
+	private synchronized void decode() {
+		if (decoded) {
+			return;
+		}
+		decoded = true;
+		Base64.Decoder decoder = new Base64.Decoder(encodedValue.length());
+		decoder.decode(encodedValue);
+		byte[] valueBytes = decoder.finish();
+		String data;
+		try {
+			data = new String(valueBytes,
+					((DBGpTarget) getDebugTarget()).getBinaryEncoding());
+		} catch (UnsupportedEncodingException e) {
+			DBGpLogger.logException("unexpected encoding problem", this, e); //$NON-NLS-1$
+			data = new String(valueBytes);
+		}
+		setValueBytes(valueBytes);
+		genValueString(data);
+	}
+
+	@Override
+	public String getValueString() throws DebugException {
+		decode();
+		return super.getValueString();
+	}
+
+	@Override
+	public byte[] getValueBytes() {
+		decode();
+		return super.getValueBytes();
+	}
+
+	@Override
+	synchronized String getValueKey() throws DebugException {
+		if (encodedValue != null) {
+			return encodedValue;
+		}
+		return super.getValueKey();
 	}
 
 	/*
@@ -99,6 +154,10 @@ public class DBGpStringValue extends DBGpValue {
 	 * )
 	 */
 	public void setValue(String expression) throws DebugException {
+		synchronized (this) {
+			decoded = true;
+			encodedValue = null;
+		}
 		stringInfo = null;
 		if (expression != null) {
 			setValueString(expression.trim());
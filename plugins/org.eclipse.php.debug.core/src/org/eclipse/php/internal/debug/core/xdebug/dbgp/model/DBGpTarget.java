@@ -70,14 +70,13 @@ import org.eclipse.php.internal.debug.core.xdebug.dbgp.DBGpPreferences;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.Base64;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpCommand;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponse;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponseNode;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpUtils;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.EngineTypes;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.session.DBGpSession;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.session.DBGpSessionHandler;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.session.IDBGpSessionListener;
 import org.eclipse.swt.widgets.Display;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 		IDBGpDebugTarget, IStep, IBreakpointManagerListener,
@@ -193,12 +192,12 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 		private Map<String, String> current = new HashMap<String, String>();
 		private Map<String, String> previous = new HashMap<String, String>();
 
-		public boolean store(DBGpValue value, Node property) {
+		public boolean store(DBGpValue value, DBGpResponseNode property) {
 			boolean hasChanged = false;
 			String key = createKey(value, property);
 			String valueAsString = null;
 			try {
-				valueAsString = value == null ? null : value.getValueString();
+				valueAsString = value == null ? null : value.getValueKey();
 			} catch (DebugException e) {
 				// should not happen, nonetheless...
 				Logger.logException(e);
@@ -215,7 +214,7 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 			current = new HashMap<String, String>();
 		}
 
-		private String createKey(DBGpValue value, Node property) {
+		private String createKey(DBGpValue value, DBGpResponseNode property) {
 			String key;
 			String level = value == null ? "0" : value.getOwner().getStackLevel(); //$NON-NLS-1$
 			String valuePath = DBGpResponse.getAttribute(property, "fullname"); //$NON-NLS-1$
@@ -233,7 +232,7 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 					chain.append((String) exp);
 					done = true;
 				}
-				Node next = property.getParentNode();
+				DBGpResponseNode next = property.getParent();
 				while (!done && next != null) {
 					String element = DBGpResponse.getAttribute(next, "name"); //$NON-NLS-1$
 					if (element.isEmpty()) {
@@ -242,7 +241,7 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 						break;
 					}
 					chain.insert(0, element + KEY_SEPARATOR);
-					next = next.getParentNode();
+					next = next.getParent();
 				}
 				key = TAG_WATCH + KEY_SEPARATOR + level + KEY_SEPARATOR
 						+ chain.toString();
@@ -1339,9 +1338,8 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 		DBGpUtils.isGoodDBGpResponse(this, resp);
 		resp = session.sendSyncCmd(DBGpCommand.featureGet, "-n encoding"); //$NON-NLS-1$
 		if (DBGpUtils.isGoodDBGpResponse(this, resp)) {
-			Node child = resp.getParentNode().getFirstChild();
-			if (child != null) {
-				String data = child.getNodeValue();
+			String data = getResponseText(resp);
+			if (data != null) {
 				try {
 					"abcdefg".getBytes(data); //$NON-NLS-1$
 					session.setSessionEncoding(data);
@@ -1358,9 +1356,8 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 			// TODO: could check the supported atttribute ?
 			// String supportedAttr = DBGpResponse.getAttribute(resp,
 			// "supported");
-			Node child = resp.getParentNode().getFirstChild();
-			if (child != null) {
-				String supported = child.getNodeValue();
+			String supported = getResponseText(resp);
+			if (supported != null) {
 				if (supported != null && supported.equals("1")) { //$NON-NLS-1$
 					asyncSupported = true;
 				}
@@ -1405,12 +1402,12 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 					DBGpResponse resp = session
 							.sendSyncCmd(DBGpCommand.stackGet);
 					if (DBGpUtils.isGoodDBGpResponse(this, resp)) {
-						Node parent = resp.getParentNode();
-						NodeList stackNodes = parent.getChildNodes();
+						DBGpResponseNode parent = resp.getResponseNode();
+						DBGpResponseNode[] stackNodes = parent.getChildren();
 						// <stack> entries
-						stackFrames = new IStackFrame[stackNodes.getLength()];
-						for (int i = 0; i < stackNodes.getLength(); i++) {
-							Node stackNode = stackNodes.item(i);
+						stackFrames = new IStackFrame[stackNodes.length];
+						for (int i = 0; i < stackNodes.length; i++) {
+							DBGpResponseNode stackNode = stackNodes[i];
 							// merge top frame
 							if (i == 0 && previousFrames != null) {
 								// merge top frame
@@ -1423,7 +1420,7 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 							stackFrames[i] = new DBGpStackFrame(langThread,
 									stackNode);
 						}
-						currentStackLevel = stackNodes.getLength() - 1;
+						currentStackLevel = stackNodes.length - 1;
 					}
 				}
 			}
@@ -1580,10 +1577,8 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 		List<DBGpVariable> variables = new ArrayList<DBGpVariable>();
 		if (DBGpUtils.isGoodDBGpResponse(this, resp)
 				&& resp.getErrorCode() == DBGpResponse.ERROR_OK) {
-			Node parent = resp.getParentNode();
-			NodeList properties = parent.getChildNodes();
-			for (int i = 0; i < properties.getLength(); i++) {
-				Node property = properties.item(i);
+			DBGpResponseNode parent = resp.getResponseNode();
+			for (DBGpResponseNode property : parent.getChildren()) {
 				if (shouldSkip(property))
 					continue;
 				variables.add(new DBGpVariable(this, property, reportedLevel));
@@ -1592,7 +1587,16 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 		return variables.toArray(new DBGpVariable[variables.size()]);
 	}
 
-	private boolean shouldSkip(Node property) {
+	/**
+	 * @return the text of the top level element of the response, or
+	 *         <code>null</code> if there is none
+	 */
+	private static String getResponseText(DBGpResponse resp) {
+		DBGpResponseNode node = resp.getResponseNode();
+		return node != null ? node.getText() : null;
+	}
+
+	private boolean shouldSkip(DBGpResponseNode property) {
 		String type = DBGpResponse.getAttribute(property, "type"); //$NON-NLS-1$
 		// Skip uninitialized variables
 		if (type.equalsIgnoreCase("uninitialized")) //$NON-NLS-1$
@@ -1660,7 +1664,8 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 	 * @param page
 	 * @return
 	 */
-	public Node getProperty(String fullName, String stackLevel, int page) {
+	public DBGpResponseNode getProperty(String fullName, String stackLevel,
+			int page) {
 		if (fullName != null && fullName.trim().length() != 0) {
 			String args = "-n " + fullName + " -d " + stackLevel + " -p " + page; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			if (stackLevel.equals("-1")) { //$NON-NLS-1$
@@ -1674,7 +1679,7 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 			}
 			DBGpResponse resp = session.sendSyncCmd(DBGpCommand.propGet, args);
 			if (DBGpUtils.isGoodDBGpResponse(this, resp)) {
-				return resp.getParentNode().getFirstChild();
+				return resp.getResponseNode().getFirstChild();
 			}
 		}
 
@@ -1692,7 +1697,8 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 	 * @param page
 	 * @return
 	 */
-	public Node getCompleteString(String fullName, String stackLevel, int length) {
+	public DBGpResponseNode getCompleteString(String fullName,
+			String stackLevel, int length) {
 		if (fullName != null && fullName.trim().length() != 0) {
 			String args = "-n " + fullName + " -d " + stackLevel; //$NON-NLS-1$ //$NON-NLS-2$
 			if (stackLevel.equals("-1")) { //$NON-NLS-1$
@@ -1711,7 +1717,7 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 			DBGpResponse resp = session
 					.sendSyncCmd(DBGpCommand.propValue, args);
 			if (DBGpUtils.isGoodDBGpResponse(this, resp)) {
-				return resp.getParentNode();
+				return resp.getResponseNode();
 			}
 		}
 
@@ -1727,18 +1733,18 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 	 * @param toEval
 	 * @return
 	 */
-	public Node eval(String toEval) {
+	public DBGpResponseNode eval(String toEval) {
 		// XDebug expects all data to be base64 encoded.
 		// Convert to session encoding bytes 1st before converting to Base64
 		String encoded = Base64.encode(getSessionEncodingBytes(toEval));
 		String args = "-- " + encoded; //$NON-NLS-1$
 
-		Node response = null;
+		DBGpResponseNode response = null;
 		synchronized (sessionMutex) {
 			if (session != null && session.isActive()) {
 				DBGpResponse resp = session.sendSyncCmd(DBGpCommand.eval, args);
 				if (DBGpUtils.isGoodDBGpResponse(this, resp)) {
-					response = resp.getParentNode().getFirstChild();
+					response = resp.getResponseNode().getFirstChild();
 				}
 			}
 		}
@@ -2003,6 +2009,24 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 	 */
 	private void sendBreakpointAddCmd(DBGpBreakpoint bp,
 			boolean onResponseThread) {
+		String args = getBreakpointAddArgs(bp);
+		DBGpResponse resp;
+		if (onResponseThread) {
+			resp = session.sendSyncCmdOnResponseThread(
+					DBGpCommand.breakPointSet, args);
+		} else {
+			resp = session.sendSyncCmd(DBGpCommand.breakPointSet, args);
+		}
+		breakpointSet(bp, resp);
+	}
+
+	/**
+	 * create the arguments of the breakpoint add command
+	 * 
+	 * @param bp
+	 * @return the arguments
+	 */
+	private String getBreakpointAddArgs(DBGpBreakpoint bp) {
 		bp.resetConditionChanged();
 		String fileName = bp.getFileName();
 		int lineNumber = bp.getLineNumber();
@@ -2033,14 +2057,16 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 		if (debugMsg != null) {
 			DBGpLogger.debug(debugMsg);
 		}
+		return args;
+	}
 
-		DBGpResponse resp;
-		if (onResponseThread) {
-			resp = session.sendSyncCmdOnResponseThread(
-					DBGpCommand.breakPointSet, args);
-		} else {
-			resp = session.sendSyncCmd(DBGpCommand.breakPointSet, args);
-		}
+	/**
+	 * record the id of a breakpoint from the response to its add command
+	 * 
+	 * @param bp
+	 * @param resp
+	 */
+	private void breakpointSet(DBGpBreakpoint bp, DBGpResponse resp) {
 		if (DBGpUtils.isGoodDBGpResponse(this, resp)) {
 			/*
 			 * <response command="breakpoint_set"
@@ -2229,8 +2255,49 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 		}
 		IBreakpoint[] breakpoints = bmgr.getBreakpoints(bpFacade
 				.getBreakpointModelID());
+		if (!isSuspended()) {
+			for (int i = 0; i < breakpoints.length; i++) {
+				breakpointAdded(breakpoints[i]);
+			}
+			return;
+		}
+
+		// the script waits for us, so send all the breakpoints at once
+		// rather than waiting for the response of each one, which costs a
+		// round trip per breakpoint before the script can run.
+		List<DBGpBreakpoint> bps = new ArrayList<DBGpBreakpoint>();
 		for (int i = 0; i < breakpoints.length; i++) {
-			breakpointAdded(breakpoints[i]);
+			if (supportsBreakpoint(breakpoints[i])) {
+				try {
+					if (breakpoints[i].isEnabled()) {
+						bps.add(bpFacade.createDBGpBreakpoint(breakpoints[i]));
+					}
+				} catch (CoreException e) {
+					DBGpLogger.logException(
+							"Exception adding breakpoint", this, e); //$NON-NLS-1$
+				}
+			}
+		}
+		if (bps.isEmpty()) {
+			return;
+		}
+		String[] args = new String[bps.size()];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = getBreakpointAddArgs(bps.get(i));
+		}
+		if (DBGpLogger.debugBP()) {
+			DBGpLogger.debug("Sending " + args.length + " breakpoints"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		DBGpResponse[] responses = session.sendSyncCmds(
+				DBGpCommand.breakPointSet, args);
+		if (responses == null) {
+			// the responses can't be matched to the breakpoints
+			DBGpLogger.logError("Failed to install " + args.length //$NON-NLS-1$
+					+ " breakpoints", this, null); //$NON-NLS-1$
+			return;
+		}
+		for (int i = 0; i < responses.length; i++) {
+			breakpointSet(bps.get(i), responses[i]);
 		}
 	}
 
@@ -2561,7 +2628,8 @@ public class DBGpTarget extends DBGpElement implements IPHPDebugTarget,
 	 * @return <code>true</code> if given value has changed since previous
 	 *         suspension, <code>false</code> otherwise
 	 */
-	synchronized boolean storeValue(DBGpValue value, Node property) {
+	synchronized boolean storeValue(DBGpValue value,
+			DBGpResponseNode property) {
 		return valueStorage.store(value, property);
 	}
 
@@ -19,7 +19,7 @@ import org.eclipse.debug.core.model.IVariable;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.DBGpLogger;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.Base64;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponse;
-import org.w3c.dom.Node;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponseNode;
 
 public abstract class DBGpValue extends DBGpElement implements IValue {
 
@@ -37,14 +37,15 @@ public abstract class DBGpValue extends DBGpElement implements IValue {
 		this.valueBytes = valueBytes;
 	}
 
-	private static final String ENCODING_BASE64 = "base64"; //$NON-NLS-1$
+	static final String ENCODING_BASE64 = "base64"; //$NON-NLS-1$
 
 	public DBGpValue(AbstractDBGpBaseVariable variable) {
 		super(variable.getDebugTarget());
 		owner = variable;
 	}
 
-	public DBGpValue(AbstractDBGpBaseVariable variable, Node property) {
+	public DBGpValue(AbstractDBGpBaseVariable variable,
+			DBGpResponseNode property) {
 		super(variable.getDebugTarget());
 		owner = variable;
 		simpleParseNode(property);
@@ -74,6 +75,15 @@ public abstract class DBGpValue extends DBGpElement implements IValue {
 		return valueString;
 	}
 
+	/**
+	 * Returns a representation of the value that is only compared with the
+	 * one of the previous suspend to detect changes. Values that are decoded
+	 * on demand return their encoded form, so they don't have to be decoded.
+	 */
+	String getValueKey() throws DebugException {
+		return getValueString();
+	}
+
 	void setValueString(String newValueStr) {
 		valueString = newValueStr;
 	}
@@ -107,12 +117,12 @@ public abstract class DBGpValue extends DBGpElement implements IValue {
 	 * <property name="1" fullname="$a[1]" address="10208616" type="float">
 	 * <![CDATA[15.1]]> </property>
 	 */
-	void simpleParseNode(Node property) {
+	void simpleParseNode(DBGpResponseNode property) {
 		String data = null;
 		String encoding = DBGpResponse.getAttribute(property, "encoding"); //$NON-NLS-1$
-		Node Child = property.getFirstChild();
-		if (Child != null) {
-			data = decodeValue(Child.getNodeValue(), encoding);
+		String text = property.getText();
+		if (text != null) {
+			data = decodeValue(text, encoding);
 		}
 		genValueString(data);
 	}
@@ -23,7 +23,7 @@ import org.eclipse.php.internal.debug.core.PHPDebugCoreMessages;
 import org.eclipse.php.internal.debug.core.PHPDebugPlugin;
 import org.eclipse.php.internal.debug.core.model.VariablesUtil;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponse;
-import org.w3c.dom.Node;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponseNode;
 
 public class DBGpVariable extends AbstractDBGpBaseVariable implements IVariable {
 
@@ -42,14 +42,14 @@ public class DBGpVariable extends AbstractDBGpBaseVariable implements IVariable
 	private String type;
 	private boolean hasChanged = false;
 
-	public DBGpVariable(DBGpTarget target, Node property, String level,
-			Facet... facets) {
+	public DBGpVariable(DBGpTarget target, DBGpResponseNode property,
+			String level, Facet... facets) {
 		super(target, level, facets);
 		parseProperty(property);
 		hasChanged = target.storeValue(value, property);
 	}
 
-	private void parseProperty(Node property) {
+	private void parseProperty(DBGpResponseNode property) {
 		/*
 		 * We could have a property which has no name, full-name or type as a
 		 * result of an expression evaluation
@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol;
 
+import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
 
 /* Base64 definition
@@ -364,6 +365,132 @@ public class Base64 {
 		return finalDecoded;
 	}
 
+	/**
+	 * Computes the number of bytes {@link #decode(String)} would return for the
+	 * given input, without decoding it.
+	 * 
+	 * @param input
+	 *            encoded characters
+	 * @return length of the decoded data
+	 */
+	public static int getDecodedLength(CharSequence input) {
+		int length = 0;
+		int[] base64set = new int[4];
+		int decodepos = 0;
+		for (int i = 0; i < input.length(); i++) {
+			char c = input.charAt(i);
+			if (c > 0xFF || base64ToValTable[c] == -1) {
+				continue;
+			}
+			base64set[decodepos] = base64ToValTable[c];
+			decodepos++;
+			if (decodepos == 4) {
+				decodepos = 0;
+				length++;
+				if (base64set[2] != 64) {
+					length++;
+					if (base64set[3] != 64) {
+						length++;
+					}
+				}
+			}
+		}
+		if (decodepos > 1) {
+			length++;
+			if (decodepos > 2 && base64set[2] != 64) {
+				length++;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Decodes a base64 stream that arrives in chunks, e.g. as text events of an
+	 * XML stream, without collecting the whole encoded text first. Characters
+	 * are handled in the same way as by {@link #decode(String)}.
+	 */
+	public static class Decoder {
+
+		private final ByteArrayOutputStream decoded;
+		private final int[] base64set = new int[4];
+		private int decodepos = 0;
+
+		/**
+		 * @param encodedLength
+		 *            expected length of the encoded data, or 0 if unknown
+		 */
+		public Decoder(int encodedLength) {
+			decoded = new ByteArrayOutputStream(Math.max(32,
+					encodedLength / 4 * 3));
+		}
+
+		/**
+		 * decode the next chunk of the base64 stream.
+		 * 
+		 * @param chars
+		 *            encoded characters
+		 * @param start
+		 *            offset of the chunk
+		 * @param length
+		 *            length of the chunk
+		 */
+		public void decode(char[] chars, int start, int length) {
+			for (int i = start; i < start + length; i++) {
+				decode(chars[i]);
+			}
+		}
+
+		/**
+		 * decode the next chunk of the base64 stream.
+		 * 
+		 * @param chars
+		 *            encoded characters
+		 */
+		public void decode(CharSequence chars) {
+			for (int i = 0; i < chars.length(); i++) {
+				decode(chars.charAt(i));
+			}
+		}
+
+		private void decode(char c) {
+			if (c > 0xFF || base64ToValTable[c] == -1) {
+				return;
+			}
+			base64set[decodepos] = base64ToValTable[c];
+			decodepos++;
+			if (decodepos == 4) {
+				decodepos = 0;
+				decoded.write((base64set[0] << 2)
+						| ((base64set[1] & 0x30) >>> 4));
+				if (base64set[2] != 64) {
+					decoded.write(((base64set[1] & 0x0f) << 4)
+							| ((base64set[2] & 0x3c) >>> 2));
+					if (base64set[3] != 64) {
+						decoded.write((base64set[2] & 0x03) << 6
+								| base64set[3]);
+					}
+				}
+			}
+		}
+
+		/**
+		 * @return the decoded bytes of all chunks
+		 */
+		public byte[] finish() {
+			if (decodepos > 1) {
+				// we have some bits left over
+				decoded.write((base64set[0] << 2)
+						| ((base64set[1] & 0x30) >>> 4));
+				if (decodepos > 2 && base64set[2] != 64) {
+					decoded.write(((base64set[1] & 0x0f) << 4)
+							| ((base64set[2] & 0x3c) >>> 2));
+				}
+			}
+			decodepos = 0;
+			return decoded.toByteArray();
+		}
+	}
+
 	// private static byte[] decode(byte[] input) {
 	// int outsize = input.length;
 	// outsize = outsize / 4 * 3;
@@ -11,25 +11,28 @@
 package org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol;
 
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.DBGpLogger;
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 /**
  * Handle Init and Response DBGp Responses Init and Engine Child only Response,
  * status attributes and Error code child only status entries occur when a
  * program suspends or a status request is made
  * 
+ * The response is read with a streaming parser that stops as soon as the
+ * top level information is known, so the (possibly huge) property data of
+ * property_get and context_get responses is not touched unless a caller asks
+ * for it with {@link #getResponseNode()}, which reads the elements of the
+ * response with the streaming parser on the calling thread, without building
+ * a DOM. Stream data is kept as it was sent, and it is base64 decoded the
+ * first time it is asked for. Base64 encoded string values of properties are
+ * only decoded by the debug model when the value is needed.
  */
 public class DBGpResponse {
 
@@ -85,9 +88,14 @@ public class DBGpResponse {
 	public static final String REASON_ABORTED = "aborted"; //$NON-NLS-1$
 	public static final String REASON_EXCEPTION = "exception"; //$NON-NLS-1$
 
-	private DocumentBuilder db;
-	private Document doc;
-	private Node parent;
+	private static final XMLInputFactory inputFactory = XMLInputFactory
+			.newInstance();
+	static {
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+	}
+
+	private DBGpResponseNode responseNode;
+	private Map<String, String> topAttributes = new HashMap<String, String>();
 
 	// type
 	public static final int PARSE_FAILURE = 0;
@@ -149,70 +157,97 @@ public class DBGpResponse {
 
 	// stream data
 	private String streamType;
-	private String streamData;
+	private String encodedStreamData;
+	private byte[] streamData;
 
 	private byte[] rawXML;
 
 	public DBGpResponse() {
-		DocumentBuilderFactory dbFact = DocumentBuilderFactory.newInstance();
-		try {
-			db = dbFact.newDocumentBuilder();
-		} catch (ParserConfigurationException e) {
-			DBGpLogger.logException(null, this, e);
-		}
 	}
 
 	public void parseResponse(byte[] xmlResponse) {
 		rawXML = xmlResponse;
-		if (db != null && xmlResponse != null) {
-			ByteArrayInputStream bais = new ByteArrayInputStream(xmlResponse);
-			parseResponse(bais);
+		responseNode = null;
+		encodedStreamData = null;
+		streamData = null;
+		if (xmlResponse != null) {
+			parseResponseStream();
 		} else {
 			type = PARSE_FAILURE;
 			errorCode = ERROR_PARSE_FAILURE;
 		}
 	}
 
-	private void parseResponse(InputStream is) {
+	private void parseResponseStream() {
 		id = null;
 		command = null;
 		type = UNKNOWN_TYPE;
 		errorCode = ERROR_UNKNOWN_TYPE;
+		topAttributes.clear();
 
+		XMLStreamReader reader = null;
 		try {
-			doc = db.parse(is);
-			parent = doc.getFirstChild();
-			String nodeName = parent.getNodeName();
+			reader = inputFactory
+					.createXMLStreamReader(new ByteArrayInputStream(rawXML));
+			reader.nextTag();
+			for (int i = 0; i < reader.getAttributeCount(); i++) {
+				topAttributes.put(getQualifiedName(reader.getAttributePrefix(i),
+						reader.getAttributeLocalName(i)), reader
+						.getAttributeValue(i));
+			}
+			String nodeName = reader.getLocalName();
 			if (nodeName.equals("response")) { //$NON-NLS-1$
-				parseResponseType();
+				parseResponseType(reader);
 			} else if (nodeName.equals("init")) { //$NON-NLS-1$
-				parseInitType();
+				parseInitType(reader);
 			} else if (nodeName.equals("stream")) { //$NON-NLS-1$
-				parseStreamType();
+				parseStreamType(reader);
 			} else if (nodeName.equals("proxyinit")) { //$NON-NLS-1$
-				parseProxyInitType();
+				parseProxyInitType(reader);
 			} else if (nodeName.equals("proxyerror")) { //$NON-NLS-1$
-				parseProxyErrorType();
+				parseProxyErrorType(reader);
 			}
 
-		} catch (SAXException e) {
-			DBGpLogger.logException(null, this, e);
-			type = PARSE_FAILURE;
-			errorCode = ERROR_PARSE_FAILURE;
-		} catch (IOException e) {
+		} catch (XMLStreamException e) {
 			DBGpLogger.logException(null, this, e);
 			type = PARSE_FAILURE;
 			errorCode = ERROR_PARSE_FAILURE;
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+				}
+			}
+		}
+	}
+
+	private static String getQualifiedName(String prefix, String localName) {
+		if (prefix == null || prefix.length() == 0) {
+			return localName;
 		}
-		// System.out.println("wait for me");
+		return prefix + ':' + localName;
 	}
 
-	private void parseStreamType() {
+	private void parseStreamType(XMLStreamReader reader)
+			throws XMLStreamException {
 		type = STREAM;
 		streamType = getTopAttribute("type"); //$NON-NLS-1$
-		Node Child = parent.getFirstChild();
-		if (Child != null) {
-			streamData = Child.getNodeValue();
+		// the data is decoded when it is asked for
+		StringBuilder encoded = null;
+		while (reader.next() != XMLStreamReader.END_ELEMENT) {
+			int event = reader.getEventType();
+			if (event == XMLStreamReader.CHARACTERS
+					|| event == XMLStreamReader.CDATA) {
+				if (encoded == null) {
+					encoded = new StringBuilder(reader.getTextLength());
+				}
+				encoded.append(reader.getTextCharacters(),
+						reader.getTextStart(), reader.getTextLength());
+			}
+		}
+		if (encoded != null) {
+			encodedStreamData = encoded.toString();
 		}
 
 		if (streamType.length() != 0) {
@@ -223,21 +258,24 @@ public class DBGpResponse {
 
 	}
 
-	private void parseProxyInitType() {
+	private void parseProxyInitType(XMLStreamReader reader)
+			throws XMLStreamException {
 		type = PROXY_INIT;
 		idekey = getTopAttribute("idekey"); //$NON-NLS-1$
 		// caller can retrieve address, port
-		getErrorInformation(false);
+		getErrorInformation(reader, false);
 
 	}
 
-	private void parseProxyErrorType() {
+	private void parseProxyErrorType(XMLStreamReader reader)
+			throws XMLStreamException {
 		type = PROXY_ERROR;
-		getErrorInformation(false);
+		getErrorInformation(reader, false);
 
 	}
 
-	private void parseInitType() {
+	private void parseInitType(XMLStreamReader reader)
+			throws XMLStreamException {
 		// get the init information
 		type = INIT;
 		idekey = getTopAttribute("idekey"); //$NON-NLS-1$
@@ -249,24 +287,26 @@ public class DBGpResponse {
 		fileUri = getTopAttribute("fileuri"); //$NON-NLS-1$
 		// engine may not be the first child so you will need to search
 		// for it.
-		NodeList nodes = parent.getChildNodes();
-		for (int i = 0; i < nodes.getLength(); i++) {
-			Node node = nodes.item(i);
-			if (node.getNodeName().equals("engine")) { //$NON-NLS-1$
-				engineVersion = getAttribute(node, "version"); //$NON-NLS-1$
-				NodeList moreNodes = node.getChildNodes();
-				if (moreNodes != null && moreNodes.getLength() > 0) {
-					String engineTypeStr = moreNodes.item(0).getNodeValue();
-					if (engineTypeStr != null) {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamReader.START_ELEMENT) {
+				if (depth == 1 && reader.getLocalName().equals("engine")) { //$NON-NLS-1$
+					String version = reader.getAttributeValue(null, "version"); //$NON-NLS-1$
+					engineVersion = version != null ? version : ""; //$NON-NLS-1$
+					String engineTypeStr = reader.getElementText();
+					if (engineTypeStr.length() > 0) {
 						try {
 							engineType = EngineTypes.valueOf(engineTypeStr);
 						} catch (IllegalArgumentException e) {
 							engineType = EngineTypes.other;
 						}
 					}
-
+					break;
 				}
-				i = nodes.getLength();
+				depth++;
+			} else if (event == XMLStreamReader.END_ELEMENT) {
+				depth--;
 			}
 		}
 		if (idekey.length() != 0 && fileUri.length() != 0) {
@@ -276,30 +316,36 @@ public class DBGpResponse {
 		}
 	}
 
-	private void parseResponseType() {
+	private void parseResponseType(XMLStreamReader reader)
+			throws XMLStreamException {
 		type = RESPONSE;
 		id = getTopAttribute("transaction_id"); //$NON-NLS-1$
 		command = getTopAttribute("command"); //$NON-NLS-1$
 		status = getTopAttribute("status"); //$NON-NLS-1$
 		reason = getTopAttribute("reason"); //$NON-NLS-1$
-		getErrorInformation(true);
+		getErrorInformation(reader, true);
 	}
 
-	private void getErrorInformation(boolean checkID) {
-		// get the error information
-		Node errNode = parent.getFirstChild();
-		if (errNode != null && errNode.getNodeName().equals("error")) { //$NON-NLS-1$
-			String errVal = getAttribute(errNode, "code"); //$NON-NLS-1$
+	private void getErrorInformation(XMLStreamReader reader, boolean checkID)
+			throws XMLStreamException {
+		// get the error information, it can only be the first child. The rest
+		// of the response is left unread.
+		int event = reader.next();
+		while (event == XMLStreamReader.CHARACTERS && reader.isWhiteSpace()) {
+			event = reader.next();
+		}
+		if (event == XMLStreamReader.START_ELEMENT
+				&& reader.getLocalName().equals("error")) { //$NON-NLS-1$
+			String errVal = reader.getAttributeValue(null, "code"); //$NON-NLS-1$
 			try {
 				errorCode = Integer.parseInt(errVal);
 			} catch (NumberFormatException nfe) {
 				errorCode = ERROR_UNKNOWN_ERROR_CODE;
 			}
-			Node msgNode = errNode.getFirstChild();
-			if (msgNode != null) {
-				Node dataNode = msgNode.getFirstChild();
-				if (dataNode != null) {
-					errorMessage = dataNode.getNodeValue();
+			if (reader.nextTag() == XMLStreamReader.START_ELEMENT) {
+				String message = reader.getElementText();
+				if (message.length() > 0) {
+					errorMessage = message;
 				}
 			}
 		} else {
@@ -310,23 +356,50 @@ public class DBGpResponse {
 		}
 	}
 
-	public Node getParentNode() {
-		return doc.getFirstChild();
+	/**
+	 * Returns the top level element of the response. The elements are read on
+	 * the first call.
+	 * 
+	 * @return the top level element, or <code>null</code> if the response
+	 *         can't be parsed
+	 */
+	public synchronized DBGpResponseNode getResponseNode() {
+		if (responseNode == null && rawXML != null) {
+			XMLStreamReader reader = null;
+			try {
+				reader = inputFactory.createXMLStreamReader(
+						new ByteArrayInputStream(rawXML));
+				String encoding = reader.getCharacterEncodingScheme();
+				if (encoding == null) {
+					encoding = reader.getEncoding();
+				}
+				reader.nextTag();
+				responseNode = DBGpResponseNode.read(reader, encoding);
+			} catch (XMLStreamException e) {
+				DBGpLogger.logException(null, this, e);
+			} finally {
+				if (reader != null) {
+					try {
+						reader.close();
+					} catch (XMLStreamException e) {
+					}
+				}
+			}
+		}
+		return responseNode;
 	}
 
 	public String getTopAttribute(String attrName) {
-		return getAttribute(parent, attrName);
+		String attrValue = topAttributes.get(attrName);
+		return attrValue != null ? attrValue : ""; //$NON-NLS-1$
 	}
 
-	public static String getAttribute(Node node, String attrName) {
-		String attrValue = ""; //$NON-NLS-1$
-		if (node != null && node.hasAttributes()) {
-			NamedNodeMap attrs = node.getAttributes();
-			Node attribute = attrs.getNamedItem(attrName);
-			if (attribute != null)
-				attrValue = attribute.getNodeValue();
+	public static String getAttribute(DBGpResponseNode node, String attrName) {
+		String attrValue = null;
+		if (node != null) {
+			attrValue = node.getAttribute(attrName);
 		}
-		return attrValue;
+		return attrValue != null ? attrValue : ""; //$NON-NLS-1$
 	}
 
 	public String getCommand() {
@@ -378,11 +451,28 @@ public class DBGpResponse {
 	}
 
 	/**
-	 * this will either be null or base64 encoded. It needs to be decoded.
+	 * this will either be null or the base64 encoded stream data.
 	 * 
 	 * @return encoded stream data or null.
+	 * @see #getDecodedStreamData()
 	 */
 	public String getStreamData() {
+		return encodedStreamData;
+	}
+
+	/**
+	 * this will either be null or the base64 decoded stream data, which is
+	 * decoded the first time it is asked for.
+	 * 
+	 * @return decoded stream data or null.
+	 */
+	public byte[] getDecodedStreamData() {
+		if (streamData == null && encodedStreamData != null) {
+			Base64.Decoder decoder = new Base64.Decoder(
+					encodedStreamData.length());
+			decoder.decode(encodedStreamData);
+			streamData = decoder.finish();
+		}
 		return streamData;
 	}
 
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * A read only element of a DBGp response (e.g. a property of a context_get
+ * response, or a stack entry of a stack_get response).
+ * <p>
+ * The elements are read in a single pass of a streaming parser. Each element
+ * only keeps its name, its attributes, its child elements and the text it
+ * directly contains, which is kept as it was sent (e.g. still base64
+ * encoded), so a response needs a fraction of the memory of a DOM.
+ * </p>
+ */
+public class DBGpResponseNode {
+
+	private static final String[] NO_ATTRIBUTES = new String[0];
+	private static final DBGpResponseNode[] NO_CHILDREN = new DBGpResponseNode[0];
+
+	private final String name;
+	private final DBGpResponseNode parent;
+	private final String encoding;
+	private String[] attributes = NO_ATTRIBUTES;
+	private DBGpResponseNode[] children = NO_CHILDREN;
+	private String text;
+	private Map<String, Object> userData;
+
+	private DBGpResponseNode(String name, DBGpResponseNode parent,
+			String encoding) {
+		this.name = name;
+		this.parent = parent;
+		this.encoding = encoding;
+	}
+
+	/**
+	 * Reads the element the given reader is positioned at, and all its
+	 * children. The reader is left at the end of the element.
+	 *
+	 * @param reader
+	 *            Reader positioned at a start element
+	 * @param encoding
+	 *            Encoding of the response
+	 * @return the element
+	 * @throws XMLStreamException
+	 */
+	static DBGpResponseNode read(XMLStreamReader reader, String encoding)
+			throws XMLStreamException {
+		return read(reader, null, encoding);
+	}
+
+	private static DBGpResponseNode read(XMLStreamReader reader,
+			DBGpResponseNode parent, String encoding)
+			throws XMLStreamException {
+		DBGpResponseNode node = new DBGpResponseNode(reader.getLocalName(),
+				parent, encoding);
+		int count = reader.getAttributeCount();
+		if (count > 0) {
+			node.attributes = new String[count * 2];
+			for (int i = 0; i < count; i++) {
+				node.attributes[2 * i] = reader.getAttributeLocalName(i);
+				node.attributes[2 * i + 1] = reader.getAttributeValue(i);
+			}
+		}
+		List<DBGpResponseNode> children = null;
+		StringBuilder text = null;
+		int event;
+		while ((event = reader.next()) != XMLStreamReader.END_ELEMENT) {
+			if (event == XMLStreamReader.START_ELEMENT) {
+				if (children == null) {
+					children = new ArrayList<DBGpResponseNode>();
+				}
+				children.add(read(reader, node, encoding));
+			} else if (event == XMLStreamReader.CHARACTERS
+					|| event == XMLStreamReader.CDATA) {
+				if (text == null) {
+					text = new StringBuilder(reader.getTextLength());
+				}
+				text.append(reader.getTextCharacters(), reader.getTextStart(),
+						reader.getTextLength());
+			}
+		}
+		if (children != null) {
+			node.children = children.toArray(new DBGpResponseNode[children
+					.size()]);
+		}
+		// white space between child elements isn't text of the element
+		if (text != null && (children == null || text.toString().trim()
+				.length() != 0)) {
+			node.text = text.toString();
+		}
+		return node;
+	}
+
+	/**
+	 * @return the local name of the element
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param attrName
+	 *            Attribute name
+	 * @return the value of the attribute, or <code>null</code> if the element
+	 *         has no such attribute
+	 */
+	public String getAttribute(String attrName) {
+		for (int i = 0; i < attributes.length; i += 2) {
+			if (attributes[i].equals(attrName)) {
+				return attributes[i + 1];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the enclosing element, or <code>null</code> for the top level
+	 *         element of the response
+	 */
+	public DBGpResponseNode getParent() {
+		return parent;
+	}
+
+	/**
+	 * @return the child elements
+	 */
+	public DBGpResponseNode[] getChildren() {
+		return children;
+	}
+
+	/**
+	 * @return the first child element, or <code>null</code> if there is none
+	 */
+	public DBGpResponseNode getFirstChild() {
+		return children.length > 0 ? children[0] : null;
+	}
+
+	/**
+	 * @return the text the element directly contains, as it was sent, or
+	 *         <code>null</code> if there is none
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return the encoding of the response, or <code>null</code> if it is not
+	 *         known
+	 */
+	public String getEncoding() {
+		return encoding;
+	}
+
+	public synchronized Object getUserData(String key) {
+		return userData != null ? userData.get(key) : null;
+	}
+
+	public synchronized void setUserData(String key, Object data) {
+		if (userData == null) {
+			userData = new HashMap<String, Object>(2);
+		}
+		userData.put(key, data);
+	}
+}
@@ -34,7 +34,6 @@ import org.eclipse.php.internal.debug.core.preferences.PHPProjectPreferences;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.DBGpLogger;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.model.DBGpTarget;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.*;
-import org.w3c.dom.Node;
 
 public class DBGpSession {
 
@@ -44,6 +43,12 @@ public class DBGpSession {
 	public static final String DEFAULT_OUTPUT_ENCODING = Charset
 			.defaultCharset().name();
 
+	/**
+	 * maximum time to wait for all the responses of the commands sent by
+	 * {@link #sendSyncCmds(String, String[])} (ms)
+	 */
+	public static final int SYNC_CMDS_TIMEOUT = 10000;
+
 	private Socket DBGpSocket;
 	private AsyncResponseHandlerJob responseHandler;
 	private DBGpCommand DBGpCmd;
@@ -51,6 +56,10 @@ public class DBGpSession {
 	private boolean sessionActive = false;
 	private DBGpTarget debugTarget;
 	private Hashtable savedResponses = new Hashtable();
+	private final Object batchLock = new Object();
+	/** ids of the commands of sendSyncCmds still waiting for a response */
+	private volatile Integer[] pendingBatch;
+	private volatile boolean batchFailed;
 	private String ideKey;
 	private String sessionId;
 	private String initialScript;
@@ -207,6 +216,89 @@ public class DBGpSession {
 		return null;
 	}
 
+	/**
+	 * send the same command with each of the arguments, without waiting for
+	 * the response of a command before sending the next one, then wait for all
+	 * the responses. The responses are matched to the commands by their
+	 * transaction id, so the batch fails if a response without a transaction
+	 * id is received before all the responses are in. This cannot be called
+	 * from the response thread.
+	 * 
+	 * @param cmd
+	 *            the command
+	 * @param arguments
+	 *            the arguments of each command
+	 * @return the responses, in the order of the arguments, or null if they
+	 *         were not all received within {@link #SYNC_CMDS_TIMEOUT} or a
+	 *         response had no transaction id (a response is a dummy error
+	 *         response if the session ended before it was received)
+	 */
+	public DBGpResponse[] sendSyncCmds(String cmd, String[] arguments) {
+		DBGpResponse[] responses = new DBGpResponse[arguments.length];
+		if (!sessionActive || arguments.length == 0) {
+			return responses;
+		}
+		synchronized (batchLock) {
+			// as for a single sync command, all the ids and events must be in
+			// the table before the first command is sent.
+			Integer[] ids = new Integer[arguments.length];
+			Event[] events = new Event[arguments.length];
+			for (int i = 0; i < arguments.length; i++) {
+				ids[i] = Integer.valueOf(DBGpCommand.getNextId());
+				events[i] = new Event();
+				savedResponses.put(ids[i], events[i]);
+			}
+			batchFailed = false;
+			pendingBatch = ids;
+
+			boolean received = false;
+			try {
+				for (int i = 0; i < arguments.length; i++) {
+					DBGpCmd.send(cmd, arguments[i], ids[i].intValue(),
+							sessionEncoding);
+				}
+				long deadline = System.currentTimeMillis() + SYNC_CMDS_TIMEOUT;
+				int i = 0;
+				for (; i < ids.length; i++) {
+					if (events[i].waitForEvent(deadline
+							- System.currentTimeMillis())) {
+						DBGpLogger.logError("Timed out waiting for responses to " //$NON-NLS-1$
+								+ cmd, this, null);
+						break;
+					}
+					if (batchFailed) {
+						break;
+					}
+					responses[i] = (DBGpResponse) savedResponses.remove(ids[i]);
+				}
+				received = i == ids.length;
+			} catch (InterruptedException e) {
+				// fall through to remove the remaining ids
+			} catch (IOException e) {
+				endSession();
+			} finally {
+				pendingBatch = null;
+				for (int i = 0; i < ids.length; i++) {
+					savedResponses.remove(ids[i]);
+				}
+			}
+			return received ? responses : null;
+		}
+	}
+
+	/**
+	 * fail the pending batch of sendSyncCmds, unblocking its caller
+	 */
+	private void failBatch(Integer[] ids) {
+		batchFailed = true;
+		for (int i = 0; i < ids.length; i++) {
+			Object responder = savedResponses.get(ids[i]);
+			if (responder instanceof Event) {
+				((Event) responder).signalEvent();
+			}
+		}
+	}
+
 	/**
 	 * only call this if you are on the response thread to send a sync command
 	 * 
@@ -333,6 +425,17 @@ public class DBGpSession {
 			try {
 				idObj = Integer.valueOf(parsedResponse.getId());
 			} catch (NumberFormatException nfe) {
+				Integer[] batch = pendingBatch;
+				if (batch != null) {
+					// several commands are waiting, the last one sent can't be
+					// assumed to be the one that got the response
+					DBGpLogger.logError(
+							"Response without transaction id while waiting for a batch of responses. XML=" //$NON-NLS-1$
+									+ parsedResponse.getRawXML(),
+							DBGpSession.this, null);
+					failBatch(batch);
+					return;
+				}
 				idObj = Integer.valueOf(DBGpCmd.getLastIdSent());
 				if (DBGpLogger.debugResp()) {
 					DBGpLogger.debug("no txn id, using last which was" //$NON-NLS-1$
@@ -365,10 +468,8 @@ public class DBGpSession {
 			 * tc = (TextConsole)console; IDocument doc = tc.getDocument();
 			 * doc.set(doc.get() + parsedResponse.getStreamData()); }
 			 */
-			String data = parsedResponse.getStreamData();
-			if (data != null) {
-				byte[] streamData = Base64.decode(data);
-
+			byte[] streamData = parsedResponse.getDecodedStreamData();
+			if (streamData != null) {
 				String streamStr;
 				try {
 					streamStr = new String(streamData, outputEncoding);
@@ -466,8 +567,9 @@ public class DBGpSession {
 						DBGpResponse.STATUS_STOPPED)) {
 					handleStopStatus(parsedResponse);
 				} else {
-					Node stackData = parsedResponse.getParentNode()
-							.getFirstChild(); // get the first stack entry
+					// get the first stack entry
+					DBGpResponseNode stackData = parsedResponse
+							.getResponseNode().getFirstChild();
 					String line = DBGpResponse
 							.getAttribute(stackData, "lineno"); //$NON-NLS-1$
 					int lineno = 0;
@@ -21,6 +21,28 @@ public class Event {
 		raised = false;
 	}
 
+	/**
+	 * Wait for the event, at most the given time
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait (ms)
+	 * @return true if the event didn't occur within the timeout
+	 * @throws InterruptedException
+	 */
+	public synchronized boolean waitForEvent(long timeout)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (!raised) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return true;
+			}
+			wait(remaining);
+		}
+		raised = false;
+		return false;
+	}
+
 	/**
 	 * Signal the event has occurred.
 	 */
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.debug.core.zend.communication;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct byte buffers shared by all debug connections. Buffers of
+ * {@link #BUFFER_SIZE} are recycled; larger buffers are allocated on the heap
+ * and left to the garbage collector.
+ */
+class ByteBufferPool {
+
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Maximum number of idle buffers kept in the pool */
+	private static final int MAX_POOLED = 32;
+
+	private static final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+	private static final AtomicInteger pooled = new AtomicInteger();
+
+	private ByteBufferPool() {
+	}
+
+	/**
+	 * Returns a cleared buffer that can hold at least the given number of
+	 * bytes
+	 * 
+	 * @param capacity
+	 *            Minimal capacity
+	 */
+	static ByteBuffer acquire(int capacity) {
+		if (capacity > BUFFER_SIZE) {
+			return ByteBuffer.allocate(capacity);
+		}
+		ByteBuffer buffer = pool.poll();
+		if (buffer == null) {
+			return ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+		pooled.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Returns the buffer to the pool. The buffer must not be used after it was
+	 * released.
+	 * 
+	 * @param buffer
+	 *            Buffer that was returned by {@link #acquire(int)}
+	 */
+	static void release(ByteBuffer buffer) {
+		if (!buffer.isDirect() || buffer.capacity() != BUFFER_SIZE) {
+			return;
+		}
+		if (pooled.incrementAndGet() <= MAX_POOLED) {
+			pool.offer(buffer);
+		} else {
+			pooled.decrementAndGet();
+		}
+	}
+}
@@ -11,14 +11,15 @@
  *******************************************************************************/
 package org.eclipse.php.internal.debug.core.zend.communication;
 
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
 import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -36,7 +37,6 @@ import org.eclipse.php.debug.core.debugger.messages.IDebugNotificationMessage;
 import org.eclipse.php.debug.core.debugger.messages.IDebugRequestMessage;
 import org.eclipse.php.debug.core.debugger.messages.IDebugResponseMessage;
 import org.eclipse.php.debug.core.debugger.parameters.IDebugParametersKeys;
-import org.eclipse.php.internal.core.util.BlockingQueue;
 import org.eclipse.php.internal.core.util.collections.IntHashtable;
 import org.eclipse.php.internal.debug.core.IPHPDebugConstants;
 import org.eclipse.php.internal.debug.core.Logger;
@@ -75,9 +75,12 @@ public class DebugConnection {
 	 */
 	private class MessageHandler extends Job {
 
-		private BlockingQueue inputMessageQueue = new BlockingQueue(100);
-		private ByteArrayOutputStream byteArray = new ByteArrayOutputStream();
-		private DataOutputStream outArray = new DataOutputStream(byteArray);
+		/**
+		 * Incoming messages waiting to be handled. The receiver stops reading
+		 * the socket while the queue is full.
+		 */
+		private LinkedBlockingQueue<IDebugMessage> inputMessageQueue = new LinkedBlockingQueue<IDebugMessage>(
+				MAX_QUEUED_MESSAGES);
 
 		public MessageHandler() {
 			super("Debug Message Handler"); //$NON-NLS-1$
@@ -98,8 +101,9 @@ public class DebugConnection {
 				if (monitor.isCanceled())
 					return Status.OK_STATUS;
 				try {
-					IDebugMessage incomingMessage = (IDebugMessage) inputMessageQueue
-							.queueOut();
+					IDebugMessage incomingMessage = inputMessageQueue.take();
+					if (monitor.isCanceled())
+						return Status.OK_STATUS;
 					Logger.debugMSG("NEW MESSAGE RECEIVED: " + incomingMessage); //$NON-NLS-1$
 					try {
 						boolean isDebugConnectionTest = false;
@@ -152,14 +156,7 @@ public class DebugConnection {
 									IDebugResponseMessage response = ((IDebugRequestHandler) messageHandler)
 											.getResponseMessage();
 									// Send response
-									synchronized (connectionOut) {
-										byteArray.reset();
-										response.serialize(outArray);
-										connectionOut
-												.writeInt(byteArray.size());
-										byteArray.writeTo(connectionOut);
-										connectionOut.flush();
-									}
+									messageChannel.write(response);
 								}
 							}
 							// Handle the response
@@ -189,6 +186,8 @@ public class DebugConnection {
 					catch (Exception e) {
 						PHPDebugPlugin.log(e);
 					}
+				} catch (InterruptedException e) {
+					return Status.OK_STATUS;
 				} catch (Exception e) {
 					PHPDebugPlugin.log(e);
 				}
@@ -196,13 +195,18 @@ public class DebugConnection {
 		}
 
 		public void queueIn(IDebugMessage m) {
-			inputMessageQueue.queueIn(m);
+			try {
+				inputMessageQueue.put(m);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
 		}
 
 		void shutdown() {
 			cancel();
-			inputMessageQueue.releaseReaders();
 			inputMessageQueue.clear();
+			// Release the handler if it waits for a message
+			inputMessageQueue.offer(CONNECTION_CLOSED);
 		}
 
 		/**
@@ -257,9 +261,9 @@ public class DebugConnection {
 				try {
 					if (monitor.isCanceled())
 						return Status.OK_STATUS;
-					// Reads the length
-					int length = connectionIn.readInt();
-					if (length < 0) {
+					// Reads the whole message
+					DataInputStream messageIn = messageChannel.readMessage();
+					if (messageIn == null) {
 						String message = "Socket error (length is negative): possibly Server is SSL, Client is not."; //$NON-NLS-1$
 						Logger.debugMSG(message);
 						Logger.log(Logger.ERROR, message);
@@ -267,7 +271,7 @@ public class DebugConnection {
 						continue;
 					}
 					// We have a new message. process it !!.
-					int messageType = connectionIn.readShort();
+					int messageType = messageIn.readShort();
 					/*
 					 * If this is the first message, the protocol is still held
 					 * as invalid. Check that the first message has the
@@ -293,11 +297,11 @@ public class DebugConnection {
 					}
 					// Handle the incoming message
 					if (message instanceof IDebugNotificationMessage) {
-						message.deserialize(connectionIn);
+						message.deserialize(messageIn);
 						// PUT NOTIFICATION TO NOTIFICATION QUEUE
 						messageHandler.queueIn(message);
 					} else if (message instanceof IDebugResponseMessage) {
-						message.deserialize(connectionIn);
+						message.deserialize(messageIn);
 						int messageId = ((IDebugResponseMessage) message)
 								.getID();
 						/*
@@ -327,7 +331,7 @@ public class DebugConnection {
 					}
 					// This is a request.
 					else if (message instanceof IDebugRequestMessage) {
-						message.deserialize(connectionIn);
+						message.deserialize(messageIn);
 						messageHandler.queueIn(message);
 					}
 				} catch (IOException e) {
@@ -457,6 +461,8 @@ public class DebugConnection {
 
 	private static final Lock HOOK_LOCK = new ReentrantLock(true);
 	private static final long HOOK_TIMEOUT = 10000;
+	/** Maximum number of incoming messages waiting to be handled */
+	private static final int MAX_QUEUED_MESSAGES = 100;
 
 	// Phantom message used to notify that connection was closed
 	private final IDebugMessage CONNECTION_CLOSED = new DebugMessageImpl() {
@@ -478,8 +484,7 @@ public class DebugConnection {
 	protected PHPDebugTarget debugTarget;
 	protected boolean isValidProtocol;
 	private Socket socket;
-	private DataInputStream connectionIn;
-	private DataOutputStream connectionOut;
+	private DebugMessageChannel messageChannel;
 	private boolean isInitialized;
 	private MessageReceiver messageReceiver;
 	private MessageHandler messageHandler;
@@ -488,10 +493,7 @@ public class DebugConnection {
 	private IntHashtable requestsTable;
 	private IntHashtable responseTable;
 	private Hashtable<Integer, ResponseHandler> responseHandlers;
-	private ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-	private DataOutputStream dataOutputStream = new DataOutputStream(
-			byteArrayOutputStream);
-	private int lastRequestID = 1000;
+	private final AtomicInteger lastRequestID = new AtomicInteger(1000);
 	private Map<Integer, IDebugMessageHandler> messageHandlers;
 	private boolean isConnected = true;
 
@@ -552,13 +554,7 @@ public class DebugConnection {
 			// Skip if already disconnected
 			return;
 		try {
-			synchronized (connectionOut) {
-				byteArrayOutputStream.reset();
-				((IDebugMessage) msg).serialize(dataOutputStream);
-				connectionOut.writeInt(byteArrayOutputStream.size());
-				byteArrayOutputStream.writeTo(connectionOut);
-				connectionOut.flush();
-			}
+			messageChannel.write((IDebugMessage) msg);
 		} catch (SocketException se) {
 			// Probably because the remote host disconnected.
 			// Just log a warning (might be removed in the near future).
@@ -584,16 +580,9 @@ public class DebugConnection {
 		Logger.debugMSG("SENDING SYNCHRONOUS REQUEST: " + request); //$NON-NLS-1$
 		try {
 			IDebugRequestMessage theMsg = (IDebugRequestMessage) request;
-			synchronized (connectionOut) {
-				byteArrayOutputStream.reset();
-				theMsg.setID(lastRequestID++);
-				theMsg.serialize(dataOutputStream);
-				int messageSize = byteArrayOutputStream.size();
-				requestsTable.put(theMsg.getID(), theMsg);
-				connectionOut.writeInt(messageSize);
-				byteArrayOutputStream.writeTo(connectionOut);
-				connectionOut.flush();
-			}
+			theMsg.setID(lastRequestID.getAndIncrement());
+			requestsTable.put(theMsg.getID(), theMsg);
+			messageChannel.write(theMsg);
 			IDebugResponseMessage response = null;
 			int timeoutTick = 500; // 0.5 of second
 			int waitedTime = 0;
@@ -666,22 +655,14 @@ public class DebugConnection {
 			// Skip if already disconnected
 			return;
 		Logger.debugMSG("SENDING ASYNCHRONOUS REQUEST: " + request); //$NON-NLS-1$
-		int msgId = lastRequestID++;
+		int msgId = lastRequestID.getAndIncrement();
 		IDebugRequestMessage theMsg = (IDebugRequestMessage) request;
 		try {
-			ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-			DataOutputStream dataOutputStream = new DataOutputStream(
-					byteArrayOutputStream);
 			theMsg.setID(msgId);
-			theMsg.serialize(dataOutputStream);
-			int messageSize = byteArrayOutputStream.size();
-			synchronized (connectionOut) {
-				requestsTable.put(msgId, request);
-				responseHandlers.put(Integer.valueOf(msgId), responseHandler);
-				connectionOut.writeInt(messageSize);
-				byteArrayOutputStream.writeTo(connectionOut);
-				connectionOut.flush();
-			}
+			// Don't wait for the response, so requests are pipelined
+			requestsTable.put(msgId, request);
+			responseHandlers.put(Integer.valueOf(msgId), responseHandler);
+			messageChannel.write(theMsg);
 		} catch (Exception e) {
 			// Return null for any exception
 			String message = "Exception for request NO." + theMsg.getType() + e.toString(); //$NON-NLS-1$
@@ -1090,8 +1071,7 @@ public class DebugConnection {
 		messageHandlers = new HashMap<Integer, IDebugMessageHandler>();
 		try {
 			socket.setTcpNoDelay(true);
-			this.connectionIn = new DataInputStream(socket.getInputStream());
-			this.connectionOut = new DataOutputStream(socket.getOutputStream());
+			this.messageChannel = new DebugMessageChannel(socket);
 			messageHandler = new MessageHandler();
 			messageReceiver = new MessageReceiver();
 			// Start message handler
@@ -1131,27 +1111,8 @@ public class DebugConnection {
 				socket = null;
 			}
 		}
-		if (connectionIn != null) {
-			try {
-				synchronized (connectionIn) {
-					connectionIn.close();
-				}
-			} catch (Exception exc) {
-				// ignore
-			} finally {
-				connectionIn = null;
-			}
-		}
-		if (connectionOut != null) {
-			try {
-				synchronized (connectionOut) {
-					connectionOut.close();
-				}
-			} catch (Exception exc) {
-				// ignore
-			} finally {
-				connectionOut = null;
-			}
+		if (messageChannel != null) {
+			messageChannel.close();
 		}
 	}
 
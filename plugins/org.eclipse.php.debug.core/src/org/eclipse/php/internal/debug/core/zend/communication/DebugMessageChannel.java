@@ -0,0 +1,339 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.debug.core.zend.communication;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.php.debug.core.debugger.messages.IDebugMessage;
+
+/**
+ * Transfers length prefixed debug messages over the connection socket using
+ * NIO channels.
+ * <p>
+ * Incoming data is read in bulk into a direct buffer, and messages are
+ * deserialized from it without copying. Outgoing messages are serialized into
+ * pooled buffers and queued; whichever sender gets the write lock writes all
+ * queued messages at once, so senders never wait for each other to serialize,
+ * and requests sent in a row are pipelined into a single gathering write. The
+ * number of queued messages is bounded, senders block while the queue is
+ * full, like they did on the blocking socket stream.
+ * </p>
+ */
+public class DebugMessageChannel {
+
+	/** Maximum number of messages written at once */
+	private static final int MAX_GATHER = 16;
+
+	/** Maximum number of messages queued for writing */
+	public static final int MAX_QUEUED = 100;
+
+	private final ReadableByteChannel in;
+	private final WritableByteChannel out;
+
+	/** Incoming data, always kept ready for reading */
+	private final ByteBuffer inBuffer;
+
+	private final ConcurrentLinkedQueue<ByteBuffer> outQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+	/** Free places in the out queue */
+	private final Semaphore outPermits = new Semaphore(MAX_QUEUED);
+	private final Lock writeLock = new ReentrantLock();
+	private volatile boolean closed;
+
+	/**
+	 * Reads the contents of a byte buffer
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+	/**
+	 * Serializes a message into a pooled buffer, leaving room for the length
+	 */
+	private static class FrameOutputStream extends OutputStream {
+
+		private ByteBuffer buffer;
+
+		FrameOutputStream() {
+			buffer = ByteBufferPool.acquire(ByteBufferPool.BUFFER_SIZE);
+			buffer.position(4);
+		}
+
+		public void write(int b) {
+			ensureRemaining(1);
+			buffer.put((byte) b);
+		}
+
+		public void write(byte[] b, int off, int len) {
+			ensureRemaining(len);
+			buffer.put(b, off, len);
+		}
+
+		private void ensureRemaining(int length) {
+			if (buffer.remaining() < length) {
+				ByteBuffer grown = ByteBuffer.allocate(Math.max(
+						buffer.capacity() * 2, buffer.position() + length));
+				buffer.flip();
+				grown.put(buffer);
+				ByteBufferPool.release(buffer);
+				buffer = grown;
+			}
+		}
+
+		/**
+		 * Writes the length, and returns the buffer ready for writing to the
+		 * channel
+		 */
+		ByteBuffer finish() {
+			buffer.putInt(0, buffer.position() - 4);
+			buffer.flip();
+			return buffer;
+		}
+
+		void discard() {
+			ByteBufferPool.release(buffer);
+		}
+	}
+
+	/**
+	 * Creates a channel for the given connected socket. Sockets that were
+	 * accepted by a server socket channel are used directly; otherwise their
+	 * streams are adapted.
+	 * 
+	 * @param socket
+	 *            Connected socket
+	 * @throws IOException
+	 */
+	public DebugMessageChannel(Socket socket) throws IOException {
+		SocketChannel channel = socket.getChannel();
+		if (channel != null) {
+			channel.configureBlocking(true);
+			in = channel;
+			out = channel;
+		} else {
+			in = Channels.newChannel(socket.getInputStream());
+			out = Channels.newChannel(socket.getOutputStream());
+		}
+		inBuffer = ByteBuffer.allocateDirect(ByteBufferPool.BUFFER_SIZE);
+		inBuffer.flip();
+	}
+
+	/**
+	 * Creates a channel that reads and writes the given blocking channels
+	 * 
+	 * @param in
+	 *            Channel of the incoming messages
+	 * @param out
+	 *            Channel of the outgoing messages
+	 */
+	public DebugMessageChannel(ReadableByteChannel in, WritableByteChannel out) {
+		this.in = in;
+		this.out = out;
+		inBuffer = ByteBuffer.allocateDirect(ByteBufferPool.BUFFER_SIZE);
+		inBuffer.flip();
+	}
+
+	/**
+	 * Reads the next message. Must be called from a single thread.
+	 * 
+	 * @return stream positioned at the message type, which is valid until the
+	 *         next call of this method, or <code>null</code> if the message
+	 *         length is invalid
+	 * @throws IOException
+	 *             if the connection was closed
+	 */
+	public DataInputStream readMessage() throws IOException {
+		fill(4);
+		int length = inBuffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		ByteBuffer message;
+		if (length <= inBuffer.capacity()) {
+			fill(length);
+			message = inBuffer.slice();
+			message.limit(length);
+			inBuffer.position(inBuffer.position() + length);
+		} else {
+			// large message (e.g. variable dump)
+			message = ByteBuffer.allocate(length);
+			message.put(inBuffer);
+			while (message.hasRemaining()) {
+				if (in.read(message) < 0) {
+					throw new EOFException();
+				}
+			}
+			message.flip();
+		}
+		return new DataInputStream(new ByteBufferInputStream(message));
+	}
+
+	/**
+	 * Serializes and sends the message. If another thread is writing at the
+	 * moment, the message is queued and written by that thread. Blocks while
+	 * the queue is full.
+	 * 
+	 * @param message
+	 *            Debug message
+	 * @throws IOException
+	 */
+	public void write(IDebugMessage message) throws IOException {
+		try {
+			outPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		if (closed) {
+			outPermits.release();
+			throw new IOException("Debug connection is closed"); //$NON-NLS-1$
+		}
+		FrameOutputStream frame = new FrameOutputStream();
+		try {
+			message.serialize(new DataOutputStream(frame));
+		} catch (IOException e) {
+			frame.discard();
+			outPermits.release();
+			throw e;
+		} catch (RuntimeException e) {
+			frame.discard();
+			outPermits.release();
+			throw e;
+		}
+		outQueue.offer(frame.finish());
+		while (!outQueue.isEmpty() && writeLock.tryLock()) {
+			try {
+				writeQueued();
+			} finally {
+				writeLock.unlock();
+			}
+		}
+		if (closed) {
+			// the channel may have been closed after the queue was dropped
+			dropQueued();
+		}
+	}
+
+	/**
+	 * Closes the channel, and drops messages that were not written yet
+	 */
+	public void close() {
+		closed = true;
+		try {
+			in.close();
+		} catch (IOException e) {
+			// ignore
+		}
+		try {
+			out.close();
+		} catch (IOException e) {
+			// ignore
+		}
+		dropQueued();
+	}
+
+	/**
+	 * Drops the queued messages, and wakes up the senders waiting for a place
+	 * in the queue
+	 */
+	private void dropQueued() {
+		ByteBuffer buffer;
+		while ((buffer = outQueue.poll()) != null) {
+			ByteBufferPool.release(buffer);
+			outPermits.release();
+		}
+	}
+
+	/**
+	 * Makes sure that the given number of bytes is available in the input
+	 * buffer
+	 */
+	private void fill(int length) throws IOException {
+		while (inBuffer.remaining() < length) {
+			inBuffer.compact();
+			int read;
+			try {
+				read = in.read(inBuffer);
+			} finally {
+				inBuffer.flip();
+			}
+			if (read < 0) {
+				throw new EOFException();
+			}
+		}
+	}
+
+	/**
+	 * Writes all queued messages. Must be called while holding the write lock.
+	 */
+	private void writeQueued() throws IOException {
+		ByteBuffer[] buffers = new ByteBuffer[MAX_GATHER];
+		while (!closed) {
+			int count = 0;
+			ByteBuffer buffer;
+			while (count < MAX_GATHER && (buffer = outQueue.poll()) != null) {
+				buffers[count++] = buffer;
+			}
+			if (count == 0) {
+				return;
+			}
+			try {
+				if (out instanceof GatheringByteChannel) {
+					GatheringByteChannel gatheringOut = (GatheringByteChannel) out;
+					while (buffers[count - 1].hasRemaining()) {
+						gatheringOut.write(buffers, 0, count);
+					}
+				} else {
+					for (int i = 0; i < count; i++) {
+						while (buffers[i].hasRemaining()) {
+							out.write(buffers[i]);
+						}
+					}
+				}
+			} finally {
+				for (int i = 0; i < count; i++) {
+					ByteBufferPool.release(buffers[i]);
+					buffers[i] = null;
+				}
+				outPermits.release(count);
+			}
+		}
+	}
+}
@@ -11,7 +11,11 @@
  *******************************************************************************/
 package org.eclipse.php.internal.debug.core.zend.communication;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
@@ -107,6 +111,21 @@ public class DebuggerCommunicationDaemon extends
 		}
 	}
 
+	/**
+	 * Creates a server socket with a channel, so that accepted sockets can be
+	 * read and written by {@link DebugMessageChannel} directly.
+	 */
+	protected ServerSocket createServerSocket(int port) throws IOException {
+		ServerSocketChannel channel = ServerSocketChannel.open();
+		try {
+			channel.socket().bind(new InetSocketAddress(port));
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return channel.socket();
+	}
+
 	/**
 	 * Starts a connection on the given Socket. This method can be overridden by
 	 * extending classes to create a different debug connection.
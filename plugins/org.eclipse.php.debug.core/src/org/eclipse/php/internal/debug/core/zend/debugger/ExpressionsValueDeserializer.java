@@ -13,9 +13,17 @@ package org.eclipse.php.internal.debug.core.zend.debugger;
 
 import static org.eclipse.php.internal.debug.core.model.IVariableFacet.Facet.*;
 
-import java.io.ByteArrayInputStream;
 import java.io.UnsupportedEncodingException;
 
+/**
+ * Deserializes the values of expressions sent by the debugger.
+ * <p>
+ * Values are views over the serialized value: the members of arrays and
+ * objects are decoded only when they are asked for (e.g. when the variable is
+ * expanded), and the values and their display strings are decoded only when
+ * they are shown.
+ * </p>
+ */
 public class ExpressionsValueDeserializer {
 
 	private String fEncoding;
@@ -29,143 +37,212 @@ public class ExpressionsValueDeserializer {
 			// the expression is Illeagal.
 			value = new byte[] { 'N' };
 		}
-		return build(expression, new VariableReader(value));
+		return build(expression, new VariableReader(value, 0));
 	}
 
-	private String getText(byte[] buf) {
+	private String getText(byte[] buf, int offset, int length) {
 		try {
-			return new String(buf, fEncoding);
+			return new String(buf, offset, length, fEncoding);
 		} catch (UnsupportedEncodingException e) {
 		}
-		return new String(buf);
+		return new String(buf, offset, length);
 	}
 
+	/**
+	 * Creates the value at the position of the reader, and moves the reader
+	 * after it
+	 */
 	private ExpressionValue build(Expression expression, VariableReader reader) {
-		char type = reader.readType();
-
-		switch (type) {
+		char kind = reader.readType();
+		int type;
+		switch (kind) {
 		case 'i':
-			return buildIntType(reader);
+			type = ExpressionValue.INT_TYPE;
+			break;
 		case 'd':
-			return buildDoubleType(reader);
+			type = ExpressionValue.DOUBLE_TYPE;
+			break;
 		case 's':
-			return buildSringType(reader);
+			type = ExpressionValue.STRING_TYPE;
+			break;
 		case 'b':
-			return buildBooleanType(reader);
+			type = ExpressionValue.BOOLEAN_TYPE;
+			break;
 		case 'r':
-			return buildResourceType(reader);
+			type = ExpressionValue.RESOURCE_TYPE;
+			break;
 		case 'a':
-			return buildArrayType(expression, reader);
+			type = ExpressionValue.ARRAY_TYPE;
+			break;
 		case 'O':
-			return buildObjectType(expression, reader);
+			type = ExpressionValue.OBJECT_TYPE;
+			break;
+		default:
+			return ExpressionValue.NULL_VALUE;
+		}
+		int offset = reader.pos;
+		if (type != ExpressionValue.ARRAY_TYPE
+				&& type != ExpressionValue.OBJECT_TYPE) {
+			reader.skipValue(kind);
+			return new LazyExpressionValue(type, expression, reader.buf,
+					offset, -1, 0);
 		}
-		return ExpressionValue.NULL_VALUE;
+		if (type == ExpressionValue.OBJECT_TYPE) {
+			reader.skipString(reader.readInt());
+		}
+		int childrenCount = reader.readInt();
+		if (reader.isLastEnd()) {
+			// the members were not sent
+			return new LazyExpressionValue(type, expression, reader.buf,
+					offset, -1, childrenCount);
+		}
+		int membersOffset = reader.pos;
+		if (!reader.skipMembers(childrenCount)) {
+			// fall back when type is invalid
+			return ExpressionValue.NULL_VALUE;
+		}
+		return new LazyExpressionValue(type, expression, reader.buf, offset,
+				membersOffset, childrenCount);
 	}
 
-	private ExpressionValue buildIntType(VariableReader reader) {
-		String value = reader.readToken();
-		String valueAsString = "(int) " + value; //$NON-NLS-1$
-		return new ExpressionValue(ExpressionValue.INT_TYPE, value,
-				valueAsString, null);
-	}
+	/**
+	 * Value that is decoded from the serialized value when it is asked for
+	 */
+	private class LazyExpressionValue extends ExpressionValue {
 
-	private ExpressionValue buildDoubleType(VariableReader reader) {
-		String value = reader.readToken();
-		String valueAsString = "(double) " + value; //$NON-NLS-1$
-		return new ExpressionValue(ExpressionValue.DOUBLE_TYPE, value,
-				valueAsString, null);
-	}
+		private final Expression expression;
+		private final byte[] buf;
+		private final int offset;
 
-	private ExpressionValue buildSringType(VariableReader reader) {
-		String value = reader.readString();
-		String valueAsString = "(string:" + value.length() + ") " + value; //$NON-NLS-1$ //$NON-NLS-2$
-		return new ExpressionValue(ExpressionValue.STRING_TYPE, value,
-				valueAsString, null);
-	}
+		/** Offset of the first member, or -1 if the members were not sent */
+		private final int membersOffset;
+		private boolean decoded;
 
-	private ExpressionValue buildBooleanType(VariableReader reader) {
-		String value = reader.readToken();
-		String valueAsString = "(boolean) " //$NON-NLS-1$
-				+ ((value.equals("0")) ? "false" : "true"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-		return new ExpressionValue(ExpressionValue.BOOLEAN_TYPE, value,
-				valueAsString, null);
-	}
+		/**
+		 * @param type
+		 *            Type of the value
+		 * @param expression
+		 *            Expression that creates the expressions of the members
+		 * @param buf
+		 *            Serialized value
+		 * @param offset
+		 *            Offset of the value after its type
+		 * @param membersOffset
+		 *            Offset of the first member, or -1 if the members were
+		 *            not sent
+		 * @param childrenCount
+		 *            Number of members
+		 */
+		LazyExpressionValue(int type, Expression expression, byte[] buf,
+				int offset, int membersOffset, int childrenCount) {
+			super(type, null, null, null, childrenCount);
+			this.expression = expression;
+			this.buf = buf;
+			this.offset = offset;
+			this.membersOffset = membersOffset;
+		}
 
-	private ExpressionValue buildResourceType(VariableReader reader) {
-		int resourceNumber = reader.readInt();
-		reader.readInt();
+		public synchronized Object getValue() {
+			if (!decoded) {
+				decode();
+			}
+			return value;
+		}
 
-		String value = reader.readToken();
-		String valueAsString = "resource (" + resourceNumber + ") of type (" //$NON-NLS-1$ //$NON-NLS-2$
-				+ value + ')';
-		return new ExpressionValue(ExpressionValue.RESOURCE_TYPE, value,
-				valueAsString, null);
-	}
+		public synchronized String getValueAsString() {
+			if (!decoded) {
+				decode();
+			}
+			return valueAsString;
+		}
 
-	private ExpressionValue buildArrayType(Expression expression,
-			VariableReader reader) {
-		int objectLength = reader.readInt();
-		int originalLength = objectLength;
-		if (reader.isLastEnd()) {
-			objectLength = 0;
-		}
-		Expression[] variableNodes = new Expression[objectLength];
-		for (int i = 0; i < objectLength; i++) {
-			char type = reader.readType();
-			// System.out.println("type " + type);
-			String name;
-			if (type == 'i') {
-				name = Integer.toString(reader.readInt());
-			} else if (type == 's') {
-				name = reader.readString();
-			} else {
-				// fall back when type is invalid
-				return ExpressionValue.NULL_VALUE;
+		public synchronized Expression[] getOriChildren() {
+			if (children == null && (type == ARRAY_TYPE || type == OBJECT_TYPE)) {
+				children = decodeMembers();
 			}
-			if (expression == null) {
-				variableNodes[i] = createDefaultVariable(name);
-			} else {
-				variableNodes[i] = expression.createChildExpression(name,
-						'[' + name + ']', KIND_ARRAY_MEMBER);
+			return children;
+		}
+
+		public Expression[] getChildren() {
+			return sort(getOriChildren());
+		}
+
+		private void decode() {
+			VariableReader reader = new VariableReader(buf, offset);
+			String text;
+			switch (type) {
+			case INT_TYPE:
+				text = reader.readToken();
+				value = text;
+				valueAsString = "(int) " + text; //$NON-NLS-1$
+				break;
+			case DOUBLE_TYPE:
+				text = reader.readToken();
+				value = text;
+				valueAsString = "(double) " + text; //$NON-NLS-1$
+				break;
+			case STRING_TYPE:
+				text = reader.readString();
+				value = text;
+				valueAsString = "(string:" + text.length() + ") " + text; //$NON-NLS-1$ //$NON-NLS-2$
+				break;
+			case BOOLEAN_TYPE:
+				text = reader.readToken();
+				value = text;
+				valueAsString = "(boolean) " //$NON-NLS-1$
+						+ ((text.equals("0")) ? "false" : "true"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				break;
+			case RESOURCE_TYPE:
+				int resourceNumber = reader.readInt();
+				reader.readInt();
+				text = reader.readToken();
+				value = text;
+				valueAsString = "resource (" + resourceNumber + ") of type (" //$NON-NLS-1$ //$NON-NLS-2$
+						+ text + ')';
+				break;
+			case ARRAY_TYPE:
+				value = "Array"; //$NON-NLS-1$
+				valueAsString = "Array [" + childrenCount + ']'; //$NON-NLS-1$
+				break;
+			case OBJECT_TYPE:
+				text = reader.readString();
+				value = text;
+				valueAsString = "Object of: " + text; //$NON-NLS-1$
+				break;
 			}
-			variableNodes[i].setValue(build(expression, reader));
+			decoded = true;
 		}
-		return new ExpressionValue(ExpressionValue.ARRAY_TYPE, "Array", //$NON-NLS-1$
-				"Array [" + originalLength + ']', variableNodes, originalLength); //$NON-NLS-1$
-	}
 
-	private ExpressionValue buildObjectType(Expression expression,
-			VariableReader reader) {
-		String className = reader.readString();
-		int objectLength = reader.readInt();
-		int originalLength = objectLength;
-		if (reader.isLastEnd()) {
-			objectLength = 0;
-		}
-		Expression[] expressionNodes = new Expression[objectLength];
-		for (int i = 0; i < objectLength; i++) {
-			char type = reader.readType();
-			// System.out.println("type " + type);
-			String name;
-			if (type == 'i') {
-				name = Integer.toString(reader.readInt());
-			} else if (type == 's') {
-				name = reader.readString();
-			} else {
-				// fall back when type is invalid
-				return ExpressionValue.NULL_VALUE;
+		private Expression[] decodeMembers() {
+			if (membersOffset < 0) {
+				return new Expression[0];
 			}
-			if (expression == null) {
-				expressionNodes[i] = createDefaultVariable(name);
-			} else {
-				expressionNodes[i] = expression.createChildExpression(name,
-						"->" + name, KIND_OBJECT_MEMBER); //$NON-NLS-1$
+			VariableReader reader = new VariableReader(buf, membersOffset);
+			Expression[] members = new Expression[childrenCount];
+			for (int i = 0; i < childrenCount; i++) {
+				char keyType = reader.readType();
+				String name;
+				if (keyType == 'i') {
+					name = Integer.toString(reader.readInt());
+				} else if (keyType == 's') {
+					name = reader.readString();
+				} else {
+					// the keys were checked when the value was built
+					return new Expression[0];
+				}
+				if (expression == null) {
+					members[i] = createDefaultVariable(name);
+				} else if (type == ARRAY_TYPE) {
+					members[i] = expression.createChildExpression(name,
+							'[' + name + ']', KIND_ARRAY_MEMBER);
+				} else {
+					members[i] = expression.createChildExpression(name,
+							"->" + name, KIND_OBJECT_MEMBER); //$NON-NLS-1$
+				}
+				members[i].setValue(build(expression, reader));
 			}
-			expressionNodes[i].setValue(build(expression, reader));
+			return members;
 		}
-		String valueAsString = "Object of: " + className; //$NON-NLS-1$
-		return new ExpressionValue(ExpressionValue.OBJECT_TYPE, className,
-				valueAsString, expressionNodes, originalLength);
 	}
 
 	private Expression createDefaultVariable(String name) {
@@ -175,49 +252,89 @@ public class ExpressionsValueDeserializer {
 	// ////////////////////////////////////////////////////////////////////////////////////////////////
 	// variable reader.
 	// ////////////////////////////////////////////////////////////////////////////////////////////////
-	private class VariableReader extends ByteArrayInputStream {
+	private class VariableReader {
+
+		private static final char EOF = (char) -1;
 
-		private VariableReader(byte[] result) {
-			super(result);
+		private final byte[] buf;
+		private int pos;
+		private int mark;
+		private int tokenEnd;
+
+		private VariableReader(byte[] buf, int pos) {
+			this.buf = buf;
+			this.pos = pos;
+		}
+
+		private char read() {
+			if (pos >= buf.length) {
+				return EOF;
+			}
+			return (char) (buf[pos++] & 0xff);
 		}
 
 		private char readType() {
 			char curr;
 			do {
-				int temp = super.read();
-				if (temp == -1) {
+				curr = read();
+				if (curr == EOF) {
 					return ' ';
 				}
-				curr = (char) temp;
 			} while (curr == ';' || curr == ':' || curr == '{' || curr == '}');
 			return curr;
 		}
 
-		private String readToken() {
-			StringBuffer buffer = new StringBuffer(6);
+		/**
+		 * Moves after the next token, and returns the offset of its first
+		 * character
+		 */
+		private int skipToken() {
 			char curr;
 			do {
-				curr = (char) super.read();
+				curr = read();
 			} while (curr == ';' || curr == ':');
+			if (curr == EOF) {
+				tokenEnd = pos;
+				return pos;
+			}
+			int start = pos - 1;
+			do {
+				curr = read();
+			} while (curr != ';' && curr != ':' && curr != EOF);
+			tokenEnd = curr == EOF ? pos : pos - 1;
+			return start;
+		}
 
-			while (curr != ';' && curr != ':') {
-				buffer.append(curr);
-				curr = (char) super.read();
+		private String readToken() {
+			int start = skipToken();
+			// tokens are ASCII
+			char[] chars = new char[tokenEnd - start];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = (char) (buf[start + i] & 0xff);
 			}
-			return buffer.toString();
+			return new String(chars);
+		}
+
+		/**
+		 * Moves after the next string, and returns the offset of its first
+		 * byte
+		 */
+		private int skipString(int length) {
+			char curr;
+			do {
+				curr = read();
+			} while (curr != '"' && curr != EOF);
+			int start = pos;
+			pos = Math.min(pos + length, buf.length);
+			read(); // read '"'
+			return start;
 		}
 
 		private String readString() {
 			int length = readInt();
-			while ((char) super.read() != '"')
-				;
-
-			byte[] bytes = new byte[length];
-
-			read(bytes, 0, length);
-			super.read(); // read '"'
-
-			return getText(bytes);
+			int start = skipString(length);
+			return getText(buf, start, Math.max(0,
+					Math.min(length, buf.length - start)));
 		}
 
 		public int readInt() {
@@ -225,16 +342,18 @@ public class ExpressionsValueDeserializer {
 			char curr;
 			boolean isMinus = false;
 			do {
-				curr = (char) super.read();
+				curr = read();
 				if (curr == '-') {
 					isMinus = true;
 				}
-			} while (!Character.isDigit(curr));
-			do {
+			} while (!Character.isDigit(curr) && curr != EOF);
+			mark = pos;
+			while (Character.isDigit(curr)) {
 				result *= 10;
 				result += Character.getNumericValue(curr);
-				this.mark(1);
-			} while (Character.isDigit(curr = (char) super.read()));
+				mark = pos;
+				curr = read();
+			}
 			if (isMinus) {
 				result *= -1;
 			}
@@ -242,10 +361,65 @@ public class ExpressionsValueDeserializer {
 		}
 
 		private boolean isLastEnd() {
-			this.reset();
-			char curr = (char) super.read();
-			return curr == ';';
+			pos = mark;
+			return read() == ';';
+		}
+
+		/**
+		 * Moves after the value of the given kind, without decoding it
+		 * 
+		 * @return <code>false</code> if a member of the value has a key of an
+		 *         invalid type, the reader is then after that key type
+		 */
+		private boolean skipValue(char kind) {
+			switch (kind) {
+			case 'i':
+			case 'd':
+			case 'b':
+				skipToken();
+				break;
+			case 's':
+				skipString(readInt());
+				break;
+			case 'r':
+				readInt();
+				readInt();
+				skipToken();
+				break;
+			case 'O':
+				skipString(readInt());
+				// fall through
+			case 'a':
+				int length = readInt();
+				if (!isLastEnd()) {
+					return skipMembers(length);
+				}
+				break;
+			}
+			return true;
+		}
+
+		/**
+		 * Moves after the given number of members, without decoding them
+		 * 
+		 * @return <code>false</code> if a member has a key of an invalid type,
+		 *         the reader is then after that key type
+		 */
+		private boolean skipMembers(int length) {
+			for (int i = 0; i < length; i++) {
+				char keyType = readType();
+				if (keyType == 'i') {
+					readInt();
+				} else if (keyType == 's') {
+					skipString(readInt());
+				} else {
+					return false;
+				}
+				// a member with invalid keys is null, the next members follow
+				skipValue(readType());
+			}
+			return true;
 		}
 	}
 
-}
\ No newline at end of file
+}
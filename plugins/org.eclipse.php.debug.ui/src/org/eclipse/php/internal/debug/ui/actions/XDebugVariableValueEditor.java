@@ -23,10 +23,10 @@ import org.eclipse.jface.window.Window;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.model.DBGpStringValue;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.model.DBGpTarget;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.model.DBGpVariable;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponseNode;
 import org.eclipse.php.internal.debug.ui.Logger;
 import org.eclipse.php.internal.debug.ui.PHPDebugUIMessages;
 import org.eclipse.swt.widgets.Shell;
-import org.w3c.dom.Node;
 
 import com.ibm.icu.text.MessageFormat;
 
@@ -89,8 +89,9 @@ public class XDebugVariableValueEditor implements IVariableValueEditor {
 				DBGpTarget target = (DBGpTarget) value.getDebugTarget();
 				DBGpVariable dbgpVar = (DBGpVariable) variable;
 				String stackLevel = dbgpVar.getStackLevel();
-				Node result = target.getCompleteString(dbgpVar.getFullName(),
-						stackLevel, strValue.getRequiredBytes());
+				DBGpResponseNode result = target.getCompleteString(
+						dbgpVar.getFullName(), stackLevel,
+						strValue.getRequiredBytes());
 				if (result != null) {
 					IVariable tempVar = new DBGpVariable(target, result,
 							stackLevel);
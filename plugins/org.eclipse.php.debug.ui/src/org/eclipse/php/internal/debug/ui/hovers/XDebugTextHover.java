@@ -26,12 +26,12 @@ import org.eclipse.php.internal.core.documentModel.parser.regions.PHPRegionTypes
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.model.DBGpStackFrame;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.model.DBGpTarget;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.model.DBGpVariable;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponseNode;
 import org.eclipse.php.internal.debug.ui.Logger;
 import org.eclipse.php.internal.debug.ui.PHPDebugUIMessages;
 import org.eclipse.php.ui.editor.hover.IHoverMessageDecorator;
 import org.eclipse.php.ui.editor.hover.IPHPTextHover;
 import org.eclipse.wst.sse.core.internal.provisional.text.*;
-import org.w3c.dom.Node;
 
 public class XDebugTextHover extends AbstractScriptEditorTextHover implements
 		IPHPTextHover {
@@ -103,8 +103,8 @@ public class XDebugTextHover extends AbstractScriptEditorTextHover implements
 	 */
 	protected String getValueByEval(DBGpTarget debugTarget, String variable) {
 		String value = null;
-		Node resp = debugTarget.eval(variable); // note this is a synchronous
-												// call
+		// note this is a synchronous call
+		DBGpResponseNode resp = debugTarget.eval(variable);
 		if (resp == null) {
 			return ""; //$NON-NLS-1$
 		}
@@ -137,8 +137,8 @@ public class XDebugTextHover extends AbstractScriptEditorTextHover implements
 	protected String getPropertyValue(DBGpStackFrame context, String variable) {
 		String value = null;
 		DBGpTarget debugTarget = (DBGpTarget) context.getDebugTarget();
-		Node resp = debugTarget.getProperty(variable, context.getStackLevel(),
-				0);
+		DBGpResponseNode resp = debugTarget.getProperty(variable,
+				context.getStackLevel(), 0);
 		if (resp == null) {
 			return ""; //$NON-NLS-1$
 		}
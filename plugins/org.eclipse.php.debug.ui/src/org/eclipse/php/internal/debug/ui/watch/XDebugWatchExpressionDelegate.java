@@ -19,9 +19,9 @@ import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.model.*;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.model.DBGpTarget;
 import org.eclipse.php.internal.debug.core.xdebug.dbgp.model.DBGpVariable;
+import org.eclipse.php.internal.debug.core.xdebug.dbgp.protocol.DBGpResponseNode;
 import org.eclipse.php.internal.debug.ui.Logger;
 import org.eclipse.php.internal.debug.ui.PHPDebugUIMessages;
-import org.w3c.dom.Node;
 
 /**
  * 
@@ -93,7 +93,7 @@ public class XDebugWatchExpressionDelegate implements IWatchExpressionDelegate {
 			// Logger.debug("getValue() for: " + expressionText);
 			String stackLevel = "0"; //$NON-NLS-1$
 			String testExp = expressionText.trim();
-			Node result = null;
+			DBGpResponseNode result = null;
 
 			// disable this performance enhancement as it requires
 			// better determination of whether we have a variable
@@ -10,9 +10,12 @@
  *******************************************************************************/
 package org.eclipse.php.refactoring.core.changes;
 
+import java.lang.ref.SoftReference;
+
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
@@ -20,6 +23,8 @@ import org.eclipse.jface.text.Region;
 import org.eclipse.ltk.core.refactoring.TextEditBasedChangeGroup;
 import org.eclipse.ltk.core.refactoring.TextFileChange;
 import org.eclipse.php.internal.core.ast.nodes.Program;
+import org.eclipse.php.refactoring.core.RefactoringPlugin;
+import org.eclipse.php.refactoring.core.utils.RefactoringUtility;
 
 /**
  * A program change is a text file change with augmented AST program
@@ -30,13 +35,39 @@ public class ProgramFileChange extends TextFileChange {
 
 	private final Program program;
 
+	/**
+	 * Program parsed again for the preview of a change that doesn't keep its
+	 * program, released when memory is low
+	 */
+	private SoftReference<Program> parsedProgram;
+
 	public ProgramFileChange(String name, IFile file, Program program) {
 		super(name, file);
 		this.program = program;
 	}
 
-	public Program getProgram() {
-		return program;
+	/**
+	 * Creates a change that doesn't keep the program of the file in memory.
+	 * The program is parsed again when it is needed by the preview.
+	 */
+	public ProgramFileChange(String name, IFile file) {
+		this(name, file, null);
+	}
+
+	public synchronized Program getProgram() {
+		if (program != null) {
+			return program;
+		}
+		Program result = parsedProgram == null ? null : parsedProgram.get();
+		if (result == null) {
+			try {
+				result = RefactoringUtility.getProgramForFile(getFile());
+				parsedProgram = new SoftReference<Program>(result);
+			} catch (Exception e) {
+				RefactoringPlugin.logException(e);
+			}
+		}
+		return result;
 	}
 
 	/**
@@ -47,7 +78,7 @@ public class ProgramFileChange extends TextFileChange {
 	@SuppressWarnings("unchecked")
 	public Object getAdapter(Class adapter) {
 		if (adapter == Program.class) {
-			return program;
+			return getProgram();
 		}
 		return super.getAdapter(adapter);
 	}
@@ -123,8 +154,9 @@ public class ProgramFileChange extends TextFileChange {
 
 		boolean isModified = isDocumentModified();
 		super.releaseDocument(document, pm);
-		ISourceModule sm = program.getSourceModule();
-		if (isModified && !isDocumentAcquired()) {
+		ISourceModule sm = program != null ? program.getSourceModule()
+				: DLTKCore.createSourceModuleFrom(getFile());
+		if (isModified && !isDocumentAcquired() && sm != null) {
 			if (sm.isWorkingCopy())
 				sm.reconcile(false /* don't force problem detection */,
 						null /* use primary owner */, null /*
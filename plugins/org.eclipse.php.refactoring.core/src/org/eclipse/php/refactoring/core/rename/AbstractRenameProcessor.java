@@ -11,7 +11,6 @@
 package org.eclipse.php.refactoring.core.rename;
 
 import java.util.*;
-import java.util.Map.Entry;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
@@ -58,8 +57,20 @@ public abstract class AbstractRenameProcessor<R extends IResource> extends
 
 	protected String fNewElementName;
 
+	/**
+	 * Files affected by the refactoring, with their programs, or with
+	 * <code>null</code> for files that are parsed each time they are
+	 * processed, see {@link #processParticipantFiles}
+	 */
 	protected Map<IFile, Program> participantFiles;
 
+	/**
+	 * Programs of the participant files parsed by a pass over them, so that
+	 * the next pass, e.g. creating the change after checking the final
+	 * conditions, doesn't parse the files again
+	 */
+	private final ParticipantFilesPipeline.ProgramCache programCache = new ParticipantFilesPipeline.ProgramCache();
+
 	/**
 	 * map of sibling changes by file received from parent processor.
 	 */
@@ -90,6 +101,40 @@ public abstract class AbstractRenameProcessor<R extends IResource> extends
 		return change;
 	}
 
+	/**
+	 * Adds a participant file whose program is parsed each time it is
+	 * processed
+	 * 
+	 * @param file
+	 */
+	protected void addParticipantFile(IFile file) {
+		if (!participantFiles.containsKey(file)) {
+			participantFiles.put(file, null);
+		}
+	}
+
+	/**
+	 * Processes the programs of all participant files, parsing the files
+	 * added by {@link #addParticipantFile(IFile)} on worker threads. The
+	 * programs of those files are only kept in a soft cache once they are
+	 * processed, and are reused by the next pass if they weren't reclaimed.
+	 * 
+	 * @param processor
+	 * @param requestor
+	 * @param pm
+	 *            progress monitor, reported one unit of work per file
+	 * @return status with an error for each file that couldn't be parsed or
+	 *         processed
+	 * @see ParticipantFilesPipeline
+	 */
+	protected <T> RefactoringStatus processParticipantFiles(
+			ParticipantFilesPipeline.IProgramProcessor<T> processor,
+			ParticipantFilesPipeline.IResultRequestor<T> requestor,
+			IProgressMonitor pm) throws OperationCanceledException {
+		return ParticipantFilesPipeline.run(participantFiles, programCache,
+				processor, requestor, pm);
+	}
+
 	@Override
 	public RefactoringStatus checkInitialConditions(IProgressMonitor pm)
 			throws CoreException, OperationCanceledException {
@@ -98,6 +143,7 @@ public abstract class AbstractRenameProcessor<R extends IResource> extends
 		try {
 
 			participantFiles = new HashMap<IFile, Program>();
+			programCache.clear();
 
 			if (resource instanceof IFile
 					&& PHPToolkitUtil.isPhpFile((IFile) resource)) {
@@ -209,7 +255,8 @@ public abstract class AbstractRenameProcessor<R extends IResource> extends
 			CheckConditionsContext context) throws CoreException,
 			OperationCanceledException {
 
-		RefactoringStatus result = RefactoringStatus.create(Status.OK_STATUS);
+		final RefactoringStatus result = RefactoringStatus
+				.create(Status.OK_STATUS);
 
 		final SubProgressMonitor subProgressMonitor = new SubProgressMonitor(
 				pm, 100);
@@ -218,15 +265,24 @@ public abstract class AbstractRenameProcessor<R extends IResource> extends
 						PhpRefactoringCoreMessages
 								.getString("RenameProcessorBase.1"), participantFiles.size()); //$NON-NLS-1$
 
-		for (Entry<IFile, Program> entry : participantFiles.entrySet()) {
-			final IFile key = entry.getKey();
-			final Program program = entry.getValue();
-
-			RefactoringStatus status = getRefactoringStatus(key, program);
-			result.merge(status);
-			subProgressMonitor.worked(1);
+		try {
+			RefactoringStatus filesStatus = processParticipantFiles(
+					new ParticipantFilesPipeline.IProgramProcessor<RefactoringStatus>() {
+						public RefactoringStatus process(IFile file,
+								Program program) {
+							return getRefactoringStatus(file, program);
+						}
+					},
+					new ParticipantFilesPipeline.IResultRequestor<RefactoringStatus>() {
+						public void acceptResult(IFile file,
+								RefactoringStatus status) {
+							result.merge(status);
+						}
+					}, subProgressMonitor);
+			result.merge(filesStatus);
+		} finally {
+			subProgressMonitor.done();
 		}
-		subProgressMonitor.done();
 		return result;
 	}
 
@@ -324,7 +380,8 @@ public abstract class AbstractRenameProcessor<R extends IResource> extends
 
 	/**
 	 * @param file
-	 * @return the program node for a given file
+	 * @return the program node for a given file, or <code>null</code> if the
+	 *         program of the file is not kept
 	 */
 	public Program getProgram(IFile file) {
 		return participantFiles.get(file);
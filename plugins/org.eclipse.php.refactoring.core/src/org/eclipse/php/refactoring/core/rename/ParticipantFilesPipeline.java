@@ -0,0 +1,388 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.refactoring.core.rename;
+
+import java.lang.ref.SoftReference;
+import java.text.MessageFormat;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.php.internal.core.ast.nodes.Program;
+import org.eclipse.php.refactoring.core.PhpRefactoringCoreMessages;
+import org.eclipse.php.refactoring.core.RefactoringPlugin;
+import org.eclipse.php.refactoring.core.utils.RefactoringUtility;
+
+/**
+ * Processes the participant files of a refactoring on a pool of worker
+ * threads.
+ * <p>
+ * The files whose program is already known are processed in the calling
+ * thread. The other files are parsed by the workers, and each program is
+ * released as soon as the file is processed, so the processors must not
+ * return results that reference it. At most {@link #getMaxPrograms()} files
+ * are parsed or waiting for their results to be delivered at the same time,
+ * see the {@link #MAX_PROGRAMS_PROPERTY} system property (the number of
+ * processors by default). A {@link ProgramCache} lets several passes over
+ * the same files share the programs that the garbage collector didn't
+ * reclaim yet.
+ * </p>
+ * <p>
+ * The results are reported to the requestor in the calling thread, as the
+ * files are completed. Files that can't be parsed or processed are reported
+ * as errors in the returned status.
+ * </p>
+ */
+public class ParticipantFilesPipeline {
+
+	/**
+	 * System property with the maximum number of programs that are parsed at
+	 * the same time
+	 */
+	public static final String MAX_PROGRAMS_PROPERTY = "org.eclipse.php.refactoring.maxPrograms"; //$NON-NLS-1$
+
+	private static final int DEFAULT_MAX_PROGRAMS = Runtime.getRuntime()
+			.availableProcessors();
+
+	/** Time between two checks for cancellation (ms) */
+	private static final long POLL_INTERVAL = 100;
+
+	private static final String CANNOT_PROCESS_FILE = PhpRefactoringCoreMessages
+			.getString("RenameProcessorBase.4"); //$NON-NLS-1$
+
+	/**
+	 * Processes the program of a participant file
+	 */
+	public interface IProgramProcessor<T> {
+
+		/**
+		 * Processes the program of a file. May be called by several threads at
+		 * the same time.
+		 *
+		 * @param file
+		 *            Participant file
+		 * @param program
+		 *            Program of the file, released after this call for the
+		 *            files parsed by the pipeline
+		 * @return result for the file, or <code>null</code> if there is
+		 *         nothing to report
+		 * @throws Exception
+		 */
+		T process(IFile file, Program program) throws Exception;
+	}
+
+	/**
+	 * Receives the results of the participant files
+	 */
+	public interface IResultRequestor<T> {
+
+		/**
+		 * Called in the thread that started the pipeline, in the order in
+		 * which the files are completed
+		 *
+		 * @param file
+		 *            Participant file
+		 * @param result
+		 *            Result of the processor for the file
+		 */
+		void acceptResult(IFile file, T result);
+	}
+
+	/**
+	 * Outcome of a participant file
+	 */
+	private static class Outcome {
+		final IFile file;
+		boolean parsed = true;
+		Object result;
+		Throwable error;
+
+		Outcome(IFile file) {
+			this.file = file;
+		}
+	}
+
+	/**
+	 * Bounded cache of the programs parsed by the pipeline. The programs are
+	 * softly referenced, so they are reclaimed when memory runs low, and a
+	 * program is dropped once its file is modified.
+	 */
+	public static class ProgramCache {
+
+		private static class CachedProgram {
+			final long stamp;
+			final SoftReference<Program> program;
+
+			CachedProgram(long stamp, Program program) {
+				this.stamp = stamp;
+				this.program = new SoftReference<Program>(program);
+			}
+		}
+
+		/** Default maximum number of cached programs */
+		public static final int DEFAULT_CAPACITY = 256;
+
+		private final Map<IFile, CachedProgram> entries;
+
+		public ProgramCache() {
+			this(DEFAULT_CAPACITY);
+		}
+
+		/**
+		 * @param capacity
+		 *            Maximum number of cached programs, the least recently
+		 *            used are dropped first
+		 */
+		public ProgramCache(final int capacity) {
+			entries = new LinkedHashMap<IFile, CachedProgram>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				protected boolean removeEldestEntry(
+						Map.Entry<IFile, CachedProgram> eldest) {
+					return size() > capacity;
+				}
+			};
+		}
+
+		/**
+		 * Returns the program cached for the given file, or <code>null</code>
+		 * if it was reclaimed or the file was modified since
+		 */
+		public synchronized Program get(IFile file) {
+			CachedProgram entry = entries.get(file);
+			if (entry == null) {
+				return null;
+			}
+			Program program = entry.program.get();
+			if (program == null
+					|| entry.stamp != file.getModificationStamp()) {
+				entries.remove(file);
+				return null;
+			}
+			return program;
+		}
+
+		/**
+		 * Caches the program parsed for the given file
+		 */
+		public synchronized void put(IFile file, Program program) {
+			entries.put(file, new CachedProgram(file.getModificationStamp(),
+					program));
+		}
+
+		/**
+		 * Drops all the cached programs
+		 */
+		public synchronized void clear() {
+			entries.clear();
+		}
+	}
+
+	private ParticipantFilesPipeline() {
+	}
+
+	/**
+	 * Returns the maximum number of programs that are parsed at the same time
+	 */
+	public static int getMaxPrograms() {
+		return Math.max(1,
+				Integer.getInteger(MAX_PROGRAMS_PROPERTY, DEFAULT_MAX_PROGRAMS)
+						.intValue());
+	}
+
+	/**
+	 * Processes the participant files, reporting one unit of work per file.
+	 * The programs parsed on the way are not kept. Files that can't be parsed
+	 * are removed from the participant files, so that they are reported only
+	 * once.
+	 *
+	 * @param participantFiles
+	 *            Participant files, with their programs or with
+	 *            <code>null</code> for files that must be parsed
+	 * @param processor
+	 *            Processor of the programs
+	 * @param requestor
+	 *            Requestor of the results
+	 * @param pm
+	 *            Progress monitor
+	 * @return status with an error for each file that couldn't be parsed or
+	 *         processed
+	 * @throws OperationCanceledException
+	 *             if the progress monitor was cancelled
+	 */
+	public static <T> RefactoringStatus run(
+			Map<IFile, Program> participantFiles,
+			IProgramProcessor<T> processor, IResultRequestor<T> requestor,
+			IProgressMonitor pm) throws OperationCanceledException {
+		return run(participantFiles, null, processor, requestor, pm);
+	}
+
+	/**
+	 * Processes the participant files like
+	 * {@link #run(Map, IProgramProcessor, IResultRequestor, IProgressMonitor)}
+	 * , taking the programs of the files from the given cache when they are
+	 * still there, and caching the programs that are parsed.
+	 *
+	 * @param participantFiles
+	 *            Participant files, with their programs or with
+	 *            <code>null</code> for files that must be parsed
+	 * @param cache
+	 *            Cache of the parsed programs, or <code>null</code>
+	 * @param processor
+	 *            Processor of the programs
+	 * @param requestor
+	 *            Requestor of the results
+	 * @param pm
+	 *            Progress monitor
+	 * @return status with an error for each file that couldn't be parsed or
+	 *         processed
+	 * @throws OperationCanceledException
+	 *             if the progress monitor was cancelled
+	 */
+	public static <T> RefactoringStatus run(
+			Map<IFile, Program> participantFiles, final ProgramCache cache,
+			final IProgramProcessor<T> processor,
+			IResultRequestor<T> requestor, IProgressMonitor pm)
+			throws OperationCanceledException {
+		RefactoringStatus status = new RefactoringStatus();
+		List<IFile> deferred = new ArrayList<IFile>();
+		for (Entry<IFile, Program> entry : participantFiles.entrySet()) {
+			if (entry.getValue() == null) {
+				deferred.add(entry.getKey());
+				continue;
+			}
+			if (pm.isCanceled()) {
+				throw new OperationCanceledException();
+			}
+			Outcome outcome = new Outcome(entry.getKey());
+			process(outcome, entry.getValue(), processor);
+			deliver(outcome, requestor, status);
+			pm.worked(1);
+		}
+		if (deferred.isEmpty()) {
+			return status;
+		}
+
+		final int maxPrograms = getMaxPrograms();
+		final List<IFile> unparsed = new ArrayList<IFile>();
+		final ExecutorService executor = createExecutor(Math.min(
+				deferred.size(), maxPrograms));
+		try {
+			final CompletionService<Outcome> completionService = new ExecutorCompletionService<Outcome>(
+					executor);
+			final Map<Future<Outcome>, IFile> files = new HashMap<Future<Outcome>, IFile>();
+			final Iterator<IFile> next = deferred.iterator();
+			while (next.hasNext() || !files.isEmpty()) {
+				if (pm.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				// a file is in flight until its result is delivered, so
+				// workers never run ahead of the requestor
+				while (files.size() < maxPrograms && next.hasNext()) {
+					final IFile file = next.next();
+					files.put(completionService.submit(new Callable<Outcome>() {
+						public Outcome call() {
+							Outcome outcome = new Outcome(file);
+							Program program = cache != null ? cache.get(file)
+									: null;
+							if (program == null) {
+								try {
+									program = RefactoringUtility
+											.getProgramForFile(file);
+								} catch (Exception e) {
+									outcome.parsed = false;
+									outcome.error = e;
+									return outcome;
+								}
+								if (cache != null) {
+									cache.put(file, program);
+								}
+							}
+							process(outcome, program, processor);
+							return outcome;
+						}
+					}), file);
+				}
+				final Future<Outcome> future = completionService.poll(
+						POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				if (future == null) {
+					continue;
+				}
+				final IFile file = files.remove(future);
+				Outcome outcome;
+				try {
+					outcome = future.get();
+				} catch (ExecutionException e) {
+					RefactoringPlugin.logException(e);
+					outcome = new Outcome(file);
+					outcome.error = e.getCause() != null ? e.getCause() : e;
+				}
+				if (!outcome.parsed) {
+					unparsed.add(file);
+				}
+				deliver(outcome, requestor, status);
+				pm.worked(1);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		for (IFile file : unparsed) {
+			participantFiles.remove(file);
+		}
+		return status;
+	}
+
+	private static <T> void process(Outcome outcome, Program program,
+			IProgramProcessor<T> processor) {
+		try {
+			outcome.result = processor.process(outcome.file, program);
+		} catch (Exception e) {
+			RefactoringPlugin.logException(e);
+			outcome.error = e;
+		}
+	}
+
+	private static <T> void deliver(Outcome outcome,
+			IResultRequestor<T> requestor, RefactoringStatus status) {
+		if (outcome.error != null) {
+			status.addError(MessageFormat.format(CANNOT_PROCESS_FILE,
+					outcome.file.getFullPath().toString(),
+					String.valueOf(outcome.error.getMessage())));
+		} else if (outcome.result != null) {
+			@SuppressWarnings("unchecked")
+			T result = (T) outcome.result;
+			requestor.acceptResult(outcome.file, result);
+		}
+	}
+
+	private static ExecutorService createExecutor(int threads) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "PHP Refactoring Worker " //$NON-NLS-1$
+						+ count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+}
@@ -12,14 +12,15 @@ package org.eclipse.php.refactoring.core.rename;
 
 import java.text.MessageFormat;
 import java.util.*;
-import java.util.Map.Entry;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.dltk.core.*;
 import org.eclipse.dltk.core.search.*;
 import org.eclipse.ltk.core.refactoring.Change;
@@ -35,8 +36,8 @@ import org.eclipse.php.internal.core.PHPLanguageToolkit;
 import org.eclipse.php.internal.core.ast.locator.PhpElementConciliator;
 import org.eclipse.php.internal.core.ast.nodes.*;
 import org.eclipse.php.refactoring.core.PhpRefactoringCoreMessages;
+import org.eclipse.php.refactoring.core.RefactoringPlugin;
 import org.eclipse.php.refactoring.core.rename.logic.RenameClass;
-import org.eclipse.php.refactoring.core.utils.RefactoringUtility;
 
 /**
  * Description:
@@ -106,7 +107,7 @@ public class RenameClassProcessor extends AbstractRenameProcessor<IFile>
 	public Change createChange(IProgressMonitor pm) throws CoreException,
 			OperationCanceledException {
 
-		CompositeChange rootChange = new CompositeChange(
+		final CompositeChange rootChange = new CompositeChange(
 				PhpRefactoringCoreMessages
 						.getString("RenameClassNameProcessor.4")); //$NON-NLS-1$
 		rootChange.markAsSynthetic();
@@ -121,31 +122,56 @@ public class RenameClassProcessor extends AbstractRenameProcessor<IFile>
 
 			// get target parameters
 			final String newElementName = getNewElementName();
+			final String currentElementName = getCurrentElementName();
+			final boolean updateTextualMatches = getUpdateTextualMatches();
+
+			// go over the files and check for class usage, the text edits
+			// are built by the workers so that the programs can be released
+			final List<TextFileChange> changes = new ArrayList<TextFileChange>();
+			RefactoringStatus status = processParticipantFiles(
+					new ParticipantFilesPipeline.IProgramProcessor<TextFileChange>() {
+						public TextFileChange process(IFile file,
+								Program program) {
+							final RenameClass rename = new RenameClass(file,
+									identifier, currentElementName,
+									newElementName, updateTextualMatches,
+									types);
+
+							// aggregate the changes identifiers
+							try {
+								program.accept(rename);
+							} catch (Exception e) {
+							}
+							if (!rename.hasChanges()) {
+								return null;
+							}
+							TextFileChange change = acquireChange(file,
+									getProgram(file));
+							rename.updateChange(change);
+							return change;
+						}
+					},
+					new ParticipantFilesPipeline.IResultRequestor<TextFileChange>() {
+						public void acceptResult(IFile file,
+								TextFileChange change) {
+							changes.add(change);
+						}
+					}, pm);
+			if (status.hasError()) {
+				throw new CoreException(new Status(IStatus.ERROR,
+						RefactoringPlugin.PLUGIN_ID, status
+								.getMessageMatchingSeverity(RefactoringStatus.ERROR)));
+			}
 
-			// go over the files and check for global variable usage
-			for (Entry<IFile, Program> entry : participantFiles.entrySet()) {
-				final IFile file = entry.getKey();
-				final Program program = entry.getValue();
-				final RenameClass rename = new RenameClass(file, identifier,
-						getCurrentElementName(), newElementName,
-						getUpdateTextualMatches(), types);
-
-				// aggregate the changes identifiers
-				try {
-					program.accept(rename);
-				} catch (Exception e) {
-				}
-
-				if (pm.isCanceled())
-					throw new OperationCanceledException();
-
-				pm.worked(1);
-
-				if (rename.hasChanges()) {
-					TextFileChange change = acquireChange(file, program);
-					rename.updateChange(change);
-					rootChange.add(change);
+			// the files are completed in any order
+			Collections.sort(changes, new Comparator<TextFileChange>() {
+				public int compare(TextFileChange c1, TextFileChange c2) {
+					return c1.getFile().getFullPath().toString()
+							.compareTo(c2.getFile().getFullPath().toString());
 				}
+			});
+			for (TextFileChange change : changes) {
+				rootChange.add(change);
 			}
 			return rootChange;
 
@@ -240,11 +266,8 @@ public class RenameClassProcessor extends AbstractRenameProcessor<IFile>
 		for (Iterator<IResource> it = list.iterator(); it.hasNext();) {
 			IResource file = it.next();
 			if (file instanceof IFile) {
-				try {
-					participantFiles.put((IFile) file,
-							RefactoringUtility.getProgramForFile((IFile) file));
-				} catch (Exception e) {
-				}
+				// parsed later, see createChange()
+				addParticipantFile((IFile) file);
 			}
 		}
 	}
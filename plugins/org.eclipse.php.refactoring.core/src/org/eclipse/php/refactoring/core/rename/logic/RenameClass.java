@@ -104,19 +104,30 @@ public class RenameClass extends AbstractRename {
 		return false;
 	}
 
-	public boolean visit(ClassDeclaration classDeclaration) {
-		ITypeBinding originalType = null;
-
-		if (originalDeclaration != null) {
+	/**
+	 * Resolves the type of the original declaration. The AST of the original
+	 * declaration is shared by the renames of all files, that may run in
+	 * parallel, so its bindings are resolved by one rename at a time.
+	 */
+	private ITypeBinding getOriginalType() {
+		if (originalDeclaration == null) {
+			return null;
+		}
+		synchronized (originalDeclaration.getAST()) {
 			if (originalDeclaration instanceof TypeDeclaration) {
-				originalType = ((TypeDeclaration) originalDeclaration)
+				return ((TypeDeclaration) originalDeclaration)
 						.resolveTypeBinding();
 			}
 			if (originalDeclaration instanceof ClassInstanceCreation) {
-				originalType = ((ClassInstanceCreation) originalDeclaration)
+				return ((ClassInstanceCreation) originalDeclaration)
 						.resolveTypeBinding();
 			}
 		}
+		return null;
+	}
+
+	public boolean visit(ClassDeclaration classDeclaration) {
+		ITypeBinding originalType = getOriginalType();
 
 		ITypeBinding currType = classDeclaration.resolveTypeBinding();
 		if (originalDeclaration == null
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.ui.editor;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.dltk.core.IBuffer;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ModelException;
+import org.eclipse.dltk.internal.ui.editor.DocumentAdapter;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.php.internal.core.ast.nodes.Program;
+
+/**
+ * Least recently used cache of the ASTs created by {@link ASTProvider}, so
+ * switching between editors or asking for the AST of a file that isn't active
+ * doesn't parse it again.
+ * <p>
+ * An entry is valid as long as the contents of the module are in the same
+ * state as when the AST was created, and the AST wasn't modified since. The
+ * state of a working copy is the modification stamp of its editor document,
+ * and the state of any other module the modification stamp of its resource
+ * (see {@link State}), so validating an entry doesn't read the contents.
+ * Modules whose state can't be determined aren't cached. The number of
+ * entries and the total size of their sources are bounded, and ASTs are
+ * softly referenced, so they are dropped before the heap runs out.
+ * </p>
+ */
+final class ASTCache {
+
+	/** Category for tracing the hit and miss counts */
+	static final String TRACE_CATEGORY = "astcache"; //$NON-NLS-1$
+
+	/** Maximum number of cached ASTs */
+	private static final int MAX_ENTRIES = 8;
+
+	/** Maximum total length of the sources of cached ASTs */
+	private static final long MAX_SOURCE_LENGTH = 4 * 1024 * 1024;
+
+	/**
+	 * State of the contents of a module, see {@link ASTCache#getState}
+	 */
+	static final class State {
+		/** Editor document of a working copy, or <code>null</code> */
+		private final WeakReference<IDocument> document;
+		private final long stamp;
+
+		State(IDocument document, long stamp) {
+			this.document = document != null ? new WeakReference<IDocument>(
+					document) : null;
+			this.stamp = stamp;
+		}
+
+		boolean isSame(State other) {
+			if (stamp != other.stamp) {
+				return false;
+			}
+			if (document == null || other.document == null) {
+				return document == other.document;
+			}
+			final IDocument doc = document.get();
+			return doc != null && doc == other.document.get();
+		}
+	}
+
+	private static class Entry {
+		final SoftReference<Program> ast;
+		final State state;
+		final int length;
+		final long modificationCount;
+
+		Entry(Program ast, State state) {
+			this.ast = new SoftReference<Program>(ast);
+			this.state = state;
+			this.length = ast.getEnd();
+			this.modificationCount = ast.getAST().modificationCount();
+		}
+	}
+
+	// following fields are guarded by this
+	private final LinkedHashMap<ISourceModule, Entry> entries = new LinkedHashMap<ISourceModule, Entry>(
+			16, 0.75f, true);
+	private long sourceLength;
+	private int hits;
+	private int misses;
+
+	/**
+	 * Returns the cached AST of the module if it's still up to date
+	 * 
+	 * @param module
+	 *            Source module
+	 * @return cached AST, or <code>null</code>
+	 */
+	Program get(ISourceModule module) {
+		final State state = getState(module);
+		synchronized (this) {
+			final Entry entry = entries.get(module);
+			Program ast = null;
+			if (entry != null && state != null && entry.state.isSame(state)) {
+				ast = entry.ast.get();
+				if (ast != null
+						&& ast.getAST().modificationCount() != entry.modificationCount) {
+					ast = null;
+				}
+			}
+			if (ast == null) {
+				if (entry != null) {
+					remove(module);
+				}
+				misses++;
+			} else {
+				hits++;
+			}
+			return ast;
+		}
+	}
+
+	/**
+	 * Caches the AST of the module
+	 * 
+	 * @param module
+	 *            Source module
+	 * @param ast
+	 *            AST of the module
+	 * @param state
+	 *            State of the module contents the AST was created from, taken
+	 *            before the contents were read
+	 */
+	void put(ISourceModule module, Program ast, State state) {
+		if (state == null || ast.getEnd() > MAX_SOURCE_LENGTH) {
+			return;
+		}
+		final Entry entry = new Entry(ast, state);
+		synchronized (this) {
+			remove(module);
+			entries.put(module, entry);
+			sourceLength += entry.length;
+
+			final Iterator<Map.Entry<ISourceModule, Entry>> i = entries
+					.entrySet().iterator();
+			while (i.hasNext()
+					&& (entries.size() > MAX_ENTRIES || sourceLength > MAX_SOURCE_LENGTH)) {
+				final Entry eldest = i.next().getValue();
+				if (eldest == entry) {
+					break;
+				}
+				sourceLength -= eldest.length;
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes the cached AST of the module
+	 */
+	synchronized void remove(ISourceModule module) {
+		final Entry entry = entries.remove(module);
+		if (entry != null) {
+			sourceLength -= entry.length;
+		}
+	}
+
+	/**
+	 * Removes all cached ASTs
+	 */
+	synchronized void clear() {
+		entries.clear();
+		sourceLength = 0;
+	}
+
+	/**
+	 * Returns the number of requests that were answered from the cache
+	 */
+	synchronized int getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of requests that weren't answered from the cache
+	 */
+	synchronized int getMissCount() {
+		return misses;
+	}
+
+	public synchronized String toString() {
+		return "ASTCache: " + entries.size() + " entries, " + hits //$NON-NLS-1$ //$NON-NLS-2$
+				+ " hits, " + misses + " misses"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	static char[] getSource(ISourceModule module) {
+		try {
+			return module.getSourceAsCharArray();
+		} catch (ModelException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the current state of the module contents
+	 * 
+	 * @return state, or <code>null</code> if it can't be determined
+	 */
+	static State getState(ISourceModule module) {
+		if (module.isWorkingCopy()) {
+			IBuffer buffer;
+			try {
+				buffer = module.getBuffer();
+			} catch (ModelException e) {
+				return null;
+			}
+			if (buffer instanceof DocumentAdapter) {
+				final IDocument document = ((DocumentAdapter) buffer)
+						.getDocument();
+				if (document instanceof IDocumentExtension4) {
+					final long stamp = ((IDocumentExtension4) document)
+							.getModificationStamp();
+					if (stamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP) {
+						return new State(document, stamp);
+					}
+				}
+			}
+			return null;
+		}
+		final IResource resource = module.getResource();
+		if (resource == null
+				|| resource.getModificationStamp() == IResource.NULL_STAMP) {
+			return null;
+		}
+		return new State(null, resource.getModificationStamp());
+	}
+}
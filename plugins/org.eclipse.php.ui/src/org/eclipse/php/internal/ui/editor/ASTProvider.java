@@ -11,6 +11,8 @@
  *******************************************************************************/
 package org.eclipse.php.internal.ui.editor;
 
+import java.io.CharArrayReader;
+import java.io.IOException;
 import java.util.Set;
 
 import org.eclipse.core.resources.IResource;
@@ -22,6 +24,7 @@ import org.eclipse.php.internal.core.ast.nodes.ASTNode;
 import org.eclipse.php.internal.core.ast.nodes.ASTParser;
 import org.eclipse.php.internal.core.ast.nodes.Program;
 import org.eclipse.php.internal.core.corext.ASTNodes;
+import org.eclipse.php.internal.ui.Logger;
 import org.eclipse.php.internal.ui.PHPUiConstants;
 import org.eclipse.php.internal.ui.PHPUiPlugin;
 import org.eclipse.php.internal.ui.editor.validation.PhpReconcilingStrategy;
@@ -230,6 +233,8 @@ public final class ASTProvider {
 
 	private boolean isASTDirty;
 
+	private final ASTCache fCache = new ASTCache();
+
 	/**
 	 * Returns the Java plug-in's AST provider.
 	 * 
@@ -272,9 +277,15 @@ public final class ASTProvider {
 		}
 
 		synchronized (this) {
+			// keep the AST of the previous editor for when it's activated again
+			if (fAST != null && fActiveJavaElement != null && !isASTDirty) {
+				fCache.put(fActiveJavaElement, fAST,
+						ASTCache.getState(fActiveJavaElement));
+			}
 			fActiveEditor = editor;
 			fActiveJavaElement = javaElement;
-			cache(null, javaElement);
+			cache(javaElement != null ? fCache.get(javaElement) : null,
+					javaElement);
 		}
 
 		if (DEBUG) {
@@ -537,17 +548,30 @@ public final class ASTProvider {
 				return null; // thread has been interrupted don't compute AST
 			}
 		} else if (canReturnNull)
-			return null;
+			return fCache.get(input);
 
 		Program ast = null;
 		try {
-			ast = createAST(input, progressMonitor);
-			if (progressMonitor != null && progressMonitor.isCanceled()) {
-				ast = null;
+			ast = fCache.get(input);
+			if (ast != null) {
 				if (DEBUG) {
 					System.out
 							.println(getThreadName()
-									+ " - " + DEBUG_PREFIX + "Ignore created AST for: " + input.getElementName() + " - operation has been cancelled"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+									+ " - " + DEBUG_PREFIX + "returning AST from " + fCache + " for: " + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				}
+			} else {
+				final ASTCache.State state = ASTCache.getState(input);
+				final char[] source = ASTCache.getSource(input);
+				ast = createAST(input, source, progressMonitor);
+				if (progressMonitor != null && progressMonitor.isCanceled()) {
+					ast = null;
+					if (DEBUG) {
+						System.out
+								.println(getThreadName()
+										+ " - " + DEBUG_PREFIX + "Ignore created AST for: " + input.getElementName() + " - operation has been cancelled"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					}
+				} else if (ast != null) {
+					fCache.put(input, ast, state);
 				}
 			}
 		} finally {
@@ -616,13 +640,15 @@ public final class ASTProvider {
 	 * 
 	 * @param input
 	 *            the Java element for which to create the AST
+	 * @param source
+	 *            the contents of the element
 	 * @param progressMonitor
 	 *            the progress monitor
 	 * @return AST
 	 */
 	private static Program createAST(final ISourceModule input,
-			final IProgressMonitor progressMonitor) {
-		if (!hasSource(input)) {
+			final char[] source, final IProgressMonitor progressMonitor) {
+		if (source == null || !hasSource(input)) {
 			return null;
 		}
 
@@ -630,8 +656,11 @@ public final class ASTProvider {
 			return null;
 		}
 
-		final ASTParser parser = ASTParser.newParser(SHARED_AST_LEVEL, input);
-		if (parser == null) {
+		final ASTParser parser;
+		try {
+			parser = ASTParser.newParser(new CharArrayReader(source),
+					SHARED_AST_LEVEL, false, input);
+		} catch (IOException e) {
 			return null;
 		}
 
@@ -696,6 +725,22 @@ public final class ASTProvider {
 		// return false;
 	}
 
+	/**
+	 * Returns the number of AST requests that were answered from the cache of
+	 * recently used ASTs
+	 */
+	public int getCacheHitCount() {
+		return fCache.getHitCount();
+	}
+
+	/**
+	 * Returns the number of AST requests that weren't answered from the cache
+	 * of recently used ASTs
+	 */
+	public int getCacheMissCount() {
+		return fCache.getMissCount();
+	}
+
 	/**
 	 * Disposes this AST provider.
 	 */
@@ -707,6 +752,15 @@ public final class ASTProvider {
 
 		disposeAST();
 
+		if (DEBUG) {
+			System.out.println(getThreadName()
+					+ " - " + DEBUG_PREFIX + fCache); //$NON-NLS-1$
+		}
+		if (Logger.isTracing(ASTCache.TRACE_CATEGORY)) {
+			Logger.trace(ASTCache.TRACE_CATEGORY, fCache.toString());
+		}
+		fCache.clear();
+
 		synchronized (fWaitLock) {
 			fWaitLock.notifyAll();
 		}
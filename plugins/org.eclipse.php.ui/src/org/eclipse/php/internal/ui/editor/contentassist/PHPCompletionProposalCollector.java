@@ -30,7 +30,8 @@ import org.eclipse.php.internal.ui.util.PHPPluginImages;
 import org.eclipse.swt.graphics.Image;
 
 public class PHPCompletionProposalCollector extends
-		ScriptCompletionProposalCollector implements IPHPCompletionRequestor {
+		ScriptCompletionProposalCollector implements IPHPCompletionRequestor,
+		IPHPAsyncCompletionRequestor {
 
 	private static final String DOUBLE_COLON = "::";//$NON-NLS-1$
 	private static final String EMPTY_STRING = "";//$NON-NLS-1$
@@ -38,6 +39,8 @@ public class PHPCompletionProposalCollector extends
 	private boolean explicit;
 	private int offset;
 	private int flags = CompletionFlag.DEFAULT;
+	private CompletionProposal[] lateProposals;
+	private Runnable lateProposalsListener;
 
 	public PHPCompletionProposalCollector(IDocument document, ISourceModule cu,
 			boolean explicit) {
@@ -425,4 +428,45 @@ public class PHPCompletionProposalCollector extends
 	public void addFlag(int flag) {
 		flags |= flag;
 	}
+
+	/**
+	 * Sets the listener that is notified, in a worker thread, once the
+	 * proposals that weren't found within the time budget are available
+	 */
+	public synchronized void setLateProposalsListener(Runnable listener) {
+		lateProposalsListener = listener;
+	}
+
+	public void acceptLate(CompletionProposal[] proposals) {
+		Runnable listener;
+		synchronized (this) {
+			lateProposals = proposals;
+			listener = lateProposalsListener;
+		}
+		if (listener != null) {
+			listener.run();
+		}
+	}
+
+	/**
+	 * Accepts the proposals that weren't found within the time budget, if
+	 * they are available. The result is then complete.
+	 * 
+	 * @return whether the late proposals were available
+	 */
+	public boolean acceptLateProposals() {
+		CompletionProposal[] proposals;
+		synchronized (this) {
+			proposals = lateProposals;
+			lateProposals = null;
+		}
+		if (proposals == null) {
+			return false;
+		}
+		for (CompletionProposal proposal : proposals) {
+			accept(proposal);
+		}
+		flags &= ~CompletionFlag.INCOMPLETE;
+		return true;
+	}
 }
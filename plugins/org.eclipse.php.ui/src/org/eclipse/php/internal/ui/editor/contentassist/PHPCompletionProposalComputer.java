@@ -11,6 +11,10 @@
  *******************************************************************************/
 package org.eclipse.php.internal.ui.editor.contentassist;
 
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.ui.DLTKUIPlugin;
@@ -21,8 +25,14 @@ import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.ITextOperationTarget;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.text.source.ISourceViewer;
 import org.eclipse.jface.text.templates.TemplateCompletionProcessor;
+import org.eclipse.php.internal.core.codeassist.CompletionFlag;
 import org.eclipse.php.internal.ui.editor.templates.PhpTemplateCompletionProcessor;
+import org.eclipse.swt.custom.StyledText;
 import org.eclipse.swt.widgets.Shell;
 
 public class PHPCompletionProposalComputer extends
@@ -30,6 +40,14 @@ public class PHPCompletionProposalComputer extends
 
 	private PHPCompletionProposalCollector phpCompletionProposalCollector;
 	private PhpTemplateCompletionProcessor phpTemplateCompletionProcessor;
+	private boolean sessionActive;
+
+	/**
+	 * Collector whose late proposals are shown the next time proposals are
+	 * computed at the same offset
+	 */
+	private PHPCompletionProposalCollector lateCollector;
+	private int lateOffset;
 
 	@Override
 	protected TemplateCompletionProcessor createTemplateProposalComputer(
@@ -55,9 +73,67 @@ public class PHPCompletionProposalComputer extends
 					.isExplicit();
 		}
 
-		phpCompletionProposalCollector = new PHPCompletionProposalCollector(
+		final PHPCompletionProposalCollector collector = new PHPCompletionProposalCollector(
 				context.getDocument(), context.getSourceModule(), explicit);
-		return phpCompletionProposalCollector;
+		final ITextViewer viewer = context.getViewer();
+		final int offset = context.getInvocationOffset();
+		final long stamp = getModificationStamp(context.getDocument());
+		collector.setLateProposalsListener(new Runnable() {
+			public void run() {
+				StyledText widget = viewer.getTextWidget();
+				if (widget == null || widget.isDisposed()) {
+					return;
+				}
+				widget.getDisplay().asyncExec(new Runnable() {
+					public void run() {
+						showLateProposals(collector, viewer, offset, stamp);
+					}
+				});
+			}
+		});
+		phpCompletionProposalCollector = collector;
+		return collector;
+	}
+
+	/**
+	 * Computes the proposals of the popup again, so that it shows the
+	 * proposals that weren't found within the time budget of code assist,
+	 * unless the popup was closed or the document changed meanwhile
+	 */
+	private void showLateProposals(PHPCompletionProposalCollector collector,
+			ITextViewer viewer, int offset, long stamp) {
+		if (!sessionActive || collector != phpCompletionProposalCollector
+				|| stamp != getModificationStamp(viewer.getDocument())
+				|| !(viewer instanceof ITextOperationTarget)) {
+			return;
+		}
+		ITextOperationTarget target = (ITextOperationTarget) viewer;
+		if (target.canDoOperation(ISourceViewer.CONTENTASSIST_PROPOSALS)) {
+			lateCollector = collector;
+			lateOffset = offset;
+			target.doOperation(ISourceViewer.CONTENTASSIST_PROPOSALS);
+			lateCollector = null;
+		}
+	}
+
+	private static long getModificationStamp(IDocument document) {
+		if (document instanceof IDocumentExtension4) {
+			return ((IDocumentExtension4) document).getModificationStamp();
+		}
+		return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+
+	@Override
+	protected List computeScriptCompletionProposals(int offset,
+			ScriptContentAssistInvocationContext context,
+			IProgressMonitor monitor) {
+		// the proposals found so far, and those found after the time budget
+		if (lateCollector != null && offset == lateOffset
+				&& lateCollector.acceptLateProposals()) {
+			return Arrays.asList(lateCollector.getScriptCompletionProposals());
+		}
+		return super.computeScriptCompletionProposals(offset, context,
+				monitor);
 	}
 
 	@Override
@@ -117,8 +193,25 @@ public class PHPCompletionProposalComputer extends
 							e.getStatus());
 	}
 
+	@Override
+	public String getErrorMessage() {
+		if (phpCompletionProposalCollector != null
+				&& phpCompletionProposalCollector
+						.filter(CompletionFlag.INCOMPLETE)) {
+			return Messages.PHPCompletionProposalComputer_0;
+		}
+		return super.getErrorMessage();
+	}
+
+	@Override
+	public void sessionStarted() {
+		super.sessionStarted();
+		sessionActive = true;
+	}
+
 	@Override
 	public void sessionEnded() {
+		sessionActive = false;
 		super.sessionEnded();
 		if (phpTemplateCompletionProcessor != null) {
 			phpTemplateCompletionProcessor.reset();
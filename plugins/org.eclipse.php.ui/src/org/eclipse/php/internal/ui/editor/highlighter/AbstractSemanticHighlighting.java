@@ -95,9 +95,34 @@ public abstract class AbstractSemanticHighlighting implements
 		return new Position[0];
 	}
 
+	/**
+	 * Prepares this highlighting for a traversal of the AST of the given
+	 * source module that was not started by {@link #consumes(Program)}
+	 */
+	void beginConsumes(ISourceModule sourceModule) {
+		this.sourceModule = sourceModule;
+		list = new ArrayList<Position>();
+	}
+
+	/**
+	 * Returns the positions that were highlighted since
+	 * {@link #beginConsumes(ISourceModule)}
+	 */
+	Position[] endConsumes() {
+		return list.toArray(new Position[list.size()]);
+	}
+
 	public Position[] consumes(IStructuredDocumentRegion region) {
 		if (region.getStart() == 0) {
 			Program program = getProgram(region);
+			if (program != null) {
+				// all highlightings of the editor share a single traversal
+				Position[] positions = SemanticHighlightingEngine.getDefault()
+						.getPositions(this, program);
+				if (positions != null) {
+					return positions;
+				}
+			}
 			return consumes(program);
 		}
 		return new Position[0];
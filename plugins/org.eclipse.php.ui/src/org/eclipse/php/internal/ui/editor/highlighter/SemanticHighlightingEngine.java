@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.internal.ui.editor.highlighter;
+
+import java.util.*;
+
+import org.eclipse.jface.text.Position;
+import org.eclipse.php.internal.core.ast.nodes.Program;
+import org.eclipse.php.internal.core.ast.visitor.CompositeVisitor;
+import org.eclipse.php.internal.core.ast.visitor.Visitor;
+import org.eclipse.php.internal.ui.Logger;
+import org.eclipse.php.internal.ui.editor.SemanticHighlightingManager;
+
+/**
+ * Computes the positions of all enabled semantic highlightings of a program
+ * in a single traversal of its AST, within a single binding session.
+ * <p>
+ * The editor asks each highlighting for its positions separately. The first
+ * request for a program computes the positions of all highlightings, and the
+ * following requests are answered from the result, until the AST is modified
+ * or replaced by the reconciler. The positions are computed for the whole
+ * program at once, the visible range isn't computed first.
+ * </p>
+ */
+public class SemanticHighlightingEngine {
+
+	private static SemanticHighlightingEngine instance;
+
+	/**
+	 * Positions of the highlightings of the programs that were traversed last
+	 */
+	private final Map<Program, Result> results = new WeakHashMap<Program, Result>();
+
+	/**
+	 * Positions of all highlightings of a program
+	 */
+	private static class Result {
+		final long modificationCount;
+		final Map<String, Position[]> positions;
+
+		Result(long modificationCount, Map<String, Position[]> positions) {
+			this.modificationCount = modificationCount;
+			this.positions = positions;
+		}
+	}
+
+	private SemanticHighlightingEngine() {
+	}
+
+	public synchronized static SemanticHighlightingEngine getDefault() {
+		if (instance == null) {
+			instance = new SemanticHighlightingEngine();
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the positions of the given highlighting in the program
+	 * 
+	 * @param highlighting
+	 *            Semantic highlighting
+	 * @param program
+	 *            Program
+	 * @return positions of the highlighting, or <code>null</code> if the
+	 *         highlighting is disabled or must traverse the program on its
+	 *         own
+	 */
+	public synchronized Position[] getPositions(
+			AbstractSemanticHighlighting highlighting, Program program) {
+		final long modificationCount = program.getAST().modificationCount();
+		Result result = results.get(program);
+		if (result == null || result.modificationCount != modificationCount) {
+			final Map<String, Position[]> positions = computePositions(program);
+			if (positions == null) {
+				results.remove(program);
+				return null;
+			}
+			result = new Result(modificationCount, positions);
+			results.put(program, result);
+		}
+		return result.positions.get(highlighting.getPreferenceKey());
+	}
+
+	/**
+	 * Traverses the program once for all enabled highlightings
+	 * 
+	 * @return positions by the preference key of the highlightings, or
+	 *         <code>null</code> if the traversal failed
+	 */
+	private Map<String, Position[]> computePositions(Program program) {
+		final List<AbstractSemanticHighlighting> highlightings = new ArrayList<AbstractSemanticHighlighting>();
+		for (AbstractSemanticHighlighting highlighting : SemanticHighlightingManager
+				.getInstance().getSemanticHighlightings().values()) {
+			if (highlighting.getPreferenceStore().getBoolean(
+					highlighting.getEnabledPreferenceKey())) {
+				highlightings.add(highlighting);
+			}
+		}
+
+		program.getAST().getBindingResolver().startBindingSession();
+		try {
+			final Visitor[] visitors = new Visitor[highlightings.size()];
+			for (int i = 0; i < visitors.length; i++) {
+				AbstractSemanticHighlighting highlighting = highlightings
+						.get(i);
+				highlighting.beginConsumes(program.getSourceModule());
+				visitors[i] = highlighting.getSemanticApply();
+			}
+			program.accept(new CompositeVisitor(visitors));
+
+			final Map<String, Position[]> positions = new HashMap<String, Position[]>();
+			for (AbstractSemanticHighlighting highlighting : highlightings) {
+				positions.put(highlighting.getPreferenceKey(),
+						highlighting.endConsumes());
+			}
+			return positions;
+		} catch (RuntimeException e) {
+			// fall back to a traversal per highlighting
+			Logger.logException(e);
+			return null;
+		} finally {
+			program.getAST().getBindingResolver().stopBindingSession();
+		}
+	}
+}
@@ -11,7 +11,11 @@
  *******************************************************************************/
 package org.eclipse.php.internal.ui.editor.validation;
 
+import java.io.CharArrayReader;
+import java.util.Arrays;
+
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.*;
 import org.eclipse.dltk.core.IModelElement;
@@ -25,6 +29,7 @@ import org.eclipse.jface.text.source.IAnnotationModel;
 import org.eclipse.php.internal.core.PHPCorePlugin;
 import org.eclipse.php.internal.core.PHPVersion;
 import org.eclipse.php.internal.core.ast.nodes.ASTParser;
+import org.eclipse.php.internal.core.ast.nodes.IncrementalASTParser;
 import org.eclipse.php.internal.core.ast.nodes.Program;
 import org.eclipse.php.internal.core.ast.util.Util;
 import org.eclipse.php.internal.core.project.ProjectOptions;
@@ -64,8 +69,21 @@ public class PhpReconcilingStrategy implements IValidator, ISourceValidator {
 	private IPhpScriptReconcilingListener fJavaReconcilingListener;
 	private boolean fIsScriptReconcilingListener;
 	private boolean fNotify = true;
+	private boolean fInitialReconcile = true;
 	private IDocument document;
 
+	/*
+	 * DOM AST of the last reconcile, and the source snapshot and settings it
+	 * was parsed from. The compiler AST and the DOM AST are built by two
+	 * separate parsers, the DOM AST is only parsed when the source changed,
+	 * and only for the active editor. Other editors get it from the AST
+	 * provider when it's asked for.
+	 */
+	private Program fLastAST;
+	private char[] fLastSource;
+	private PHPVersion fLastPHPVersion;
+	private boolean fLastUseShortTags;
+
 	public void connect(IDocument document) {
 		this.document = document;
 	}
@@ -148,8 +166,12 @@ public class PhpReconcilingStrategy implements IValidator, ISourceValidator {
 			final ASTProvider astProvider = PHPUiPlugin.getDefault()
 					.getASTProvider();
 
+			// the DOM AST is parsed from the same snapshot the model is
+			// reconciled with
+			char[] source;
 			synchronized (unit) {
 				unit.reconcile(true, null, fProgressMonitor);
+				source = unit.getSourceAsCharArray();
 			}
 
 			// read DOM AST from provider if avaiable
@@ -160,15 +182,49 @@ public class PhpReconcilingStrategy implements IValidator, ISourceValidator {
 			}
 
 			if (initialReconcile || astProvider.isActive(unit)) {
-				PHPVersion phpVersion = ProjectOptions.getPhpVersion(unit
-						.getScriptProject().getProject());
-				ASTParser newParser = ASTParser.newParser(phpVersion, unit);
-				createdAST = newParser.createAST(null);
+				IProject project = unit.getScriptProject().getProject();
+				PHPVersion phpVersion = ProjectOptions.getPhpVersion(project);
+				boolean useShortTags = ProjectOptions.useShortTags(project);
+				Program lastAST = null;
+				char[] lastSource = null;
+				synchronized (this) {
+					if (phpVersion == fLastPHPVersion
+							&& useShortTags == fLastUseShortTags) {
+						lastAST = fLastAST;
+						lastSource = fLastSource;
+					}
+				}
+				// nothing changed since the last reconcile (e.g. save or
+				// editor activation), the compiler AST was rebuilt by the
+				// model, but the DOM AST isn't parsed a second time
+				if (lastAST != null && Arrays.equals(source, lastSource)) {
+					return lastAST;
+				}
+				// after a local change, only the enclosing block, function or
+				// class is parsed again. The last AST was published to other
+				// threads, so a changed copy of it is created.
+				createdAST = null;
+				if (lastAST != null) {
+					createdAST = IncrementalASTParser.reparse(lastAST,
+							lastSource, source, useShortTags);
+				}
+				if (createdAST == null) {
+					ASTParser newParser = ASTParser.newParser(
+							new CharArrayReader(source), phpVersion, false,
+							unit);
+					createdAST = newParser.createAST(null);
+				}
 				if (createdAST != null && document != null) {
 					createdAST.setSourceModule(unit);
 					createdAST.setSourceRange(0, document.getLength());
 					createdAST.setLineEndTable(Util.lineEndTable(document));
 				}
+				synchronized (this) {
+					fLastAST = createdAST;
+					fLastSource = createdAST != null ? source : null;
+					fLastPHPVersion = phpVersion;
+					fLastUseShortTags = useShortTags;
+				}
 				return createdAST;
 			}
 
@@ -218,7 +274,8 @@ public class PhpReconcilingStrategy implements IValidator, ISourceValidator {
 			try {
 				SafeRunner.run(new ISafeRunnable() {
 					public void run() throws ModelException {
-						ast[0] = reconcile((ISourceModule) modelElement, true);
+						ast[0] = reconcile((ISourceModule) modelElement,
+								fInitialReconcile);
 					}
 
 					public void handleException(Throwable ex) {
@@ -242,6 +299,7 @@ public class PhpReconcilingStrategy implements IValidator, ISourceValidator {
 					}
 				} finally {
 					fNotify = true;
+					fInitialReconcile = false;
 				}
 			}
 		}
@@ -297,5 +355,9 @@ public class PhpReconcilingStrategy implements IValidator, ISourceValidator {
 
 	public void disconnect(IDocument document) {
 		this.document = null;
+		synchronized (this) {
+			fLastAST = null;
+			fLastSource = null;
+		}
 	}
 }
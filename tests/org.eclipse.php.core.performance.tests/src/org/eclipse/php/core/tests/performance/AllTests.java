@@ -3,6 +3,7 @@ package org.eclipse.php.core.tests.performance;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.eclipse.php.core.tests.performance.document.PhpTokenContainerPerformanceTests;
 import org.eclipse.php.core.tests.performance.zf.ZFPerformanceTests;
 
 public class AllTests {
@@ -11,6 +12,7 @@ public class AllTests {
 		TestSuite suite = new TestSuite("Core Performance Tests");
 
 		// $JUnit-BEGIN$
+		suite.addTest(PhpTokenContainerPerformanceTests.suite());
 		suite.addTest(ZFPerformanceTests.suite());
 		// $JUnit-END$
 
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.core.tests.performance.document;
+
+import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.php.core.tests.performance.PHPCorePerformanceTests;
+import org.eclipse.php.core.tests.performance.PerformanceMonitor;
+import org.eclipse.php.core.tests.performance.PerformanceMonitor.Operation;
+import org.eclipse.php.internal.core.documentModel.parser.Scanner;
+import org.eclipse.php.internal.core.documentModel.parser.Scanner.LexerState;
+import org.eclipse.php.internal.core.documentModel.parser.regions.PHPRegionTypes;
+import org.eclipse.php.internal.core.documentModel.parser.regions.PhpTokenContainer;
+import org.eclipse.wst.sse.core.internal.parser.ContextRegion;
+import org.eclipse.wst.sse.core.internal.provisional.text.ITextRegion;
+
+/**
+ * Measures random access token lookups on a large PHP script, comparing the
+ * indexed {@link PhpTokenContainer} with the linked list walking it replaced.
+ */
+public class PhpTokenContainerPerformanceTests extends TestCase {
+
+	// ~10k lines of ~20 tokens each
+	private static final int TOKENS_COUNT = 200000;
+	private static final int LOOKUPS_COUNT = 10000;
+
+	private PerformanceMonitor perfMonitor;
+	private PhpTokenContainer container;
+	private LinkedListTokenContainer linkedListContainer;
+	private int[] offsets;
+
+	public PhpTokenContainerPerformanceTests(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return new TestSuite(PhpTokenContainerPerformanceTests.class);
+	}
+
+	protected void setUp() throws Exception {
+		perfMonitor = PHPCorePerformanceTests.getPerformanceMonitor();
+
+		container = new PhpTokenContainer();
+		linkedListContainer = new LinkedListTokenContainer();
+
+		final LexerState[] states = new LexerState[] { new TestLexerState(1),
+				new TestLexerState(2) };
+		final Random random = new Random(0);
+		container.getModelForCreation();
+		int offset = 0;
+		for (int i = 0; i < TOKENS_COUNT; i++) {
+			int length = 1 + random.nextInt(8);
+			LexerState state = states[(i / 50) % states.length];
+			container.addLast(PHPRegionTypes.PHP_LABEL, offset, length,
+					length, state);
+			linkedListContainer.addLast(new ContextRegion(
+					PHPRegionTypes.PHP_LABEL, offset, length, length));
+			offset += length;
+		}
+		container.releaseModelFromCreation();
+		linkedListContainer.releaseModelFromCreation();
+
+		offsets = new int[LOOKUPS_COUNT];
+		for (int i = 0; i < LOOKUPS_COUNT; i++) {
+			offsets[i] = random.nextInt(offset);
+		}
+	}
+
+	public void testIndexedGetToken() throws Exception {
+		perfMonitor.execute("PhpTokenContainerPerformanceTests.testGetToken",
+				new Operation() {
+					public void run() throws Exception {
+						for (int i = 0; i < offsets.length; i++) {
+							ITextRegion token = container.getToken(offsets[i]);
+							assertTrue(token.getStart() <= offsets[i]
+									&& offsets[i] < token.getEnd());
+						}
+					}
+				}, 3, 10);
+	}
+
+	public void testIndexedGetTokens() throws Exception {
+		perfMonitor.execute("PhpTokenContainerPerformanceTests.testGetTokens",
+				new Operation() {
+					public void run() throws Exception {
+						for (int i = 0; i < offsets.length; i++) {
+							assertTrue(container.getTokens(offsets[i], 20).length > 0);
+						}
+					}
+				}, 3, 10);
+	}
+
+	public void testLinkedListGetToken() throws Exception {
+		perfMonitor.execute(
+				"PhpTokenContainerPerformanceTests.testLinkedListGetToken",
+				new Operation() {
+					public void run() throws Exception {
+						for (int i = 0; i < offsets.length; i++) {
+							ITextRegion token = linkedListContainer
+									.getToken(offsets[i]);
+							assertTrue(token.getStart() <= offsets[i]
+									&& offsets[i] < token.getEnd());
+						}
+					}
+				}, 3, 10);
+	}
+
+	private static class TestLexerState implements Scanner.LexerState {
+
+		private final int topState;
+
+		public TestLexerState(int topState) {
+			this.topState = topState;
+		}
+
+		public boolean isSubstateOf(int state) {
+			return topState == state;
+		}
+
+		public void restoreState(Scanner scanner) {
+		}
+
+		public int getTopState() {
+			return topState;
+		}
+
+		public boolean equalsTop(LexerState obj) {
+			return obj != null && obj.getTopState() == topState;
+		}
+
+		public boolean equalsCurrentStack(LexerState obj) {
+			return equalsTop(obj);
+		}
+
+		public boolean equals(Object obj) {
+			return obj instanceof LexerState && equalsTop((LexerState) obj);
+		}
+
+		public int hashCode() {
+			return topState;
+		}
+	}
+
+	/**
+	 * The linked list walking lookup that was used by {@link PhpTokenContainer}
+	 * before it was indexed, kept as the baseline for this benchmark.
+	 */
+	private static class LinkedListTokenContainer {
+
+		private final LinkedList<ContextRegion> phpTokens = new LinkedList<ContextRegion>();
+		private ListIterator<ContextRegion> tokensIterator;
+
+		public void addLast(ContextRegion region) {
+			phpTokens.addLast(region);
+		}
+
+		public void releaseModelFromCreation() {
+			tokensIterator = phpTokens.listIterator();
+		}
+
+		public ITextRegion getToken(int offset) {
+			ITextRegion result = tokensIterator.hasNext() ? tokensIterator
+					.next() : tokensIterator.previous();
+			if (isInside(result, offset)) {
+				return result;
+			}
+			if (offset >= result.getEnd()) {
+				while (tokensIterator.hasNext() && !isInside(result, offset)) {
+					result = tokensIterator.next();
+				}
+			} else {
+				while (tokensIterator.hasPrevious()
+						&& !isInside(result, offset)) {
+					result = tokensIterator.previous();
+				}
+				if (tokensIterator.hasNext()) {
+					tokensIterator.next();
+				}
+			}
+			return result;
+		}
+
+		private boolean isInside(ITextRegion region, int offset) {
+			return region.getStart() <= offset && offset < region.getEnd();
+		}
+	}
+}
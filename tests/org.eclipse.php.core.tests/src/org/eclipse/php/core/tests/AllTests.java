@@ -13,6 +13,7 @@
 package org.eclipse.php.core.tests;
 
 import org.eclipse.php.core.tests.codeassist.CodeAssistTests;
+import org.eclipse.php.core.tests.codeassist.ParallelCodeAssistTests;
 import org.eclipse.php.core.tests.compiler_ast.parser.CompilerParserTests;
 import org.eclipse.php.core.tests.compiler_ast.parser.FindUseStatementByAliasTests;
 import org.eclipse.php.core.tests.compiler_ast.parser.FindUseStatementByNamespaceTests;
@@ -21,14 +22,19 @@ import org.eclipse.php.core.tests.compiler_ast.parser.TraitUseStatementVisitorTe
 import org.eclipse.php.core.tests.compiler_ast.parser.TypeDeclarationVisitorTests;
 import org.eclipse.php.core.tests.compiler_ast.phpdoc.PHPDocAwareDeclarationTests;
 import org.eclipse.php.core.tests.compiler_ast.phpdoc.PHPDocParserTests;
+import org.eclipse.php.core.tests.debugger.DebugMessageChannelTests;
+import org.eclipse.php.core.tests.debugger.ExpressionsValueDeserializerTests;
 import org.eclipse.php.core.tests.document.lexer.DocumentLexerTests;
 import org.eclipse.php.core.tests.document.partitioner.PHPPartitionerTests;
+import org.eclipse.php.core.tests.document.tokens.PhpTokenContainerTests;
 import org.eclipse.php.core.tests.dom_ast.CommentMapperTests;
 import org.eclipse.php.core.tests.dom_ast.StaticScalarExpressionsTests;
 import org.eclipse.php.core.tests.dom_ast.binding.BindingTests;
 import org.eclipse.php.core.tests.dom_ast.matcher.ASTMatcherTests;
 import org.eclipse.php.core.tests.dom_ast.parser.DomParserTests;
+import org.eclipse.php.core.tests.dom_ast.parser.IncrementalASTParserTests;
 import org.eclipse.php.core.tests.dom_ast.rewrite.ASTRewriteTests;
+import org.eclipse.php.core.tests.dom_ast.visitor.CompositeVisitorTests;
 import org.eclipse.php.core.tests.errors.ErrorReportingTests;
 import org.eclipse.php.core.tests.filenetwork.FileNetworkTests;
 import org.eclipse.php.core.tests.includepath.IncludePathManagerTests;
@@ -37,22 +43,29 @@ import org.eclipse.php.core.tests.model_structure.ModelStructureTests;
 import org.eclipse.php.core.tests.phar.PharFileTest;
 import org.eclipse.php.core.tests.selection.SelectionEngineTests;
 import org.eclipse.php.core.tests.text.PHPTextSequenceUtilitiesTests;
+import org.eclipse.php.core.tests.typeinference.GoalCostPrunerTests;
 import org.eclipse.php.core.tests.typeinference.TypeInferenceTests;
+import org.eclipse.php.core.tests.validation.TaskScannerTests;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
 		// Model tests:
-		DomParserTests.class, CompilerParserTests.class,
+		DomParserTests.class, IncrementalASTParserTests.class,
+		CompilerParserTests.class,
 		FindUseStatementByAliasTests.class,
 		FindUseStatementByNamespaceTests.class, GetUseStatementsByTests.class,
 		TraitUseStatementVisitorTests.class, TypeDeclarationVisitorTests.class,
-		ErrorReportingTests.class, ASTRewriteTests.Suite.class,
-		ASTMatcherTests.class, CommentMapperTests.class,
+		ErrorReportingTests.class, TaskScannerTests.class,
+		ASTRewriteTests.Suite.class,
+		ASTMatcherTests.class, CompositeVisitorTests.class,
+		CommentMapperTests.class,
 		StaticScalarExpressionsTests.class, CodeAssistTests.class,
+		ParallelCodeAssistTests.class,
 		SelectionEngineTests.class, ModelStructureTests.class,
-		TypeInferenceTests.class, FileNetworkTests.class,
+		TypeInferenceTests.class, GoalCostPrunerTests.class,
+		FileNetworkTests.class,
 		PHPDocParserTests.class,
 		PHPDocAwareDeclarationTests.class,
 		IncludePathManagerTests.class,
@@ -60,8 +73,12 @@ import org.junit.runners.Suite;
 		// Document tests:
 		DocumentLexerTests.class,
 		PHPPartitionerTests.class,
+		PhpTokenContainerTests.class,
 		// Phar files
 		PharFileTest.class,
+		// Debugger values
+		ExpressionsValueDeserializerTests.class,
+		DebugMessageChannelTests.class,
 		// Concilator tests:
 		org.eclipse.php.internal.core.ast.locator.AllTests.class,
 		MarkOccurrenceTests.class,
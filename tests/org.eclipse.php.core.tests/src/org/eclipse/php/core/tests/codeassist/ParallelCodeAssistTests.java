@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.core.tests.codeassist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.dltk.core.CompletionProposal;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.php.core.tests.PHPCoreTests;
+import org.eclipse.php.internal.core.PHPCoreConstants;
+import org.eclipse.php.internal.core.PHPCorePlugin;
+import org.eclipse.php.internal.core.PHPVersion;
+import org.eclipse.php.internal.core.project.PHPNature;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that global elements completed on worker threads within the time
+ * budget give the same proposals as completing them in the calling thread.
+ */
+public class ParallelCodeAssistTests {
+
+	private static final String SOURCE = "<?php\n" //$NON-NLS-1$
+			+ "class FooClass {}\n" //$NON-NLS-1$
+			+ "interface FooInterface {}\n" //$NON-NLS-1$
+			+ "function fooFunction() {}\n" //$NON-NLS-1$
+			+ "define('FOO_CONSTANT', 1);\n" //$NON-NLS-1$
+			+ "$fooVariable = 1;\n"; //$NON-NLS-1$
+
+	private static IProject project;
+	private static IFile file;
+
+	@BeforeClass
+	public static void setUpSuite() throws Exception {
+		project = ResourcesPlugin.getWorkspace().getRoot()
+				.getProject("ParallelCodeAssistTests"); //$NON-NLS-1$
+		if (project.exists()) {
+			project.delete(true, true, null);
+		}
+		project.create(null);
+		project.open(null);
+
+		IProjectDescription desc = project.getDescription();
+		desc.setNatureIds(new String[] { PHPNature.ID });
+		project.setDescription(desc, null);
+		PHPCoreTests.setProjectPhpVersion(project, PHPVersion.PHP5_3);
+
+		IFile declarations = project.getFile("declarations.php"); //$NON-NLS-1$
+		declarations.create(new ByteArrayInputStream(SOURCE.getBytes()),
+				true, null);
+		project.build(IncrementalProjectBuilder.FULL_BUILD, null);
+		PHPCoreTests.waitForIndexer();
+	}
+
+	@AfterClass
+	public static void tearDownSuite() throws Exception {
+		project.delete(true, true, null);
+		project = null;
+	}
+
+	@After
+	public void after() throws Exception {
+		getPreferences().remove(PHPCoreConstants.CODEASSIST_TIME_BUDGET);
+		if (file != null) {
+			file.delete(true, null);
+			file = null;
+		}
+	}
+
+	@Test
+	public void globalStatement() throws Exception {
+		assertSameProposals("<?php\nf"); //$NON-NLS-1$
+	}
+
+	@Test
+	public void emptyPrefix() throws Exception {
+		assertSameProposals("<?php\n"); //$NON-NLS-1$
+	}
+
+	@Test
+	public void classInstantiation() throws Exception {
+		assertSameProposals("<?php\n$a = new F"); //$NON-NLS-1$
+	}
+
+	@Test
+	public void functionBody() throws Exception {
+		assertSameProposals("<?php\nfunction bar() {\n\tf"); //$NON-NLS-1$
+	}
+
+	@Test
+	public void keywordsAreReportedOnce() throws Exception {
+		List<String> proposals = complete("<?php\nfu", 1000); //$NON-NLS-1$
+		assertTrue(proposals.contains(describe(CompletionProposal.KEYWORD,
+				"function"))); //$NON-NLS-1$
+		assertEquals(proposals.size(), new HashSet<String>(proposals).size());
+	}
+
+	@Test
+	public void expiredBudget() throws Exception {
+		List<String> expected = complete("<?php\nf", 0); //$NON-NLS-1$
+
+		// strategies that don't finish within the budget report nothing, but
+		// the strategies of the calling thread still do
+		List<String> proposals = complete("<?php\nf", 1); //$NON-NLS-1$
+		assertTrue(expected.containsAll(proposals));
+		assertTrue(proposals.contains(describe(CompletionProposal.KEYWORD,
+				"function"))); //$NON-NLS-1$
+
+		// abandoned strategies don't affect the next completion
+		assertEquals(expected, complete("<?php\nf", 1000)); //$NON-NLS-1$
+	}
+
+	private static void assertSameProposals(String source) throws Exception {
+		List<String> expected = complete(source, 0);
+		assertTrue(expected.size() > 0);
+		assertEquals(expected, complete(source, 1000));
+	}
+
+	/**
+	 * Completes at the end of the source with the given time budget, or in
+	 * the calling thread only if the budget is 0
+	 * 
+	 * @return sorted descriptions of the proposals
+	 */
+	private static List<String> complete(String source, int budget)
+			throws Exception {
+		getPreferences().putInt(PHPCoreConstants.CODEASSIST_TIME_BUDGET,
+				budget);
+		if (file == null) {
+			file = project.getFile("test.php"); //$NON-NLS-1$
+			file.create(new ByteArrayInputStream(source.getBytes()), true,
+					null);
+		} else {
+			file.setContents(new ByteArrayInputStream(source.getBytes()),
+					true, false, null);
+		}
+		PHPCoreTests.waitForIndexer();
+
+		ISourceModule sourceModule = DLTKCore.createSourceModuleFrom(file);
+		List<String> result = new ArrayList<String>();
+		for (CompletionProposal proposal : CodeAssistTests.getProposals(
+				sourceModule, source.length())) {
+			result.add(describe(proposal.getKind(),
+					new String(proposal.getName())));
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	private static String describe(int kind, String name) {
+		return kind + ":" + name; //$NON-NLS-1$
+	}
+
+	private static IEclipsePreferences getPreferences() {
+		return InstanceScope.INSTANCE.getNode(PHPCorePlugin.ID);
+	}
+}
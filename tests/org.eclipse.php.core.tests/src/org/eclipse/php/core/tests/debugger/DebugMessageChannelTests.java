@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.core.tests.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.php.debug.core.debugger.messages.IDebugMessage;
+import org.eclipse.php.internal.debug.core.zend.communication.DebugMessageChannel;
+import org.junit.Test;
+
+/**
+ * Tests the framing of the messages read by {@link DebugMessageChannel}, and
+ * the bound of its queue of outgoing messages.
+ */
+public class DebugMessageChannelTests {
+
+	@Test
+	public void frameSplitOverReads() throws Exception {
+		byte[] frame = frame(7, payload(10));
+		// the length and the body are both split
+		ChunkedChannel in = new ChunkedChannel(Arrays.copyOfRange(frame, 0, 2),
+				Arrays.copyOfRange(frame, 2, 9), Arrays.copyOfRange(frame, 9,
+						frame.length));
+		DebugMessageChannel channel = new DebugMessageChannel(in,
+				new RecordingChannel());
+
+		assertMessage(channel.readMessage(), 7, payload(10));
+		assertEquals(3, in.reads);
+	}
+
+	@Test
+	public void largeFrameSplitOverReads() throws Exception {
+		byte[] body = payload(200 * 1024);
+		byte[] frame = frame(3, body);
+		LinkedList<byte[]> chunks = new LinkedList<byte[]>();
+		for (int i = 0; i < frame.length; i += 5000) {
+			chunks.add(Arrays.copyOfRange(frame, i,
+					Math.min(frame.length, i + 5000)));
+		}
+		DebugMessageChannel channel = new DebugMessageChannel(
+				new ChunkedChannel(chunks.toArray(new byte[chunks.size()][])),
+				new RecordingChannel());
+
+		assertMessage(channel.readMessage(), 3, body);
+	}
+
+	@Test
+	public void severalFramesInOneRead() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(frame(1, payload(3)));
+		bytes.write(frame(2, payload(0)));
+		bytes.write(frame(3, payload(20)));
+		// the last frame is completed by the next read
+		byte[] fourth = frame(4, payload(5));
+		bytes.write(fourth, 0, 3);
+		ChunkedChannel in = new ChunkedChannel(bytes.toByteArray(),
+				Arrays.copyOfRange(fourth, 3, fourth.length));
+		DebugMessageChannel channel = new DebugMessageChannel(in,
+				new RecordingChannel());
+
+		assertMessage(channel.readMessage(), 1, payload(3));
+		assertMessage(channel.readMessage(), 2, payload(0));
+		assertMessage(channel.readMessage(), 3, payload(20));
+		assertEquals(1, in.reads);
+		assertMessage(channel.readMessage(), 4, payload(5));
+		assertEquals(2, in.reads);
+	}
+
+	@Test
+	public void sendersWaitWhileQueueIsFull() throws Exception {
+		final BlockingChannel out = new BlockingChannel();
+		final DebugMessageChannel channel = new DebugMessageChannel(
+				new ChunkedChannel(), out);
+
+		// the first sender takes the write lock and blocks in the socket
+		Thread writer = new Thread() {
+			public void run() {
+				try {
+					channel.write(new TestMessage(0));
+				} catch (IOException e) {
+				}
+			}
+		};
+		writer.start();
+		assertTrue(out.writing.await(10, TimeUnit.SECONDS));
+
+		// the other senders fill the queue, and then wait for a place
+		final AtomicInteger sent = new AtomicInteger();
+		Thread sender = new Thread() {
+			public void run() {
+				try {
+					for (int i = 1; i <= DebugMessageChannel.MAX_QUEUED; i++) {
+						channel.write(new TestMessage(i));
+						sent.incrementAndGet();
+					}
+				} catch (IOException e) {
+				}
+			}
+		};
+		sender.start();
+		long deadline = System.currentTimeMillis() + 10000;
+		while (sent.get() < DebugMessageChannel.MAX_QUEUED - 1
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		sender.join(200);
+		assertEquals(DebugMessageChannel.MAX_QUEUED - 1, sent.get());
+		assertTrue(sender.isAlive());
+
+		// once the socket takes the data, all messages are written in order
+		out.release.countDown();
+		writer.join(10000);
+		sender.join(10000);
+		assertFalse(sender.isAlive());
+		assertEquals(DebugMessageChannel.MAX_QUEUED, sent.get());
+
+		DebugMessageChannel written = new DebugMessageChannel(
+				new ChunkedChannel(out.getBytes()), new RecordingChannel());
+		for (int i = 0; i <= DebugMessageChannel.MAX_QUEUED; i++) {
+			assertMessage(written.readMessage(), i, payload(i % 50));
+		}
+	}
+
+	private static void assertMessage(DataInputStream in, int type,
+			byte[] payload) throws IOException {
+		assertEquals(type, in.readShort());
+		byte[] read = new byte[payload.length];
+		in.readFully(read);
+		assertTrue(Arrays.equals(payload, read));
+		assertEquals(-1, in.read());
+	}
+
+	private static byte[] payload(int length) {
+		byte[] payload = new byte[length];
+		for (int i = 0; i < length; i++) {
+			payload[i] = (byte) (i * 31 + length);
+		}
+		return payload;
+	}
+
+	private static byte[] frame(int type, byte[] payload) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(2 + payload.length);
+		out.writeShort(type);
+		out.write(payload);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Returns one chunk per read, and the end of the stream after the last one
+	 */
+	private static class ChunkedChannel implements ReadableByteChannel {
+
+		private final LinkedList<ByteBuffer> chunks = new LinkedList<ByteBuffer>();
+		int reads;
+
+		ChunkedChannel(byte[]... chunks) {
+			for (byte[] chunk : chunks) {
+				this.chunks.add(ByteBuffer.wrap(chunk));
+			}
+		}
+
+		public int read(ByteBuffer dst) {
+			if (chunks.isEmpty()) {
+				return -1;
+			}
+			reads++;
+			ByteBuffer chunk = chunks.getFirst();
+			int length = Math.min(chunk.remaining(), dst.remaining());
+			ByteBuffer part = chunk.duplicate();
+			part.limit(part.position() + length);
+			dst.put(part);
+			chunk.position(chunk.position() + length);
+			if (!chunk.hasRemaining()) {
+				chunks.removeFirst();
+			}
+			return length;
+		}
+
+		public boolean isOpen() {
+			return true;
+		}
+
+		public void close() {
+		}
+	}
+
+	private static class RecordingChannel implements WritableByteChannel {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		public synchronized int write(ByteBuffer src) {
+			int length = src.remaining();
+			byte[] data = new byte[length];
+			src.get(data);
+			bytes.write(data, 0, length);
+			return length;
+		}
+
+		synchronized byte[] getBytes() {
+			return bytes.toByteArray();
+		}
+
+		public boolean isOpen() {
+			return true;
+		}
+
+		public void close() {
+		}
+	}
+
+	/**
+	 * Blocks the first write until it is released, like a socket whose send
+	 * buffer is full
+	 */
+	private static class BlockingChannel extends RecordingChannel {
+
+		final CountDownLatch writing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		public int write(ByteBuffer src) {
+			writing.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return super.write(src);
+		}
+	}
+
+	private static class TestMessage implements IDebugMessage {
+
+		private final int type;
+
+		TestMessage(int type) {
+			this.type = type;
+		}
+
+		public int getType() {
+			return type;
+		}
+
+		public void serialize(DataOutputStream out) throws IOException {
+			out.writeShort(type);
+			out.write(payload(type % 50));
+		}
+
+		public void deserialize(DataInputStream in) {
+		}
+
+		public void setTransferEncoding(String encoding) {
+		}
+
+		public String getTransferEncoding() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.core.tests.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.UnsupportedEncodingException;
+
+import org.eclipse.php.internal.debug.core.model.IVariableFacet.Facet;
+import org.eclipse.php.internal.debug.core.zend.debugger.DefaultExpression;
+import org.eclipse.php.internal.debug.core.zend.debugger.Expression;
+import org.eclipse.php.internal.debug.core.zend.debugger.ExpressionValue;
+import org.eclipse.php.internal.debug.core.zend.debugger.ExpressionsValueDeserializer;
+import org.junit.Test;
+
+/**
+ * Tests that the lazy {@link ExpressionsValueDeserializer} gives the same
+ * expressions and values as the eager deserializer it replaced.
+ */
+public class ExpressionsValueDeserializerTests {
+
+	private static final String ENCODING = "UTF-8"; //$NON-NLS-1$
+
+	/** 4 characters in 7 bytes */
+	private static final String MULTIBYTE = "\u017c\u00f3\u0142w"; //$NON-NLS-1$
+
+	@Test
+	public void scalars() throws Exception {
+		assertSameValue("i:42;"); //$NON-NLS-1$
+		assertSameValue("i:-7;"); //$NON-NLS-1$
+		assertSameValue("d:3.5;"); //$NON-NLS-1$
+		assertSameValue("b:0;"); //$NON-NLS-1$
+		assertSameValue("b:1;"); //$NON-NLS-1$
+		assertSameValue("N;"); //$NON-NLS-1$
+		assertSameValue("r:3:6:stream;"); //$NON-NLS-1$
+		assertSameValue("s:" + str("hello")); //$NON-NLS-1$ //$NON-NLS-2$
+		// the length of a string makes its quotes and separators text
+		assertSameValue("s:" + str("a\";b")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertSameValue("s:" + str("")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		ExpressionValue value = deserialize("i:42;"); //$NON-NLS-1$
+		assertEquals(ExpressionValue.INT_TYPE, value.getType());
+		assertEquals("(int) 42", value.getValueAsString()); //$NON-NLS-1$
+	}
+
+	@Test
+	public void nullValue() throws Exception {
+		assertSame(ExpressionValue.NULL_VALUE,
+				new ExpressionsValueDeserializer(ENCODING).deserializer(
+						new DefaultExpression("$a"), null)); //$NON-NLS-1$
+	}
+
+	@Test
+	public void multibyteStrings() throws Exception {
+		assertSameValue("s:" + str(MULTIBYTE)); //$NON-NLS-1$
+		ExpressionValue value = deserialize("s:" + str(MULTIBYTE)); //$NON-NLS-1$
+		assertEquals(MULTIBYTE, value.getValue());
+		assertEquals("(string:4) " + MULTIBYTE, value.getValueAsString()); //$NON-NLS-1$
+
+		// multibyte keys, and members after a multibyte string
+		String array = "a:2:{s:" + str(MULTIBYTE) + "s:" + str(MULTIBYTE) //$NON-NLS-1$ //$NON-NLS-2$
+				+ "i:1;i:5;}"; //$NON-NLS-1$
+		assertSameValue(array);
+		Expression[] members = deserialize(array).getOriChildren();
+		assertEquals(MULTIBYTE, members[0].getLastName());
+		assertEquals("(int) 5", members[1].getValue().getValueAsString()); //$NON-NLS-1$
+	}
+
+	@Test
+	public void nestedArrays() throws Exception {
+		String array = "a:3:{i:0;a:2:{i:0;i:1;i:1;a:1:{s:" + str("deep") //$NON-NLS-1$ //$NON-NLS-2$
+				+ "b:1;}}s:" + str("key") + "s:" + str("value") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				+ "i:2;d:0.5;}"; //$NON-NLS-1$
+		assertSameValue(array);
+
+		// the members after a nested array are read after its end
+		Expression[] members = deserialize(array).getOriChildren();
+		assertEquals(3, members.length);
+		assertEquals("$a[key]", members[1].getFullName()); //$NON-NLS-1$
+		assertEquals("value", members[1].getValue().getValue()); //$NON-NLS-1$
+		assertEquals("(double) 0.5", members[2].getValue().getValueAsString()); //$NON-NLS-1$
+	}
+
+	@Test
+	public void nestedObjects() throws Exception {
+		String object = "O:" + str("Foo") + ":3:{s:" + str("a") + "i:1;s:" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+				+ str("*::b") + "O:" + str("Bar") + ":1:{s:" + str("Bar::c") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+				+ "a:0:{}}s:" + str("d") + "r:1:6:stream;}"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertSameValue(object);
+
+		ExpressionValue value = deserialize(object);
+		assertEquals("Object of: Foo", value.getValueAsString()); //$NON-NLS-1$
+		Expression[] members = value.getOriChildren();
+		assertEquals("$a->*::b", members[1].getFullName()); //$NON-NLS-1$
+		assertEquals("Object of: Bar", members[1].getValue() //$NON-NLS-1$
+				.getValueAsString());
+		assertEquals("resource (1) of type (stream)", members[2].getValue() //$NON-NLS-1$
+				.getValueAsString());
+	}
+
+	@Test
+	public void truncatedMembers() throws Exception {
+		// the debugger sends the number of members without the members
+		assertSameValue("a:3;"); //$NON-NLS-1$
+		assertSameValue("O:" + str("Foo") + ":2;"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertSameValue("a:2:{i:0;a:5;i:1;O:" + str("Foo") + ":1;}"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+		ExpressionValue value = deserialize("a:3;"); //$NON-NLS-1$
+		assertEquals(3, value.getChildrenCount());
+		assertEquals(0, value.getOriChildren().length);
+
+		// members cut in the middle make the value null
+		assertSameValue("a:2:{i:0;i:1;"); //$NON-NLS-1$
+		assertSame(ExpressionValue.NULL_VALUE, deserialize("a:2:{i:0;i:1;")); //$NON-NLS-1$
+	}
+
+	@Test
+	public void invalidKeys() throws Exception {
+		String array = "a:2:{i:0;i:1;x:1;i:2;}"; //$NON-NLS-1$
+		assertSameValue(array);
+		assertSame(ExpressionValue.NULL_VALUE, deserialize(array));
+
+		// a nested value with invalid keys is null, the next members follow
+		array = "a:2:{i:0;a:1:{x;}i:1;i:5;}"; //$NON-NLS-1$
+		assertSameValue(array);
+		Expression[] members = deserialize(array).getOriChildren();
+		assertSame(ExpressionValue.NULL_VALUE, members[0].getValue());
+		assertEquals("(int) 5", members[1].getValue().getValueAsString()); //$NON-NLS-1$
+	}
+
+	@Test
+	public void withoutExpression() throws Exception {
+		String array = "a:2:{s:" + str("x") + "i:1;i:3;s:" + str("y") + "}"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		byte[] bytes = array.getBytes(ENCODING);
+		assertSameValue(new EagerExpressionsValueDeserializer(ENCODING)
+				.deserializer(null, bytes), new ExpressionsValueDeserializer(
+				ENCODING).deserializer(null, bytes));
+	}
+
+	/**
+	 * Serializes a string with its length in bytes
+	 */
+	private static String str(String value)
+			throws UnsupportedEncodingException {
+		return value.getBytes(ENCODING).length + ":\"" + value + "\";"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static ExpressionValue deserialize(String serialized)
+			throws UnsupportedEncodingException {
+		return new ExpressionsValueDeserializer(ENCODING).deserializer(
+				new DefaultExpression("$a"), serialized.getBytes(ENCODING)); //$NON-NLS-1$
+	}
+
+	private static void assertSameValue(String serialized)
+			throws UnsupportedEncodingException {
+		byte[] bytes = serialized.getBytes(ENCODING);
+		ExpressionValue expected = new EagerExpressionsValueDeserializer(
+				ENCODING).deserializer(new DefaultExpression("$a"), bytes); //$NON-NLS-1$
+		ExpressionValue actual = new ExpressionsValueDeserializer(ENCODING)
+				.deserializer(new DefaultExpression("$a"), bytes); //$NON-NLS-1$
+		assertSameValue(expected, actual);
+	}
+
+	private static void assertSameValue(ExpressionValue expected,
+			ExpressionValue actual) {
+		if (expected == ExpressionValue.NULL_VALUE) {
+			assertSame(expected, actual);
+			return;
+		}
+		assertEquals(expected.getType(), actual.getType());
+		assertEquals(expected.getValue(), actual.getValue());
+		assertEquals(expected.getValueAsString(), actual.getValueAsString());
+		assertEquals(expected.getChildrenCount(), actual.getChildrenCount());
+		Expression[] expectedMembers = expected.getOriChildren();
+		Expression[] actualMembers = actual.getOriChildren();
+		if (expectedMembers == null) {
+			assertEquals(0, actualMembers == null ? 0 : actualMembers.length);
+			return;
+		}
+		assertEquals(expectedMembers.length, actualMembers.length);
+		for (int i = 0; i < expectedMembers.length; i++) {
+			assertEquals(expectedMembers[i].getFullName(),
+					actualMembers[i].getFullName());
+			assertEquals(expectedMembers[i].getLastName(),
+					actualMembers[i].getLastName());
+			for (Facet facet : Facet.values()) {
+				assertEquals(expectedMembers[i].hasFacet(facet),
+						actualMembers[i].hasFacet(facet));
+			}
+			assertSameValue(expectedMembers[i].getValue(),
+					actualMembers[i].getValue());
+		}
+	}
+}
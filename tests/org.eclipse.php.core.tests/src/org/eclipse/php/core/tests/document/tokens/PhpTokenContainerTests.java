@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.core.tests.document.tokens;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ListIterator;
+
+import org.eclipse.php.internal.core.documentModel.parser.Scanner;
+import org.eclipse.php.internal.core.documentModel.parser.Scanner.LexerState;
+import org.eclipse.php.internal.core.documentModel.parser.regions.PHPRegionTypes;
+import org.eclipse.php.internal.core.documentModel.parser.regions.PhpTokenContainer;
+import org.eclipse.wst.sse.core.internal.parser.ContextRegion;
+import org.eclipse.wst.sse.core.internal.provisional.text.ITextRegion;
+import org.junit.Test;
+
+/**
+ * Tests the bookkeeping of the tokens and the lexer state changes when a
+ * range of tokens is replaced by re-lexed tokens.
+ */
+public class PhpTokenContainerTests {
+
+	private static final LexerState A = new TestLexerState(1);
+	private static final LexerState B = new TestLexerState(2);
+	private static final LexerState C = new TestLexerState(3);
+
+	@Test
+	public void replaceWithinState() throws Exception {
+		PhpTokenContainer container = createContainer(0, new int[] { 2, 2,
+				2, 2, 2 }, new LexerState[] { A, A, B, B, B });
+		replace(container, 2, 2, createContainer(2, new int[] { 3, 1 },
+				new LexerState[] { A, A }), 2);
+
+		assertStarts(container, new int[] { 0, 2, 5, 6, 8, 10 });
+		assertStates(container, new LexerState[] { A, A, A, A, A, A, B, B, B,
+				B, B, B });
+	}
+
+	@Test
+	public void replaceWithNewStateChange() throws Exception {
+		PhpTokenContainer container = createContainer(0, new int[] { 2, 2,
+				2, 2 }, new LexerState[] { A, A, A, A });
+		replace(container, 2, 4, createContainer(2, new int[] { 1, 1, 3 },
+				new LexerState[] { A, C, C }), 1);
+
+		assertStarts(container, new int[] { 0, 2, 3, 4, 7 });
+		// the token after the replaced range keeps its original state
+		assertStates(container, new LexerState[] { A, A, A, C, C, C, C, A,
+				A });
+	}
+
+	@Test
+	public void replaceFromStateChange() throws Exception {
+		PhpTokenContainer container = createContainer(0,
+				new int[] { 2, 2, 2 }, new LexerState[] { A, B, B });
+		replace(container, 2, 2, createContainer(2, new int[] { 1, 1 },
+				new LexerState[] { B, C }), 0);
+
+		assertStarts(container, new int[] { 0, 2, 3, 4 });
+		assertStates(container, new LexerState[] { A, A, B, C, B, B });
+	}
+
+	@Test
+	public void replaceDropsStateChanges() throws Exception {
+		PhpTokenContainer container = createContainer(0, new int[] { 2, 2,
+				2, 2 }, new LexerState[] { A, B, B, A });
+		replace(container, 0, 4, createContainer(0, new int[] { 3, 3 },
+				new LexerState[] { A, A }), 0);
+
+		assertStarts(container, new int[] { 0, 3, 6 });
+		assertStates(container, new LexerState[] { A, A, A, A, A, A, A, A });
+	}
+
+	@Test
+	public void replaceLastToken() throws Exception {
+		PhpTokenContainer container = createContainer(0,
+				new int[] { 2, 2, 2 }, new LexerState[] { A, B, B });
+		replace(container, 4, 4, createContainer(4, new int[] { 1, 2 },
+				new LexerState[] { B, C }), 1);
+
+		assertStarts(container, new int[] { 0, 2, 4, 5 });
+		assertStates(container, new LexerState[] { A, A, B, B, B, C, C });
+	}
+
+	@Test
+	public void previousTokensKeepTheirOffsets() throws Exception {
+		PhpTokenContainer container = createContainer(0, new int[] { 2, 2,
+				2, 2 }, new LexerState[] { A, A, B, B });
+		ITextRegion[] previous = container.getPhpTokens();
+		ListIterator<ContextRegion> iterator = container
+				.getPhpTokensIterator(4);
+
+		replace(container, 2, 2, createContainer(2, new int[] { 5 },
+				new LexerState[] { A }), 3);
+
+		// the tokens read before the edit still describe the old text
+		int[] previousStarts = new int[] { 0, 2, 4, 6 };
+		for (int i = 0; i < previous.length; i++) {
+			assertEquals(previousStarts[i], previous[i].getStart());
+		}
+		assertSame(previous[2], iterator.next());
+		assertEquals(6, iterator.next().getStart());
+
+		// while the tokens read after the edit describe the new text
+		assertStarts(container, new int[] { 0, 2, 7, 9 });
+		assertNotSame(previous[2], container.getToken(7));
+		assertEquals(previous[2].getType(), container.getToken(7).getType());
+		assertEquals(1, container.indexOf(container.getToken(2)));
+		assertEquals(-1, container.indexOf(previous[3]));
+		assertStates(container, new LexerState[] { A, A, A, A, A, A, A, B, B,
+				B, B });
+	}
+
+	@Test
+	public void previousVersionOffsetsDontChange() throws Exception {
+		PhpTokenContainer container = createContainer(0, new int[] { 2, 2,
+				2, 2, 2 }, new LexerState[] { A, A, B, B, A });
+		ITextRegion[] previous = container.getPhpTokens();
+		ListIterator<ContextRegion> iterator = container
+				.getPhpTokensIterator(0);
+		int[] previousStarts = new int[] { 0, 2, 4, 6, 8 };
+
+		// grow then shrink the text before the held tokens
+		replace(container, 2, 2, createContainer(2, new int[] { 5 },
+				new LexerState[] { A }), 3);
+		replace(container, 0, 0, createContainer(0, new int[] { 1 },
+				new LexerState[] { A }), -1);
+		assertStarts(container, new int[] { 0, 1, 6, 8, 10 });
+
+		// the regions of the held version are never shifted
+		for (int i = 0; i < previous.length; i++) {
+			assertEquals(previousStarts[i], previous[i].getStart());
+		}
+		for (int i = 0; i < previousStarts.length; i++) {
+			ContextRegion region = iterator.next();
+			assertSame(previous[i], region);
+			assertEquals(previousStarts[i], region.getStart());
+		}
+	}
+
+	private static void replace(PhpTokenContainer container, int fromOffset,
+			int toOffset, PhpTokenContainer newContainer, int delta)
+			throws Exception {
+		container.replaceTokens(container.getToken(fromOffset),
+				container.getToken(toOffset), newContainer, delta);
+	}
+
+	private static PhpTokenContainer createContainer(int offset,
+			int[] lengths, LexerState[] states) {
+		PhpTokenContainer container = new PhpTokenContainer();
+		container.getModelForCreation();
+		for (int i = 0; i < lengths.length; i++) {
+			container.addLast(PHPRegionTypes.PHP_LABEL, offset, lengths[i],
+					lengths[i], states[i]);
+			offset += lengths[i];
+		}
+		container.releaseModelFromCreation();
+		return container;
+	}
+
+	private static void assertStarts(PhpTokenContainer container,
+			int[] starts) throws Exception {
+		assertEquals(starts.length, container.getPhpTokens().length);
+		for (int i = 0; i < starts.length; i++) {
+			assertEquals(starts[i], container.getPhpTokens()[i].getStart());
+			assertEquals(starts[i], container.getToken(starts[i]).getStart());
+		}
+	}
+
+	private static void assertStates(PhpTokenContainer container,
+			LexerState[] states) throws Exception {
+		for (int offset = 0; offset < states.length; offset++) {
+			assertSame("state at " + offset, states[offset],
+					container.getState(offset));
+		}
+	}
+
+	private static class TestLexerState implements Scanner.LexerState {
+
+		private final int topState;
+
+		public TestLexerState(int topState) {
+			this.topState = topState;
+		}
+
+		public boolean isSubstateOf(int state) {
+			return topState == state;
+		}
+
+		public void restoreState(Scanner scanner) {
+		}
+
+		public int getTopState() {
+			return topState;
+		}
+
+		public boolean equalsTop(LexerState obj) {
+			return obj != null && obj.getTopState() == topState;
+		}
+
+		public boolean equalsCurrentStack(LexerState obj) {
+			return equalsTop(obj);
+		}
+
+		public boolean equals(Object obj) {
+			return obj instanceof LexerState && equalsTop((LexerState) obj);
+		}
+
+		public int hashCode() {
+			return topState;
+		}
+	}
+}
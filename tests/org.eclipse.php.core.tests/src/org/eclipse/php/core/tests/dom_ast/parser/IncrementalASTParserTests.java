@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.core.tests.dom_ast.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.php.internal.core.PHPVersion;
+import org.eclipse.php.internal.core.ast.nodes.ASTNode;
+import org.eclipse.php.internal.core.ast.nodes.ASTParser;
+import org.eclipse.php.internal.core.ast.nodes.ClassDeclaration;
+import org.eclipse.php.internal.core.ast.nodes.Comment;
+import org.eclipse.php.internal.core.ast.nodes.IncrementalASTParser;
+import org.eclipse.php.internal.core.ast.nodes.Program;
+import org.eclipse.php.internal.core.ast.nodes.Statement;
+import org.eclipse.php.internal.core.ast.visitor.ApplyAll;
+import org.junit.Test;
+
+/**
+ * Tests for {@link IncrementalASTParser}. A program that is reparsed after a
+ * change must be equal to the program parsed from the changed source.
+ */
+public class IncrementalASTParserTests {
+
+	private static final String FUNCTIONS = "<?php\nfunction foo() {\n\t$a = 1;\n}\nfunction bar() {\n\t$b = 2;\n}\n"; //$NON-NLS-1$
+
+	@Test
+	public void changeInFunction() throws Exception {
+		String newSource = FUNCTIONS.replace("$a = 1;", "$a = 100;"); //$NON-NLS-1$ //$NON-NLS-2$
+		Program program = parse(FUNCTIONS);
+		int barStart = program.statements().get(1).getStart();
+
+		Program result = assertReparse(FUNCTIONS, newSource);
+
+		// the function that follows the change is shifted
+		assertEquals(barStart + 2, result.statements().get(1).getStart());
+	}
+
+	@Test
+	public void previousProgramIsUnchanged() throws Exception {
+		String newSource = FUNCTIONS.replace("$a = 1;", "$a = 1; $c = 3;"); //$NON-NLS-1$ //$NON-NLS-2$
+		Program program = parse(FUNCTIONS);
+		String before = program.toString();
+		Statement foo = program.statements().get(0);
+
+		Program result = IncrementalASTParser.reparse(program,
+				FUNCTIONS.toCharArray(), newSource.toCharArray(), false);
+
+		assertNotNull(result);
+		assertNotSame(program, result);
+		assertNotSame(program.getAST(), result.getAST());
+		assertSame(foo, program.statements().get(0));
+		assertEquals(before, program.toString());
+		assertEquals(parse(newSource).toString(), result.toString());
+	}
+
+	@Test
+	public void previousNodesAreNotShared() throws Exception {
+		String newSource = FUNCTIONS.replace("$a = 1;", "$a = 100;"); //$NON-NLS-1$ //$NON-NLS-2$
+		Program program = parse(FUNCTIONS);
+		final Set<ASTNode> nodes = new HashSet<ASTNode>();
+		program.accept(new ApplyAll() {
+			protected boolean apply(ASTNode node) {
+				nodes.add(node);
+				return true;
+			}
+		});
+
+		Program result = IncrementalASTParser.reparse(program,
+				FUNCTIONS.toCharArray(), newSource.toCharArray(), false);
+
+		// the unchanged function is a copy, other threads may still read the
+		// previous program
+		assertNotNull(result);
+		result.accept(new ApplyAll() {
+			protected boolean apply(ASTNode node) {
+				assertFalse(nodes.contains(node));
+				return true;
+			}
+		});
+	}
+
+	@Test
+	public void changeInMethod() throws Exception {
+		String oldSource = "<?php\nclass A {\n\tfunction foo() {\n\t\treturn 1;\n\t}\n\tfunction bar() {\n\t}\n}\n$x = new A();\n"; //$NON-NLS-1$
+		String newSource = oldSource.replace("return 1;", "return;"); //$NON-NLS-1$ //$NON-NLS-2$
+		Program program = parse(oldSource);
+		ClassDeclaration oldClass = (ClassDeclaration) program.statements()
+				.get(0);
+		int xStart = program.statements().get(1).getStart();
+
+		Program result = assertReparse(oldSource, newSource);
+
+		// the class encloses the change
+		ClassDeclaration newClass = (ClassDeclaration) result.statements()
+				.get(0);
+		assertEquals(oldClass.getStart(), newClass.getStart());
+		assertEquals(oldClass.getLength() - 2, newClass.getLength());
+		assertEquals(xStart - 2, result.statements().get(1).getStart());
+	}
+
+	@Test
+	public void commentsOfChangedFunction() throws Exception {
+		String oldSource = "<?php\nfunction foo() {\n\t// one\n\t$a = 1;\n}\n/* two */\nfunction bar() {\n}\n"; //$NON-NLS-1$
+		String newSource = oldSource.replace("// one", "// first\n\t/* second */"); //$NON-NLS-1$ //$NON-NLS-2$
+		Program program = parse(oldSource);
+		int twoStart = program.comments().get(1).getStart();
+		int delta = newSource.length() - oldSource.length();
+
+		Program result = assertReparse(oldSource, newSource);
+
+		assertEquals(3, result.comments().size());
+		Comment first = result.comments().get(0);
+		assertEquals("// first", newSource.substring(first.getStart(), //$NON-NLS-1$
+				first.getStart() + 8));
+		assertEquals(twoStart + delta, result.comments().get(2).getStart());
+	}
+
+	@Test
+	public void unchangedSource() throws Exception {
+		Program program = parse(FUNCTIONS);
+		assertSame(program, IncrementalASTParser.reparse(program,
+				FUNCTIONS.toCharArray(), FUNCTIONS.toCharArray(), false));
+	}
+
+	@Test
+	public void changeOutsideOfBlocks() throws Exception {
+		String newSource = FUNCTIONS.replace("function bar", "$c = 3;\nfunction bar"); //$NON-NLS-1$ //$NON-NLS-2$
+		Program program = parse(FUNCTIONS);
+		assertNull(IncrementalASTParser.reparse(program,
+				FUNCTIONS.toCharArray(), newSource.toCharArray(), false));
+	}
+
+	@Test
+	public void syntaxErrorInFunction() throws Exception {
+		String newSource = FUNCTIONS.replace("$a = 1;", "$a = ;"); //$NON-NLS-1$ //$NON-NLS-2$
+		Program program = parse(FUNCTIONS);
+		String before = program.toString();
+		assertNull(IncrementalASTParser.reparse(program,
+				FUNCTIONS.toCharArray(), newSource.toCharArray(), false));
+		assertEquals(before, program.toString());
+	}
+
+	private static Program assertReparse(String oldSource, String newSource)
+			throws Exception {
+		Program program = parse(oldSource);
+		Program result = IncrementalASTParser.reparse(program,
+				oldSource.toCharArray(), newSource.toCharArray(), false);
+		assertNotNull(result);
+		assertEquals(parse(newSource).toString(), result.toString());
+		return result;
+	}
+
+	private static Program parse(String source) throws Exception {
+		return ASTParser.newParser(new StringReader(source),
+				PHPVersion.PHP5_6, false).createAST(null);
+	}
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.core.tests.dom_ast.visitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.php.internal.core.PHPVersion;
+import org.eclipse.php.internal.core.ast.nodes.ASTNode;
+import org.eclipse.php.internal.core.ast.nodes.ASTParser;
+import org.eclipse.php.internal.core.ast.nodes.ClassDeclaration;
+import org.eclipse.php.internal.core.ast.nodes.FunctionDeclaration;
+import org.eclipse.php.internal.core.ast.nodes.Program;
+import org.eclipse.php.internal.core.ast.nodes.Variable;
+import org.eclipse.php.internal.core.ast.visitor.AbstractVisitor;
+import org.eclipse.php.internal.core.ast.visitor.CompositeVisitor;
+import org.eclipse.php.internal.core.ast.visitor.Visitor;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompositeVisitor}. Each visitor of a composite traversal
+ * must get the same calls as in a traversal of its own.
+ */
+public class CompositeVisitorTests {
+
+	private static final String SOURCE = "<?php\n" //$NON-NLS-1$
+			+ "function foo() {\n\t$a = 1;\n}\n" //$NON-NLS-1$
+			+ "class A {\n\tfunction bar() {\n\t\t$b = 2;\n\t}\n}\n" //$NON-NLS-1$
+			+ "$c = 3;\n"; //$NON-NLS-1$
+
+	/**
+	 * Records the calls it gets, and optionally doesn't descend into
+	 * functions or classes
+	 */
+	private static class RecordingVisitor extends AbstractVisitor {
+
+		private final List<String> calls = new ArrayList<String>();
+		private final boolean intoFunctions;
+		private final boolean intoClasses;
+
+		RecordingVisitor(boolean intoFunctions, boolean intoClasses) {
+			this.intoFunctions = intoFunctions;
+			this.intoClasses = intoClasses;
+		}
+
+		private void record(String call, ASTNode node) {
+			calls.add(call + " " + node.getClass().getSimpleName() + "@" //$NON-NLS-1$ //$NON-NLS-2$
+					+ node.getStart());
+		}
+
+		public void preVisit(ASTNode node) {
+			record("pre", node); //$NON-NLS-1$
+		}
+
+		public void postVisit(ASTNode node) {
+			record("post", node); //$NON-NLS-1$
+		}
+
+		public boolean visit(FunctionDeclaration functionDeclaration) {
+			record("visit", functionDeclaration); //$NON-NLS-1$
+			return intoFunctions;
+		}
+
+		public void endVisit(FunctionDeclaration functionDeclaration) {
+			record("end", functionDeclaration); //$NON-NLS-1$
+		}
+
+		public boolean visit(ClassDeclaration classDeclaration) {
+			record("visit", classDeclaration); //$NON-NLS-1$
+			return intoClasses;
+		}
+
+		public void endVisit(ClassDeclaration classDeclaration) {
+			record("end", classDeclaration); //$NON-NLS-1$
+		}
+
+		public boolean visit(Variable variable) {
+			record("visit", variable); //$NON-NLS-1$
+			return true;
+		}
+
+		public void endVisit(Variable variable) {
+			record("end", variable); //$NON-NLS-1$
+		}
+	}
+
+	@Test
+	public void oneVisitorSkipsChildren() throws Exception {
+		Program program = parse(SOURCE);
+		RecordingVisitor skipping = new RecordingVisitor(false, true);
+		RecordingVisitor descending = new RecordingVisitor(true, true);
+		program.accept(new CompositeVisitor(new Visitor[] { skipping,
+				descending }));
+
+		assertSameCalls(program, skipping);
+		assertSameCalls(program, descending);
+
+		int aStart = SOURCE.indexOf("$a"); //$NON-NLS-1$
+		int fooStart = program.statements().get(0).getStart();
+		assertFalse(skipping.calls.contains("visit Variable@" + aStart)); //$NON-NLS-1$
+		assertTrue(descending.calls.contains("visit Variable@" + aStart)); //$NON-NLS-1$
+		// both get the end of the function they skipped or descended into
+		assertTrue(skipping.calls.contains("end FunctionDeclaration@" //$NON-NLS-1$
+				+ fooStart));
+		assertTrue(descending.calls.contains("end FunctionDeclaration@" //$NON-NLS-1$
+				+ fooStart));
+		// the skipping visitor resumes after the function
+		assertTrue(skipping.calls.contains("visit Variable@" //$NON-NLS-1$
+				+ SOURCE.indexOf("$c"))); //$NON-NLS-1$
+	}
+
+	@Test
+	public void visitorsSkipDifferentNodes() throws Exception {
+		Program program = parse(SOURCE);
+		RecordingVisitor noFunctions = new RecordingVisitor(false, true);
+		RecordingVisitor noClasses = new RecordingVisitor(true, false);
+		RecordingVisitor all = new RecordingVisitor(true, true);
+		program.accept(new CompositeVisitor(new Visitor[] { noFunctions,
+				noClasses, all }));
+
+		assertSameCalls(program, noFunctions);
+		assertSameCalls(program, noClasses);
+		assertSameCalls(program, all);
+	}
+
+	@Test
+	public void allVisitorsSkipChildren() throws Exception {
+		Program program = parse(SOURCE);
+		RecordingVisitor first = new RecordingVisitor(false, false);
+		RecordingVisitor second = new RecordingVisitor(false, false);
+		program.accept(new CompositeVisitor(new Visitor[] { first, second }));
+
+		assertSameCalls(program, first);
+		assertSameCalls(program, second);
+		assertFalse(first.calls.contains("visit Variable@" //$NON-NLS-1$
+				+ SOURCE.indexOf("$b"))); //$NON-NLS-1$
+	}
+
+	/**
+	 * Asserts that the visitor got the same calls as a visitor of the same
+	 * kind that traverses the program on its own
+	 */
+	private static void assertSameCalls(Program program,
+			RecordingVisitor visitor) {
+		RecordingVisitor alone = new RecordingVisitor(visitor.intoFunctions,
+				visitor.intoClasses);
+		program.accept(alone);
+		assertEquals(alone.calls, visitor.calls);
+	}
+
+	private static Program parse(String source) throws Exception {
+		return ASTParser.newParser(new StringReader(source),
+				PHPVersion.PHP5_6, false).createAST(null);
+	}
+}
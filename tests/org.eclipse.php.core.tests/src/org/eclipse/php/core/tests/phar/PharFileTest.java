@@ -1,5 +1,7 @@
 package org.eclipse.php.core.tests.phar;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -9,6 +11,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +22,7 @@ import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.php.core.tests.PHPCoreTests;
+import org.eclipse.php.internal.core.phar.MappedPharFile;
 import org.eclipse.php.internal.core.phar.PharConstants;
 import org.eclipse.php.internal.core.phar.PharEntry;
 import org.eclipse.php.internal.core.phar.PharFile;
@@ -109,6 +113,20 @@ public class PharFileTest {
 		}
 	}
 
+	public void compareContent(String pharFileFolder,
+			MappedPharFile pharFile) throws Exception {
+		for (PharEntry entry : pharFile.getPharEntryList()) {
+			String filename = entry.getName();
+
+			if (PharConstants.SIGNATURE_PATH.endsWith(filename)
+					|| PharConstants.STUB_PATH.endsWith(filename))
+				continue;
+			File file = new File(pharFileFolder, filename);
+			assertTrue(inputStreamEquals(new BufferedInputStream(
+					new FileInputStream(file)), pharFile.getInputStream(entry)));
+		}
+	}
+
 	public static boolean inputStreamEquals(InputStream is1, InputStream is2)
 			throws IOException {
 		byte[] buffer1 = new byte[512];
@@ -193,6 +211,81 @@ public class PharFileTest {
 		tempPhar.delete();
 	}
 
+	@Test
+	public void mappedPharFile() throws Throwable {
+		comparePharFiles(true);
+	}
+
+	@Test
+	public void unmappedPharFile() throws Throwable {
+		comparePharFiles(false);
+	}
+
+	private void comparePharFiles(boolean map) throws Throwable {
+		File tempPhar = exportTempPhar(pharFileFolder);
+		try {
+			PharFile pharFile = new PharFile(tempPhar);
+			MappedPharFile mappedPharFile = new MappedPharFile(tempPhar, map);
+			assertEquals(pharFile.getPharEntryList().size(), mappedPharFile
+					.getPharEntryList().size());
+			for (PharEntry entry : pharFile.getPharEntryList()) {
+				PharEntry mappedEntry = mappedPharFile.getEntry(entry
+						.getName());
+				assertNotNull(mappedEntry);
+				assertEquals(entry.getPosition(), mappedEntry.getPosition());
+				assertEquals(entry.getCsize(), mappedEntry.getCsize());
+			}
+			compareContent(pharFileFolder, mappedPharFile);
+
+			// the file is mapped again after it was closed
+			mappedPharFile.close();
+			compareContent(pharFileFolder, mappedPharFile);
+			mappedPharFile.close();
+		} finally {
+			tempPhar.delete();
+		}
+	}
+
+	@Test
+	public void corruptedEntry() throws Throwable {
+		File tempPhar = exportTempPhar(pharFileFolder);
+		try {
+			MappedPharFile mappedPharFile = new MappedPharFile(tempPhar);
+			PharEntry entry = null;
+			for (PharEntry e : mappedPharFile.getPharEntryList()) {
+				if (e.getCrcByte() != null
+						&& (entry == null || e.getCsize() > entry.getCsize())) {
+					entry = e;
+				}
+			}
+			assertNotNull(entry);
+			// the file can't be changed while it is mapped on all platforms
+			mappedPharFile.close();
+
+			RandomAccessFile raf = new RandomAccessFile(tempPhar, "rw");
+			try {
+				int position = entry.getPosition() + entry.getCsize() / 2;
+				raf.seek(position);
+				int b = raf.read();
+				raf.seek(position);
+				raf.write(b ^ 0xFF);
+			} finally {
+				raf.close();
+			}
+
+			try {
+				getBytes(mappedPharFile.getInputStream(entry));
+				fail("Corrupted entry was read: " + entry.getName());
+			} catch (IOException e) {
+				// expected
+			} finally {
+				mappedPharFile.close();
+			}
+		} finally {
+			tempPhar.delete();
+		}
+	}
+
 	private File exportTempPhar(String pharFileFolder) throws IOException,
 			CoreException {
 		File result = File.createTempFile("temp", ".phar");
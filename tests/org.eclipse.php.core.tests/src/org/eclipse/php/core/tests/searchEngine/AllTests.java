@@ -18,7 +18,8 @@ import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
 @SuiteClasses({ PHP5LanguageModelTest.class, PHP53LanguageModelTest.class,
-		SearchFieldTests.class })
+		SearchFieldTests.class, GlobalNameIndexTests.class,
+		TypeHierarchyGraphTests.class, ProjectModelAccessCacheTests.class })
 public class AllTests {
 
 }
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.core.tests.searchEngine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.dltk.ast.Modifiers;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IMethod;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.eclipse.dltk.core.search.IDLTKSearchScope;
+import org.eclipse.dltk.core.search.SearchEngine;
+import org.eclipse.php.core.tests.PHPCoreTests;
+import org.eclipse.php.internal.core.index.IPHPDocAwareElement;
+import org.eclipse.php.internal.core.model.GlobalNameIndex;
+import org.eclipse.php.internal.core.project.PHPNature;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the name lookups of {@link GlobalNameIndex}.
+ */
+public class GlobalNameIndexTests {
+
+	private static IProject project;
+	private static IScriptProject scriptProject;
+	private static IFile functionsFile;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		project = ResourcesPlugin.getWorkspace().getRoot()
+				.getProject("GlobalNameIndexTests"); //$NON-NLS-1$
+		if (project.exists()) {
+			project.delete(true, true, null);
+		}
+
+		project.create(null);
+		project.open(null);
+
+		// configure nature
+		IProjectDescription desc = project.getDescription();
+		desc.setNatureIds(new String[] { PHPNature.ID });
+		project.setDescription(desc, null);
+
+		createFile("types.php", "<?php\n" //$NON-NLS-1$ //$NON-NLS-2$
+				+ "class NullPointerException {}\n" //$NON-NLS-1$
+				+ "class NumberFormatException {}\n" //$NON-NLS-1$
+				+ "class nullObject {}\n" //$NON-NLS-1$
+				+ "interface NumberFormatter {}\n"); //$NON-NLS-1$
+		functionsFile = createFile("functions.php", "<?php\n" //$NON-NLS-1$ //$NON-NLS-2$
+				+ "function myFirstFunction() {}\n" //$NON-NLS-1$
+				+ "/** @return MyResult */\n" //$NON-NLS-1$
+				+ "function mySecondFunction() {}\n"); //$NON-NLS-1$
+		scriptProject = DLTKCore.create(project);
+
+		// the first query loads the index in the background
+		assertNull(GlobalNameIndex.getDefault().findTypes(scriptProject, "", //$NON-NLS-1$
+				MatchRule.PREFIX, 0, 0, createScope()));
+		Job.getJobManager().join(GlobalNameIndex.LOAD_FAMILY, null);
+	}
+
+	@AfterClass
+	public static void tearDown() throws Exception {
+		project.close(null);
+		project.delete(true, true, null);
+		project = null;
+	}
+
+	@Test
+	public void prefix() {
+		assertTypes(new String[] { "NullPointerException", "nullObject" }, //$NON-NLS-1$ //$NON-NLS-2$
+				"Null", MatchRule.PREFIX); //$NON-NLS-1$
+		// prefixes aren't case sensitive
+		assertTypes(new String[] { "NumberFormatException", //$NON-NLS-1$
+				"NumberFormatter" }, "numberf", MatchRule.PREFIX); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTypes(new String[0], "Nullx", MatchRule.PREFIX); //$NON-NLS-1$
+	}
+
+	@Test
+	public void emptyPrefix() {
+		assertEquals(4, findTypes("", MatchRule.PREFIX).length); //$NON-NLS-1$
+	}
+
+	@Test
+	public void exact() {
+		assertTypes(new String[] { "nullObject" }, "NULLOBJECT", //$NON-NLS-1$ //$NON-NLS-2$
+				MatchRule.EXACT);
+		assertTypes(new String[0], "Null", MatchRule.EXACT); //$NON-NLS-1$
+	}
+
+	@Test
+	public void camelCase() {
+		assertTypes(new String[] { "NullPointerException" }, "NPE", //$NON-NLS-1$ //$NON-NLS-2$
+				MatchRule.CAMEL_CASE);
+		// a prefix of the humps matches as well
+		assertTypes(new String[] { "NumberFormatException", //$NON-NLS-1$
+				"NumberFormatter", "NullPointerException", "nullObject" }, //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				"N", MatchRule.CAMEL_CASE); //$NON-NLS-1$
+		assertTypes(new String[] { "NumberFormatException", //$NON-NLS-1$
+				"NumberFormatter" }, "NF", MatchRule.CAMEL_CASE); //$NON-NLS-1$ //$NON-NLS-2$
+		// lower case letters of the query are ignored like in the names
+		assertTypes(new String[] { "NumberFormatException" }, "NuFoE", //$NON-NLS-1$ //$NON-NLS-2$
+				MatchRule.CAMEL_CASE);
+		assertTypes(new String[0], "NPX", MatchRule.CAMEL_CASE); //$NON-NLS-1$
+	}
+
+	@Test
+	public void flags() {
+		assertEquals(1, GlobalNameIndex.getDefault().findTypes(scriptProject,
+				"NumberFormat", MatchRule.PREFIX, //$NON-NLS-1$
+				Modifiers.AccInterface, 0, createScope()).length);
+	}
+
+	@Test
+	public void functions() {
+		assertFunctions(new String[] { "myFirstFunction", //$NON-NLS-1$
+				"mySecondFunction" }, "my", MatchRule.PREFIX); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFunctions(new String[] { "mySecondFunction" }, "MSF", //$NON-NLS-1$ //$NON-NLS-2$
+				MatchRule.CAMEL_CASE);
+	}
+
+	@Test
+	public void returnTypes() {
+		// the PHPDoc of functions isn't kept in memory but looked up on demand
+		IMethod[] functions = GlobalNameIndex.getDefault().findFunctions(
+				scriptProject, "mySecondFunction", MatchRule.EXACT, //$NON-NLS-1$
+				createScope());
+		assertEquals(1, functions.length);
+		assertArrayEquals(new String[] { "MyResult" }, //$NON-NLS-1$
+				((IPHPDocAwareElement) functions[0]).getReturnTypes());
+		functions = GlobalNameIndex.getDefault().findFunctions(scriptProject,
+				"myFirstFunction", MatchRule.EXACT, createScope()); //$NON-NLS-1$
+		assertEquals(1, functions.length);
+		assertNull(((IPHPDocAwareElement) functions[0]).getReturnTypes());
+	}
+
+	@Test
+	public void returnTypesOfOneQuery() {
+		// functions of the same module share the lookup of their PHPDoc
+		IMethod[] functions = GlobalNameIndex.getDefault().findFunctions(
+				scriptProject, "my", MatchRule.PREFIX, createScope()); //$NON-NLS-1$
+		assertEquals(2, functions.length);
+		for (IMethod function : functions) {
+			String[] returnTypes = ((IPHPDocAwareElement) function)
+					.getReturnTypes();
+			if ("mySecondFunction".equals(function.getElementName())) { //$NON-NLS-1$
+				assertArrayEquals(new String[] { "MyResult" }, returnTypes); //$NON-NLS-1$
+			} else {
+				assertNull(returnTypes);
+			}
+		}
+	}
+
+	@Test
+	public void scope() {
+		// the scope of the caller is respected
+		IDLTKSearchScope scope = SearchEngine.createSearchScope(DLTKCore
+				.createSourceModuleFrom(functionsFile));
+		assertEquals(0, GlobalNameIndex.getDefault().findTypes(scriptProject,
+				"Null", MatchRule.PREFIX, 0, 0, scope).length); //$NON-NLS-1$
+		assertEquals(2, GlobalNameIndex.getDefault().findFunctions(
+				scriptProject, "my", MatchRule.PREFIX, scope).length); //$NON-NLS-1$
+	}
+
+	@Test
+	public void changedModule() throws Exception {
+		IFile file = createFile("changed.php", //$NON-NLS-1$
+				"<?php\nclass NullChanged {}\n"); //$NON-NLS-1$
+		try {
+			assertEquals(1, findTypes("NullChanged", MatchRule.EXACT).length); //$NON-NLS-1$
+
+			file.setContents(new ByteArrayInputStream(
+					"<?php\nclass NullRenamed {}\n".getBytes()), true, false, //$NON-NLS-1$
+					null);
+			PHPCoreTests.waitForIndexer();
+			assertEquals(0, findTypes("NullChanged", MatchRule.EXACT).length); //$NON-NLS-1$
+			assertEquals(1, findTypes("NullRenamed", MatchRule.EXACT).length); //$NON-NLS-1$
+		} finally {
+			file.delete(true, null);
+			PHPCoreTests.waitForIndexer();
+		}
+	}
+
+	@Test
+	public void namespaceMembers() throws Exception {
+		IFile file = createFile("namespace.php", "<?php\n" //$NON-NLS-1$ //$NON-NLS-2$
+				+ "namespace Lib\\Util;\n" //$NON-NLS-1$
+				+ "class UtilHelper {}\n" //$NON-NLS-1$
+				+ "trait UtilTrait {}\n" //$NON-NLS-1$
+				+ "function utilFunction() {}\n"); //$NON-NLS-1$
+		try {
+			// namespace names aren't case sensitive
+			assertNames(new String[] { "UtilHelper", "UtilTrait" }, //$NON-NLS-1$ //$NON-NLS-2$
+					GlobalNameIndex.getDefault().findNamespaceTypes(
+							scriptProject, "lib\\util", "util", createScope())); //$NON-NLS-1$ //$NON-NLS-2$
+			assertNames(new String[] { "utilFunction" }, GlobalNameIndex //$NON-NLS-1$
+					.getDefault().findNamespaceFunctions(scriptProject,
+							"Lib\\Util", "", createScope())); //$NON-NLS-1$ //$NON-NLS-2$
+			// only members of the namespace itself
+			assertEquals(0, GlobalNameIndex.getDefault().findNamespaceTypes(
+					scriptProject, "Lib", "", createScope()).length); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(0, GlobalNameIndex.getDefault().findNamespaceTypes(
+					scriptProject, "Lib\\Util", "Null", createScope()).length); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			file.delete(true, null);
+			PHPCoreTests.waitForIndexer();
+		}
+	}
+
+	private static IFile createFile(String name, String contents)
+			throws Exception {
+		IFile file = project.getFile(name);
+		file.create(new ByteArrayInputStream(contents.getBytes()), true, null);
+		project.build(IncrementalProjectBuilder.FULL_BUILD, null);
+		PHPCoreTests.waitForIndexer();
+		return file;
+	}
+
+	private static IDLTKSearchScope createScope() {
+		return SearchEngine.createSearchScope(scriptProject);
+	}
+
+	private static IModelElement[] findTypes(String name, MatchRule matchRule) {
+		IModelElement[] types = GlobalNameIndex.getDefault().findTypes(
+				scriptProject, name, matchRule, 0, 0, createScope());
+		assertNotNull(types);
+		return types;
+	}
+
+	private static void assertTypes(String[] expected, String name,
+			MatchRule matchRule) {
+		assertNames(expected, findTypes(name, matchRule));
+	}
+
+	private static void assertFunctions(String[] expected, String name,
+			MatchRule matchRule) {
+		IModelElement[] functions = GlobalNameIndex.getDefault()
+				.findFunctions(scriptProject, name, matchRule, createScope());
+		assertNotNull(functions);
+		assertNames(expected, functions);
+	}
+
+	private static void assertNames(String[] expected,
+			IModelElement[] elements) {
+		String[] names = new String[elements.length];
+		for (int i = 0; i < elements.length; i++) {
+			names[i] = elements[i].getElementName();
+		}
+		Arrays.sort(names);
+		String[] sorted = expected.clone();
+		Arrays.sort(sorted);
+		assertArrayEquals(sorted, names);
+	}
+}
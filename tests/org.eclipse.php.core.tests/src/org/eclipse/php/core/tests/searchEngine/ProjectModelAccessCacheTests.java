@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.core.tests.searchEngine;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IType;
+import org.eclipse.dltk.core.ITypeHierarchy;
+import org.eclipse.php.core.tests.PHPCoreTests;
+import org.eclipse.php.internal.core.model.ProjectModelAccessCache;
+import org.eclipse.php.internal.core.project.PHPNature;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the eviction of the results cached by {@link ProjectModelAccessCache}.
+ */
+public class ProjectModelAccessCacheTests {
+
+	private static IProject project;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		project = ResourcesPlugin.getWorkspace().getRoot()
+				.getProject("ProjectModelAccessCacheTests"); //$NON-NLS-1$
+		if (project.exists()) {
+			project.delete(true, true, null);
+		}
+
+		project.create(null);
+		project.open(null);
+
+		// configure nature
+		IProjectDescription desc = project.getDescription();
+		desc.setNatureIds(new String[] { PHPNature.ID });
+		project.setDescription(desc, null);
+	}
+
+	@AfterClass
+	public static void tearDown() throws Exception {
+		project.close(null);
+		project.delete(true, true, null);
+		project = null;
+	}
+
+	@Test
+	public void addedSuperType() throws Exception {
+		IFile subFile = createFile("sub.php", //$NON-NLS-1$
+				"<?php\nclass Sub extends Middle {}\n"); //$NON-NLS-1$
+		IFile middleFile = null;
+		try {
+			IType sub = DLTKCore.createSourceModuleFrom(subFile).getType(
+					"Sub"); //$NON-NLS-1$
+			assertSuperclasses(new String[0], sub);
+
+			// a new file declares the missing super class, and extends
+			// another one
+			middleFile = createFile("middle.php", //$NON-NLS-1$
+					"<?php\nclass Top {}\nclass Middle extends Top {}\n"); //$NON-NLS-1$
+			assertSuperclasses(new String[] { "Middle", "Top" }, sub); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			subFile.delete(true, null);
+			if (middleFile != null) {
+				middleFile.delete(true, null);
+			}
+			PHPCoreTests.waitForIndexer();
+		}
+	}
+
+	@Test
+	public void changedSuperType() throws Exception {
+		IFile subFile = createFile("changedSub.php", //$NON-NLS-1$
+				"<?php\nclass ChangedSub extends ChangedBase {}\n"); //$NON-NLS-1$
+		IFile baseFile = createFile("changedBase.php", "<?php\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		try {
+			IType sub = DLTKCore.createSourceModuleFrom(subFile).getType(
+					"ChangedSub"); //$NON-NLS-1$
+			assertSuperclasses(new String[0], sub);
+
+			baseFile.setContents(new ByteArrayInputStream(
+					"<?php\nclass ChangedBase {}\n".getBytes()), true, false, //$NON-NLS-1$
+					null);
+			PHPCoreTests.waitForIndexer();
+			assertSuperclasses(new String[] { "ChangedBase" }, sub); //$NON-NLS-1$
+		} finally {
+			subFile.delete(true, null);
+			baseFile.delete(true, null);
+			PHPCoreTests.waitForIndexer();
+		}
+	}
+
+	private static IFile createFile(String name, String contents)
+			throws Exception {
+		IFile file = project.getFile(name);
+		file.create(new ByteArrayInputStream(contents.getBytes()), true, null);
+		project.build(IncrementalProjectBuilder.FULL_BUILD, null);
+		PHPCoreTests.waitForIndexer();
+		return file;
+	}
+
+	private static void assertSuperclasses(String[] expected, IType type)
+			throws Exception {
+		ITypeHierarchy hierarchy = ProjectModelAccessCache.getDefault()
+				.getSuperTypeHierarchy(type, null);
+		IType[] superclasses = hierarchy.getAllSuperclasses(type);
+		String[] names = new String[superclasses.length];
+		for (int i = 0; i < superclasses.length; i++) {
+			names[i] = superclasses[i].getElementName();
+		}
+		Arrays.sort(names);
+		assertArrayEquals(expected, names);
+	}
+}
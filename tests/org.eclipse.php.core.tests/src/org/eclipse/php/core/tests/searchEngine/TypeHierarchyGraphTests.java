@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.core.tests.searchEngine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.eclipse.php.internal.core.model.TypeHierarchyGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the super type and sub type lookups of {@link TypeHierarchyGraph}.
+ */
+public class TypeHierarchyGraphTests {
+
+	private static final String[] NONE = new String[0];
+
+	private TypeHierarchyGraph<String> graph;
+
+	@Before
+	public void setUp() {
+		graph = new TypeHierarchyGraph<String>();
+		graph.add("Exception", NONE, "Exception"); //$NON-NLS-1$ //$NON-NLS-2$
+		graph.add("Countable", NONE, "Countable"); //$NON-NLS-1$ //$NON-NLS-2$
+		graph.add("ns\\MyException", new String[] { "Exception" }, //$NON-NLS-1$ //$NON-NLS-2$
+				"ns\\MyException"); //$NON-NLS-1$
+		graph.add("ns\\ListException", //$NON-NLS-1$
+				new String[] { "ns\\MyException", "Countable" }, //$NON-NLS-1$ //$NON-NLS-2$
+				"ns\\ListException"); //$NON-NLS-1$
+	}
+
+	@Test
+	public void directSuperTypes() {
+		assertEquals(Arrays.asList("ns\\MyException", "Countable"), //$NON-NLS-1$ //$NON-NLS-2$
+				graph.getSuperTypes(new String[] { "ns\\MyException", //$NON-NLS-1$
+						"Countable" }, false)); //$NON-NLS-1$
+	}
+
+	@Test
+	public void allSuperTypesNearestFirst() {
+		assertEquals(Arrays.asList("ns\\MyException", "Countable", //$NON-NLS-1$ //$NON-NLS-2$
+				"Exception"), graph.getSuperTypes(new String[] { //$NON-NLS-1$
+				"ns\\MyException", "Countable" }, true)); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Test
+	public void namesAreCaseInsensitive() {
+		assertEquals(Arrays.asList("Exception"), //$NON-NLS-1$
+				graph.getSuperTypes(new String[] { "EXCEPTION" }, true)); //$NON-NLS-1$
+		assertTrue(graph.contains("NS\\myexception")); //$NON-NLS-1$
+	}
+
+	@Test
+	public void unknownSuperType() {
+		assertNull(graph.getSuperTypes(new String[] { "Unknown" }, false)); //$NON-NLS-1$
+	}
+
+	@Test
+	public void undeclaredSuperTypeOfSuperType() {
+		graph.add("Child", new String[] { "Parent" }, "Child"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		graph.add("Parent", new String[] { "Missing" }, "Parent"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals(Arrays.asList("Parent"), //$NON-NLS-1$
+				graph.getSuperTypes(new String[] { "Parent" }, false)); //$NON-NLS-1$
+		assertNull(graph.getSuperTypes(new String[] { "Parent" }, true)); //$NON-NLS-1$
+	}
+
+	@Test
+	public void subTypes() {
+		assertEquals(Arrays.asList("ns\\MyException"), //$NON-NLS-1$
+				graph.getSubTypes("Exception", false)); //$NON-NLS-1$
+		assertEquals(Arrays.asList("ns\\MyException", "ns\\ListException"), //$NON-NLS-1$ //$NON-NLS-2$
+				graph.getSubTypes("Exception", true)); //$NON-NLS-1$
+		assertEquals(Arrays.asList(), graph.getSubTypes("ns\\ListException", //$NON-NLS-1$
+				true));
+	}
+
+	@Test
+	public void subTypesOfUnknownType() {
+		assertNull(graph.getSubTypes("Unknown", true)); //$NON-NLS-1$
+	}
+
+	@Test
+	public void cycle() {
+		graph.add("A", new String[] { "B" }, "A"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		graph.add("B", new String[] { "A" }, "B"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals(Arrays.asList("B", "A"), //$NON-NLS-1$ //$NON-NLS-2$
+				graph.getSuperTypes(new String[] { "B" }, true)); //$NON-NLS-1$
+		assertEquals(Arrays.asList("B", "A"), graph.getSubTypes("A", true)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	@Test
+	public void declaredTwice() {
+		graph.add("Countable", new String[] { "Exception" }, "Countable2"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals(Arrays.asList("Countable", "Countable2", "Exception"), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				graph.getSuperTypes(new String[] { "Countable" }, true)); //$NON-NLS-1$
+		assertTrue(graph.getSubTypes("Exception", false).contains( //$NON-NLS-1$
+				"Countable2")); //$NON-NLS-1$
+	}
+
+	@Test
+	public void remove() {
+		graph.remove("ns\\MyException", "ns\\MyException"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFalse(graph.contains("ns\\MyException")); //$NON-NLS-1$
+		assertEquals(Arrays.asList(), graph.getSubTypes("Exception", true)); //$NON-NLS-1$
+		assertNull(graph.getSuperTypes(new String[] { "ns\\MyException" }, //$NON-NLS-1$
+				false));
+
+		// the name is declared again
+		graph.add("ns\\MyException", new String[] { "Countable" }, //$NON-NLS-1$ //$NON-NLS-2$
+				"ns\\MyException"); //$NON-NLS-1$
+		assertEquals(Arrays.asList("ns\\ListException", "ns\\MyException"), //$NON-NLS-1$ //$NON-NLS-2$
+				graph.getSubTypes("Countable", true)); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.core.tests.typeinference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.dltk.ast.ASTNode;
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.ast.expressions.CallExpression;
+import org.eclipse.dltk.ast.expressions.Expression;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.SourceParserUtil;
+import org.eclipse.dltk.ti.EvaluatorStatistics;
+import org.eclipse.dltk.ti.IContext;
+import org.eclipse.dltk.ti.IPruner;
+import org.eclipse.dltk.ti.goals.ExpressionTypeGoal;
+import org.eclipse.dltk.ti.goals.IGoal;
+import org.eclipse.dltk.ti.types.IEvaluatedType;
+import org.eclipse.php.core.tests.PHPCoreTests;
+import org.eclipse.php.internal.core.PHPVersion;
+import org.eclipse.php.internal.core.project.PHPNature;
+import org.eclipse.php.internal.core.typeinference.GoalCostPruner;
+import org.eclipse.php.internal.core.typeinference.PHPCachedTypeInferencer;
+import org.eclipse.php.internal.core.typeinference.context.ContextFinder;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the goal limit and the cancellation of type inference by
+ * {@link GoalCostPruner}, and that the {@link PHPCachedTypeInferencer}
+ * doesn't cache results that were cut short.
+ */
+public class GoalCostPrunerTests {
+
+	private static final String CODE = "<?php\n" //$NON-NLS-1$
+			+ "class Foo {}\n" //$NON-NLS-1$
+			+ "function bar() { return new Foo(); }\n" //$NON-NLS-1$
+			+ "$b = bar();\n" //$NON-NLS-1$
+			+ "$a = $b;\n" //$NON-NLS-1$
+			+ "testType($a);\n"; //$NON-NLS-1$
+
+	private static IProject project;
+	private static ISourceModule sourceModule;
+
+	private static class FirstGoal implements IGoal {
+		public IContext getContext() {
+			return null;
+		}
+	}
+
+	private static class SecondGoal implements IGoal {
+		public IContext getContext() {
+			return null;
+		}
+	}
+
+	@BeforeClass
+	public static void setUpSuite() throws Exception {
+		project = ResourcesPlugin.getWorkspace().getRoot()
+				.getProject("GoalCostPrunerTests"); //$NON-NLS-1$
+		if (project.exists()) {
+			project.delete(true, true, null);
+		}
+		project.create(null);
+		project.open(null);
+
+		IProjectDescription desc = project.getDescription();
+		desc.setNatureIds(new String[] { PHPNature.ID });
+		project.setDescription(desc, null);
+		PHPCoreTests.setProjectPhpVersion(project, PHPVersion.PHP5_3);
+
+		IFile file = project.getFile("test.php"); //$NON-NLS-1$
+		file.create(new ByteArrayInputStream(CODE.getBytes()), true, null);
+		project.build(IncrementalProjectBuilder.FULL_BUILD, null);
+		PHPCoreTests.waitForIndexer();
+		sourceModule = DLTKCore.createSourceModuleFrom(file);
+	}
+
+	@AfterClass
+	public static void tearDownSuite() throws Exception {
+		project.delete(true, true, null);
+		project = null;
+		sourceModule = null;
+	}
+
+	@Test
+	public void goalLimit() {
+		GoalCostPruner pruner = new GoalCostPruner(null, null, 2);
+		pruner.init();
+		assertFalse(pruner.prune(new FirstGoal(), null));
+		assertFalse(pruner.prune(new FirstGoal(), null));
+		assertFalse(pruner.isCutShort());
+		assertTrue(pruner.prune(new FirstGoal(), null));
+		assertTrue(pruner.isCutShort());
+
+		// goals of other kinds are counted separately
+		assertFalse(pruner.prune(new SecondGoal(), null));
+
+		// the next evaluation starts from zero
+		pruner.init();
+		assertFalse(pruner.isCutShort());
+		assertFalse(pruner.prune(new FirstGoal(), null));
+	}
+
+	@Test
+	public void delegate() {
+		IPruner delegate = new IPruner() {
+			public void init() {
+			}
+
+			public boolean prune(IGoal goal, EvaluatorStatistics stat) {
+				return goal instanceof SecondGoal;
+			}
+		};
+		GoalCostPruner pruner = new GoalCostPruner(delegate, null);
+		pruner.init();
+		assertFalse(pruner.prune(new FirstGoal(), null));
+		assertTrue(pruner.prune(new SecondGoal(), null));
+		// goals pruned by the delegate (e.g. after its time limit) don't make
+		// the result incomplete
+		assertFalse(pruner.isCutShort());
+
+		assertSame(pruner, GoalCostPruner.limit(pruner));
+	}
+
+	@Test
+	public void cancelledMonitor() {
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		GoalCostPruner pruner = new GoalCostPruner(null, monitor);
+		pruner.init();
+		assertFalse(pruner.prune(new FirstGoal(), null));
+		monitor.setCanceled(true);
+		assertTrue(pruner.prune(new FirstGoal(), null));
+		assertTrue(pruner.prune(new SecondGoal(), null));
+		assertTrue(pruner.isCutShort());
+	}
+
+	@Test
+	public void interruptedThread() {
+		GoalCostPruner pruner = new GoalCostPruner(null, null);
+		pruner.init();
+		Thread.currentThread().interrupt();
+		try {
+			assertTrue(pruner.prune(new FirstGoal(), null));
+			assertTrue(pruner.isCutShort());
+		} finally {
+			// clear the interrupt
+			Thread.interrupted();
+		}
+	}
+
+	@Test
+	public void cancelledResultIsNotCached() throws Exception {
+		PHPCachedTypeInferencer inferencer = new PHPCachedTypeInferencer();
+		ExpressionTypeGoal goal = createGoal();
+
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		GoalCostPruner pruner = new GoalCostPruner(null, monitor);
+		inferencer.evaluateType(goal, pruner);
+		assertTrue(pruner.isCutShort());
+
+		assertFoo(inferencer.evaluateType(goal));
+	}
+
+	@Test
+	public void limitedResultIsNotCached() throws Exception {
+		PHPCachedTypeInferencer inferencer = new PHPCachedTypeInferencer();
+		ExpressionTypeGoal goal = createGoal();
+
+		GoalCostPruner pruner = new GoalCostPruner(null, null, 1);
+		inferencer.evaluateType(goal, pruner);
+		assertTrue(pruner.isCutShort());
+
+		assertFoo(inferencer.evaluateType(goal));
+		// complete results are cached
+		assertFoo(inferencer.evaluateType(goal, new GoalCostPruner(null,
+				null, 0)));
+	}
+
+	private static void assertFoo(IEvaluatedType type) {
+		assertNotNull(type);
+		assertEquals("Foo", type.getTypeName()); //$NON-NLS-1$
+	}
+
+	private static ExpressionTypeGoal createGoal() throws Exception {
+		ModuleDeclaration moduleDeclaration = SourceParserUtil
+				.getModuleDeclaration(sourceModule);
+		final ASTNode[] argument = new ASTNode[1];
+		final IContext[] context = new IContext[1];
+		moduleDeclaration.traverse(new ContextFinder(sourceModule) {
+			public boolean visit(Expression node) throws Exception {
+				if (node instanceof CallExpression
+						&& "testType".equals(((CallExpression) node) //$NON-NLS-1$
+								.getName())) {
+					argument[0] = (ASTNode) ((CallExpression) node).getArgs()
+							.getChilds().get(0);
+					context[0] = contextStack.peek();
+					return false;
+				}
+				return true;
+			}
+		});
+		assertNotNull(argument[0]);
+		return new ExpressionTypeGoal(context[0], argument[0]);
+	}
+}
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.core.tests.validation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.eclipse.php.internal.core.PHPVersion;
+import org.eclipse.php.internal.core.validation.TaskScanner;
+import org.eclipse.php.internal.core.validation.TaskScanner.Task;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TaskScanner}
+ */
+public class TaskScannerTests {
+
+	private static final Pattern[] PATTERNS = new Pattern[] {
+			Pattern.compile("TODO", Pattern.CASE_INSENSITIVE | Pattern.LITERAL), //$NON-NLS-1$
+			Pattern.compile("FIXME", Pattern.CASE_INSENSITIVE //$NON-NLS-1$
+					| Pattern.LITERAL) };
+
+	@Test
+	public void comments() throws Exception {
+		String source = "<?php\n// TODO line\n# todo hash\n/* FIXME block\n * TODO second */\n"; //$NON-NLS-1$
+		assertTasks(source, new String[] { "TODO line", "todo hash", //$NON-NLS-1$ //$NON-NLS-2$
+				"FIXME block", "TODO second */" }); //$NON-NLS-1$ //$NON-NLS-2$
+		List<Task> tasks = scan(source, PHPVersion.PHP5_6, true, false);
+		assertEquals(1, tasks.get(0).getLine());
+		assertEquals(source.indexOf("TODO line"), tasks.get(0).getOffset()); //$NON-NLS-1$
+		assertEquals(4, tasks.get(3).getLine());
+	}
+
+	@Test
+	public void severalTagsOnALine() throws Exception {
+		assertTasks("<?php // TODO first FIXME second\n", new String[] { //$NON-NLS-1$
+				"TODO first", "FIXME second" }); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Test
+	public void strings() throws Exception {
+		assertTasks("<?php\n$a = '// TODO single';\n" //$NON-NLS-1$
+				+ "$b = \"/* TODO double \\\" */ still string\";\n" //$NON-NLS-1$
+				+ "$c = `# TODO backquote`;\n// TODO after\n", //$NON-NLS-1$
+				new String[] { "TODO after" }); //$NON-NLS-1$
+	}
+
+	@Test
+	public void multilineString() throws Exception {
+		assertTasks("<?php\n$a = 'first\n// TODO in string\n';\n// TODO after\n", //$NON-NLS-1$
+				new String[] { "TODO after" }); //$NON-NLS-1$
+	}
+
+	@Test
+	public void heredoc() throws Exception {
+		assertTasks("<?php\n$a = <<<EOT\n// TODO in heredoc\nEOTX\n?> /* TODO */\nEOT;\n// TODO after\n", //$NON-NLS-1$
+				new String[] { "TODO after" }); //$NON-NLS-1$
+		assertTasks("<?php\n$a = <<<\"EOT\"\n// TODO in heredoc\nEOT;\n// TODO after\n", //$NON-NLS-1$
+				new String[] { "TODO after" }); //$NON-NLS-1$
+	}
+
+	@Test
+	public void nowdoc() throws Exception {
+		assertTasks("<?php\n$a = <<<'EOT'\n# TODO in nowdoc\nEOT;\n# TODO after\n", //$NON-NLS-1$
+				new String[] { "TODO after" }); //$NON-NLS-1$
+	}
+
+	@Test
+	public void closeTagInLineComment() throws Exception {
+		// the close tag ends the comment and the PHP code
+		assertTasks("<?php // TODO close ?> // TODO html\n<?php // TODO open\n", //$NON-NLS-1$
+				new String[] { "TODO close", "TODO open" }); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTasks("<?php # TODO close ?>html\n", //$NON-NLS-1$
+				new String[] { "TODO close" }); //$NON-NLS-1$
+	}
+
+	@Test
+	public void closeTagInBlockComment() throws Exception {
+		// messages end at the next tag
+		assertTasks("<?php /* TODO ?> still comment */ // TODO after\n", //$NON-NLS-1$
+				new String[] { "TODO ?> still comment */ //", "TODO after" }); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Test
+	public void html() throws Exception {
+		assertTasks("<!-- TODO html -->\n<?php\n// TODO php\n?>\n// TODO html\n", //$NON-NLS-1$
+				new String[] { "TODO php" }); //$NON-NLS-1$
+	}
+
+	@Test
+	public void shortTags() throws Exception {
+		String source = "<? // TODO short\n?>\n"; //$NON-NLS-1$
+		assertEquals(1, scan(source, PHPVersion.PHP5_6, true, false).size());
+		assertEquals(0, scan(source, PHPVersion.PHP5_6, false, false).size());
+
+		// <?php is not a short tag
+		source = "<?php // TODO long\n"; //$NON-NLS-1$
+		assertEquals(1, scan(source, PHPVersion.PHP5_6, false, false).size());
+		source = "<?phpx // TODO short\n"; //$NON-NLS-1$
+		assertEquals(1, scan(source, PHPVersion.PHP5_6, true, false).size());
+		assertEquals(0, scan(source, PHPVersion.PHP5_6, false, false).size());
+	}
+
+	@Test
+	public void echoTag() throws Exception {
+		String source = "<?= $a // TODO echo\n?>\n"; //$NON-NLS-1$
+		// always enabled since PHP 5.4
+		assertEquals(1, scan(source, PHPVersion.PHP5_4, false, false).size());
+		assertEquals(1, scan(source, PHPVersion.PHP5_3, true, false).size());
+		assertEquals(0, scan(source, PHPVersion.PHP5_3, false, false).size());
+	}
+
+	@Test
+	public void aspTags() throws Exception {
+		String source = "<% // TODO asp %> // TODO html\n<%= $a /* TODO echo */ %>\n"; //$NON-NLS-1$
+		assertEquals(2, scan(source, PHPVersion.PHP5_6, true, true).size());
+		assertEquals(0, scan(source, PHPVersion.PHP5_6, true, false).size());
+
+		// %> doesn't close the PHP code without ASP tags
+		source = "<?php // TODO first %> // TODO second\n"; //$NON-NLS-1$
+		List<Task> tasks = scan(source, PHPVersion.PHP5_6, true, false);
+		assertEquals(2, tasks.size());
+		assertEquals("TODO first %> //", tasks.get(0).getMessage()); //$NON-NLS-1$
+		tasks = scan(source, PHPVersion.PHP5_6, true, true);
+		assertEquals(1, tasks.size());
+		assertEquals("TODO first", tasks.get(0).getMessage()); //$NON-NLS-1$
+	}
+
+	@Test
+	public void scriptTag() throws Exception {
+		assertTasks("<script language=\"php\">\n// TODO script\n</script>\n// TODO html\n", //$NON-NLS-1$
+				new String[] { "TODO script" }); //$NON-NLS-1$
+		assertTasks("<SCRIPT LANGUAGE = 'php' >/* TODO script */</script >// TODO html\n", //$NON-NLS-1$
+				new String[] { "TODO script */" }); //$NON-NLS-1$
+		assertTasks("<script language=php>// TODO script\n", //$NON-NLS-1$
+				new String[] { "TODO script" }); //$NON-NLS-1$
+		assertTasks("<script language=\"javascript\">// TODO script\n</script>\n", //$NON-NLS-1$
+				new String[0]);
+	}
+
+	@Test
+	public void lineDelimiters() throws Exception {
+		String source = "<?php\r\n// TODO first\r// TODO second\n"; //$NON-NLS-1$
+		List<Task> tasks = scan(source, PHPVersion.PHP5_6, true, false);
+		assertEquals(2, tasks.size());
+		assertEquals(1, tasks.get(0).getLine());
+		assertEquals("TODO first", tasks.get(0).getMessage()); //$NON-NLS-1$
+		assertEquals(2, tasks.get(1).getLine());
+		assertEquals(source.indexOf("TODO second"), tasks.get(1).getOffset()); //$NON-NLS-1$
+	}
+
+	private static void assertTasks(String source, String[] expected)
+			throws Exception {
+		List<String> messages = new ArrayList<String>();
+		for (Task task : scan(source, PHPVersion.PHP5_6, true, false)) {
+			messages.add(task.getMessage());
+		}
+		List<String> expectedMessages = new ArrayList<String>();
+		for (String message : expected) {
+			expectedMessages.add(message);
+		}
+		assertEquals(expectedMessages, messages);
+	}
+
+	private static List<Task> scan(String source, PHPVersion phpVersion,
+			boolean useShortTags, boolean useAspTags) throws Exception {
+		return new TaskScanner(PATTERNS, phpVersion, useShortTags, useAspTags)
+				.scan(new StringReader(source));
+	}
+}
@@ -25,7 +25,7 @@ import org.junit.runners.Suite;
 		RenameFolderTestCase1.class, RenameFolderTestCase2.class, RenameFolderTestCase30346.class, RenameLocalVarTest2.class,
 		RenameClassMemberProcessorTest1.class, RenameClassMemberProcessorTest2.class, RenameClassMemberProcessorTest3.class,
 		RenameClassMemberProcessorTest0027555.class, RenameFileTestCase0029095.class, RenameFileWithClass.class, RenameProcessorTestCase0029408.class,
-		RenameProcessorTestCaseZSTD_1006.class })
+		RenameProcessorTestCaseZSTD_1006.class, ParticipantFilesPipelineTest.class })
 public class AllTests {
 
 	private static TestProject project;
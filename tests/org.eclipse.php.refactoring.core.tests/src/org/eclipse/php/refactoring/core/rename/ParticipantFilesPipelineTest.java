@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *     Zend Technologies
+ *******************************************************************************/
+package org.eclipse.php.refactoring.core.rename;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.php.core.tests.PHPCoreTests;
+import org.eclipse.php.internal.core.ast.nodes.Program;
+import org.eclipse.php.refactoring.core.test.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParticipantFilesPipelineTest extends AbstractRenameRefactoringTest {
+	private static final int FILES = 8;
+	private static final int MAX_PROGRAMS = 2;
+
+	private IProject project1;
+	private List<IFile> files = new ArrayList<IFile>();
+
+	@Before
+	public void setUp() throws Exception {
+		System.setProperty(ParticipantFilesPipeline.MAX_PROGRAMS_PROPERTY,
+				String.valueOf(MAX_PROGRAMS));
+
+		project1 = FileUtils.createProject("project1");
+
+		IFolder folder = project1.getFolder("src");
+		if (!folder.exists()) {
+			folder.create(true, true, new NullProgressMonitor());
+		}
+		for (int i = 0; i < FILES; i++) {
+			IFile file = folder.getFile("pipeline" + i + ".php");
+			ByteArrayInputStream source = new ByteArrayInputStream(
+					("<?php class Pipeline" + i + " {} ?>").getBytes());
+			if (!file.exists()) {
+				file.create(source, true, new NullProgressMonitor());
+			} else {
+				file.setContents(source, IFile.FORCE,
+						new NullProgressMonitor());
+			}
+			files.add(file);
+		}
+
+		PHPCoreTests.waitForIndexer();
+		PHPCoreTests.waitForAutoBuild();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		System.clearProperty(ParticipantFilesPipeline.MAX_PROGRAMS_PROPERTY);
+		project1.delete(IResource.FORCE, new NullProgressMonitor());
+	}
+
+	private Map<IFile, Program> deferredFiles() {
+		Map<IFile, Program> participantFiles = new HashMap<IFile, Program>();
+		for (IFile file : files) {
+			participantFiles.put(file, null);
+		}
+		return participantFiles;
+	}
+
+	@Test
+	public void testFilesInFlightAreBounded() throws Exception {
+		final AtomicInteger started = new AtomicInteger();
+		final List<IFile> delivered = new ArrayList<IFile>();
+		Map<IFile, Program> participantFiles = deferredFiles();
+
+		RefactoringStatus status = ParticipantFilesPipeline.run(
+				participantFiles,
+				new ParticipantFilesPipeline.IProgramProcessor<String>() {
+					public String process(IFile file, Program program) {
+						assertNotNull(program);
+						started.incrementAndGet();
+						return file.getName();
+					}
+				}, new ParticipantFilesPipeline.IResultRequestor<String>() {
+					public void acceptResult(IFile file, String result) {
+						assertEquals(file.getName(), result);
+						// a slow requestor doesn't let the workers run ahead
+						assertTrue(started.get() - delivered.size() <= MAX_PROGRAMS);
+						delivered.add(file);
+						try {
+							Thread.sleep(20);
+						} catch (InterruptedException e) {
+						}
+					}
+				}, new NullProgressMonitor());
+
+		assertTrue(status.isOK());
+		assertEquals(FILES, delivered.size());
+		assertTrue(delivered.containsAll(files));
+
+		// the parsed programs are not kept
+		assertEquals(FILES, participantFiles.size());
+		for (Program program : participantFiles.values()) {
+			assertNull(program);
+		}
+	}
+
+	@Test
+	public void testFailedFileIsReported() throws Exception {
+		final IFile failing = files.get(3);
+		final List<IFile> delivered = new ArrayList<IFile>();
+
+		RefactoringStatus status = ParticipantFilesPipeline.run(
+				deferredFiles(),
+				new ParticipantFilesPipeline.IProgramProcessor<IFile>() {
+					public IFile process(IFile file, Program program)
+							throws Exception {
+						if (file.equals(failing)) {
+							throw new Exception("failed");
+						}
+						return file;
+					}
+				}, new ParticipantFilesPipeline.IResultRequestor<IFile>() {
+					public void acceptResult(IFile file, IFile result) {
+						delivered.add(result);
+					}
+				}, new NullProgressMonitor());
+
+		assertTrue(status.hasError());
+		assertEquals(1, status.getEntries().length);
+		assertEquals(FILES - 1, delivered.size());
+		assertFalse(delivered.contains(failing));
+	}
+
+	@Test
+	public void testKnownProgramIsUsed() throws Exception {
+		final IFile known = files.get(0);
+		final Program program = createProgram(known);
+		Map<IFile, Program> participantFiles = deferredFiles();
+		participantFiles.put(known, program);
+		final List<IFile> delivered = new ArrayList<IFile>();
+
+		RefactoringStatus status = ParticipantFilesPipeline.run(
+				participantFiles,
+				new ParticipantFilesPipeline.IProgramProcessor<Program>() {
+					public Program process(IFile file, Program p) {
+						return p;
+					}
+				}, new ParticipantFilesPipeline.IResultRequestor<Program>() {
+					public void acceptResult(IFile file, Program result) {
+						if (file.equals(known)) {
+							assertSame(program, result);
+						} else {
+							assertNotSame(program, result);
+						}
+						delivered.add(file);
+					}
+				}, new NullProgressMonitor());
+
+		assertTrue(status.isOK());
+		assertEquals(FILES, delivered.size());
+		assertSame(program, participantFiles.get(known));
+	}
+
+	@Test
+	public void testCachedProgramIsReused() throws Exception {
+		final Map<IFile, Program> parsed = new HashMap<IFile, Program>();
+		ParticipantFilesPipeline.ProgramCache cache = new ParticipantFilesPipeline.ProgramCache();
+		ParticipantFilesPipeline.IProgramProcessor<Program> processor = new ParticipantFilesPipeline.IProgramProcessor<Program>() {
+			public Program process(IFile file, Program program) {
+				return program;
+			}
+		};
+
+		ParticipantFilesPipeline.run(deferredFiles(), cache, processor,
+				new ParticipantFilesPipeline.IResultRequestor<Program>() {
+					public void acceptResult(IFile file, Program result) {
+						parsed.put(file, result);
+					}
+				}, new NullProgressMonitor());
+		assertEquals(FILES, parsed.size());
+
+		// a modified file is parsed again
+		final IFile modified = files.get(1);
+		modified.setContents(
+				new ByteArrayInputStream("<?php class Modified {} ?>"
+						.getBytes()), IFile.FORCE, new NullProgressMonitor());
+
+		RefactoringStatus status = ParticipantFilesPipeline.run(
+				deferredFiles(), cache, processor,
+				new ParticipantFilesPipeline.IResultRequestor<Program>() {
+					public void acceptResult(IFile file, Program result) {
+						if (file.equals(modified)) {
+							assertNotSame(parsed.get(file), result);
+						} else {
+							assertSame(parsed.get(file), result);
+						}
+					}
+				}, new NullProgressMonitor());
+		assertTrue(status.isOK());
+	}
+
+	@Test
+	public void testProgramCacheIsBounded() throws Exception {
+		ParticipantFilesPipeline.ProgramCache cache = new ParticipantFilesPipeline.ProgramCache(
+				2);
+		List<Program> programs = new ArrayList<Program>();
+		for (int i = 0; i < 3; i++) {
+			Program program = createProgram(files.get(i));
+			programs.add(program);
+			cache.put(files.get(i), program);
+		}
+
+		assertNull(cache.get(files.get(0)));
+		assertSame(programs.get(1), cache.get(files.get(1)));
+		assertSame(programs.get(2), cache.get(files.get(2)));
+	}
+}